@@ -0,0 +1,354 @@
+package cse560;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+
+/**
+ * Benchmarks of the assembler's hot paths, run with {@link Bench}:
+ * <ul>
+ * <li>{@code parse1} and {@code parse2} - {@link ParserImp} and
+ * {@link ParserImp2} on the same input.</li>
+ * <li>{@code argformat} - {@link ArgFormat#isValid} and
+ * {@link ArgFormat#getArgType} over a mix of operands.</li>
+ * <li>{@code optable} - {@link MachineOpTable} lookups over every machine
+ * op.</li>
+ * <li>{@code assemble} - parsing and both passes, writing the object file and
+ * listing to nowhere.</li>
+ * <li>{@code listing} - {@link ListingSink#listingLine} alone, over every
+ * record of the input.</li>
+ * </ul>
+ * The input benchmarks run on {@code Input.txt} and on programs from
+ * {@link WorkloadGenerator} of 1K and 8K lines and of enough lines to fill
+ * memory.
+ * <p>
+ * Command line arguments/options accepted are:
+ * <ul>
+ * <li>{@code -w MS} - Warm up each case for MS milliseconds. Default:
+ * 1000.</li>
+ * <li>{@code -i N} - Measure N iterations. Default: 5.</li>
+ * <li>{@code -t MS} - Run each iteration for MS milliseconds. Default:
+ * 1000.</li>
+ * <li>{@code -b TEXT} - Run only the cases whose names contain TEXT.</li>
+ * <li>{@code -f FILE} - Use FILE as the hand-written input. Default:
+ * {@code Input.txt}.</li>
+ * <li>{@code -s} - Instead, assemble generated programs of growing size and
+ * print the time per line of each, to show that it stays flat.</li>
+ * </ul>
+ * For example, from the project directory:
+ *
+ * <pre>
+ * javac -cp lib/jopt-simple-3.3.jar -d /tmp/bench src/cse560/*.java bench/cse560/*.java
+ * java -cp /tmp/bench:lib/jopt-simple-3.3.jar cse560.AssemblerBench -b parse
+ * </pre>
+ *
+ * @author Igor Tolkachev
+ */
+public final class AssemblerBench {
+    /** Line counts of the generated inputs. */
+    private static final int[] GENERATED_LINES = {1 << 10, 1 << 13 };
+
+    /** Enough lines to fill memory up to 0xFFFF. */
+    private static final int FULL_LINES = 1 << 20;
+
+    /** Line counts of the scaling run. */
+    private static final int[] SCALING_LINES = {1 << 10, 1 << 12, 1 << 14,
+        1 << 15, FULL_LINES };
+
+    /** Settings loose enough for the largest generated segment. */
+    private static final AssemblyContext CONTEXT =
+            new AssemblyContext(null, 1 << 21, 1 << 16, 1 << 16,
+                    ObjectDialect.CLASSIC);
+
+    /** Operands for the {@code argformat} case. */
+    private static final String[] OPERANDS = {"R1", "#-1", "x22", "=#100",
+        "count", "\"hi! \"", "x30B0", "#15", "ACC", "R9" };
+
+    /** A writer that discards everything. */
+    private static final class NullWriter extends Writer {
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            // Discard.
+        }
+
+        @Override
+        public void flush() {
+            // Nothing is held.
+        }
+
+        @Override
+        public void close() {
+            // Nothing is held.
+        }
+    }
+
+    private static BufferedReader reader(String text) {
+        return new BufferedReader(new StringReader(text));
+    }
+
+    private static String read(File file) throws IOException {
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        StringBuilder text = new StringBuilder();
+        String line;
+
+        try {
+            while ((line = in.readLine()) != null) {
+                text.append(line).append('\n');
+            }
+        } finally {
+            in.close();
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Returns every record of {@code source} as parsed by {@link ParserImp2}.
+     */
+    private static List<SourceRecord> records(String source) {
+        Program program =
+                new ParserImp2().parse(reader(source), CONTEXT.getMaxRecords());
+        List<SourceRecord> records = new ArrayList<SourceRecord>();
+
+        while (program.numberOfRecords() > 0) {
+            records.add(program.getNextRecord());
+        }
+
+        return records;
+    }
+
+    /**
+     * Adds the cases that run on one input.
+     */
+    private static void addInputCases(Map<String, Bench.Case> cases,
+            String name, final String source) {
+        cases.put("parse1/" + name, new Bench.Case() {
+            @Override
+            public Object run() {
+                return new ParserImp(CONTEXT).parse(reader(source), CONTEXT
+                        .getMaxRecords());
+            }
+        });
+        cases.put("parse2/" + name, new Bench.Case() {
+            @Override
+            public Object run() {
+                return new ParserImp2().parse(reader(source), CONTEXT
+                        .getMaxRecords());
+            }
+        });
+        cases.put("assemble/" + name, new Bench.Case() {
+            @Override
+            public Object run() throws IOException {
+                Program program =
+                        new ParserImp2().parse(reader(source), CONTEXT
+                                .getMaxRecords());
+                BufferedWriter object = new BufferedWriter(new NullWriter());
+                BufferedWriter listing = new BufferedWriter(new NullWriter());
+                ObjectImage image =
+                        new AssemblerImp().assemble(object, listing, program);
+
+                object.flush();
+                listing.flush();
+
+                return image;
+            }
+        });
+
+        final List<SourceRecord> records = records(source);
+
+        cases.put("listing/" + name, new Bench.Case() {
+            @Override
+            public Object run() {
+                ListingSink sink = new ListingSink(new NullWriter());
+
+                for (SourceRecord record : records) {
+                    String opCode = record.getOpCode();
+                    int instruction =
+                            MachineOpTable.hasOpCode(opCode) ? MachineOpTable
+                                    .getTemplate(opCode) : -1;
+
+                    sink.listingLine(record, record.getLocation(),
+                            instruction, true);
+                }
+
+                return sink;
+            }
+        });
+    }
+
+    /**
+     * Returns every case, by name.
+     *
+     * @param input
+     *            The hand-written input.
+     */
+    private static Map<String, Bench.Case> cases(String input) {
+        Map<String, Bench.Case> cases = new LinkedHashMap<String, Bench.Case>();
+
+        cases.put("argformat", new Bench.Case() {
+            @Override
+            public Object run() {
+                int count = 0;
+
+                for (String operand : OPERANDS) {
+                    if (ArgFormat.isValid(operand) != ArgType.BAD) {
+                        count += ArgFormat.getArgType(operand).ordinal();
+                    }
+                }
+
+                return count;
+            }
+        });
+
+        final List<String> opCodes = new ArrayList<String>();
+
+        for (SourceRecord record : records(new WorkloadGenerator().withLines(
+                WorkloadGenerator.PAGE_WORDS).generate())) {
+            opCodes.add(record.getOpCode());
+        }
+
+        cases.put("optable", new Bench.Case() {
+            @Override
+            public Object run() {
+                int count = 0;
+
+                for (String opCode : opCodes) {
+                    if (MachineOpTable.hasOpCode(opCode)) {
+                        count += MachineOpTable.getNumArgs(opCode)
+                                + MachineOpTable.getTemplate(opCode)
+                                + MachineOpTable.getArgFormat(opCode, 0)
+                                        .hashCode();
+                    }
+                }
+
+                return count;
+            }
+        });
+
+        addInputCases(cases, "Input.txt", input);
+
+        for (int lines : GENERATED_LINES) {
+            addInputCases(cases, (lines >> 10) + "K", new WorkloadGenerator()
+                    .withLines(lines).generate());
+        }
+
+        addInputCases(cases, "full", new WorkloadGenerator().withLines(
+                FULL_LINES).generate());
+
+        return cases;
+    }
+
+    /**
+     * Assembles a generated program of each size in {@code SCALING_LINES},
+     * best of five runs after warming up, and prints the time per line.
+     */
+    private static void scaling() throws IOException {
+        System.out.printf("%8s %8s %8s %10s %10s%n", "lines", "words",
+                "symbols", "ms", "ns/line");
+
+        for (int lines : SCALING_LINES) {
+            String source =
+                    new WorkloadGenerator().withLines(lines).generate();
+            Program program =
+                    new ParserImp2().parse(reader(source), CONTEXT
+                            .getMaxRecords());
+            int sourceLines = source.split("\n").length;
+            long best = Long.MAX_VALUE;
+
+            for (int run = 0; run < 8; ++run) {
+                long start = System.nanoTime();
+                BufferedWriter object = new BufferedWriter(new NullWriter());
+                BufferedWriter listing = new BufferedWriter(new NullWriter());
+
+                new AssemblerImp().assemble(object, listing, new ParserImp2()
+                        .parse(reader(source), CONTEXT.getMaxRecords()));
+                object.flush();
+                listing.flush();
+
+                // The first three runs warm up.
+                if (run >= 3) {
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+            }
+
+            System.out.printf("%8d %8d %8d %10.1f %10.1f%n", sourceLines,
+                    program.getLength(), program.numberOfSymbols(),
+                    best / 1e6, (double) best / sourceLines);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        OptionParser optParser = new OptionParser("w:i:t:b:f:s");
+        OptionSet options;
+        long warmUp = 1000;
+        int iterations = 5;
+        long iteration = 1000;
+        String filter = null;
+        File input = new File("Input.txt");
+
+        try {
+            options = optParser.parse(args);
+
+            if (options.has("w")) {
+                warmUp = Long.parseLong((String) options.valueOf("w"));
+            }
+
+            if (options.has("i")) {
+                iterations = Integer.parseInt((String) options.valueOf("i"));
+            }
+
+            if (options.has("t")) {
+                iteration = Long.parseLong((String) options.valueOf("t"));
+            }
+
+            if (options.has("b")) {
+                filter = (String) options.valueOf("b");
+            }
+
+            if (options.has("f")) {
+                input = new File((String) options.valueOf("f"));
+            }
+        } catch (OptionException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        } catch (NumberFormatException e) {
+            System.err.println("Bad number: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        if (options.has("s")) {
+            scaling();
+            return;
+        }
+
+        Bench.printHeader(System.out);
+
+        for (Map.Entry<String, Bench.Case> c : cases(read(input)).entrySet()) {
+            if (filter == null || c.getKey().contains(filter)) {
+                Bench.print(System.out, Bench.measure(c.getKey(),
+                        c.getValue(), warmUp, iterations, iteration));
+            }
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private AssemblerBench() {
+        throw new UnsupportedOperationException();
+    }
+}
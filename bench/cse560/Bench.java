@@ -0,0 +1,245 @@
+package cse560;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * A small harness for micro-benchmarks, in the manner of JMH: each case is
+ * warmed up, then run for a number of timed iterations on the calling thread,
+ * and the throughput, the bytes allocated per operation and the time spent in
+ * garbage collection are reported.
+ * <p>
+ * Allocation is read from {@code com.sun.management.ThreadMXBean}; on a JVM
+ * without it the allocation columns are left blank.
+ * <p>
+ * Note that this class violates this project's typical rule to have an
+ * interface for every component, since every method is a class method.
+ *
+ * @author Igor Tolkachev
+ */
+public final class Bench {
+    /**
+     * One benchmarked operation.
+     */
+    public interface Case {
+        /**
+         * Runs the operation once.
+         *
+         * @return Any value computed, so the work cannot be optimized away.
+         * @throws Exception
+         *             If the operation fails, which stops the benchmark.
+         */
+        Object run() throws Exception;
+    }
+
+    /**
+     * The measurements of one case.
+     */
+    public static final class Result {
+        /** The name of the case. */
+        public final String name;
+
+        /** Operations per second, one per iteration. */
+        public final double[] throughput;
+
+        /** Bytes allocated per operation, or -1 if unknown. */
+        public final double bytesPerOp;
+
+        /** Bytes allocated per second, or -1 if unknown. */
+        public final double bytesPerSecond;
+
+        /** Milliseconds spent in garbage collection while measuring. */
+        public final long gcMillis;
+
+        Result(String name, double[] throughput, double bytesPerOp,
+                double bytesPerSecond, long gcMillis) {
+            this.name = name;
+            this.throughput = throughput;
+            this.bytesPerOp = bytesPerOp;
+            this.bytesPerSecond = bytesPerSecond;
+            this.gcMillis = gcMillis;
+        }
+
+        /**
+         * @return The mean operations per second over the iterations.
+         */
+        public double mean() {
+            double sum = 0;
+
+            for (double value : this.throughput) {
+                sum += value;
+            }
+
+            return sum / this.throughput.length;
+        }
+
+        /**
+         * @return The sample standard deviation of the operations per second.
+         */
+        public double deviation() {
+            if (this.throughput.length < 2) {
+                return 0;
+            }
+
+            double mean = mean();
+            double sum = 0;
+
+            for (double value : this.throughput) {
+                sum += (value - mean) * (value - mean);
+            }
+
+            return Math.sqrt(sum / (this.throughput.length - 1));
+        }
+    }
+
+    /** Consumes the values cases return. */
+    private static volatile int sink;
+
+    /**
+     * Runs {@code c} and reports its measurements.
+     *
+     * @param name
+     *            The name of the case.
+     * @param c
+     *            The case.
+     * @param warmUpMillis
+     *            How long to run the case before measuring.
+     * @param iterations
+     *            The number of measured iterations.
+     * @param iterationMillis
+     *            How long each measured iteration runs.
+     * @return The measurements.
+     * @throws Exception
+     *             If the case fails.
+     */
+    public static Result measure(String name, Case c, long warmUpMillis,
+            int iterations, long iterationMillis) throws Exception {
+        runFor(c, warmUpMillis * 1000000L);
+
+        double[] throughput = new double[iterations];
+        long totalOps = 0;
+        long totalNanos = 0;
+        long allocatedBefore = allocatedBytes();
+        long gcBefore = gcMillis();
+
+        for (int i = 0; i < iterations; ++i) {
+            long start = System.nanoTime();
+            long ops = runFor(c, iterationMillis * 1000000L);
+            long elapsed = System.nanoTime() - start;
+
+            throughput[i] = ops * 1e9 / elapsed;
+            totalOps += ops;
+            totalNanos += elapsed;
+        }
+
+        long allocatedAfter = allocatedBytes();
+        double bytesPerOp = -1;
+        double bytesPerSecond = -1;
+
+        if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+            bytesPerOp = (double) (allocatedAfter - allocatedBefore) / totalOps;
+            bytesPerSecond =
+                    (allocatedAfter - allocatedBefore) * 1e9 / totalNanos;
+        }
+
+        return new Result(name, throughput, bytesPerOp, bytesPerSecond,
+                gcMillis() - gcBefore);
+    }
+
+    /**
+     * Runs {@code c} repeatedly for at least {@code nanos}.
+     *
+     * @return The number of operations run.
+     */
+    private static long runFor(Case c, long nanos) throws Exception {
+        long start = System.nanoTime();
+        long ops = 0;
+        int hash = 0;
+
+        do {
+            // Check the clock every few operations, not after each.
+            for (int i = 0; i < 8; ++i) {
+                Object value = c.run();
+
+                hash += value == null ? 0 : System.identityHashCode(value);
+            }
+
+            ops += 8;
+        } while (System.nanoTime() - start < nanos);
+
+        sink += hash;
+
+        return ops;
+    }
+
+    /**
+     * @return The bytes allocated so far by the current thread, or -1 if the
+     *         JVM cannot tell.
+     */
+    public static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads =
+                ManagementFactory.getThreadMXBean();
+
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sun =
+                    (com.sun.management.ThreadMXBean) threads;
+
+            if (sun.isThreadAllocatedMemorySupported()
+                    && sun.isThreadAllocatedMemoryEnabled()) {
+                return sun.getThreadAllocatedBytes(Thread.currentThread()
+                        .getId());
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return The total time every collector has spent collecting.
+     */
+    private static long gcMillis() {
+        long total = 0;
+
+        for (GarbageCollectorMXBean gc : ManagementFactory
+                .getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+
+        return total;
+    }
+
+    /**
+     * Prints the column headings for {@link #print}.
+     *
+     * @param out
+     *            The stream to print to.
+     */
+    public static void printHeader(PrintStream out) {
+        out.printf("%-32s %14s %10s %12s %12s %8s%n", "Benchmark", "ops/s",
+                "error", "B/op", "MB/s alloc", "gc ms");
+    }
+
+    /**
+     * Prints one result as a row under {@link #printHeader}.
+     *
+     * @param out
+     *            The stream to print to.
+     * @param result
+     *            The result.
+     */
+    public static void print(PrintStream out, Result result) {
+        out.printf("%-32s %14.1f %10.1f %12s %12s %8d%n", result.name, result
+                .mean(), result.deviation(), result.bytesPerOp < 0 ? ""
+                : String.format("%.1f", result.bytesPerOp),
+                result.bytesPerSecond < 0 ? "" : String.format("%.1f",
+                        result.bytesPerSecond / (1 << 20)), result.gcMillis);
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private Bench() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,231 @@
+package cse560;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+
+/**
+ * The end-to-end regression suite: assembles every program of the
+ * {@link Corpus}, checks its outputs against the golden files, then measures
+ * the lines assembled per second of each, in its best iteration, and compares
+ * them with the baseline stored for this machine.
+ * <p>
+ * Baselines are kept per host in {@code bench/baselines/HOST.properties}, one
+ * {@code NAME=LINES_PER_SECOND} entry per program, since throughput on one
+ * machine says nothing about another. The suite exits with status 1 if an
+ * output differs from its golden file or a program is slower than its
+ * baseline by more than the tolerance.
+ * <p>
+ * Command line arguments/options accepted are:
+ * <ul>
+ * <li>{@code -r} - Record the measured throughput as this machine's
+ * baseline instead of comparing with it.</li>
+ * <li>{@code -g} - Rewrite the golden files from the current outputs, and do
+ * nothing else. Only for changes meant to alter the output.</li>
+ * <li>{@code -t PERCENT} - The slowdown tolerated. Default: 15.</li>
+ * <li>{@code -B FILE} - Use FILE as the baseline. Default: this machine's.</li>
+ * <li>{@code -w MS}, {@code -i N}, {@code -s MS} - Warm-up, iterations and
+ * iteration length, as for {@link AssemblerBench}. Defaults: 2000, 5,
+ * 1000.</li>
+ * </ul>
+ * For example, from the project directory:
+ *
+ * <pre>
+ * javac -cp lib/jopt-simple-3.3.jar -d /tmp/bench src/cse560/*.java bench/cse560/*.java
+ * java -cp /tmp/bench:lib/jopt-simple-3.3.jar cse560.CorpusBench -r
+ * </pre>
+ *
+ * @author Igor Tolkachev
+ */
+public final class CorpusBench {
+    /** The directory holding the baselines. */
+    private static final File BASELINES = new File("bench", "baselines");
+
+    /**
+     * @return The baseline file of this machine.
+     */
+    private static File baselineFile() {
+        String host;
+
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "localhost";
+        }
+
+        return new File(BASELINES, host + ".properties");
+    }
+
+    private static Properties load(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+
+        return properties;
+    }
+
+    private static void store(Properties properties, File file)
+            throws IOException {
+        file.getParentFile().mkdirs();
+
+        OutputStream out = new FileOutputStream(file);
+
+        try {
+            properties.store(out, "Source lines assembled per second");
+        } finally {
+            out.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        OptionParser optParser = new OptionParser("rgt:B:w:i:s:");
+        OptionSet options;
+        double tolerance = 0.15;
+        File baselineFile = baselineFile();
+        long warmUp = 2000;
+        int iterations = 5;
+        long iteration = 1000;
+
+        try {
+            options = optParser.parse(args);
+
+            if (options.has("t")) {
+                tolerance =
+                        Double.parseDouble((String) options.valueOf("t")) / 100;
+            }
+
+            if (options.has("B")) {
+                baselineFile = new File((String) options.valueOf("B"));
+            }
+
+            if (options.has("w")) {
+                warmUp = Long.parseLong((String) options.valueOf("w"));
+            }
+
+            if (options.has("i")) {
+                iterations = Integer.parseInt((String) options.valueOf("i"));
+            }
+
+            if (options.has("s")) {
+                iteration = Long.parseLong((String) options.valueOf("s"));
+            }
+        } catch (OptionException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        } catch (NumberFormatException e) {
+            System.err.println("Bad number: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        if (options.has("g")) {
+            System.out.println("Wrote the golden files of "
+                    + Corpus.writeGoldens(Corpus.DIRECTORY) + " programs");
+            return;
+        }
+
+        boolean failed = false;
+        List<String> differences = Corpus.compare(Corpus.DIRECTORY);
+
+        for (String difference : differences) {
+            System.out.println("OUTPUT " + difference);
+            failed = true;
+        }
+
+        boolean record = options.has("r");
+        Properties baseline = new Properties();
+
+        if (!record) {
+            if (!baselineFile.isFile()) {
+                System.err.println("No baseline " + baselineFile
+                        + "; record one with -r");
+                System.exit(1);
+                return;
+            }
+
+            baseline = load(baselineFile);
+        }
+
+        System.out.printf("%-16s %14s %14s %8s%n", "program", "lines/s",
+                "baseline", "change");
+
+        for (Map.Entry<String, String> program : Corpus.programs(
+                Corpus.DIRECTORY).entrySet()) {
+            final String source = program.getValue();
+            String name = program.getKey();
+            int lines = source.split("\n").length;
+            Bench.Result result = Bench.measure(name, new Bench.Case() {
+                @Override
+                public Object run() {
+                    return Corpus.assemble(source).getObjectFile();
+                }
+            }, warmUp, iterations, iteration);
+            double best = 0;
+
+            // The best iteration is the one least disturbed by the rest of
+            // the machine, which makes it steadier than the mean.
+            for (double throughput : result.throughput) {
+                best = Math.max(best, throughput);
+            }
+
+            double linesPerSecond = best * lines;
+
+            if (record) {
+                baseline.setProperty(name, String.format("%.0f",
+                        linesPerSecond));
+                System.out.printf("%-16s %14.0f%n", name, linesPerSecond);
+                continue;
+            }
+
+            String stored = baseline.getProperty(name);
+
+            if (stored == null) {
+                System.out.printf("%-16s %14.0f %14s%n", name,
+                        linesPerSecond, "none");
+                continue;
+            }
+
+            double expected = Double.parseDouble(stored);
+            double change = linesPerSecond / expected - 1;
+            boolean slower = change < -tolerance;
+
+            System.out.printf("%-16s %14.0f %14.0f %+7.1f%%%s%n", name,
+                    linesPerSecond, expected, change * 100, slower ? " SLOWER"
+                            : "");
+            failed |= slower;
+        }
+
+        if (record) {
+            store(baseline, baselineFile);
+            System.out.println("Recorded " + baselineFile);
+        }
+
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private CorpusBench() {
+        throw new UnsupportedOperationException();
+    }
+}
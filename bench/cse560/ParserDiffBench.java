@@ -0,0 +1,210 @@
+package cse560;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+
+/**
+ * Runs {@link ParserDiff} over generated and fuzzed programs and measures the
+ * throughput of both parsers, to show which is correct and which is fast:
+ * <ul>
+ * <li>Each generated program is parsed by both and every difference is
+ * printed.</li>
+ * <li>Fuzzed copies of small generated programs are parsed by both, and the
+ * differences are counted by kind, with the seed of the first program of each
+ * kind so that it can be reproduced with {@link ParserDiff#fuzz}.</li>
+ * <li>Each generated program is parsed for a while by each parser, and the
+ * lines parsed per second are printed.</li>
+ * </ul>
+ * Command line arguments/options accepted are:
+ * <ul>
+ * <li>{@code -n N} - Fuzz N programs. Default: 3000.</li>
+ * <li>{@code -m N} - Make N edits to each. Default: 3.</li>
+ * <li>{@code -w MS}, {@code -i N}, {@code -s MS} - Warm-up, iterations and
+ * iteration length, as for {@link AssemblerBench}. Defaults: 1000, 5,
+ * 1000.</li>
+ * </ul>
+ * For example, from the project directory:
+ *
+ * <pre>
+ * javac -cp lib/jopt-simple-3.3.jar -d /tmp/bench src/cse560/*.java bench/cse560/*.java
+ * java -cp /tmp/bench:lib/jopt-simple-3.3.jar cse560.ParserDiffBench
+ * </pre>
+ *
+ * @author Igor Tolkachev
+ */
+public final class ParserDiffBench {
+    /**
+     * @return The generated programs, by name.
+     */
+    private static Map<String, String> generated() {
+        WorkloadGenerator base = new WorkloadGenerator().withLines(4000);
+        Map<String, String> programs = new LinkedHashMap<String, String>();
+
+        programs.put("default", base.generate());
+        programs.put("labels", base.withLabelDensity(1).withForwardRatio(1)
+                .generate());
+        programs.put("data", base.withDataMix(0.2, 0.2).withLiterals(20)
+                .generate());
+        programs.put("comments", base.withCommentRatio(0.6).generate());
+        programs.put("pages", base.withPageLayout(0x3005, 0.25).generate());
+
+        return programs;
+    }
+
+    /**
+     * @return The kind of {@code difference}, as described in
+     *         {@link ParserDiff}.
+     */
+    private static String kind(String difference) {
+        int colon = difference.indexOf(": ");
+
+        return colon < 0 ? difference : difference.substring(0, colon);
+    }
+
+    private static void differential(int fuzzed, int mutations) {
+        System.out.println("Generated programs:");
+
+        for (Map.Entry<String, String> program : generated().entrySet()) {
+            List<String> differences =
+                    ParserDiff.compare(program.getValue(), Corpus.CONTEXT);
+
+            System.out.printf("  %-10s %s%n", program.getKey(), differences
+                    .isEmpty() ? "agree" : differences);
+        }
+
+        String[] bases =
+                {new WorkloadGenerator().withLines(40).generate(),
+                    new WorkloadGenerator().withLines(60).withDataMix(0.1,
+                            0.1).withLiterals(3).generate(),
+                    new WorkloadGenerator().withLines(60).withLabelDensity(1)
+                            .withCommentRatio(0.3).generate() };
+        Map<String, Integer> counts = new TreeMap<String, Integer>();
+        Map<String, String> examples = new TreeMap<String, String>();
+        int agreed = 0;
+
+        for (int seed = 0; seed < fuzzed; ++seed) {
+            String base = bases[seed % bases.length];
+            List<String> differences =
+                    ParserDiff.compare(ParserDiff.fuzz(base, seed, mutations),
+                            Corpus.CONTEXT);
+
+            if (differences.isEmpty()) {
+                ++agreed;
+            }
+
+            for (String difference : differences) {
+                String kind = kind(difference);
+                Integer count = counts.get(kind);
+
+                counts.put(kind, count == null ? 1 : count + 1);
+
+                if (!examples.containsKey(kind)) {
+                    examples.put(kind, "base " + (seed % bases.length)
+                            + ", seed " + seed + ": " + difference);
+                }
+            }
+        }
+
+        System.out.printf("Fuzzed programs: %d, agreed: %d%n", fuzzed, agreed);
+
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            System.out.printf("  %6d  %s%n    e.g. %s%n", count.getValue(),
+                    count.getKey(), examples.get(count.getKey()));
+        }
+    }
+
+    private static void throughput(long warmUp, int iterations,
+            long iteration) throws Exception {
+        System.out.printf("%-10s %14s %14s %8s%n", "program", "ParserImp",
+                "ParserImp2", "ratio");
+
+        for (Map.Entry<String, String> program : generated().entrySet()) {
+            final String source = program.getValue();
+            int lines = source.split("\n").length;
+            ParserStrategy[] strategies =
+                    {ParserStrategy.REGEX, ParserStrategy.SCANNER };
+            double[] linesPerSecond = new double[strategies.length];
+
+            for (int i = 0; i < strategies.length; ++i) {
+                final ParserStrategy strategy = strategies[i];
+
+                linesPerSecond[i] =
+                        Bench.measure(strategy.getName(), new Bench.Case() {
+                            @Override
+                            public Object run() {
+                                return strategy.create(Corpus.CONTEXT, null,
+                                        null).parse(new BufferedReader(
+                                        new StringReader(source)),
+                                        Corpus.CONTEXT.getMaxRecords());
+                            }
+                        }, warmUp, iterations, iteration).mean()
+                                * lines;
+            }
+
+            System.out.printf("%-10s %14.0f %14.0f %8.2f%n", program.getKey(),
+                    linesPerSecond[0], linesPerSecond[1], linesPerSecond[1]
+                            / linesPerSecond[0]);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        OptionParser optParser = new OptionParser("n:m:w:i:s:");
+        OptionSet options;
+        int fuzzed = 3000;
+        int mutations = 3;
+        long warmUp = 1000;
+        int iterations = 5;
+        long iteration = 1000;
+
+        try {
+            options = optParser.parse(args);
+
+            if (options.has("n")) {
+                fuzzed = Integer.parseInt((String) options.valueOf("n"));
+            }
+
+            if (options.has("m")) {
+                mutations = Integer.parseInt((String) options.valueOf("m"));
+            }
+
+            if (options.has("w")) {
+                warmUp = Long.parseLong((String) options.valueOf("w"));
+            }
+
+            if (options.has("i")) {
+                iterations = Integer.parseInt((String) options.valueOf("i"));
+            }
+
+            if (options.has("s")) {
+                iteration = Long.parseLong((String) options.valueOf("s"));
+            }
+        } catch (OptionException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        } catch (NumberFormatException e) {
+            System.err.println("Bad number: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        differential(fuzzed, mutations);
+        System.out.println();
+        throughput(warmUp, iterations, iteration);
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private ParserDiffBench() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,215 @@
+package cse560;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+
+/**
+ * Measures the startup of a one-file assembly as a build tool sees it: the
+ * time from starting a JVM until the first byte of output.txt appears, and
+ * until the JVM exits. Three ways are compared, each in a fresh JVM per run:
+ * {@link MMXIAssembler}, {@link FastLauncher}, and {@code FastLauncher} with
+ * its AppCDS archive.
+ * <p>
+ * The first byte is detected by polling the file every 0.1 ms, so the times
+ * include up to that much, and a JVM's start is the moment it is spawned.
+ * Medians and minimums are reported, since a few runs are always slowed by
+ * the rest of the machine.
+ * <p>
+ * Command line arguments/options accepted are:
+ * <ul>
+ * <li>{@code -n N} - Runs per way. Default: 20.</li>
+ * <li>{@code -f FILE} - The program assembled. Default:
+ * corpus/allops.asm.</li>
+ * <li>{@code -a DIR} - Use the archive written by
+ * {@code FastLauncher --cds-archive DIR}. Default: write one into a temporary
+ * directory.</li>
+ * </ul>
+ * For example, from the project directory:
+ *
+ * <pre>
+ * javac -cp lib/jopt-simple-3.3.jar -d /tmp/bench src/cse560/*.java bench/cse560/*.java
+ * java -cp /tmp/bench:lib/jopt-simple-3.3.jar cse560.StartupBench -n 50
+ * </pre>
+ *
+ * @author Igor Tolkachev
+ */
+public final class StartupBench {
+    /** Nanoseconds between checks for the first byte. */
+    private static final long POLL_NANOS = 100000;
+
+    public static void main(String[] args) throws Exception {
+        OptionParser optParser = new OptionParser("n:f:a:");
+        OptionSet options;
+        int runs = 20;
+        File source = new File(Corpus.DIRECTORY, "allops.asm");
+        File archiveDirectory = null;
+
+        try {
+            options = optParser.parse(args);
+
+            if (options.has("n")) {
+                runs = Integer.parseInt((String) options.valueOf("n"));
+            }
+
+            if (options.has("f")) {
+                source = new File((String) options.valueOf("f"));
+            }
+
+            if (options.has("a")) {
+                archiveDirectory = new File((String) options.valueOf("a"));
+            }
+        } catch (OptionException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        } catch (NumberFormatException e) {
+            System.err.println("Bad number: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        File work = File.createTempFile("startup", "");
+        work.delete();
+        work.mkdirs();
+
+        // The JVMs run in the work directory, so the class path must not be
+        // relative.
+        List<String> classPathEntries = new ArrayList<String>();
+
+        for (String entry : System.getProperty("java.class.path").split(
+                File.pathSeparator)) {
+            classPathEntries.add(new File(entry).getAbsolutePath());
+        }
+
+        String classPath = join(classPathEntries);
+        List<String> archivePath;
+
+        if (archiveDirectory == null) {
+            archiveDirectory = new File(work, "cds");
+            archivePath = FastLauncher.writeArchive(archiveDirectory);
+        } else {
+            archivePath = new ArrayList<String>();
+            archivePath.add(new File(archiveDirectory, FastLauncher.JAR)
+                    .getAbsolutePath());
+            archivePath.addAll(classPathEntries);
+        }
+
+        String java =
+                new File(new File(System.getProperty("java.home"), "bin"),
+                        "java").getPath();
+        String input = source.getAbsolutePath();
+        List<List<String>> commands = new ArrayList<List<String>>();
+
+        commands.add(Arrays.asList(java, "-cp", classPath,
+                MMXIAssembler.class.getName(), "-f", input));
+        commands.add(Arrays.asList(java, "-cp", classPath,
+                FastLauncher.class.getName(), "-f", input));
+        commands.add(Arrays.asList(java, "-XX:SharedArchiveFile="
+                + new File(archiveDirectory, FastLauncher.ARCHIVE)
+                        .getAbsolutePath(), "-Xshare:auto", "-cp",
+                join(archivePath), FastLauncher.class.getName(), "-f", input));
+
+        String[] names = {"MMXIAssembler", "FastLauncher", "FastLauncher+CDS" };
+        long[][] firstByte = new long[names.length][runs];
+        long[][] exit = new long[names.length][runs];
+
+        // Runs of the three ways are interleaved, so a change in the load of
+        // the machine falls on all of them alike.
+        for (int run = 0; run < runs; ++run) {
+            for (int way = 0; way < names.length; ++way) {
+                long[] times = time(commands.get(way), work);
+                firstByte[way][run] = times[0];
+                exit[way][run] = times[1];
+            }
+        }
+
+        System.out.printf("%-18s %14s %14s %14s %14s%n", "launcher",
+                "1st byte p50", "1st byte min", "exit p50", "exit min");
+
+        for (int way = 0; way < names.length; ++way) {
+            Arrays.sort(firstByte[way]);
+            Arrays.sort(exit[way]);
+            System.out.printf("%-18s %11.1f ms %11.1f ms %11.1f ms %11.1f ms%n",
+                    names[way], firstByte[way][runs / 2] / 1e6,
+                    firstByte[way][0] / 1e6, exit[way][runs / 2] / 1e6,
+                    exit[way][0] / 1e6);
+        }
+
+        System.out.printf("%nFirst byte speed-up over MMXIAssembler: "
+                + "%.2fx, %.2fx with CDS%n", (double) firstByte[0][runs / 2]
+                / firstByte[1][runs / 2], (double) firstByte[0][runs / 2]
+                / firstByte[2][runs / 2]);
+    }
+
+    /**
+     * Runs {@code command} in {@code directory}, which it writes output.txt
+     * into.
+     *
+     * @return The nanoseconds until output.txt was not empty, and until the
+     *         JVM exited.
+     */
+    private static long[] time(List<String> command, File directory)
+            throws IOException, InterruptedException {
+        File output = new File(directory, "output.txt");
+        output.delete();
+        new File(directory, "listing.txt").delete();
+
+        ProcessBuilder builder =
+                new ProcessBuilder(command).directory(directory);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+
+        long start = System.nanoTime();
+        Process process = builder.start();
+        long firstByte = -1;
+
+        while (firstByte < 0) {
+            // Read before the length, so output written just before the exit
+            // is still seen.
+            boolean alive = process.isAlive();
+
+            if (output.length() > 0) {
+                firstByte = System.nanoTime() - start;
+            } else if (!alive) {
+                throw new IOException("No output from " + command);
+            } else {
+                LockSupport.parkNanos(POLL_NANOS);
+            }
+        }
+
+        if (process.waitFor() != 0) {
+            throw new IOException("Failed: " + command);
+        }
+
+        return new long[] {firstByte, System.nanoTime() - start };
+    }
+
+    private static String join(List<String> classPath) {
+        StringBuilder joined = new StringBuilder();
+
+        for (String entry : classPath) {
+            if (joined.length() > 0) {
+                joined.append(File.pathSeparator);
+            }
+
+            joined.append(entry);
+        }
+
+        return joined.toString();
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private StartupBench() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,36 @@
+; Every machine op and pseudo-op, in an absolute segment.
+AllOps   .ORIG   x3000
+Start    ADD     R1,R2,R3
+         ADD     R1,R2,#-16
+         AND     R4,R5,R6
+         AND     R4,R5,x0F
+         BRN     Start
+         BRZ     Start
+         BRP     Start
+         BRNZ    Next
+         BRNP    Next
+         BRZP    Next
+         BRNZP   Next
+         DBUG
+Next     JMP     Table
+         JMPR    R7,#15
+         JSR     Table
+         JSRR    R3,#0
+         LD      R0,Table
+         LDI     R1,Table
+         LDR     R2,R6,#-16
+         LEA     R3,Table
+         NOT     R4,R5
+         RET
+         ST      R0,Table
+         STI     R1,Table
+         STR     R2,R6,#15
+         TRAP    x25
+Size     .EQU    #4
+Table    .FILL   xBEEF
+         .FILL   Start
+         .FILL   #100
+Text     .STRZ   "MMXI; with a semicolon"
+Space    .BLKW   Size
+         .BLKW   #2
+         .END    Start
@@ -0,0 +1,13 @@
+;; Comment-heavy source with blank operands and trailing comments.
+;
+Cmt      .ORIG   x0200   ; origin
+; between records
+         AND     R0,R0,#0 ; clear
+;
+Top      ADD     R0,R0,#1
+         BRNZP   Top      ; forever
+;; literal pool
+         LD      R5,=xFFFF
+         LD      R6,=xFFFF
+         LD      R7,=#32767
+         .END    Top
@@ -0,0 +1,17 @@
+; A relocatable module with entry points, externals and literals.
+Module   .ORIG
+         .ENT    Main,Data
+         .EXT    Print,Exit
+Main     LD      R0,=#10
+         LD      R1,=x7FFF
+         LEA     R2,Data
+         JSR     Print
+Loop     ADD     R0,R0,#-1
+         BRP     Loop
+         LD      R3,=#10
+         ST      R3,Data
+         JSR     Exit
+Data     .FILL   Main
+Ptr      .FILL   Data
+         .BLKW   #3
+         .END    Main
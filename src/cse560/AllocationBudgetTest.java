@@ -0,0 +1,185 @@
+package cse560;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Holds the hot paths of the assembler to a budget of bytes allocated per
+ * line, so that regular expressions, {@code String.format} or boxed maps
+ * creeping back into them fail the build.
+ * <p>
+ * Each path runs a few times first so that the JIT has compiled it; the
+ * budgets are for compiled code. They are about half again what the paths
+ * allocated when they were set; lower one when a path gets leaner.
+ */
+public class AllocationBudgetTest {
+    /** Bytes per source line parsed by {@link ParserImp2}. */
+    private static final long PARSE_BUDGET = 8000;
+
+    /** Bytes per record encoded by {@link AssemblerImp}, without sinks. */
+    private static final long ENCODE_BUDGET = 128;
+
+    /** Bytes per line rendered by {@link ListingSink}. */
+    private static final long LISTING_BUDGET = 4000;
+
+    /** Lines of the program measured. */
+    private static final int LINES = 20000;
+
+    /** Runs before the one measured. */
+    private static final int WARM_UP = 5;
+
+    private static final String SOURCE = new WorkloadGenerator().withLines(
+            LINES).withLiterals(20).generate();
+
+    private static final int SOURCE_LINES = SOURCE.split("\n").length;
+
+    /**
+     * A writer that drops everything, so only the sink's own allocation is
+     * measured.
+     */
+    private static final class NullWriter extends Writer {
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * @return The bytes allocated so far by the current thread, or -1 if the
+     *         JVM cannot tell.
+     */
+    private static long allocatedBytes() {
+        Object threads = ManagementFactory.getThreadMXBean();
+
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sun =
+                    (com.sun.management.ThreadMXBean) threads;
+
+            if (sun.isThreadAllocatedMemorySupported()
+                    && sun.isThreadAllocatedMemoryEnabled()) {
+                return sun.getThreadAllocatedBytes(Thread.currentThread()
+                        .getId());
+            }
+        }
+
+        return -1;
+    }
+
+    private static void assertWithinBudget(String path, long bytes,
+            int lines, long budget) {
+        long perLine = bytes / lines;
+
+        assertTrue(path + " allocated " + perLine + " bytes per line; the "
+                + "budget is " + budget, perLine <= budget);
+    }
+
+    private static Program parseSource() {
+        return new ParserImp2().parse(new BufferedReader(new StringReader(
+                SOURCE)), LINES * 2);
+    }
+
+    /**
+     * Checking: Parsing allocates no more than its budget per line.
+     */
+    @Test
+    public void parse() {
+        for (int i = 0; i < WARM_UP; ++i) {
+            parseSource();
+        }
+
+        long before = allocatedBytes();
+
+        parseSource();
+
+        long after = allocatedBytes();
+
+        if (before >= 0) {
+            assertWithinBudget("parse", after - before, SOURCE_LINES,
+                    PARSE_BUDGET);
+        }
+    }
+
+    /**
+     * Checking: Encoding allocates no more than its budget per record.
+     */
+    @Test
+    public void encode() throws IOException {
+        List<OutputSink> none = Collections.emptyList();
+        AssemblerImp assembler = new AssemblerImp();
+
+        for (int i = 0; i < WARM_UP; ++i) {
+            assembler.assemble(parseSource(), none);
+        }
+
+        Program program = parseSource();
+        int records = program.numberOfRecords();
+        long before = allocatedBytes();
+
+        assembler.assemble(program, none);
+
+        long after = allocatedBytes();
+
+        if (before >= 0) {
+            assertWithinBudget("encode", after - before, records,
+                    ENCODE_BUDGET);
+        }
+    }
+
+    /**
+     * Checking: The listing allocates no more than its budget per line.
+     */
+    @Test
+    public void listing() throws IOException {
+        Program program = parseSource();
+        List<SourceRecord> records = new ArrayList<SourceRecord>();
+
+        while (program.numberOfRecords() > 0) {
+            records.add(program.getNextRecord());
+        }
+
+        ListingSink sink = new ListingSink(new NullWriter());
+
+        for (int i = 0; i < WARM_UP; ++i) {
+            render(sink, records);
+        }
+
+        long before = allocatedBytes();
+
+        render(sink, records);
+
+        long after = allocatedBytes();
+
+        if (before >= 0) {
+            assertWithinBudget("listing", after - before, records.size(),
+                    LISTING_BUDGET);
+        }
+    }
+
+    private static void render(ListingSink sink, List<SourceRecord> records)
+            throws IOException {
+        for (SourceRecord record : records) {
+            sink.listingLine(record, record.getLocation(), 0x1234, true);
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package cse560;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -76,7 +77,8 @@ public final class ArgFormat {
         switch (arg.charAt(0)) {
         // Detect registers
         case 'R':
-            if (arg.matches("^R[0-7]$")) {
+            if (arg.length() == 2 && arg.charAt(1) >= '0'
+                    && arg.charAt(1) <= '7') {
                 return ArgType.REGISTER;
             }
             break;
@@ -91,28 +93,34 @@ public final class ArgFormat {
 
         // Detect hex immediates
         case 'x':
-            if (arg.matches("^x[0-9a-fA-F]{1,4}$")) {
+            if (arg.length() >= 2 && arg.length() <= 5
+                    && allHex(arg, 1)) {
                 return ArgType.IMMEDIATE;
             }
             break;
 
         // Detect decimal immediates
         case '#':
-            if (arg.matches("^#-?\\d{1,5}$")) {
+            int digits = arg.length() > 1 && arg.charAt(1) == '-' ? 2 : 1;
+
+            if (arg.length() > digits && arg.length() - digits <= 5
+                    && allDigits(arg, digits)) {
                 return ArgType.IMMEDIATE;
             }
             break;
 
         // Detect strings
         case '"':
-            if (arg.matches("^\".*\"$")) {
+            if (arg.length() >= 2 && arg.charAt(arg.length() - 1) == '"'
+                    && !hasLineTerminator(arg)) {
                 return ArgType.STRING;
             }
             break;
 
         // Detect symbols
         default:
-            if (arg.matches("^[A-Za-z][A-Za-z0-9]{0,6}$")) {
+            if (arg.length() <= 7 && isLetter(arg.charAt(0))
+                    && allAlphanumeric(arg, 1)) {
                 return ArgType.SYMBOL;
             }
         }
@@ -120,6 +128,81 @@ public final class ArgFormat {
         return ArgType.BAD;
     }
 
+    // The character tests below stand in for the regular expressions this
+    // class once used, whose compilation took a noticeable share of the
+    // start-up of a one-file assembly. Like \d and [A-Za-z], they accept
+    // ASCII characters only.
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean allDigits(String s, int from) {
+        for (int i = from; i < s.length(); ++i) {
+            if (!isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean allHex(String s, int from) {
+        for (int i = from; i < s.length(); ++i) {
+            char c = s.charAt(i);
+
+            if (!isDigit(c) && !(c >= 'A' && c <= 'F')
+                    && !(c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return True iff every character of {@code s} from {@code from} on is
+     *         an ASCII letter or digit.
+     */
+    static boolean allAlphanumeric(String s, int from) {
+        for (int i = from; i < s.length(); ++i) {
+            if (!isLetter(s.charAt(i)) && !isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns true iff {@code s} holds a character that the {@code .} of a
+     * regular expression does not match.
+     *
+     * @param s
+     *            The string to check.
+     * @return True iff {@code s} holds a line terminator.
+     */
+    static boolean hasLineTerminator(String s) {
+        for (int i = 0; i < s.length(); ++i) {
+            switch (s.charAt(i)) {
+            case '\n':
+            case '\r':
+            case '\u0085':
+            case '\u2028':
+            case '\u2029':
+                return true;
+            default:
+                break;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * Parses an MMXI immediate. Can be used to parse an MMXI immediate by
      * passing in all but the '='.
@@ -147,38 +230,42 @@ public final class ArgFormat {
     private final int length;
 
     /** Set of allowed categories for this argument. */
-    private final Set<ArgCategory> allowedCategories = new HashSet<ArgCategory>();
+    private final Set<ArgCategory> allowedCategories =
+            EnumSet.noneOf(ArgCategory.class);
 
-    /** Mapping of ArgCategories to allowed ArgTypes. */
-    private static Map<ArgType, Set<ArgCategory>> typeRules =
-            new HashMap<ArgType, Set<ArgCategory>>();
+    /**
+     * Mapping of ArgTypes to the ArgCategories they may fill. Read-only after
+     * class initialization.
+     */
+    private static final Map<ArgType, Set<ArgCategory>> TYPE_RULES;
 
     static {
         // Initialize the type rules
 
-        typeRules.put(ArgType.IMMEDIATE, new HashSet<ArgCategory>());
-        typeRules.get(ArgType.IMMEDIATE).add(ArgCategory.INDEX);
-        typeRules.get(ArgType.IMMEDIATE).add(ArgCategory.TRAPVECT);
-        typeRules.get(ArgType.IMMEDIATE).add(ArgCategory.ADDRESS);
-        typeRules.get(ArgType.IMMEDIATE).add(ArgCategory.IMMEDIATE);
+        Map<ArgType, Set<ArgCategory>> typeRules =
+                new EnumMap<ArgType, Set<ArgCategory>>(ArgType.class);
+
+        typeRules.put(ArgType.IMMEDIATE, Collections.unmodifiableSet(EnumSet
+                .of(ArgCategory.INDEX, ArgCategory.TRAPVECT,
+                        ArgCategory.ADDRESS, ArgCategory.IMMEDIATE)));
+
+        typeRules.put(ArgType.LITERAL, Collections.unmodifiableSet(EnumSet
+                .of(ArgCategory.ADDRESS)));
 
-        typeRules.put(ArgType.LITERAL, new HashSet<ArgCategory>());
-        typeRules.get(ArgType.LITERAL).add(ArgCategory.ADDRESS);
+        typeRules.put(ArgType.REGISTER, Collections.unmodifiableSet(EnumSet
+                .of(ArgCategory.REGISTER)));
 
-        typeRules.put(ArgType.REGISTER, new HashSet<ArgCategory>());
-        typeRules.get(ArgType.REGISTER).add(ArgCategory.REGISTER);
+        typeRules.put(ArgType.SYMBOL, Collections.unmodifiableSet(EnumSet.of(
+                ArgCategory.REGISTER, ArgCategory.INDEX, ArgCategory.TRAPVECT,
+                ArgCategory.ADDRESS, ArgCategory.IMMEDIATE)));
 
-        typeRules.put(ArgType.SYMBOL, new HashSet<ArgCategory>());
-        typeRules.get(ArgType.SYMBOL).add(ArgCategory.REGISTER);
-        typeRules.get(ArgType.SYMBOL).add(ArgCategory.INDEX);
-        typeRules.get(ArgType.SYMBOL).add(ArgCategory.TRAPVECT);
-        typeRules.get(ArgType.SYMBOL).add(ArgCategory.ADDRESS);
-        typeRules.get(ArgType.SYMBOL).add(ArgCategory.IMMEDIATE);
+        typeRules.put(ArgType.STRING, Collections.unmodifiableSet(EnumSet
+                .of(ArgCategory.STRING)));
 
-        typeRules.put(ArgType.STRING, new HashSet<ArgCategory>());
-        typeRules.get(ArgType.STRING).add(ArgCategory.STRING);
+        typeRules.put(ArgType.BAD, Collections.unmodifiableSet(EnumSet
+                .noneOf(ArgCategory.class)));
 
-        typeRules.put(ArgType.BAD, new HashSet<ArgCategory>());
+        TYPE_RULES = Collections.unmodifiableMap(typeRules);
     }
 
     /**
@@ -212,7 +299,7 @@ public final class ArgFormat {
         // For each allowed category, check to see if the type rules allow
         // this type to be used in that category.
         for (ArgCategory category : this.allowedCategories) {
-            if (ArgFormat.typeRules.get(type).contains(category)) {
+            if (ArgFormat.TYPE_RULES.get(type).contains(category)) {
                 allowed = true;
             }
         }
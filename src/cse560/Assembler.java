@@ -2,6 +2,7 @@ package cse560;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Processes a valid {@code Program} object and produces an object file and
@@ -16,6 +17,9 @@ import java.io.IOException;
  * will be added to the associated text record. This is to signal the
  * linker/loader that the last six or nine bits (respectively) will need to be
  * adjusted.
+ * <p>
+ * Implementations may optionally write contiguous words as coalesced "block"
+ * records; see {@link ObjectDialect}.
  *
  * <h1>Program Listing</h1>
  *
@@ -53,13 +57,40 @@ public interface Assembler {
      * Assembles the provided program and generates a listing.
      *
      * @param output
-     *            The BufferedWriter to write the object file to.
+     *            The BufferedWriter to write the object file to, or null to
+     *            skip the object file.
      * @param listng
-     *            The BufferedWriter to write the listing file to.
+     *            The BufferedWriter to write the listing file to, or null to
+     *            skip the listing.
      * @param program
      *            A valid instance of {@code Program}.
+     * @return The assembled segment.
      *
      */
-    void assemble(BufferedWriter output, BufferedWriter listing, Program program)
+    ObjectImage assemble(BufferedWriter output, BufferedWriter listing,
+            Program program) throws IOException;
+
+    /**
+     * Assembles the provided program in memory, without writing an object
+     * file or listing.
+     *
+     * @param program
+     *            A valid instance of {@code Program}.
+     * @return The assembled segment, including its symbol table.
+     */
+    ObjectImage assemble(Program program);
+
+    /**
+     * Assembles the provided program in a single pass, giving every record to
+     * each of {@code sinks} in order. This is how one assembly produces
+     * several output formats at once; see {@link OutputSink}.
+     *
+     * @param program
+     *            A valid instance of {@code Program}.
+     * @param sinks
+     *            The outputs to write, possibly none.
+     * @return The assembled segment.
+     */
+    ObjectImage assemble(Program program, List<OutputSink> sinks)
             throws IOException;
 }
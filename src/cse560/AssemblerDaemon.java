@@ -0,0 +1,338 @@
+package cse560;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.management.JMException;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+
+/**
+ * A long-running assembler that serves requests from {@link DaemonClient}s,
+ * so that JVM start-up, class loading and op-table set-up are paid once rather
+ * than once per source file.
+ * <p>
+ * The daemon listens on a loopback TCP port, or, with {@code -i}, serves a
+ * single client over standard input and output. Each connection is handled
+ * on its own thread, and each request is assembled with
+ * {@link EmbeddedAssembler}, so a bad program, or one that crashes the
+ * parser, produces an error response rather than stopping the daemon or
+ * closing the connection. Every job is held to the daemon's
+ * {@link ResourceLimits}, whatever settings its client sends: by default
+ * {@link ResourceLimits#DEFAULT}, so that the outputs are those of
+ * assembling in-process, or with {@code -S}, {@link ResourceLimits#SERVICE},
+ * so that a pathological program from an untrusted client fails alone
+ * instead of holding a thread. See {@link DaemonProtocol} for the wire
+ * format.
+ * <p>
+ * Its jobs are counted in {@link AssemblerMetricsImp#GLOBAL}, which it
+ * publishes through JMX and sends to clients that ask with {@code METRICS}.
+ * Since each connection assembles its requests in turn as they arrive, the
+ * daemon's load shows as jobs in progress rather than as queue depth.
+ * <p>
+ * Command line arguments/options accepted by the daemon are:
+ * <ul>
+ * <li>{@code -p N} - Listen on loopback port N. Default: {@code DEFAULT_PORT}.
+ * Port 0 picks a free port, which is printed.</li>
+ * <li>{@code -i} - Serve one client on standard input and output, then exit.</li>
+ * <li>{@code -S} - Hold every job to {@link ResourceLimits#SERVICE}, for a
+ * daemon shared with clients that are not trusted.</li>
+ * </ul>
+ *
+ * @author Igor Tolkachev
+ */
+public final class AssemblerDaemon {
+    /** Port the daemon listens on by default. */
+    public static final int DEFAULT_PORT = 5601;
+
+    /** Number of assemblies run at start-up to compile the hot paths. */
+    private static final int WARM_UP_RUNS = 200;
+
+    /**
+     * A small program touching every kind of record, used for warm-up and to
+     * train {@link FastLauncher}'s class data archive.
+     */
+    static final String WARM_UP_SOURCE =
+            "Warm     .ORIG   x3000\n"
+          + "Begin    LD      R1,=#10\n"
+          + "Loop     ADD     R1,R1,#-1\n"
+          + "         BRP     Loop\n"
+          + "         LEA     R2,msg\n"
+          + "msg      .STRZ   \"warm\"\n"
+          + "         .FILL   Begin\n"
+          + "         .END    Begin\n";
+
+    /** The listening socket, or null if serving standard input. */
+    private final ServerSocket server;
+
+    /** Threads serving connections. */
+    private final ExecutorService connections;
+
+    /** The limits every job is held to. */
+    private final ResourceLimits limits;
+
+    /**
+     * Initializes a daemon listening on a loopback port, holding its jobs to
+     * {@link ResourceLimits#DEFAULT}.
+     *
+     * @param port
+     *            The port to listen on, or 0 for any free port.
+     * @throws IOException
+     *             If the port cannot be bound.
+     */
+    public AssemblerDaemon(int port) throws IOException {
+        this(port, ResourceLimits.DEFAULT);
+    }
+
+    /**
+     * Initializes a daemon listening on a loopback port.
+     *
+     * @param port
+     *            The port to listen on, or 0 for any free port.
+     * @param limits
+     *            The limits every job is held to.
+     * @throws IOException
+     *             If the port cannot be bound.
+     */
+    public AssemblerDaemon(int port, ResourceLimits limits) throws IOException {
+        this.limits = limits;
+        this.server =
+                new ServerSocket(port, 50, InetAddress.getByName(null));
+        this.connections =
+                Executors.newCachedThreadPool(new ThreadFactory() {
+                    private int count = 0;
+
+                    @Override
+                    public synchronized Thread newThread(Runnable r) {
+                        Thread thread =
+                                new Thread(r, "mmxi-daemon-" + (++this.count));
+                        thread.setDaemon(true);
+
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Returns the port the daemon is listening on.
+     *
+     * @return The local port of the listening socket.
+     */
+    public int getPort() {
+        return this.server.getLocalPort();
+    }
+
+    /**
+     * Runs enough assemblies to load every class and let the JIT compile the
+     * parser and assembler before the first real request arrives.
+     */
+    public static void warmUp() {
+        for (int i = 0; i < WARM_UP_RUNS; ++i) {
+            EmbeddedAssembler.assemble(WARM_UP_SOURCE, AssemblyContext.DEFAULT);
+        }
+    }
+
+    /**
+     * Accepts connections until {@link #shutdown} is called or a client sends
+     * {@code SHUTDOWN}.
+     */
+    public void serve() {
+        try {
+            while (!this.server.isClosed()) {
+                final Socket socket = this.server.accept();
+
+                this.connections.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            serve(socket.getInputStream(), socket
+                                    .getOutputStream());
+                        } catch (IOException e) {
+                            // The client went away; nothing to answer.
+                        } catch (RuntimeException e) {
+                            ErrorHandler.warning("Connection dropped: " + e,
+                                    303);
+                        } finally {
+                            close(socket);
+                        }
+                    }
+                });
+            }
+        } catch (SocketException e) {
+            // The server socket was closed by shutdown.
+        } catch (IOException e) {
+            ErrorHandler.warning("Daemon stopped: " + e.getMessage(), 301);
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Stops accepting connections. Requests in progress are abandoned.
+     */
+    public void shutdown() {
+        if (this.server == null) {
+            return;
+        }
+
+        try {
+            this.server.close();
+        } catch (IOException e) {
+            // Already closed.
+        }
+
+        this.connections.shutdownNow();
+    }
+
+    /**
+     * Serves the requests of one client until it closes the connection.
+     *
+     * @param input
+     *            The stream requests arrive on.
+     * @param output
+     *            The stream responses are written to.
+     * @return True iff the client asked the daemon to shut down.
+     * @throws IOException
+     *             If the connection fails.
+     */
+    private boolean serve(InputStream input, OutputStream output)
+            throws IOException {
+        DataInputStream in =
+                new DataInputStream(new BufferedInputStream(input));
+        DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(output));
+
+        while (true) {
+            String command;
+
+            try {
+                command = in.readUTF();
+            } catch (EOFException e) {
+                return false;
+            }
+
+            if (command.equals(DaemonProtocol.ASSEMBLE)) {
+                DaemonProtocol.Request request = DaemonProtocol.readRequest(in);
+                AssemblyResult result;
+
+                try {
+                    // Clients choose their jobs' settings, but not the
+                    // limits that keep one job from starving the rest.
+                    result =
+                            EmbeddedAssembler.assemble(request.source,
+                                    request.context.withLimits(this.limits));
+                } catch (RuntimeException e) {
+                    // A request that crashes is answered like a bad program,
+                    // and the connection is kept.
+                    result =
+                            new AssemblyResult(null, null, null, Collections
+                                    .singletonList(new AssemblerException(
+                                            "Could not assemble: " + e, 0)
+                                            .toDiagnostic()), 0, 0);
+                }
+
+                DaemonProtocol.writeResult(out, result);
+            } else if (command.equals(DaemonProtocol.METRICS)) {
+                DaemonProtocol.writeText(out, AssemblerMetricsImp.GLOBAL
+                        .getText());
+                out.flush();
+            } else if (command.equals(DaemonProtocol.PING)) {
+                out.writeUTF(DaemonProtocol.OK);
+                out.flush();
+            } else if (command.equals(DaemonProtocol.SHUTDOWN)) {
+                out.writeUTF(DaemonProtocol.OK);
+                out.flush();
+
+                shutdown();
+
+                return true;
+            } else {
+                throw new IOException("Unknown command: " + command);
+            }
+        }
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing more to release.
+        }
+    }
+
+    /**
+     * @param args - Command line arguments passed in by the user.
+     */
+    public static void main(String[] args) {
+        OptionParser optParser = new OptionParser("p:iS");
+        OptionSet options = null;
+        int port = DEFAULT_PORT;
+        ResourceLimits limits = ResourceLimits.DEFAULT;
+
+        try {
+            options = optParser.parse(args);
+
+            if (options.has("p")) {
+                port = Integer.parseInt((String) options.valueOf("p"));
+            }
+
+            if (options.has("S")) {
+                limits = ResourceLimits.SERVICE;
+            }
+        } catch (OptionException e) {
+            System.out.println("Usage: java cse560.AssemblerDaemon [-p port | -i] [-S]");
+            System.exit(1);
+        }
+
+        warmUp();
+        // The warm-up jobs are not the daemon's work.
+        AssemblerMetricsImp.GLOBAL.reset();
+
+        try {
+            AssemblerMetricsImp.GLOBAL.register();
+        } catch (JMException e) {
+            ErrorHandler.warning("Metrics not published through JMX: "
+                    + e.getMessage(), 302);
+        }
+
+        try {
+            if (options.has("i")) {
+                new AssemblerDaemon(limits).serve(System.in, System.out);
+                return;
+            }
+
+            AssemblerDaemon daemon = new AssemblerDaemon(port, limits);
+            System.out.println("MMXI assembler daemon listening on port "
+                    + daemon.getPort());
+            daemon.serve();
+        } catch (IOException e) {
+            System.err.printf("[ERROR %03d] %s%n", 300, e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Initializes a daemon serving standard input rather than a socket.
+     */
+    private AssemblerDaemon(ResourceLimits limits) {
+        this.server = null;
+        this.connections = null;
+        this.limits = limits;
+    }
+}
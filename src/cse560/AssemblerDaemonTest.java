@@ -0,0 +1,214 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class AssemblerDaemonTest {
+    private static String source(int seed) {
+        return String.format("D%-5d   .ORIG   x3000%n", seed)
+                + "Begin    LD      R1,=#" + seed + "\n"
+                + "         ADD     R1,R1,#" + (seed % 16) + "\n"
+                + "         .END    Begin\n";
+    }
+
+    /**
+     * Checking: Clients on several connections get the same results as
+     * assembling in-process, and a bad program does not stop the daemon.
+     */
+    @Test
+    public void servesConcurrentClients() throws Exception {
+        final AssemblerDaemon daemon = new AssemblerDaemon(0);
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                daemon.serve();
+            }
+        });
+        server.start();
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> checks = new ArrayList<Future<Boolean>>();
+
+        try {
+            for (int c = 0; c < 8; ++c) {
+                final int client = c;
+
+                checks.add(pool.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws IOException {
+                        DaemonClient connection =
+                                new DaemonClient(daemon.getPort());
+
+                        for (int i = 0; i < 25; ++i) {
+                            String program = source(client * 100 + i);
+                            AssemblyResult remote =
+                                    connection.assemble(program,
+                                            AssemblyContext.DEFAULT);
+                            AssemblyResult local =
+                                    EmbeddedAssembler.assemble(program,
+                                            AssemblyContext.DEFAULT);
+
+                            assertEquals(local.getObjectFile(), remote
+                                    .getObjectFile());
+                            assertEquals(local.getListing(), remote
+                                    .getListing());
+                        }
+
+                        connection.close();
+
+                        return true;
+                    }
+                }));
+            }
+
+            for (Future<Boolean> check : checks) {
+                assertTrue(check.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        DaemonClient client = new DaemonClient(daemon.getPort());
+        AssemblyResult bad =
+                client.assemble("Bad      .ORIG   x3000\n"
+                        + "         FROB    R1\n" + "         .END\n",
+                        AssemblyContext.DEFAULT);
+
+        assertFalse(bad.succeeded());
+        assertEquals(107, bad.getDiagnostics().get(0).getCode());
+        assertEquals(2, bad.getDiagnostics().get(0).getLine());
+
+        String metrics = client.metrics();
+
+        assertTrue(metrics, metrics.contains("mmxi_jobs_failed_total "));
+        assertTrue(metrics, metrics.contains("quantile=\"0.99\""));
+
+        client.ping();
+        client.shutdown();
+        client.close();
+        server.join(5000);
+        assertFalse(server.isAlive());
+    }
+
+    /**
+     * Checking: A request carries every setting of its job, the parser
+     * included, so the daemon assembles it as the client would.
+     */
+    @Test
+    public void requestsCarryTheirSettings() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AssemblyContext context =
+                new AssemblyContext(null, 30, 7, 3, ObjectDialect.COALESCED)
+                        .withParser(ParserStrategy.REGEX);
+
+        DaemonProtocol.writeRequest(new DataOutputStream(bytes),
+                new DaemonProtocol.Request(source(1), context));
+
+        DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(bytes
+                        .toByteArray()));
+
+        assertEquals(DaemonProtocol.ASSEMBLE, in.readUTF());
+
+        DaemonProtocol.Request request = DaemonProtocol.readRequest(in);
+
+        assertEquals(source(1), request.source);
+        assertEquals(30, request.context.getMaxRecords());
+        assertEquals(7, request.context.getMaxSymbols());
+        assertEquals(3, request.context.getMaxLiterals());
+        assertEquals(ObjectDialect.COALESCED, request.context.getDialect());
+        assertEquals(ParserStrategy.REGEX, request.context.getParser());
+    }
+
+    /**
+     * Checking: A daemon holds its jobs to the default limits, so it accepts
+     * what assembling in-process does, unless it was started with the
+     * service limits.
+     */
+    @Test
+    public void holdsJobsToItsLimits() throws Exception {
+        char[] comment = new char[300];
+        Arrays.fill(comment, 'c');
+        String program =
+                "Long     .ORIG   x3000\n;" + new String(comment) + "\n"
+                        + "         .END\n";
+
+        assertTrue(EmbeddedAssembler.assemble(program, AssemblyContext.DEFAULT)
+                .succeeded());
+
+        ResourceLimits[] limits = {ResourceLimits.DEFAULT,
+            ResourceLimits.SERVICE };
+
+        for (ResourceLimits limit : limits) {
+            final AssemblerDaemon daemon = new AssemblerDaemon(0, limit);
+            Thread server = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    daemon.serve();
+                }
+            });
+            server.start();
+
+            DaemonClient client = new DaemonClient(daemon.getPort());
+            AssemblyResult result =
+                    client.assemble(program, AssemblyContext.DEFAULT);
+
+            if (limit == ResourceLimits.DEFAULT) {
+                assertTrue(result.succeeded());
+            } else {
+                assertFalse(result.succeeded());
+                assertEquals(401, result.getDiagnostics().get(0).getCode());
+            }
+
+            client.shutdown();
+            client.close();
+            server.join(5000);
+        }
+    }
+
+    /**
+     * Checking: A request that crashes the parser is answered with a fatal
+     * result, and the connection goes on serving.
+     */
+    @Test
+    public void answersCrashingRequests() throws Exception {
+        final AssemblerDaemon daemon = new AssemblerDaemon(0);
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                daemon.serve();
+            }
+        });
+        server.start();
+
+        AssemblyContext regex =
+                AssemblyContext.DEFAULT.withParser(ParserStrategy.REGEX);
+        DaemonClient client = new DaemonClient(daemon.getPort());
+        AssemblyResult crash = client.assemble("Prog     .ORIG\n", regex);
+
+        assertFalse(crash.succeeded());
+        assertEquals(0, crash.getDiagnostics().get(0).getCode());
+        assertTrue(client.assemble(source(7), regex).succeeded());
+
+        client.shutdown();
+        client.close();
+        server.join(5000);
+        assertFalse(server.isAlive());
+    }
+}
@@ -1,6 +1,13 @@
 package cse560;
 
-public class AssemblerException extends Exception {
+/**
+ * Signals an error or warning raised while assembling a program. Fatal errors
+ * are thrown from {@link ErrorHandler#fatalError}; callers embedding the
+ * assembler catch them instead of the process exiting.
+ *
+ * @author Igor Tolkachev
+ */
+public class AssemblerException extends RuntimeException {
     public enum Type {
         /** Indicates a fatal error. The program should terminate. */
         FATAL,
@@ -9,6 +16,8 @@ public class AssemblerException extends Exception {
         WARNING;
     }
 
+    private static final long serialVersionUID = 1L;
+
     /** The unique error number for this event. */
     private final int errorNumber;
 
@@ -31,7 +40,22 @@ public class AssemblerException extends Exception {
         return this.errorNumber;
     }
 
+    /**
+     * Returns the line number where the event occurred.
+     *
+     * @return The line number, or 0 if the event is not tied to a line.
+     */
     public int getLineNumber() {
         return this.lineNumber;
     }
+
+    /**
+     * Returns this exception as a fatal {@link Diagnostic}.
+     *
+     * @return A diagnostic with the same number, line and message.
+     */
+    public Diagnostic toDiagnostic() {
+        return new Diagnostic(Type.FATAL, this.errorNumber, this.lineNumber,
+                getMessage());
+    }
 }
@@ -2,7 +2,9 @@ package cse560;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -35,47 +37,226 @@ public final class AssemblerImp implements Assembler {
     /** The base of hexadecimal. */
     private static final int BASE_16 = 16;
 
-    /** PrintWriter connected to the object file being generated. */
-    private PrintWriter objWriter;
+    /** The dialect text records are written in. */
+    private final ObjectDialect dialect;
 
-    /** PrintWriter for the listing output. */
-    private PrintWriter listWriter;
+    /** Holds the job to its resource limits, or null if it has none. */
+    private final Governor governor;
+
+    /** Observes the job, or null. */
+    private final AssemblerListener listener;
+
+    /**
+     * The destinations of one assembly: the sinks and the in-memory image.
+     * Each call to {@code assemble} has its own, so one {@code AssemblerImp}
+     * may assemble several programs at once.
+     */
+    private static final class Emitter {
+        /** The outputs receiving the events of the assembly. */
+        private final List<OutputSink> sinks;
+
+        /** In-memory image of the segment being assembled. */
+        private final ObjectImage image;
+
+        /** Counts the words written, or null. */
+        private final Governor governor;
+
+        /** Observes the words written, or null. */
+        private final AssemblerListener listener;
+
+        /** The number of words written. */
+        private int words = 0;
+
+        public Emitter(List<OutputSink> sinks, ObjectImage image,
+                Governor governor, AssemblerListener listener) {
+            this.sinks = sinks;
+            this.image = image;
+            this.governor = governor;
+            this.listener = listener;
+        }
+
+        /**
+         * Stores one word of the segment in the image and passes it to each
+         * sink.
+         *
+         * @param address
+         *            The address of the word.
+         * @param word
+         *            The contents of memory at {@code address}.
+         * @param relocation
+         *            How the loader must adjust the word.
+         */
+        public void writeText(int address, int word, Relocation relocation)
+                throws IOException {
+            if (this.governor != null) {
+                this.governor.countWord();
+            }
+
+            ++this.words;
+
+            if (this.listener != null) {
+                this.listener.wordEmitted(address, word, relocation);
+            }
+
+            for (OutputSink sink : this.sinks) {
+                sink.word(address, word, relocation);
+            }
+
+            if (this.image.contains(address)) {
+                this.image.setWord(address, word, relocation);
+            }
+        }
+
+        /**
+         * Passes one line of the program listing to each sink. See
+         * {@link OutputSink#listingLine}.
+         */
+        public void printListingLine(SourceRecord record, int addr,
+                int instruction, boolean printSrc) throws IOException {
+            for (OutputSink sink : this.sinks) {
+                sink.listingLine(record, addr, instruction, printSrc);
+            }
+        }
+    }
+
+    /**
+     * Initializes an assembler that writes classic object files.
+     */
+    public AssemblerImp() {
+        this(ObjectDialect.CLASSIC);
+    }
+
+    /**
+     * Initializes an assembler that writes object files in {@code dialect}.
+     *
+     * @param dialect
+     *            The dialect text records are written in.
+     */
+    public AssemblerImp(ObjectDialect dialect) {
+        this(dialect, null);
+    }
+
+    /**
+     * Initializes an assembler for one job held to the limits of
+     * {@code governor}. Unlike other instances, it must not assemble more
+     * than one program.
+     *
+     * @param dialect
+     *            The dialect text records are written in.
+     * @param governor
+     *            The job's governor, or null for no limits.
+     */
+    public AssemblerImp(ObjectDialect dialect, Governor governor) {
+        this(dialect, governor, null);
+    }
+
+    /**
+     * Initializes an assembler for one job held to the limits of
+     * {@code governor} and reporting to {@code listener}. Unlike other
+     * instances, it must not assemble more than one program.
+     *
+     * @param dialect
+     *            The dialect text records are written in.
+     * @param governor
+     *            The job's governor, or null for no limits.
+     * @param listener
+     *            The job's listener, or null.
+     */
+    public AssemblerImp(ObjectDialect dialect, Governor governor,
+            AssemblerListener listener) {
+        this.dialect = dialect;
+        this.governor = governor;
+        this.listener = listener;
+    }
+
+    @Override
+    public ObjectImage assemble(Program program) {
+        try {
+            return assemble(program, Collections.<OutputSink> emptyList());
+        } catch (IOException e) {
+            // Nothing is written without sinks.
+            throw new AssertionError(e);
+        }
+    }
 
     @Override
-    public void assemble(BufferedWriter objectOut, BufferedWriter listingOut,
-            Program program) throws IOException {
+    public ObjectImage assemble(BufferedWriter objectOut,
+            BufferedWriter listingOut, Program program) throws IOException {
+        List<OutputSink> outputs = new ArrayList<OutputSink>();
+
+        if (objectOut != null) {
+            outputs.add(new TextObjectSink(objectOut, this.dialect));
+        }
+
+        if (listingOut != null) {
+            outputs.add(new ListingSink(listingOut));
+        }
+
+        return assemble(program, outputs);
+    }
+
+    @Override
+    public ObjectImage assemble(Program program, List<OutputSink> outputs)
+            throws IOException {
+        boolean recording = FlightEvents.isRecorderStarted();
+        FlightEvents.EncodeEvent event = null;
+        FlightEvents.SinkTimer timer = FlightEvents.timeSinks(outputs);
+        int records = program.numberOfRecords();
+
+        if (recording) {
+            event = new FlightEvents.EncodeEvent();
+            event.begin();
+        }
+        outputs = timer.getSinks();
+
+        if (this.listener != null) {
+            this.listener.phaseStarted(Phase.PASS_2);
+        }
+
         SourceRecord record = program.getNextRecord();
-        this.objWriter = new PrintWriter(objectOut, true);
-        this.listWriter = new PrintWriter(listingOut, true);
+        ObjectImage image =
+                new ObjectImage(program.getSegmentName(),
+                        program.getFirstAddress(), program.getLength());
+        Emitter out =
+                new Emitter(outputs, image, this.governor, this.listener);
+
+        image.isRelocatable(program.isRelocatable());
+
+        for (String symbol : program.getSymbols()) {
+            image.addSymbol(symbol, program.getSymbolValue(symbol),
+                    program.isRelative(symbol));
+        }
 
         // ...Write the header record
 
-        this.objWriter.printf("H%-6s%04X%04X%n", program.getSegmentName(),
-                program.getFirstAddress(), program.getLength());
-        //this.objWriter.println();
-        printListingLine(record, -1, -1, true);
+        for (OutputSink sink : outputs) {
+            sink.header(program.getSegmentName(), program.getFirstAddress(),
+                    program.getLength(), program.isRelocatable());
+        }
+
+        out.printListingLine(record, -1, -1, true);
 
         // ...Write the entry points as 'E' records
 
         for (String entrySymbol : program.getEntrySymbols()) {
-            // Write the symbol and value
-            this.objWriter.printf("N%-6s%04X", entrySymbol,
-                    program.getSymbolValue(entrySymbol));
-
-            // If the symbol is relative, terminate line with an 'R'.
-            // Else, terminate with an 'A' for absolute.
-            if (program.isRelative(entrySymbol)) {
-                this.objWriter.printf("R%n");
-            } else {
-                this.objWriter.printf("A%n");
+            for (OutputSink sink : outputs) {
+                sink.entry(entrySymbol, program.getSymbolValue(entrySymbol),
+                        program.isRelative(entrySymbol));
             }
-            
+
+            image.addEntrySymbol(entrySymbol,
+                    program.getSymbolValue(entrySymbol),
+                    program.isRelative(entrySymbol));
         }
 
         // ...Write the external symbols used here as 'X' records
 
         for (String externalSymbol : program.getExternalSymbols()) {
-            this.objWriter.printf("X%s%n", externalSymbol);
+            for (OutputSink sink : outputs) {
+                sink.external(externalSymbol);
+            }
+
+            image.addExternalSymbol(externalSymbol);
         }
 
         // ...For each record, generate a line of the object file (if necessary)
@@ -87,13 +268,17 @@ public final class AssemblerImp implements Assembler {
             int instr = -1;
             record = program.getNextRecord();
 
+            if (this.governor != null) {
+                this.governor.checkTime(record.getLineNumber());
+            }
+
             // ... Handle the pseudo-ops.
 
             if (record.getOpCode().charAt(0) == '.') {
                 // ...Handle .FILL, which sets a cell in memory to a given
                 // value.
                 if (record.getOpCode().equals(".FILL")) {
-                    String relocationRecord = "";
+                    Relocation relocation = Relocation.NONE;
                     String arg = record.getArgAt(0);
                     ArgType type = ArgFormat.getArgType(arg);
 
@@ -101,21 +286,21 @@ public final class AssemblerImp implements Assembler {
                     // on the argument type.
                     instr = getArgValue(program, record, 0);
 
-                    if (program.isRelocatable()
+                    if (type == ArgType.SYMBOL
+                            && program.hasExternalSymbol(arg)) {
+                        relocation = Relocation.external(0xf, arg);
+                    } else if (program.isRelocatable()
                             && (type == ArgType.LITERAL || (type == ArgType.SYMBOL && program
                                     .isRelative(arg)))) {
-                        relocationRecord = "M1";
-                    } else if (type == ArgType.SYMBOL
-                            && program.hasExternalSymbol(arg)) {
-                        relocationRecord = String.format("X%X%s", 0xf, arg);
+                        relocation = Relocation.M1;
                     }
 
                     // Write to object file
-                    this.objWriter.printf("T%04X%04X%s%n",
-                            record.getLocation(), instr, relocationRecord);
+                    out.writeText(record.getLocation(), instr, relocation);
 
                     // Write listing line
-                    printListingLine(record, record.getLocation(), instr, true);
+                    out.printListingLine(record, record.getLocation(), instr,
+                            true);
                 } else if (record.getOpCode().equals(".STRZ")) {
                     // ...Handle .STRZ pseudo-op, which fills memory with a
                     // given sequence of characters followed by a null.
@@ -128,30 +313,30 @@ public final class AssemblerImp implements Assembler {
                     // null.
 
                     for (int i = 1; i < str.length() - 1; ++i) {
-                        this.objWriter.printf("T%04X%04X%n", location,
-                                str.codePointAt(i));
+                        out.writeText(location, str.codePointAt(i),
+                                Relocation.NONE);
 
-                        printListingLine(record, location, str.codePointAt(i),
-                                firstChar);
+                        out.printListingLine(record, location,
+                                str.codePointAt(i), firstChar);
 
                         ++location;
 
                         firstChar = false;
                     }
 
-                    this.objWriter.printf("T%04X0000%n", location);
+                    out.writeText(location, 0, Relocation.NONE);
 
-                    printListingLine(record, location, 0, firstChar);
+                    out.printListingLine(record, location, 0, firstChar);
                 } else {
                     // ...If not .FILL or .STRZ, just write an output line.
-                    printListingLine(record, -1, -1, true);
+                    out.printListingLine(record, -1, -1, true);
                 }
             } else {
                 // ...Handle the machine ops.
 
                 String opCode = record.getOpCode();
                 instr = MachineOpTable.getTemplate(opCode);
-                String relocationRecord = "";
+                Relocation relocation = Relocation.NONE;
 
                 // Loop over the args
                 for (int i = 0; i < record.getArgCount(); ++i) {
@@ -190,8 +375,10 @@ public final class AssemblerImp implements Assembler {
                     }
 
                     // If argument is an address, verify the page number matches
-                    // that of the record's location.
-                    if (argLen == 9) {
+                    // that of the record's location. The address of an external
+                    // symbol is filled in by the loader.
+                    if (argLen == 9 && !(type == ArgType.SYMBOL
+                            && program.hasExternalSymbol(arg))) {
                         // Current PC is record location + 1
                         int recordPage = 1 + record.getLocation() >> 9;
                         int argPage = argValue >> 9;
@@ -204,23 +391,24 @@ public final class AssemblerImp implements Assembler {
 
                     // If we're on the last argument, we need to check to
                     // see if we have a relocatable symbol.
-                    if (program.isRelocatable()
+                    // External symbols always need one, even in an absolute
+                    // segment.
+                    if (type == ArgType.SYMBOL
+                            && program.hasExternalSymbol(arg)) {
+                        relocation = Relocation.external(argLen, arg);
+                    } else if (program.isRelocatable()
                             && i == record.getArgCount() - 1) {
                         // If it's a literal, you always use a relocation
                         // record of M1.
                         // If it's a relocatable symbol, we need to check
                         // the length of the arg.
                         if (type == ArgType.LITERAL) {
-                            relocationRecord = "M1";
-                        } else if (type == ArgType.SYMBOL
-                                && program.hasExternalSymbol(arg)) {
-                            relocationRecord =
-                                    String.format("X%X%s", argLen, arg);
+                            relocation = Relocation.M1;
                         } else if (type == ArgType.SYMBOL
                                 && program.isRelative(arg)) {
-                            relocationRecord = "M0";
+                            relocation = Relocation.M0;
                             if (argLen == 9) {
-                                relocationRecord = "M1";
+                                relocation = Relocation.M1;
                             }
                         }
                     }
@@ -238,10 +426,10 @@ public final class AssemblerImp implements Assembler {
                     }
                 }
 
-                this.objWriter.printf("T%04X%04X%s%n", record.getLocation(),
-                        instr, relocationRecord);
+                out.writeText(record.getLocation(), instr, relocation);
 
-                printListingLine(record, record.getLocation(), instr, true);
+                out.printListingLine(record, record.getLocation(), instr,
+                        true);
             }
 
         }
@@ -250,21 +438,51 @@ public final class AssemblerImp implements Assembler {
 
         record = program.getNextRecord();
 
-        printListingLine(record, -1, -1, true);
+        out.printListingLine(record, -1, -1, true);
 
         // ...Write literals to memory and listing
 
         for (Map.Entry<Integer, Integer> literal : program.getLiteralTable()
                 .entrySet()) {
-            this.objWriter.printf("T%04X%04X%n", literal.getValue(),
-                    literal.getKey());
+            if (image.contains(literal.getValue())) {
+                image.setWord(literal.getValue(), literal.getKey(),
+                        Relocation.NONE);
+            }
+
+            if (this.listener != null) {
+                this.listener.wordEmitted(literal.getValue(), literal.getKey(),
+                        Relocation.NONE);
+            }
 
-            printLiteralListingLine(literal.getKey(), literal.getValue());
+            for (OutputSink sink : outputs) {
+                sink.literal(literal.getKey(), literal.getValue());
+            }
         }
 
         // ...Write the .END record to the object file
 
-        this.objWriter.printf("E%04X%n", program.getExecAddress());
+        for (OutputSink sink : outputs) {
+            sink.end(program.getExecAddress());
+        }
+
+        image.setExecAddress(program.getExecAddress());
+
+        int words = out.words + program.numberOfLiterals();
+
+        FlightEvents.encoded(words);
+        timer.commit();
+
+        if (recording && event.shouldCommit()) {
+            event.records = records;
+            event.words = words;
+            event.commit();
+        }
+
+        if (this.listener != null) {
+            this.listener.phaseEnded(Phase.PASS_2);
+        }
+
+        return image;
     }
 
     /**
@@ -410,108 +628,4 @@ public final class AssemblerImp implements Assembler {
         // Combine destination and source.
         return dest | src;
     }
-
-    /**
-     * Prints one line of a program listing for assembly output. Output takes
-     * the following format: <blockquote>
-     *
-     * <pre>
-     * (AAAA) BBBB CCCCCCCCCCCCCCCC (DDDD) EEEEEE   FFFFF GGG, GGG, GGG
-     * </pre>
-     *
-     * </blockquote>
-     * <p>
-     * Where:
-     * <ul>
-     * <li>A's are the address</li>
-     * <li>B's are the contents in hex</li>
-     * <li>C's are the contents in binary</li>
-     * <li>D's are the line number from the source file</li>
-     * <li>E's are the label, if any</li>
-     * <li>F's are the opcode</li>
-     * <li>G's are the operands</li>
-     * </ul>
-     *
-     * There are a few caveats. If instruction is -1, do not print the address
-     * or memory contents. If printSrc is false, do not print the label, opcode,
-     * or operands.
-     *
-     * @param writer
-     *            The BufferedWriter to write the line to.
-     * @param record
-     *            The record to pull data from.
-     * @param addr
-     *            The address of the data (if applicable).
-     * @param instruction
-     *            The value of memory. -1 if not applicable.
-     * @param printSrc
-     *            Indicates whether to print the source code.
-     */
-    private void printListingLine(SourceRecord record, int addr,
-            int instruction, boolean printSrc) {
-        String label = record.getLabel();
-        String binary = "";
-
-        // ...Generate binary string
-
-        //
-        if (instruction != -1) {
-            StringBuilder binaryInstr =
-                    new StringBuilder(Integer.toBinaryString(instruction));
-
-            while (binaryInstr.length() < AssemblerImp.BASE_16) {
-                binaryInstr.insert(0, '0');
-            }
-
-            binary = binaryInstr.toString();
-        }
-
-        // ...Convert null label to a blank string.
-
-        if (label == null) {
-            label = "";
-        }
-
-        // ...Write address, hex and binary contents, line #, label, and
-        // instruction
-
-        // Only write address and memory contents if instruction generates data.
-        if (MachineOpTable.hasOpCode(record.getOpCode())
-                || record.getOpCode().equals(".FILL")
-                || record.getOpCode().equals(".STRZ")) {
-            this.listWriter.printf("(%04X) %04X %s (%4d)", addr, instruction,
-                    binary, record.getLineNumber());
-        } else {
-            this.listWriter.printf("%28s (%4d)", binary,
-                    record.getLineNumber(), label);
-        }
-
-        // ...Write opcode and operands if requested
-
-        if (printSrc) {
-            this.listWriter.printf(" %-8s %-5s ", label, record.getOpCode());
-
-            int argCount = record.getArgCount();
-            for (int i = 0; i < argCount; ++i) {
-                this.listWriter.printf("%s", record.getArgAt(i));
-                if (i < argCount - 1) {
-                    this.listWriter.print(", ");
-                }
-            }
-        }
-
-        this.listWriter.println();
-    }
-
-    private void printLiteralListingLine(int literal, int addr) {
-        StringBuilder binary =
-                new StringBuilder(Integer.toBinaryString(literal));
-
-        while (binary.length() < 16) {
-            binary.insert(0, '0');
-        }
-
-        this.listWriter.printf("(%04X) %04X %s ( lit)%n", addr, literal,
-                binary.toString());
-    }
 }
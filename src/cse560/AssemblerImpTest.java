@@ -1,9 +1,23 @@
 package cse560;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
 
 import org.junit.Test;
 
@@ -94,4 +108,119 @@ public class AssemblerImpTest {
 
         System.out.println(objFile);
     }
+
+    /**
+     * Checking: Assembling in memory produces the same segment as the object
+     * file, along with the symbol table.
+     */
+    @Test
+    public void assembleInMemory() throws IOException, DataFormatException {
+        String source =
+                "Lab2EG   .ORIG   x30B0\n"
+              + "count    .FILL   #4\n"
+              + "Begin    LD      R1,count\n"
+              + "         LD      R6,=#100\n"
+              + "Array    .BLKW   #3\n"
+              + "         .FILL   x10\n"
+              + "         .END    Begin\n";
+
+        StringWriter objFile = new StringWriter();
+        new AssemblerImp().assemble(new BufferedWriter(objFile), null,
+                new ParserImp2().parse(new BufferedReader(new StringReader(
+                        source)), 100));
+        ObjectImage fromFile =
+                new ObjectReaderImp().read(new BufferedReader(new StringReader(
+                        objFile.toString())));
+
+        ObjectImage image =
+                new AssemblerImp().assemble(new ParserImp2().parse(
+                        new BufferedReader(new StringReader(source)), 100));
+
+        assertEquals(0x30B1, image.getExecAddress());
+        assertArrayEquals(fromFile.getWords(), image.getWords());
+        assertEquals(fromFile.getLoadedBitmap(), image.getLoadedBitmap());
+        assertTrue(image.getRelocationBitmap().isEmpty());
+        assertEquals(0x30B3, image.getSymbolValue("Array"));
+        assertFalse(image.isSymbolRelative("count"));
+        assertEquals(0x0064, image.getWord(0x30B7));
+    }
+
+    /**
+     * Returns a program exercising symbols, literals and strings that differs
+     * with {@code seed}.
+     */
+    private static String stressSource(int seed) {
+        StringBuilder source = new StringBuilder();
+
+        source.append(String.format("S%-5d   .ORIG   x%04X%n", seed,
+                0x1000 + 0x200 * (seed % 8)));
+        source.append("Begin    LD      R1,=#" + seed + "\n");
+
+        for (int i = 0; i < 20 + seed % 50; ++i) {
+            source.append("         ADD     R1,R1,#" + (i % 16) + "\n");
+            source.append("         BRNZP   Begin\n");
+        }
+
+        source.append("         LD      R2,=x" + Integer.toHexString(seed + 1)
+                + "\n");
+        source.append("msg      .STRZ   \"job " + seed + "\"\n");
+        source.append("         .END    Begin\n");
+
+        return source.toString();
+    }
+
+    /**
+     * Assembles {@code source} with {@code assembler} and returns the object
+     * file followed by the listing.
+     */
+    private static String assembleToText(Assembler assembler, String source)
+            throws IOException {
+        StringWriter object = new StringWriter();
+        StringWriter listing = new StringWriter();
+
+        assembler.assemble(new BufferedWriter(object), new BufferedWriter(
+                listing), new ParserImp2().parse(new BufferedReader(
+                new StringReader(source)), 1000));
+
+        return object.toString() + listing.toString();
+    }
+
+    /**
+     * Checking: Many assemblies running at once on a shared assembler give
+     * exactly the outputs they give one at a time.
+     */
+    @Test
+    public void parallelMatchesSequential() throws Exception {
+        final Assembler shared = new AssemblerImp();
+        final int jobs = 200;
+        List<String> expected = new ArrayList<String>();
+
+        for (int i = 0; i < jobs; ++i) {
+            expected.add(assembleToText(new AssemblerImp(), stressSource(i)));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<String>> actual = new ArrayList<Future<String>>();
+
+        try {
+            for (int round = 0; round < 4; ++round) {
+                for (int i = 0; i < jobs; ++i) {
+                    final int seed = i;
+
+                    actual.add(pool.submit(new Callable<String>() {
+                        @Override
+                        public String call() throws IOException {
+                            return assembleToText(shared, stressSource(seed));
+                        }
+                    }));
+                }
+            }
+
+            for (int i = 0; i < actual.size(); ++i) {
+                assertEquals(expected.get(i % jobs), actual.get(i).get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
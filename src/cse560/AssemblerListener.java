@@ -0,0 +1,91 @@
+package cse560;
+
+/**
+ * Observes an assembly as it happens, for metrics, tracing or statistics such
+ * as which opcodes a body of programs uses. {@link ParserImp2} and
+ * {@link AssemblerImp} call the listener of their {@link AssemblyContext}, if
+ * it has one, on the thread doing the work.
+ * <p>
+ * Events arrive in the following order:
+ *
+ * <pre>
+ * phaseStarted(PASS_1)
+ * (recordParsed | symbolDefined | literalAdded)*
+ * phaseStarted(LITERALS) phaseEnded(LITERALS)
+ * phaseEnded(PASS_1)
+ * phaseStarted(PASS_2)
+ * wordEmitted*
+ * phaseEnded(PASS_2)
+ * </pre>
+ * <p>
+ * A phase that fails with an {@link AssemblerException} is not ended. Other
+ * phases are the caller's to report. Listeners must be quick, since they run
+ * once per record or word, and must not throw. A {@link BatchAssembler} calls
+ * one listener from all of its threads at once. To register several, use a
+ * {@link MulticastListener}. A context without a listener costs the parser
+ * and assembler one null check per event.
+ *
+ * @author Igor Tolkachev
+ */
+public interface AssemblerListener {
+    /**
+     * A phase has begun.
+     *
+     * @param phase
+     *            The phase.
+     */
+    void phaseStarted(Phase phase);
+
+    /**
+     * A phase has ended.
+     *
+     * @param phase
+     *            The phase.
+     */
+    void phaseEnded(Phase phase);
+
+    /**
+     * Pass one has parsed a record and added it to the program.
+     *
+     * @param record
+     *            The record. Its location is set if it takes up memory.
+     */
+    void recordParsed(SourceRecord record);
+
+    /**
+     * Pass one has added a symbol to the symbol table.
+     *
+     * @param symbol
+     *            The symbol.
+     * @param value
+     *            Its value.
+     * @param isRelative
+     *            True iff the value moves with a relocatable segment.
+     */
+    void symbolDefined(String symbol, int value, boolean isRelative);
+
+    /**
+     * Pass one has added a literal to the literal table. Its address is only
+     * known once the table is placed, and is reported by
+     * {@link #wordEmitted}.
+     *
+     * @param literal
+     *            The value of the literal.
+     * @param lineNumber
+     *            The line that first uses it.
+     */
+    void literalAdded(int literal, int lineNumber);
+
+    /**
+     * Pass two has emitted one word of the segment, an instruction, data or a
+     * literal.
+     *
+     * @param address
+     *            The address of the word.
+     * @param value
+     *            The contents of memory at {@code address}.
+     * @param relocation
+     *            How the loader must adjust the word.
+     */
+    void wordEmitted(int address, int value, Relocation relocation);
+}
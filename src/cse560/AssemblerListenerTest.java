@@ -0,0 +1,118 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class AssemblerListenerTest {
+    /**
+     * Records the phases and counts everything else, including how often
+     * each opcode is parsed.
+     */
+    private static final class Recorder implements AssemblerListener {
+        final List<String> phases = new ArrayList<String>();
+
+        final Map<String, Integer> opCodes = new TreeMap<String, Integer>();
+
+        final Map<String, Integer> symbols = new TreeMap<String, Integer>();
+
+        int literals = 0;
+
+        int words = 0;
+
+        int relocated = 0;
+
+        @Override
+        public void phaseStarted(Phase phase) {
+            this.phases.add("+" + phase.name());
+        }
+
+        @Override
+        public void phaseEnded(Phase phase) {
+            this.phases.add("-" + phase.name());
+        }
+
+        @Override
+        public void recordParsed(SourceRecord record) {
+            Integer count = this.opCodes.get(record.getOpCode());
+
+            this.opCodes.put(record.getOpCode(), count == null ? 1
+                    : count + 1);
+        }
+
+        @Override
+        public void symbolDefined(String symbol, int value, boolean isRelative) {
+            this.symbols.put(symbol, value);
+        }
+
+        @Override
+        public void literalAdded(int literal, int lineNumber) {
+            ++this.literals;
+        }
+
+        @Override
+        public void wordEmitted(int address, int value, Relocation relocation) {
+            ++this.words;
+
+            if (relocation != Relocation.NONE) {
+                ++this.relocated;
+            }
+        }
+    }
+
+    /**
+     * Checking: The listener sees the phases in order, every record, symbol
+     * and literal, and every word of the object file.
+     */
+    @Test
+    public void seesEveryEvent() {
+        Recorder recorder = new Recorder();
+        AssemblyResult result =
+                EmbeddedAssembler.assemble(
+                        "Lab2     .ORIG\n" + "Begin    LD      R1,=#4\n"
+                                + "         LD      R2,=#4\n"
+                                + "         LD      R3,=#5\n"
+                                + "Loop     ADD     R1,R1,#-1\n"
+                                + "         BRP     Loop\n"
+                                + "Two      .EQU    #2\n"
+                                + "Data     .BLKW   Two\n"
+                                + "         .END    Begin\n",
+                        AssemblyContext.DEFAULT.withListener(recorder));
+
+        assertTrue(result.succeeded());
+        assertEquals("[+PASS_1, +LITERALS, -LITERALS, -PASS_1, +PASS_2, "
+                + "-PASS_2]", recorder.phases.toString());
+        assertEquals(Integer.valueOf(3), recorder.opCodes.get("LD"));
+        assertEquals(7, recorder.opCodes.size());
+        assertEquals("{Begin=0, Data=5, Loop=3, Two=2}", recorder.symbols
+                .toString());
+        assertEquals(2, recorder.literals);
+        assertEquals(result.getObjectFile().split("\nT").length - 1,
+                recorder.words);
+        assertEquals(4, recorder.relocated);
+    }
+
+    /**
+     * Checking: A multicast listener passes each event to every listener.
+     */
+    @Test
+    public void multicast() {
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+        AssemblyContext context =
+                AssemblyContext.DEFAULT.withListener(new MulticastListener(
+                        first).with(second));
+
+        assertTrue(EmbeddedAssembler.assemble(
+                "Main     .ORIG\n         ADD     R1,R1,#1\n         .END\n",
+                context).succeeded());
+        assertEquals(1, first.words);
+        assertEquals(first.phases, second.phases);
+    }
+}
@@ -0,0 +1,146 @@
+package cse560;
+
+import javax.management.MXBean;
+
+/**
+ * The figures a long-running assembler, embedded or a daemon, publishes
+ * through JMX under {@code AssemblerMetricsImp.OBJECT_NAME}. Totals count
+ * from start-up or the last {@link #reset}; rates are over the last
+ * {@code AssemblerMetricsImp.WINDOW_SECONDS} seconds; table figures describe
+ * the jobs in progress.
+ * <p>
+ * Only jobs run by {@link EmbeddedAssembler}, {@link BatchAssembler} and
+ * {@link AssemblerDaemon} are counted. Lines, symbols, literals and the pass
+ * one latencies come from {@link ParserImp2}, so jobs using another parser
+ * add nothing to them.
+ *
+ * @author Igor Tolkachev
+ */
+@MXBean
+public interface AssemblerMetrics {
+    /**
+     * @return The number of jobs that produced their outputs, from the build
+     *         cache or by assembling.
+     */
+    long getJobsCompleted();
+
+    /**
+     * @return The number of jobs that ended with an error.
+     */
+    long getJobsFailed();
+
+    /**
+     * @return The number of jobs started and not yet ended.
+     */
+    int getJobsInProgress();
+
+    /**
+     * @return The number of jobs waiting for a thread.
+     */
+    int getQueueDepth();
+
+    /**
+     * @return The number of source lines parsed.
+     */
+    long getLines();
+
+    /**
+     * @return The number of words emitted.
+     */
+    long getWords();
+
+    /**
+     * @return The source lines of the jobs that ended in the last window, per
+     *         second.
+     */
+    double getLinesPerSecond();
+
+    /**
+     * @return The words of the jobs that ended in the last window, per
+     *         second.
+     */
+    double getWordsPerSecond();
+
+    /**
+     * @return The number of build cache lookups that found the outputs.
+     */
+    long getCacheHits();
+
+    /**
+     * @return The number of build cache lookups that did not.
+     */
+    long getCacheMisses();
+
+    /**
+     * @return The fraction of build cache lookups that found the outputs, or
+     *         0 if there has been none.
+     */
+    double getCacheHitRatio();
+
+    /**
+     * @return The number of symbols in the symbol tables of the jobs in
+     *         progress.
+     */
+    int getSymbols();
+
+    /**
+     * @return The number of literals in the literal tables of the jobs in
+     *         progress.
+     */
+    int getLiterals();
+
+    /**
+     * @return The fullest symbol table of the jobs in progress, as a fraction
+     *         of its job's limit.
+     */
+    double getSymbolTableOccupancy();
+
+    /**
+     * @return The fullest literal table of the jobs in progress, as a fraction
+     *         of its job's limit.
+     */
+    double getLiteralTableOccupancy();
+
+    /**
+     * @return The fullest symbol table of any job, as a fraction of its job's
+     *         limit.
+     */
+    double getPeakSymbolTableOccupancy();
+
+    /**
+     * @return The fullest literal table of any job, as a fraction of its
+     *         job's limit.
+     */
+    double getPeakLiteralTableOccupancy();
+
+    /**
+     * @return The latency of whole jobs, from start to end.
+     */
+    LatencyHistogram.Snapshot getJobLatency();
+
+    /**
+     * @return The latency of pass one, literal placement included.
+     */
+    LatencyHistogram.Snapshot getPass1Latency();
+
+    /**
+     * @return The latency of literal placement.
+     */
+    LatencyHistogram.Snapshot getLiteralsLatency();
+
+    /**
+     * @return The latency of pass two.
+     */
+    LatencyHistogram.Snapshot getPass2Latency();
+
+    /**
+     * @return Every figure, in the Prometheus text format.
+     */
+    String getText();
+
+    /**
+     * Sets the totals, rates, peaks and latencies back to zero. Jobs in
+     * progress are still counted when they end.
+     */
+    void reset();
+}
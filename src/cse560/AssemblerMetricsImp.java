@@ -0,0 +1,577 @@
+package cse560;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects the {@link AssemblerMetrics} of the jobs run in this JVM.
+ * <p>
+ * A host starts a {@link Job} for each program and assembles it with the
+ * job's context, whose listener is the job; the job counts and times the
+ * events of its own thread in plain fields and adds them to the shared totals
+ * once, when it ends. Only the symbol and literal counts of jobs in progress
+ * are read from other threads.
+ * <p>
+ * {@link #GLOBAL} is the instance the hosts report to. Embedding programs
+ * call {@link #register} on it to publish it through JMX, and {@link #getText}
+ * for a plain-text dump.
+ *
+ * @author Igor Tolkachev
+ */
+public final class AssemblerMetricsImp implements AssemblerMetrics {
+    /** The name {@link #register} publishes the metrics under. */
+    public static final String OBJECT_NAME = "cse560:type=AssemblerMetrics";
+
+    /** The rates cover the jobs that ended in this many seconds. */
+    public static final int WINDOW_SECONDS = 10;
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    /**
+     * The metrics of every host in this JVM. It is declared after the
+     * constants its constructor uses.
+     */
+    public static final AssemblerMetricsImp GLOBAL = new AssemblerMetricsImp();
+
+    private final AtomicLong jobsCompleted = new AtomicLong();
+
+    private final AtomicLong jobsFailed = new AtomicLong();
+
+    private final AtomicLong lines = new AtomicLong();
+
+    private final AtomicLong words = new AtomicLong();
+
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    /**
+     * The fullest tables of any job, as fractions of their limits, held as
+     * {@code Double.doubleToLongBits}, which orders non-negative doubles as
+     * they compare.
+     */
+    private final AtomicLong peakSymbolOccupancy = new AtomicLong();
+
+    private final AtomicLong peakLiteralOccupancy = new AtomicLong();
+
+    /** The jobs started and not yet ended. */
+    private final Set<Job> inProgress =
+            Collections.newSetFromMap(new ConcurrentHashMap<Job, Boolean>());
+
+    private final LatencyHistogram jobLatency = new LatencyHistogram();
+
+    /** The latency of each phase, by ordinal. */
+    private final LatencyHistogram[] phaseLatency =
+            new LatencyHistogram[PHASES.length];
+
+    /** The lines and words of the jobs that ended, by second. */
+    private final Meter meter = new Meter();
+
+    /**
+     * The program a host is assembling. It is an {@link AssemblerListener}
+     * that passes every event on to the listener of the job's original
+     * context, and is used by one thread at a time.
+     */
+    public final class Job implements AssemblerListener {
+        /** The job's settings, with this as their listener. */
+        private final AssemblyContext context;
+
+        /** The listener of the original context, or null. */
+        private final AssemblerListener next;
+
+        private final long start = System.nanoTime();
+
+        /** When each phase in progress began, by ordinal. */
+        private final long[] phaseStarts = new long[PHASES.length];
+
+        private int lines = 0;
+
+        private int words = 0;
+
+        /** Read by other threads; volatile so that they see it grow. */
+        private volatile int symbols = 0;
+
+        private volatile int literals = 0;
+
+        private boolean ended = false;
+
+        private Job(AssemblyContext context) {
+            this.next = context.getListener();
+            this.context = context.withListener(this);
+        }
+
+        /**
+         * @return The settings to assemble the job with.
+         */
+        public AssemblyContext getContext() {
+            return this.context;
+        }
+
+        /**
+         * Ends the job and adds it to the totals. Later calls do nothing.
+         *
+         * @param succeeded
+         *            True iff the job produced its outputs.
+         */
+        public void ended(boolean succeeded) {
+            if (this.ended) {
+                return;
+            }
+
+            this.ended = true;
+            AssemblerMetricsImp.this.inProgress.remove(this);
+            (succeeded ? AssemblerMetricsImp.this.jobsCompleted
+                    : AssemblerMetricsImp.this.jobsFailed).incrementAndGet();
+            AssemblerMetricsImp.this.lines.addAndGet(this.lines);
+            AssemblerMetricsImp.this.words.addAndGet(this.words);
+            AssemblerMetricsImp.this.jobLatency.record(System.nanoTime()
+                    - this.start);
+            AssemblerMetricsImp.this.meter.mark(this.lines, this.words);
+            raise(AssemblerMetricsImp.this.peakSymbolOccupancy,
+                    symbolOccupancy());
+            raise(AssemblerMetricsImp.this.peakLiteralOccupancy,
+                    literalOccupancy());
+        }
+
+        private double symbolOccupancy() {
+            return this.context.getMaxSymbols() <= 0 ? 0 : (double) this.symbols
+                    / this.context.getMaxSymbols();
+        }
+
+        private double literalOccupancy() {
+            return this.context.getMaxLiterals() <= 0 ? 0
+                    : (double) this.literals / this.context.getMaxLiterals();
+        }
+
+        @Override
+        public void phaseStarted(Phase phase) {
+            this.phaseStarts[phase.ordinal()] = System.nanoTime();
+
+            if (this.next != null) {
+                this.next.phaseStarted(phase);
+            }
+        }
+
+        @Override
+        public void phaseEnded(Phase phase) {
+            AssemblerMetricsImp.this.phaseLatency[phase.ordinal()]
+                    .record(System.nanoTime()
+                            - this.phaseStarts[phase.ordinal()]);
+
+            if (this.next != null) {
+                this.next.phaseEnded(phase);
+            }
+        }
+
+        @Override
+        public void recordParsed(SourceRecord record) {
+            ++this.lines;
+
+            if (this.next != null) {
+                this.next.recordParsed(record);
+            }
+        }
+
+        @Override
+        public void symbolDefined(String symbol, int value, boolean isRelative) {
+            ++this.symbols;
+
+            if (this.next != null) {
+                this.next.symbolDefined(symbol, value, isRelative);
+            }
+        }
+
+        @Override
+        public void literalAdded(int literal, int lineNumber) {
+            ++this.literals;
+
+            if (this.next != null) {
+                this.next.literalAdded(literal, lineNumber);
+            }
+        }
+
+        @Override
+        public void wordEmitted(int address, int value, Relocation relocation) {
+            ++this.words;
+
+            if (this.next != null) {
+                this.next.wordEmitted(address, value, relocation);
+            }
+        }
+    }
+
+    /**
+     * Counts the lines and words of the jobs that ended in each of the last
+     * {@code WINDOW_SECONDS} seconds. It is marked once per job, so a lock
+     * costs nothing worth avoiding.
+     */
+    private static final class Meter {
+        /** When the meter started; seconds are counted from here. */
+        private final long origin = System.nanoTime();
+
+        /** The second each slot counts, or -1 if none. */
+        private final long[] seconds = new long[WINDOW_SECONDS];
+
+        private final long[] lines = new long[WINDOW_SECONDS];
+
+        private final long[] words = new long[WINDOW_SECONDS];
+
+        Meter() {
+            reset();
+        }
+
+        private long now() {
+            return (System.nanoTime() - this.origin) / NANOS_PER_SECOND;
+        }
+
+        synchronized void mark(long newLines, long newWords) {
+            long second = now();
+            int slot = (int) (second % WINDOW_SECONDS);
+
+            if (this.seconds[slot] != second) {
+                this.seconds[slot] = second;
+                this.lines[slot] = 0;
+                this.words[slot] = 0;
+            }
+
+            this.lines[slot] += newLines;
+            this.words[slot] += newWords;
+        }
+
+        /**
+         * @return The sum of {@code counts} over the window, per second.
+         */
+        private synchronized double rate(long[] counts) {
+            long second = now();
+            long sum = 0;
+
+            for (int slot = 0; slot < WINDOW_SECONDS; ++slot) {
+                if (this.seconds[slot] > second - WINDOW_SECONDS) {
+                    sum += counts[slot];
+                }
+            }
+
+            return (double) sum / WINDOW_SECONDS;
+        }
+
+        double linesPerSecond() {
+            return rate(this.lines);
+        }
+
+        double wordsPerSecond() {
+            return rate(this.words);
+        }
+
+        synchronized void reset() {
+            for (int slot = 0; slot < WINDOW_SECONDS; ++slot) {
+                this.seconds[slot] = -1;
+                this.lines[slot] = 0;
+                this.words[slot] = 0;
+            }
+        }
+    }
+
+    /**
+     * Initializes empty metrics. Hosts report to {@link #GLOBAL}; other
+     * instances are for tests and for programs that keep their own.
+     */
+    public AssemblerMetricsImp() {
+        for (int i = 0; i < PHASES.length; ++i) {
+            this.phaseLatency[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Raises {@code peak} to {@code occupancy} if it is lower.
+     */
+    private static void raise(AtomicLong peak, double occupancy) {
+        long bits = Double.doubleToLongBits(occupancy);
+        long current = peak.get();
+
+        while (bits > current && !peak.compareAndSet(current, bits)) {
+            current = peak.get();
+        }
+    }
+
+    /**
+     * Starts counting a job.
+     *
+     * @param context
+     *            The settings of the job.
+     * @return The job, to be assembled with {@link Job#getContext} and ended
+     *         with {@link Job#ended}.
+     */
+    public Job startJob(AssemblyContext context) {
+        Job job = new Job(context);
+
+        this.inProgress.add(job);
+
+        return job;
+    }
+
+    /**
+     * Changes the number of jobs waiting for a thread.
+     *
+     * @param jobs
+     *            The number of jobs queued, or minus the number taken off the
+     *            queue.
+     */
+    public void queued(int jobs) {
+        this.queueDepth.addAndGet(jobs);
+    }
+
+    /**
+     * Counts one build cache lookup.
+     *
+     * @param hit
+     *            True iff it found the outputs.
+     */
+    public void cacheLookup(boolean hit) {
+        (hit ? this.cacheHits : this.cacheMisses).incrementAndGet();
+    }
+
+    /**
+     * Publishes these metrics on the platform MBean server under
+     * {@code OBJECT_NAME}, unless something already is.
+     *
+     * @throws JMException
+     *             If the server refuses them.
+     */
+    public void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+
+        synchronized (AssemblerMetricsImp.class) {
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        }
+    }
+
+    @Override
+    public long getJobsCompleted() {
+        return this.jobsCompleted.get();
+    }
+
+    @Override
+    public long getJobsFailed() {
+        return this.jobsFailed.get();
+    }
+
+    @Override
+    public int getJobsInProgress() {
+        return this.inProgress.size();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return this.queueDepth.get();
+    }
+
+    @Override
+    public long getLines() {
+        return this.lines.get();
+    }
+
+    @Override
+    public long getWords() {
+        return this.words.get();
+    }
+
+    @Override
+    public double getLinesPerSecond() {
+        return this.meter.linesPerSecond();
+    }
+
+    @Override
+    public double getWordsPerSecond() {
+        return this.meter.wordsPerSecond();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return this.cacheHits.get();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return this.cacheMisses.get();
+    }
+
+    @Override
+    public double getCacheHitRatio() {
+        long hits = getCacheHits();
+        long lookups = hits + getCacheMisses();
+
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public int getSymbols() {
+        int symbols = 0;
+
+        for (Job job : this.inProgress) {
+            symbols += job.symbols;
+        }
+
+        return symbols;
+    }
+
+    @Override
+    public int getLiterals() {
+        int literals = 0;
+
+        for (Job job : this.inProgress) {
+            literals += job.literals;
+        }
+
+        return literals;
+    }
+
+    @Override
+    public double getSymbolTableOccupancy() {
+        double fullest = 0;
+
+        for (Job job : this.inProgress) {
+            fullest = Math.max(fullest, job.symbolOccupancy());
+        }
+
+        return fullest;
+    }
+
+    @Override
+    public double getLiteralTableOccupancy() {
+        double fullest = 0;
+
+        for (Job job : this.inProgress) {
+            fullest = Math.max(fullest, job.literalOccupancy());
+        }
+
+        return fullest;
+    }
+
+    @Override
+    public double getPeakSymbolTableOccupancy() {
+        return Double.longBitsToDouble(this.peakSymbolOccupancy.get());
+    }
+
+    @Override
+    public double getPeakLiteralTableOccupancy() {
+        return Double.longBitsToDouble(this.peakLiteralOccupancy.get());
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getJobLatency() {
+        return this.jobLatency.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getPass1Latency() {
+        return this.phaseLatency[Phase.PASS_1.ordinal()].snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getLiteralsLatency() {
+        return this.phaseLatency[Phase.LITERALS.ordinal()].snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getPass2Latency() {
+        return this.phaseLatency[Phase.PASS_2.ordinal()].snapshot();
+    }
+
+    private static void append(StringBuilder text, String name, Object value) {
+        text.append("mmxi_").append(name).append(' ').append(value).append(
+                '\n');
+    }
+
+    /**
+     * Appends the summary of one histogram, in seconds.
+     */
+    private static void append(StringBuilder text, String phase,
+            LatencyHistogram histogram) {
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        String labels = "{phase=\"" + phase + "\"";
+        double second = NANOS_PER_SECOND;
+
+        append(text, "latency_seconds" + labels + ",quantile=\"0.5\"}",
+                snapshot.getP50Nanos() / second);
+        append(text, "latency_seconds" + labels + ",quantile=\"0.99\"}",
+                snapshot.getP99Nanos() / second);
+        append(text, "latency_seconds" + labels + ",quantile=\"1\"}",
+                snapshot.getMaxNanos() / second);
+        append(text, "latency_seconds_count" + labels + "}", snapshot
+                .getCount());
+        append(text, "latency_seconds_sum" + labels + "}", snapshot
+                .getCount()
+                * snapshot.getMeanNanos() / second);
+    }
+
+    @Override
+    public String getText() {
+        StringBuilder text = new StringBuilder();
+
+        append(text, "jobs_completed_total", getJobsCompleted());
+        append(text, "jobs_failed_total", getJobsFailed());
+        append(text, "jobs_in_progress", getJobsInProgress());
+        append(text, "queue_depth", getQueueDepth());
+        append(text, "lines_total", getLines());
+        append(text, "words_total", getWords());
+        append(text, "lines_per_second", getLinesPerSecond());
+        append(text, "words_per_second", getWordsPerSecond());
+        append(text, "cache_hits_total", getCacheHits());
+        append(text, "cache_misses_total", getCacheMisses());
+        append(text, "cache_hit_ratio", getCacheHitRatio());
+        append(text, "symbols", getSymbols());
+        append(text, "literals", getLiterals());
+        append(text, "symbol_table_occupancy", getSymbolTableOccupancy());
+        append(text, "literal_table_occupancy", getLiteralTableOccupancy());
+        append(text, "peak_symbol_table_occupancy",
+                getPeakSymbolTableOccupancy());
+        append(text, "peak_literal_table_occupancy",
+                getPeakLiteralTableOccupancy());
+        text.append("# TYPE mmxi_latency_seconds summary\n");
+        append(text, "job", this.jobLatency);
+
+        for (Phase phase : PHASES) {
+            LatencyHistogram histogram = this.phaseLatency[phase.ordinal()];
+
+            if (histogram.getCount() > 0) {
+                append(text, phase.getLabel(), histogram);
+            }
+        }
+
+        return text.toString();
+    }
+
+    @Override
+    public void reset() {
+        this.jobsCompleted.set(0);
+        this.jobsFailed.set(0);
+        this.lines.set(0);
+        this.words.set(0);
+        this.cacheHits.set(0);
+        this.cacheMisses.set(0);
+        this.peakSymbolOccupancy.set(0);
+        this.peakLiteralOccupancy.set(0);
+        this.jobLatency.reset();
+
+        for (LatencyHistogram histogram : this.phaseLatency) {
+            histogram.reset();
+        }
+
+        this.meter.reset();
+    }
+}
@@ -0,0 +1,209 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+public class AssemblerMetricsImpTest {
+    /** Seven lines, two symbols, two literals, five words of code. */
+    private static final String SOURCE =
+            "Prog     .ORIG   x3000\n"
+          + "Begin    LD      R1,=#10\n"
+          + "         LD      R2,=#20\n"
+          + "Loop     ADD     R1,R1,#-1\n"
+          + "         BRP     Loop\n"
+          + "         RET\n"
+          + "         .END    Begin\n";
+
+    private static final AssemblyContext CONTEXT = new AssemblyContext(null,
+            100, 10, 4, ObjectDialect.CLASSIC);
+
+    /**
+     * Assembles {@code source} as a host does.
+     */
+    private static void assemble(AssemblerMetricsImp metrics, String source) {
+        AssemblerMetricsImp.Job job = metrics.startJob(CONTEXT);
+        AssemblyContext context = job.getContext();
+
+        try {
+            Governor governor = new Governor(context);
+            Program program =
+                    context.getParser().create(context, governor, null).parse(
+                            new BufferedReader(new StringReader(source)),
+                            context.getMaxRecords());
+
+            new AssemblerImp(context.getDialect(), governor, context
+                    .getListener()).assemble(new BufferedWriter(
+                    new StringWriter()), new BufferedWriter(
+                    new StringWriter()), program);
+            job.ended(true);
+        } catch (Exception e) {
+            job.ended(false);
+        }
+    }
+
+    /**
+     * Checking: Jobs, lines, words, latencies and peak occupancy are counted,
+     * and reset clears them.
+     */
+    @Test
+    public void countsJobs() {
+        AssemblerMetricsImp metrics = new AssemblerMetricsImp();
+
+        assemble(metrics, SOURCE);
+        assemble(metrics, SOURCE);
+        assemble(metrics, "Bad      .ORIG   x3000\n         FROB    R1\n");
+
+        assertEquals(2, metrics.getJobsCompleted());
+        assertEquals(1, metrics.getJobsFailed());
+        assertEquals(0, metrics.getJobsInProgress());
+        assertEquals(2 * 7 + 1, metrics.getLines());
+        assertEquals(2 * 7, metrics.getWords());
+        assertTrue(metrics.getLinesPerSecond() > 0);
+        assertTrue(metrics.getWordsPerSecond() > 0);
+        assertEquals(0.2, metrics.getPeakSymbolTableOccupancy(), 1e-9);
+        assertEquals(0.5, metrics.getPeakLiteralTableOccupancy(), 1e-9);
+        assertEquals(3, metrics.getJobLatency().getCount());
+        // The failed job ended no phase.
+        assertEquals(2, metrics.getPass1Latency().getCount());
+        assertEquals(2, metrics.getLiteralsLatency().getCount());
+        assertEquals(2, metrics.getPass2Latency().getCount());
+        assertTrue(metrics.getJobLatency().getMaxNanos() > 0);
+
+        metrics.reset();
+
+        assertEquals(0, metrics.getJobsCompleted());
+        assertEquals(0, metrics.getLines());
+        assertEquals(0.0, metrics.getLinesPerSecond(), 0);
+        assertEquals(0.0, metrics.getPeakSymbolTableOccupancy(), 0);
+        assertEquals(0, metrics.getJobLatency().getCount());
+    }
+
+    /**
+     * Checking: The tables of jobs in progress are visible, and events are
+     * passed on to the context's own listener.
+     */
+    @Test
+    public void jobsInProgress() {
+        AssemblerMetricsImp metrics = new AssemblerMetricsImp();
+        final int[] passedOn = new int[1];
+        AssemblerListener symbols = new AssemblerListener() {
+            @Override
+            public void phaseStarted(Phase phase) {
+            }
+
+            @Override
+            public void phaseEnded(Phase phase) {
+            }
+
+            @Override
+            public void recordParsed(SourceRecord record) {
+            }
+
+            @Override
+            public void symbolDefined(String symbol, int value,
+                    boolean isRelative) {
+                ++passedOn[0];
+            }
+
+            @Override
+            public void literalAdded(int literal, int lineNumber) {
+            }
+
+            @Override
+            public void wordEmitted(int address, int value,
+                    Relocation relocation) {
+            }
+        };
+        AssemblerMetricsImp.Job job =
+                metrics.startJob(CONTEXT.withListener(symbols));
+
+        assertEquals(1, metrics.getJobsInProgress());
+        assertTrue(job.getContext().getListener() == job);
+
+        job.symbolDefined("A", 1, false);
+        job.symbolDefined("B", 2, false);
+        job.literalAdded(5, 1);
+
+        assertEquals(2, metrics.getSymbols());
+        assertEquals(1, metrics.getLiterals());
+        assertEquals(0.2, metrics.getSymbolTableOccupancy(), 1e-9);
+        assertEquals(0.25, metrics.getLiteralTableOccupancy(), 1e-9);
+
+        job.ended(true);
+        job.ended(false);
+
+        assertEquals(0, metrics.getJobsInProgress());
+        assertEquals(0, metrics.getSymbols());
+        assertEquals(0.0, metrics.getSymbolTableOccupancy(), 0);
+        assertEquals(1, metrics.getJobsCompleted());
+        assertEquals(0, metrics.getJobsFailed());
+        assertEquals(2, passedOn[0]);
+    }
+
+    /**
+     * Checking: Queue depth and cache hit ratio.
+     */
+    @Test
+    public void queueAndCache() {
+        AssemblerMetricsImp metrics = new AssemblerMetricsImp();
+
+        metrics.queued(3);
+        metrics.queued(-1);
+        assertEquals(2, metrics.getQueueDepth());
+
+        assertEquals(0.0, metrics.getCacheHitRatio(), 0);
+        metrics.cacheLookup(true);
+        metrics.cacheLookup(true);
+        metrics.cacheLookup(true);
+        metrics.cacheLookup(false);
+        assertEquals(0.75, metrics.getCacheHitRatio(), 1e-9);
+    }
+
+    /**
+     * Checking: The embedded assembler reports to the global metrics, which
+     * are published through JMX and as text.
+     */
+    @Test
+    public void globalMetrics() throws Exception {
+        AssemblerMetricsImp metrics = AssemblerMetricsImp.GLOBAL;
+        long completed = metrics.getJobsCompleted();
+        long failed = metrics.getJobsFailed();
+
+        EmbeddedAssembler.assemble(SOURCE, CONTEXT);
+        EmbeddedAssembler.assemble("Bad      .ORIG   x3000\n", CONTEXT);
+
+        assertTrue(metrics.getJobsCompleted() >= completed + 1);
+        assertTrue(metrics.getJobsFailed() >= failed + 1);
+
+        metrics.register();
+        metrics.register();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(AssemblerMetricsImp.OBJECT_NAME);
+        CompositeData latency =
+                (CompositeData) server.getAttribute(name, "Pass2Latency");
+
+        assertTrue((Long) server.getAttribute(name, "JobsCompleted") > 0);
+        assertTrue((Long) latency.get("count") > 0);
+        assertTrue((Long) latency.get("p99Nanos") > 0);
+
+        String text = metrics.getText();
+
+        assertTrue(text, text.contains("mmxi_jobs_completed_total "));
+        assertTrue(text, text
+                .contains("mmxi_latency_seconds{phase=\"pass 2\",quantile=\"0.5\"} "));
+        assertTrue(text, text.contains("mmxi_cache_hit_ratio "));
+    }
+}
@@ -0,0 +1,250 @@
+package cse560;
+
+import java.io.File;
+
+/**
+ * The settings of one assembly job. Everything that used to live in mutable
+ * statics of {@link MMXIAssembler} is carried here instead, so that jobs with
+ * different settings can run side by side in one JVM.
+ * <p>
+ * <b>Model:</b>
+ * <ul>
+ * <li>{@code File sourceFile} - The file being assembled, or null if the
+ * source does not come from a file.</li>
+ * <li>{@code integer maxRecords} - The maximum number of records to parse.</li>
+ * <li>{@code integer maxSymbols} - The maximum number of symbols.</li>
+ * <li>{@code integer maxLiterals} - The maximum number of literals.</li>
+ * <li>{@code ObjectDialect dialect} - The dialect text records are written
+ * in.</li>
+ * <li>{@code ResourceLimits limits} - The limits on the job's memory and
+ * time.</li>
+ * <li>{@code ParserStrategy parser} - The parser that runs pass one.</li>
+ * <li>{@code AssemblerListener listener} - Observes the job, or null.</li>
+ * </ul>
+ * Instances are immutable.
+ *
+ * @author Igor Tolkachev
+ */
+public final class AssemblyContext {
+    /** Default maximum number of records to parse. */
+    public static final int DEFAULT_MAX_RECORDS = 2000;
+
+    /** Default maximum number of symbols. */
+    public static final int DEFAULT_MAX_SYMBOLS = 100;
+
+    /** Default maximum number of literals. */
+    public static final int DEFAULT_MAX_LITERALS = 50;
+
+    /** A context with every setting at its default and no source file. */
+    public static final AssemblyContext DEFAULT =
+            new AssemblyContext(null, DEFAULT_MAX_RECORDS, DEFAULT_MAX_SYMBOLS,
+                    DEFAULT_MAX_LITERALS, ObjectDialect.CLASSIC);
+
+    /** The file being assembled, or null. */
+    private final File sourceFile;
+
+    /** The maximum number of records to parse. */
+    private final int maxRecords;
+
+    /** The maximum number of symbols. */
+    private final int maxSymbols;
+
+    /** The maximum number of literals. */
+    private final int maxLiterals;
+
+    /** The dialect text records are written in. */
+    private final ObjectDialect dialect;
+
+    /** The limits on the job's memory and time. */
+    private final ResourceLimits limits;
+
+    /** The parser that runs pass one. */
+    private final ParserStrategy parser;
+
+    /** Observes the job, or null. */
+    private final AssemblerListener listener;
+
+    /**
+     * Initializes a context with the default resource limits.
+     *
+     * @param sourceFile
+     *            The file being assembled, or null.
+     * @param maxRecords
+     *            The maximum number of records to parse.
+     * @param maxSymbols
+     *            The maximum number of symbols.
+     * @param maxLiterals
+     *            The maximum number of literals.
+     * @param dialect
+     *            The dialect text records are written in.
+     */
+    public AssemblyContext(File sourceFile, int maxRecords, int maxSymbols,
+            int maxLiterals, ObjectDialect dialect) {
+        this(sourceFile, maxRecords, maxSymbols, maxLiterals, dialect,
+                ResourceLimits.DEFAULT);
+    }
+
+    /**
+     * Initializes a context that parses with {@link ParserStrategy#SCANNER}
+     * and has no listener.
+     *
+     * @param sourceFile
+     *            The file being assembled, or null.
+     * @param maxRecords
+     *            The maximum number of records to parse.
+     * @param maxSymbols
+     *            The maximum number of symbols.
+     * @param maxLiterals
+     *            The maximum number of literals.
+     * @param dialect
+     *            The dialect text records are written in.
+     * @param limits
+     *            The limits on the job's memory and time.
+     */
+    public AssemblyContext(File sourceFile, int maxRecords, int maxSymbols,
+            int maxLiterals, ObjectDialect dialect, ResourceLimits limits) {
+        this(sourceFile, maxRecords, maxSymbols, maxLiterals, dialect, limits,
+                ParserStrategy.SCANNER, null);
+    }
+
+    /**
+     * Initializes a context.
+     *
+     * @param sourceFile
+     *            The file being assembled, or null.
+     * @param maxRecords
+     *            The maximum number of records to parse.
+     * @param maxSymbols
+     *            The maximum number of symbols.
+     * @param maxLiterals
+     *            The maximum number of literals.
+     * @param dialect
+     *            The dialect text records are written in.
+     * @param limits
+     *            The limits on the job's memory and time.
+     * @param parser
+     *            The parser that runs pass one.
+     * @param listener
+     *            Observes the job, or null.
+     */
+    public AssemblyContext(File sourceFile, int maxRecords, int maxSymbols,
+            int maxLiterals, ObjectDialect dialect, ResourceLimits limits,
+            ParserStrategy parser, AssemblerListener listener) {
+        this.sourceFile = sourceFile;
+        this.maxRecords = maxRecords;
+        this.maxSymbols = maxSymbols;
+        this.maxLiterals = maxLiterals;
+        this.dialect = dialect;
+        this.limits = limits;
+        this.parser = parser;
+        this.listener = listener;
+    }
+
+    /**
+     * Returns a copy of this context for another source file.
+     *
+     * @param file
+     *            The file to assemble.
+     * @return This context with {@code sourceFile = file}.
+     */
+    public AssemblyContext forSource(File file) {
+        return new AssemblyContext(file, this.maxRecords, this.maxSymbols,
+                this.maxLiterals, this.dialect, this.limits, this.parser,
+                this.listener);
+    }
+
+    /**
+     * Returns a copy of this context with other resource limits.
+     *
+     * @param newLimits
+     *            The limits on the job's memory and time.
+     * @return This context with {@code limits = newLimits}.
+     */
+    public AssemblyContext withLimits(ResourceLimits newLimits) {
+        return new AssemblyContext(this.sourceFile, this.maxRecords,
+                this.maxSymbols, this.maxLiterals, this.dialect, newLimits,
+                this.parser, this.listener);
+    }
+
+    /**
+     * Returns a copy of this context that parses with another parser.
+     *
+     * @param newParser
+     *            The parser that runs pass one.
+     * @return This context with {@code parser = newParser}.
+     */
+    public AssemblyContext withParser(ParserStrategy newParser) {
+        return new AssemblyContext(this.sourceFile, this.maxRecords,
+                this.maxSymbols, this.maxLiterals, this.dialect, this.limits,
+                newParser, this.listener);
+    }
+
+    /**
+     * Returns a copy of this context observed by another listener.
+     *
+     * @param newListener
+     *            Observes the job, or null for none.
+     * @return This context with {@code listener = newListener}.
+     */
+    public AssemblyContext withListener(AssemblerListener newListener) {
+        return new AssemblyContext(this.sourceFile, this.maxRecords,
+                this.maxSymbols, this.maxLiterals, this.dialect, this.limits,
+                this.parser, newListener);
+    }
+
+    /**
+     * @return {@code this.sourceFile}
+     */
+    public File getSourceFile() {
+        return this.sourceFile;
+    }
+
+    /**
+     * @return {@code this.maxRecords}
+     */
+    public int getMaxRecords() {
+        return this.maxRecords;
+    }
+
+    /**
+     * @return {@code this.maxSymbols}
+     */
+    public int getMaxSymbols() {
+        return this.maxSymbols;
+    }
+
+    /**
+     * @return {@code this.maxLiterals}
+     */
+    public int getMaxLiterals() {
+        return this.maxLiterals;
+    }
+
+    /**
+     * @return {@code this.dialect}
+     */
+    public ObjectDialect getDialect() {
+        return this.dialect;
+    }
+
+    /**
+     * @return {@code this.limits}
+     */
+    public ResourceLimits getLimits() {
+        return this.limits;
+    }
+
+    /**
+     * @return {@code this.parser}
+     */
+    public ParserStrategy getParser() {
+        return this.parser;
+    }
+
+    /**
+     * @return {@code this.listener}
+     */
+    public AssemblerListener getListener() {
+        return this.listener;
+    }
+}
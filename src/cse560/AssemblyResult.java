@@ -0,0 +1,103 @@
+package cse560;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of one assembly run through {@link EmbeddedAssembler}.
+ * <p>
+ * <b>Model:</b>
+ * <ul>
+ * <li>{@code boolean succeeded} - True iff no fatal error occurred.</li>
+ * <li>{@code string objectFile} - The text object file, or null on failure.</li>
+ * <li>{@code string listing} - The program listing, or null on failure.</li>
+ * <li>{@code ObjectImage image} - The assembled segment, or null on failure or
+ * if the result was received from an {@link AssemblerDaemon}.</li>
+ * <li>{@code diagnostics} - Every warning raised, followed by the fatal error
+ * if there was one.</li>
+ * <li>{@code integer parseNanos, assembleNanos} - Time spent in pass one and
+ * pass two.</li>
+ * </ul>
+ * Instances are immutable.
+ *
+ * @author Igor Tolkachev
+ */
+public final class AssemblyResult {
+    /** The text object file, or null. */
+    private final String objectFile;
+
+    /** The program listing, or null. */
+    private final String listing;
+
+    /** The assembled segment, or null. */
+    private final ObjectImage image;
+
+    /** Warnings and the fatal error, if any. */
+    private final List<Diagnostic> diagnostics;
+
+    /** Time spent parsing, in nanoseconds. */
+    private final long parseNanos;
+
+    /** Time spent assembling, in nanoseconds. */
+    private final long assembleNanos;
+
+    AssemblyResult(String objectFile, String listing, ObjectImage image,
+            List<Diagnostic> diagnostics, long parseNanos, long assembleNanos) {
+        this.objectFile = objectFile;
+        this.listing = listing;
+        this.image = image;
+        this.diagnostics = Collections.unmodifiableList(diagnostics);
+        this.parseNanos = parseNanos;
+        this.assembleNanos = assembleNanos;
+    }
+
+    /**
+     * @return True iff no fatal error occurred.
+     */
+    public boolean succeeded() {
+        return this.objectFile != null;
+    }
+
+    /**
+     * @return The text object file, or null if assembly failed.
+     */
+    public String getObjectFile() {
+        return this.objectFile;
+    }
+
+    /**
+     * @return The program listing, or null if assembly failed.
+     */
+    public String getListing() {
+        return this.listing;
+    }
+
+    /**
+     * @return The assembled segment, or null if assembly failed or the result
+     *         came from a daemon.
+     */
+    public ObjectImage getImage() {
+        return this.image;
+    }
+
+    /**
+     * @return {@code this.diagnostics}
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return this.diagnostics;
+    }
+
+    /**
+     * @return Time spent in pass one, in nanoseconds.
+     */
+    public long getParseNanos() {
+        return this.parseNanos;
+    }
+
+    /**
+     * @return Time spent in pass two, in nanoseconds, or 0 if pass one failed.
+     */
+    public long getAssembleNanos() {
+        return this.assembleNanos;
+    }
+}
@@ -0,0 +1,408 @@
+package cse560;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures where one assembly spends its time and memory, phase by phase.
+ * <p>
+ * Phases nest: a phase started while another is running pauses it, so each
+ * phase is charged only for its own work. Pass two, for instance, is charged
+ * for encoding, and the sinks wrapped by {@link #timed} for writing. Every
+ * measurement is of the calling thread, which must be the one assembling.
+ * <p>
+ * <b>Model:</b>
+ * <ul>
+ * <li>{@code map of Phase to (long wall, long cpu, long allocated)} - The wall
+ * time, CPU time and bytes allocated charged to each phase.</li>
+ * <li>{@code integer lines, words, symbols, literals} - The counts of the
+ * program assembled.</li>
+ * </ul>
+ *
+ * @author Igor Tolkachev
+ */
+public final class AssemblyStats {
+    /** Nanoseconds of wall time charged to each phase. */
+    private final long[] wallNanos = new long[Phase.values().length];
+
+    /** Nanoseconds of CPU time charged to each phase. */
+    private final long[] cpuNanos = new long[Phase.values().length];
+
+    /** Bytes allocated charged to each phase. */
+    private final long[] allocated = new long[Phase.values().length];
+
+    /** The phases running, innermost last. */
+    private final List<Phase> running = new ArrayList<Phase>();
+
+    /** Source of CPU time. */
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    /** The readings taken at the last change of phase. */
+    private long lastWall;
+
+    private long lastCpu;
+
+    private long lastAllocated;
+
+    /** Counts of the program. */
+    private int lines = 0;
+
+    private int words = 0;
+
+    private int symbols = 0;
+
+    private int literals = 0;
+
+    /**
+     * Initializes empty statistics and resets the peak heap usage.
+     */
+    public AssemblyStats() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Starts {@code phase}, pausing the phase running, if any.
+     *
+     * @param phase
+     *            The phase.
+     */
+    public void start(Phase phase) {
+        charge();
+        this.running.add(phase);
+    }
+
+    /**
+     * Stops {@code phase} and resumes the one it paused.
+     * <p>
+     * <b>Requires:</b> {@code phase} is the phase most recently started.
+     *
+     * @param phase
+     *            The phase.
+     */
+    public void stop(Phase phase) {
+        charge();
+        this.running.remove(this.running.size() - 1);
+    }
+
+    /**
+     * Charges the time and memory since the last change of phase to the
+     * running phase.
+     */
+    private void charge() {
+        long wall = System.nanoTime();
+        long cpu = cpuTime();
+        long bytes = allocatedBytes();
+
+        if (!this.running.isEmpty()) {
+            int phase = this.running.get(this.running.size() - 1).ordinal();
+
+            this.wallNanos[phase] += wall - this.lastWall;
+            this.cpuNanos[phase] += cpu - this.lastCpu;
+            this.allocated[phase] += bytes - this.lastAllocated;
+        }
+
+        this.lastWall = wall;
+        this.lastCpu = cpu;
+        this.lastAllocated = bytes;
+    }
+
+    private long cpuTime() {
+        return this.threads.isCurrentThreadCpuTimeSupported() ? this.threads
+                .getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * @return The bytes allocated so far by the current thread, or 0 if the
+     *         JVM cannot tell.
+     */
+    private long allocatedBytes() {
+        if (this.threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sun =
+                    (com.sun.management.ThreadMXBean) this.threads;
+
+            if (sun.isThreadAllocatedMemorySupported()
+                    && sun.isThreadAllocatedMemoryEnabled()) {
+                return sun.getThreadAllocatedBytes(Thread.currentThread()
+                        .getId());
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Returns a sink that passes every event to {@code sink}, charging the
+     * time it takes to {@code phase}.
+     *
+     * @param sink
+     *            The sink to wrap.
+     * @param phase
+     *            The phase to charge.
+     * @return The wrapped sink.
+     */
+    public OutputSink timed(final OutputSink sink, final Phase phase) {
+        return new OutputSink() {
+            @Override
+            public void header(String segmentName, int firstAddress,
+                    int length, boolean isRelocatable) throws IOException {
+                start(phase);
+                try {
+                    sink.header(segmentName, firstAddress, length,
+                            isRelocatable);
+                } finally {
+                    stop(phase);
+                }
+            }
+
+            @Override
+            public void entry(String symbol, int value, boolean isRelative)
+                    throws IOException {
+                start(phase);
+                try {
+                    sink.entry(symbol, value, isRelative);
+                } finally {
+                    stop(phase);
+                }
+            }
+
+            @Override
+            public void external(String symbol) throws IOException {
+                start(phase);
+                try {
+                    sink.external(symbol);
+                } finally {
+                    stop(phase);
+                }
+            }
+
+            @Override
+            public void word(int address, int value, Relocation relocation)
+                    throws IOException {
+                start(phase);
+                try {
+                    sink.word(address, value, relocation);
+                } finally {
+                    stop(phase);
+                }
+            }
+
+            @Override
+            public void listingLine(SourceRecord record, int address,
+                    int value, boolean printSrc) throws IOException {
+                start(phase);
+                try {
+                    sink.listingLine(record, address, value, printSrc);
+                } finally {
+                    stop(phase);
+                }
+            }
+
+            @Override
+            public void literal(int literal, int address) throws IOException {
+                start(phase);
+                try {
+                    sink.literal(literal, address);
+                } finally {
+                    stop(phase);
+                }
+            }
+
+            @Override
+            public void end(int execAddress) throws IOException {
+                start(phase);
+                try {
+                    sink.end(execAddress);
+                } finally {
+                    stop(phase);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a sink that writes nothing and counts the words emitted.
+     *
+     * @return The counting sink.
+     */
+    public OutputSink counter() {
+        return new OutputSink() {
+            @Override
+            public void header(String segmentName, int firstAddress,
+                    int length, boolean isRelocatable) {
+                // Not counted.
+            }
+
+            @Override
+            public void entry(String symbol, int value, boolean isRelative) {
+                // Not counted.
+            }
+
+            @Override
+            public void external(String symbol) {
+                // Not counted.
+            }
+
+            @Override
+            public void word(int address, int value, Relocation relocation) {
+                ++AssemblyStats.this.words;
+            }
+
+            @Override
+            public void listingLine(SourceRecord record, int address,
+                    int value, boolean printSrc) {
+                // Not counted.
+            }
+
+            @Override
+            public void literal(int literal, int address) {
+                ++AssemblyStats.this.words;
+            }
+
+            @Override
+            public void end(int execAddress) {
+                // Not counted.
+            }
+        };
+    }
+
+    /**
+     * Records the counts of the program parsed.
+     *
+     * @param program
+     *            The program, before pass two consumes its records.
+     * @param sourceLines
+     *            The number of lines of its source.
+     */
+    public void count(Program program, int sourceLines) {
+        this.lines = sourceLines;
+        this.symbols = program.numberOfSymbols();
+        this.literals = program.numberOfLiterals();
+    }
+
+    /**
+     * @return The wall time charged to {@code phase}, in nanoseconds.
+     */
+    public long getWallNanos(Phase phase) {
+        return this.wallNanos[phase.ordinal()];
+    }
+
+    /**
+     * @return The CPU time charged to {@code phase}, in nanoseconds.
+     */
+    public long getCpuNanos(Phase phase) {
+        return this.cpuNanos[phase.ordinal()];
+    }
+
+    /**
+     * @return The bytes allocated charged to {@code phase}.
+     */
+    public long getAllocatedBytes(Phase phase) {
+        return this.allocated[phase.ordinal()];
+    }
+
+    /**
+     * @return The wall time of every phase, in nanoseconds.
+     */
+    public long getTotalWallNanos() {
+        long total = 0;
+
+        for (long nanos : this.wallNanos) {
+            total += nanos;
+        }
+
+        return total;
+    }
+
+    /**
+     * @return The number of words emitted.
+     */
+    public int getWords() {
+        return this.words;
+    }
+
+    /**
+     * @return The peak heap usage since this object was created, in bytes.
+     */
+    public long getPeakHeapBytes() {
+        long peak = 0;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        return peak;
+    }
+
+    private double linesPerSecond() {
+        long total = getTotalWallNanos();
+
+        return total == 0 ? 0 : this.lines * 1e9 / total;
+    }
+
+    /**
+     * Prints the statistics as a table.
+     *
+     * @param out
+     *            The stream to print to.
+     */
+    public void print(PrintStream out) {
+        out.printf("%-14s %10s %10s %14s%n", "phase", "wall ms", "cpu ms",
+                "allocated KB");
+
+        for (Phase phase : Phase.values()) {
+            out.printf("%-14s %10.3f %10.3f %14.1f%n", phase.getLabel(),
+                    getWallNanos(phase) / 1e6, getCpuNanos(phase) / 1e6,
+                    getAllocatedBytes(phase) / 1024.0);
+        }
+
+        out.printf("%-14s %10.3f%n", "total", getTotalWallNanos() / 1e6);
+        out.printf("lines: %d (%.0f lines/s), words emitted: %d, "
+                + "symbols: %d, literals: %d, peak heap: %.1f MB%n",
+                this.lines, linesPerSecond(), this.words, this.symbols,
+                this.literals, getPeakHeapBytes() / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Returns the statistics as a JSON object.
+     *
+     * @return The JSON text.
+     */
+    public String toJson() {
+        Map<String, Object> stats = new LinkedHashMap<String, Object>();
+        Map<String, Object> phases = new LinkedHashMap<String, Object>();
+
+        for (Phase phase : Phase.values()) {
+            Map<String, Object> times = new LinkedHashMap<String, Object>();
+
+            times.put("wallNanos", getWallNanos(phase));
+            times.put("cpuNanos", getCpuNanos(phase));
+            times.put("allocatedBytes", getAllocatedBytes(phase));
+            phases.put(phase.name().toLowerCase(), times);
+        }
+
+        stats.put("phases", phases);
+        stats.put("totalWallNanos", getTotalWallNanos());
+        stats.put("lines", (long) this.lines);
+        stats.put("linesPerSecond", linesPerSecond());
+        stats.put("wordsEmitted", (long) this.words);
+        stats.put("symbols", (long) this.symbols);
+        stats.put("literals", (long) this.literals);
+        stats.put("peakHeapBytes", getPeakHeapBytes());
+
+        return Json.write(stats);
+    }
+}
@@ -0,0 +1,86 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class AssemblyStatsTest {
+    /**
+     * Checking: A nested phase pauses the one it runs inside.
+     */
+    @Test
+    public void nestedPhasesAreExclusive() throws InterruptedException {
+        AssemblyStats stats = new AssemblyStats();
+
+        stats.start(Phase.PASS_2);
+        Thread.sleep(20);
+        stats.start(Phase.OBJECT_WRITE);
+        Thread.sleep(200);
+        stats.stop(Phase.OBJECT_WRITE);
+        stats.stop(Phase.PASS_2);
+
+        long pass2 = stats.getWallNanos(Phase.PASS_2);
+        long write = stats.getWallNanos(Phase.OBJECT_WRITE);
+
+        assertTrue(pass2 >= 20000000L && pass2 < 200000000L);
+        assertTrue(write >= 200000000L);
+        assertEquals(pass2 + write, stats.getTotalWallNanos());
+    }
+
+    /**
+     * Checking: The counts and every phase appear in the JSON report.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void reportsCounts() throws Exception {
+        String source =
+                new WorkloadGenerator().withLines(200).withLiterals(3)
+                        .generate();
+        AssemblyStats stats = new AssemblyStats();
+        Program program =
+                new ParserImp2(null, stats).parse(new BufferedReader(
+                        new StringReader(source)), 1000);
+        List<OutputSink> sinks = new ArrayList<OutputSink>();
+
+        stats.count(program, 204);
+        sinks.add(stats.timed(new ListingSink(new StringWriter()),
+                Phase.LISTING_WRITE));
+        sinks.add(stats.counter());
+        stats.start(Phase.PASS_2);
+        new AssemblerImp().assemble(program, sinks);
+        stats.stop(Phase.PASS_2);
+
+        StringWriter object = new StringWriter();
+        ObjectImage image =
+                new AssemblerImp().assemble(new BufferedWriter(object), null,
+                        new ParserImp2().parse(new BufferedReader(
+                                new StringReader(source)), 1000));
+        int textRecords = 0;
+
+        for (String line : object.toString().split("\n")) {
+            if (line.startsWith("T")) {
+                ++textRecords;
+            }
+        }
+
+        assertTrue(image != null);
+        assertEquals(textRecords, stats.getWords());
+
+        Map<String, Object> json =
+                (Map<String, Object>) Json.parse(stats.toJson());
+
+        assertEquals(204L, json.get("lines"));
+        assertEquals(3L, json.get("literals"));
+        assertEquals(Phase.values().length, ((Map<String, Object>) json
+                .get("phases")).size());
+    }
+}
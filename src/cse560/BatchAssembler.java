@@ -0,0 +1,567 @@
+package cse560;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Assembles many source files in one JVM, several at a time.
+ * <p>
+ * Each source file {@code dir/name.ext} produces an object file
+ * {@code name.obj} and a listing {@code name.lst}, written next to the source
+ * or into a common output directory. Files are handed to a fixed pool of
+ * threads largest first, so that one long file started last does not extend
+ * the batch after every other thread has gone idle.
+ * <p>
+ * Fatal assembly errors, I/O errors and any other exception a file raises
+ * are recorded against that file and the batch carries on. Sources whose
+ * outputs would have the same name, such as {@code a/x.asm} and
+ * {@code b/x.asm} written into one output directory, stop the batch before
+ * it starts. Every file, and the queue of files
+ * waiting for a thread, is counted in {@link AssemblerMetricsImp#GLOBAL}.
+ *
+ * @author Igor Tolkachev
+ */
+public final class BatchAssembler {
+    /** Extension of the object files written by a batch. */
+    public static final String OBJECT_EXTENSION = ".obj";
+
+    /** Extension of the listings written by a batch. */
+    public static final String LISTING_EXTENSION = ".lst";
+
+    /** Extensions of the files taken from a directory given as input. */
+    private static final String[] SOURCE_EXTENSIONS = {".asm", ".txt" };
+
+    /**
+     * The outcome of assembling one file of a batch.
+     */
+    public static final class Result {
+        /** The source file. */
+        private final File source;
+
+        /** The object file written. */
+        private final File objectFile;
+
+        /** The listing written. */
+        private final File listingFile;
+
+        /**
+         * The assembled segment, or null on error or when taken from the
+         * cache.
+         */
+        private final ObjectImage image;
+
+        /** True iff the outputs were taken from the build cache. */
+        private final boolean cached;
+
+        /** Time taken to assemble the file, in nanoseconds. */
+        private final long elapsed;
+
+        /** The error that stopped the file, or null. */
+        private final Exception error;
+
+        Result(File source, File objectFile, File listingFile,
+                ObjectImage image, boolean cached, long elapsed,
+                Exception error) {
+            this.source = source;
+            this.cached = cached;
+            this.objectFile = objectFile;
+            this.listingFile = listingFile;
+            this.image = image;
+            this.elapsed = elapsed;
+            this.error = error;
+        }
+
+        public File getSource() {
+            return this.source;
+        }
+
+        public File getObjectFile() {
+            return this.objectFile;
+        }
+
+        public File getListingFile() {
+            return this.listingFile;
+        }
+
+        /**
+         * Returns the length of the assembled segment in words.
+         *
+         * @return The length, or -1 if the file failed or its outputs were
+         *         taken from the cache.
+         */
+        public int getLength() {
+            return this.image == null ? -1 : this.image.getLength();
+        }
+
+        /**
+         * Returns the assembled segment, e.g. to read its entry and external
+         * symbols.
+         *
+         * @return The segment, or null if the file failed or its outputs
+         *         were taken from the cache.
+         */
+        public ObjectImage getImage() {
+            return this.image;
+        }
+
+        /**
+         * @return True iff the outputs were taken from the build cache.
+         */
+        public boolean isCached() {
+            return this.cached;
+        }
+
+        public long getElapsedNanos() {
+            return this.elapsed;
+        }
+
+        /**
+         * Returns the error that stopped this file.
+         *
+         * @return The {@link IOException} or {@link AssemblerException}, or
+         *         null if the file was assembled.
+         */
+        public Exception getError() {
+            return this.error;
+        }
+
+        public boolean succeeded() {
+            return this.error == null;
+        }
+    }
+
+    /** The settings shared by every file of the batch. */
+    private final AssemblyContext context;
+
+    /** Number of files assembled at once. */
+    private final int threads;
+
+    /** Directory to write outputs to, or null to write beside each source. */
+    private final File outputDirectory;
+
+    /** Cache of outputs from earlier builds, or null. */
+    private final BuildCache cache;
+
+    /**
+     * Initializes a batch assembler.
+     * <p>
+     * <b>Requires:</b> {@code threads > 0}
+     *
+     * @param context
+     *            The settings shared by every file of the batch.
+     * @param threads
+     *            The number of files to assemble at once.
+     * @param outputDirectory
+     *            The directory to write outputs to, or null to write each
+     *            file's outputs beside it.
+     */
+    public BatchAssembler(AssemblyContext context, int threads,
+            File outputDirectory) {
+        this(context, threads, outputDirectory, null);
+    }
+
+    /**
+     * Initializes a batch assembler that reuses outputs from {@code cache}
+     * for files that have not changed and stores the outputs of those that
+     * have.
+     * <p>
+     * <b>Requires:</b> {@code threads > 0}
+     *
+     * @param context
+     *            The settings shared by every file of the batch.
+     * @param threads
+     *            The number of files to assemble at once.
+     * @param outputDirectory
+     *            The directory to write outputs to, or null to write each
+     *            file's outputs beside it.
+     * @param cache
+     *            The build cache, or null to assemble every file.
+     */
+    public BatchAssembler(AssemblyContext context, int threads,
+            File outputDirectory, BuildCache cache) {
+        this.context = context;
+        this.threads = threads;
+        this.outputDirectory = outputDirectory;
+        this.cache = cache;
+    }
+
+    /**
+     * Expands file names, directories and glob patterns into a list of source
+     * files. A directory stands for the files directly inside it with one of
+     * the {@code SOURCE_EXTENSIONS}. A pattern may use {@code *} and
+     * {@code ?} in its last component only, e.g. {@code src/*.asm}. Each
+     * file appears once, in the order first named.
+     *
+     * @param inputs
+     *            The names given on the command line.
+     * @return The source files.
+     * @throws IOException
+     *             If an input names nothing that exists.
+     */
+    public static List<File> expand(List<String> inputs) throws IOException {
+        Set<File> files = new LinkedHashSet<File>();
+
+        for (String input : inputs) {
+            File file = new File(input);
+
+            if (file.isDirectory()) {
+                files.addAll(list(file, null));
+            } else if (file.isFile()) {
+                files.add(file);
+            } else if (isPattern(file.getName())) {
+                File parent = file.getParentFile();
+                List<File> matches =
+                        list(parent == null ? new File(".") : parent,
+                                globToRegex(file.getName()));
+
+                if (matches.isEmpty()) {
+                    throw new IOException("No files match " + input);
+                }
+
+                files.addAll(matches);
+            } else {
+                throw new IOException("No such file: " + input);
+            }
+        }
+
+        return new ArrayList<File>(files);
+    }
+
+    /**
+     * Returns true iff {@code name} contains a glob wildcard.
+     */
+    public static boolean isPattern(String name) {
+        return name.indexOf('*') >= 0 || name.indexOf('?') >= 0;
+    }
+
+    /**
+     * Returns the files in {@code directory} whose names match
+     * {@code pattern}, or, if {@code pattern} is null, end in one of the
+     * {@code SOURCE_EXTENSIONS}, sorted by name.
+     */
+    private static List<File> list(File directory, Pattern pattern) {
+        File[] entries = directory.listFiles();
+        List<File> files = new ArrayList<File>();
+
+        if (entries == null) {
+            return files;
+        }
+
+        Arrays.sort(entries);
+
+        for (File entry : entries) {
+            if (!entry.isFile()) {
+                continue;
+            }
+
+            if (pattern != null ? pattern.matcher(entry.getName()).matches()
+                    : hasSourceExtension(entry.getName())) {
+                files.add(entry);
+            }
+        }
+
+        return files;
+    }
+
+    private static boolean hasSourceExtension(String name) {
+        for (String extension : SOURCE_EXTENSIONS) {
+            if (name.toLowerCase().endsWith(extension)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Converts a glob of {@code *} and {@code ?} wildcards to a regular
+     * expression.
+     */
+    private static Pattern globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int start = 0;
+
+        for (int i = 0; i < glob.length(); ++i) {
+            char c = glob.charAt(i);
+
+            if (c == '*' || c == '?') {
+                if (i > start) {
+                    regex.append(Pattern.quote(glob.substring(start, i)));
+                }
+
+                regex.append(c == '*' ? ".*" : ".");
+                start = i + 1;
+            }
+        }
+
+        if (start < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(start)));
+        }
+
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Returns the output file of {@code source} with the given extension.
+     *
+     * @param source
+     *            The source file.
+     * @param extension
+     *            The extension of the output, including the dot.
+     * @return {@code source} with its extension replaced, in the output
+     *         directory if there is one.
+     */
+    public File outputFor(File source, String extension) {
+        String name = source.getName();
+        int dot = name.lastIndexOf('.');
+
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+
+        File directory =
+                this.outputDirectory != null ? this.outputDirectory : source
+                        .getAbsoluteFile().getParentFile();
+
+        return new File(directory, name + extension);
+    }
+
+    /**
+     * Checks that no two of {@code sources} write the same output file.
+     *
+     * @param sources
+     *            The source files.
+     * @throws AssemblerException
+     *             If two sources share an output file.
+     */
+    public void checkOutputs(List<File> sources) {
+        Map<File, File> writers = new HashMap<File, File>();
+
+        for (File source : sources) {
+            File output =
+                    outputFor(source, OBJECT_EXTENSION).getAbsoluteFile();
+            File other = writers.put(output, source);
+
+            if (other != null && !other.getAbsoluteFile().equals(
+                    source.getAbsoluteFile())) {
+                ErrorHandler.fatalError(other.getPath() + " and "
+                        + source.getPath() + " would both write "
+                        + outputFor(source, ".*").getPath(), 205);
+            }
+        }
+    }
+
+    /**
+     * Assembles every file in {@code sources}.
+     * <p>
+     * <b>Ensures:</b> the results are in the same order as {@code sources}.
+     *
+     * @param sources
+     *            The source files.
+     * @return The result of each file.
+     * @throws AssemblerException
+     *             If two sources share an output file.
+     */
+    public List<Result> assemble(final List<File> sources) {
+        checkOutputs(sources);
+
+        Integer[] order = new Integer[sources.size()];
+
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long difference =
+                        sources.get(b).length() - sources.get(a).length();
+
+                return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+            }
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+        List<Future<Result>> futures = new ArrayList<Future<Result>>();
+
+        try {
+            for (final int index : order) {
+                AssemblerMetricsImp.GLOBAL.queued(1);
+                futures.add(pool.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        AssemblerMetricsImp.GLOBAL.queued(-1);
+
+                        return assembleOne(BatchAssembler.this.context
+                                .forSource(sources.get(index)));
+                    }
+                }));
+            }
+
+            Result[] results = new Result[order.length];
+
+            for (int i = 0; i < order.length; ++i) {
+                results[order[i]] = get(futures.get(i));
+            }
+
+            return Arrays.asList(results);
+        } finally {
+            // Jobs that never started are no longer waiting.
+            AssemblerMetricsImp.GLOBAL.queued(-pool.shutdownNow().size());
+        }
+    }
+
+    /**
+     * Waits for a result.
+     */
+    private static Result get(Future<Result> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            // assembleOne records every exception but errors.
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Assembles one file of the batch.
+     */
+    private Result assembleOne(AssemblyContext context) {
+        AssemblerMetricsImp.Job metrics =
+                AssemblerMetricsImp.GLOBAL.startJob(context);
+        AssemblyContext job = metrics.getContext();
+        File source = job.getSourceFile();
+        File objectFile = outputFor(source, OBJECT_EXTENSION);
+        File listingFile = outputFor(source, LISTING_EXTENSION);
+        long start = System.nanoTime();
+
+        try {
+            byte[] bytes = BuildCache.readBytes(source);
+            String key = null;
+
+            if (this.cache != null) {
+                key = BuildCache.key(bytes, job);
+
+                if (this.cache.fetch(key, objectFile, listingFile)) {
+                    metrics.ended(true);
+
+                    return new Result(source, objectFile, listingFile, null,
+                            true, System.nanoTime() - start, null);
+                }
+            }
+
+            Governor governor = new Governor(job);
+            Parser parser = job.getParser().create(job, governor, null);
+            Program program =
+                    parser.parse(new BufferedReader(new InputStreamReader(
+                            new ByteArrayInputStream(bytes))), job
+                            .getMaxRecords());
+
+            BufferedWriter object =
+                    new BufferedWriter(new FileWriter(objectFile));
+            BufferedWriter listing =
+                    new BufferedWriter(new FileWriter(listingFile));
+            ObjectImage image;
+
+            try {
+                image =
+                        new AssemblerImp(job.getDialect(), governor,
+                                job.getListener()).assemble(object, listing,
+                                program);
+            } finally {
+                object.close();
+                listing.close();
+            }
+
+            if (this.cache != null) {
+                this.cache.store(key, objectFile, listingFile);
+            }
+
+            metrics.ended(true);
+
+            return new Result(source, objectFile, listingFile, image,
+                    false, System.nanoTime() - start, null);
+        } catch (IOException e) {
+            return new Result(source, objectFile, listingFile, null, false,
+                    System.nanoTime() - start, e);
+        } catch (AssemblerException e) {
+            return new Result(source, objectFile, listingFile, null, false,
+                    System.nanoTime() - start, e);
+        } catch (RuntimeException e) {
+            // A parser that fails on malformed input must fail this file
+            // alone.
+            return new Result(source, objectFile, listingFile, null, false,
+                    System.nanoTime() - start, new AssemblerException(
+                            "Could not assemble: " + e, 0));
+        } finally {
+            // Does nothing if the job succeeded.
+            metrics.ended(false);
+        }
+    }
+
+    /**
+     * Prints one line per file and a total line.
+     *
+     * @param out
+     *            The stream to print to.
+     * @param results
+     *            The results of a batch.
+     * @param wallNanos
+     *            The time the whole batch took, in nanoseconds.
+     */
+    public static void printSummary(PrintStream out, List<Result> results,
+            long wallNanos) {
+        int failed = 0;
+        long words = 0;
+        long busy = 0;
+
+        for (Result result : results) {
+            if (result.isCached()) {
+                out.printf("  hit   %-40s %12s %9.2f ms%n", result.getSource()
+                        .getPath(), "(cached)", result.getElapsedNanos() / 1e6);
+            } else if (result.succeeded()) {
+                out.printf("  ok    %-40s %6d words %9.2f ms%n", result
+                        .getSource().getPath(), result.getLength(), result
+                        .getElapsedNanos() / 1e6);
+                words += result.getLength();
+            } else {
+                Exception error = result.getError();
+
+                out.printf("  FAIL  %-40s %s%n", result.getSource().getPath(),
+                        error instanceof AssemblerException
+                                ? ((AssemblerException) error).toDiagnostic()
+                                : error.getMessage());
+                ++failed;
+            }
+
+            busy += result.getElapsedNanos();
+        }
+
+        out.printf("%d files, %d failed, %d words in %.2f ms "
+                + "(%.2f ms of assembly)%n", results.size(), failed, words,
+                wallNanos / 1e6, busy / 1e6);
+    }
+}
@@ -0,0 +1,150 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BatchAssemblerTest {
+
+    /**
+     * Checking: Directories and patterns expand to the matching files.
+     */
+    @Test
+    public void expandsDirectoriesAndPatterns() throws IOException {
+        File dir = TestFiles.tempDirectory();
+        File a = TestFiles.write(dir, "a.asm", TestFiles.source("A", 1));
+        File b = TestFiles.write(dir, "b.txt", TestFiles.source("B", 1));
+        TestFiles.write(dir, "notes.md", "");
+
+        assertEquals(Arrays.asList(a, b), BatchAssembler.expand(Arrays
+                .asList(dir.getPath())));
+        assertEquals(Arrays.asList(a), BatchAssembler.expand(Arrays
+                .asList(new File(dir, "*.asm").getPath())));
+        assertEquals(Arrays.asList(b, a), BatchAssembler.expand(Arrays.asList(
+                b.getPath(), new File(dir, "?.*").getPath())));
+    }
+
+    /**
+     * Checking: Files of different sizes assembled on several threads give
+     * the same outputs as one at a time, with results in input order.
+     */
+    @Test
+    public void matchesSequentialOutput() throws IOException {
+        File dir = TestFiles.tempDirectory();
+        File out = TestFiles.tempDirectory();
+        String[] sources = new String[12];
+        File[] files = new File[sources.length];
+
+        for (int i = 0; i < sources.length; ++i) {
+            sources[i] =
+                    TestFiles.source("Seg" + i, 50 * ((i * 7) % sources
+                            .length));
+            files[i] = TestFiles.write(dir, "seg" + i + ".asm", sources[i]);
+        }
+
+        List<BatchAssembler.Result> results =
+                new BatchAssembler(new AssemblyContext(null, 100000,
+                        AssemblyContext.DEFAULT_MAX_SYMBOLS,
+                        AssemblyContext.DEFAULT_MAX_LITERALS,
+                        ObjectDialect.CLASSIC), 4, out)
+                        .assemble(Arrays.asList(files));
+
+        assertEquals(sources.length, results.size());
+
+        for (int i = 0; i < sources.length; ++i) {
+            BatchAssembler.Result result = results.get(i);
+            StringWriter object = new StringWriter();
+            StringWriter listing = new StringWriter();
+            new AssemblerImp().assemble(new BufferedWriter(object),
+                    new BufferedWriter(listing), new ParserImp2().parse(
+                            new BufferedReader(new StringReader(sources[i])),
+                            100000));
+
+            assertTrue(result.succeeded());
+            assertEquals(files[i], result.getSource());
+            assertEquals(new File(out, "seg" + i + ".obj"), result
+                    .getObjectFile());
+            assertEquals(object.toString(), TestFiles.read(result
+                    .getObjectFile()));
+            assertEquals(listing.toString(), TestFiles.read(result
+                    .getListingFile()));
+        }
+    }
+
+    /**
+     * Checking: A parser that crashes on one file fails that file alone.
+     */
+    @Test
+    public void crashFailsOneFile() throws IOException {
+        File dir = TestFiles.tempDirectory();
+        File bad = TestFiles.write(dir, "bad.asm", "Prog     .ORIG\n");
+        File good =
+                TestFiles.write(dir, "good.asm", "Good     .ORIG   x1000\n"
+                        + "Begin    ADD     R1,R1,#1\n"
+                        + "         .END    Begin\n");
+
+        List<BatchAssembler.Result> results =
+                new BatchAssembler(AssemblyContext.DEFAULT
+                        .withParser(ParserStrategy.REGEX), 2, dir)
+                        .assemble(Arrays.asList(bad, good));
+
+        assertFalse(results.get(0).succeeded());
+        assertEquals(0, ((AssemblerException) results.get(0).getError())
+                .getErrorNumber());
+        assertTrue(String.valueOf(results.get(1).getError()), results.get(1)
+                .succeeded());
+        TestFiles.read(results.get(1).getObjectFile());
+        TestFiles.read(results.get(1).getListingFile());
+    }
+
+    /**
+     * Checking: Sources that would write the same outputs stop the batch
+     * before anything is written.
+     */
+    @Test
+    public void rejectsSharedOutputs() throws IOException {
+        File dir = TestFiles.tempDirectory();
+        File out = TestFiles.tempDirectory();
+        File a = new File(dir, "a");
+        File b = new File(dir, "b");
+        a.mkdir();
+        b.mkdir();
+        a.deleteOnExit();
+        b.deleteOnExit();
+
+        List<File> sources =
+                Arrays.asList(TestFiles.write(a, "x.asm", TestFiles.source(
+                        "A", 1)), TestFiles.write(b, "x.asm", TestFiles.source(
+                        "B", 1)));
+
+        try {
+            new BatchAssembler(AssemblyContext.DEFAULT, 2, out)
+                    .assemble(sources);
+            fail();
+        } catch (AssemblerException e) {
+            assertEquals(205, e.getErrorNumber());
+        }
+
+        assertEquals(0, out.list().length);
+
+        // Beside their sources, they do not collide.
+        assertEquals(2, new BatchAssembler(AssemblyContext.DEFAULT, 2, null)
+                .assemble(sources).size());
+        new File(a, "x.obj").deleteOnExit();
+        new File(a, "x.lst").deleteOnExit();
+        new File(b, "x.obj").deleteOnExit();
+        new File(b, "x.lst").deleteOnExit();
+    }
+}
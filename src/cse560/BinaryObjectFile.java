@@ -0,0 +1,394 @@
+package cse560;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+
+/**
+ * Reads and writes the compact binary form of an MMXI object file. All
+ * multi-byte values are little-endian.
+ *
+ * <h1>Layout</h1>
+ *
+ * <pre>
+ * offset  size        contents
+ * 0       4           magic "MMXO"
+ * 4       2           format version (1)
+ * 6       2           flags (bit 0: relocatable)
+ * 8       6           segment name, ASCII, space-padded
+ * 14      2           first address
+ * 16      2           length in words (L)
+ * 18      2           execution address
+ * 20      2           number of entry symbols (N)
+ * 22      2           number of external symbols (X)
+ * 24      2           number of external references (R)
+ * 26      6           reserved (zero)
+ * 32      2L          words of the segment
+ * ...     3 * ceil(L/8) bitmaps: loaded, relative, relative-nine-bit
+ * ...     N entries   length-prefixed name, value (2), flags (1, bit 0: relative)
+ * ...     X names     length-prefixed name
+ * ...     6R          offset (2), field length (1), reserved (1), symbol index (2)
+ * </pre>
+ * <p>
+ * Bit {@code i} of a bitmap describes the word at offset {@code i} and is
+ * stored in bit {@code i % 8} of byte {@code i / 8}. The words begin at a fixed
+ * offset, so a loader can map the file and view them directly as a
+ * {@link ShortBuffer}.
+ * <p>
+ * Note that this class violates this project's typical rule to have an
+ * interface for every component, since every method is a class method.
+ *
+ * @author Igor Tolkachev
+ */
+public final class BinaryObjectFile {
+    /** The first four bytes of every binary object file. */
+    private static final byte[] MAGIC = {'M', 'M', 'X', 'O' };
+
+    /** The format version written by this class. */
+    private static final int VERSION = 1;
+
+    /** Size of the fixed header in bytes. */
+    public static final int HEADER_SIZE = 32;
+
+    /** Length of the segment name field. */
+    private static final int NAME_LENGTH = 6;
+
+    /** Flag bit indicating a relocatable segment. */
+    private static final int FLAG_RELOCATABLE = 1;
+
+    /** Size of one external reference in bytes. */
+    private static final int REFERENCE_SIZE = 6;
+
+    /** Character set of segment and symbol names. */
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * Writes {@code image} to {@code out} in binary form.
+     *
+     * @param image
+     *            The segment to write.
+     * @param out
+     *            The stream to write to. It is not closed.
+     * @throws IOException
+     *             If {@code out} cannot be written, or the segment is longer
+     *             than its 16-bit length field can hold.
+     */
+    public static void write(ObjectImage image, OutputStream out)
+            throws IOException {
+        int length = image.getLength();
+
+        // A segment filling all of memory is 0x10000 words, which the length
+        // field would silently record as 0.
+        if (length > 0xffff) {
+            throw new IOException("Segment of " + length
+                    + " words is too long for a binary object file");
+        }
+
+        int first = image.getFirstAddress();
+        int bitmapSize = bitmapSize(length);
+        List<String> externals =
+                new ArrayList<String>(image.getExternalSymbols());
+
+        // ...Collect external references and the relocation bitmaps
+
+        byte[] loaded = new byte[bitmapSize];
+        byte[] relative = new byte[bitmapSize];
+        byte[] nineBit = new byte[bitmapSize];
+        List<Integer> references = new ArrayList<Integer>();
+
+        for (int offset = 0; offset < length; ++offset) {
+            if (!image.isLoaded(first + offset)) {
+                continue;
+            }
+
+            Relocation relocation = image.getRelocation(first + offset);
+
+            setBit(loaded, offset);
+
+            if (relocation.isRelative()) {
+                setBit(relative, offset);
+            }
+
+            if (relocation.getKind() == Relocation.Kind.RELATIVE9) {
+                setBit(nineBit, offset);
+            } else if (relocation.getKind() == Relocation.Kind.EXTERNAL) {
+                if (!externals.contains(relocation.getSymbol())) {
+                    externals.add(relocation.getSymbol());
+                }
+
+                references.add(offset);
+            }
+        }
+
+        // ...Write the header and words
+
+        ByteBuffer buffer =
+                ByteBuffer.allocate(HEADER_SIZE + 2 * length + 3 * bitmapSize)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.put(MAGIC);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) (image.isRelocatable() ? FLAG_RELOCATABLE : 0));
+        buffer.put(pad(image.getSegmentName()));
+        buffer.putShort((short) first);
+        buffer.putShort((short) length);
+        buffer.putShort((short) image.getExecAddress());
+        buffer.putShort((short) image.getEntrySymbols().size());
+        buffer.putShort((short) externals.size());
+        buffer.putShort((short) references.size());
+        buffer.position(HEADER_SIZE);
+
+        for (int offset = 0; offset < length; ++offset) {
+            buffer.putShort((short) image.getWord(first + offset));
+        }
+
+        buffer.put(loaded).put(relative).put(nineBit);
+        out.write(buffer.array());
+
+        // ...Write the symbol tables
+
+        int tablesSize = references.size() * REFERENCE_SIZE;
+
+        for (String symbol : image.getEntrySymbols()) {
+            tablesSize += 1 + symbol.length() + 3;
+        }
+
+        for (String symbol : externals) {
+            tablesSize += 1 + symbol.length();
+        }
+
+        ByteBuffer tables =
+                ByteBuffer.allocate(tablesSize).order(ByteOrder.LITTLE_ENDIAN);
+
+        for (String symbol : image.getEntrySymbols()) {
+            putName(tables, symbol);
+            tables.putShort((short) image.getEntryValue(symbol));
+            tables.put((byte) (image.isEntryRelative(symbol) ? 1 : 0));
+        }
+
+        for (String symbol : externals) {
+            putName(tables, symbol);
+        }
+
+        for (int offset : references) {
+            Relocation relocation = image.getRelocation(first + offset);
+
+            tables.putShort((short) offset);
+            tables.put((byte) relocation.getFieldLength());
+            tables.put((byte) 0);
+            tables.putShort((short) externals.indexOf(relocation.getSymbol()));
+        }
+
+        out.write(tables.array());
+    }
+
+    /**
+     * Reads a binary object file by mapping it into memory.
+     *
+     * @param file
+     *            The file to read.
+     * @return The segment the file describes.
+     * @throws IOException
+     *             If the file cannot be read.
+     * @throws DataFormatException
+     *             If the file is not a valid binary object file.
+     */
+    public static ObjectImage read(File file) throws IOException,
+            DataFormatException {
+        FileInputStream in = new FileInputStream(file);
+
+        try {
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel
+                            .size());
+
+            return read(buffer);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads a binary object file from {@code buffer}, starting at its current
+     * position.
+     *
+     * @param buffer
+     *            The contents of a binary object file.
+     * @return The segment the buffer describes.
+     * @throws DataFormatException
+     *             If the buffer does not hold a valid binary object file.
+     */
+    public static ObjectImage read(ByteBuffer buffer)
+            throws DataFormatException {
+        ByteBuffer in = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            // ...Read the header
+
+            byte[] magic = new byte[MAGIC.length];
+            in.get(magic);
+
+            for (int i = 0; i < MAGIC.length; ++i) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new DataFormatException("Not a binary object file");
+                }
+            }
+
+            if (in.getShort() != VERSION) {
+                throw new DataFormatException(
+                        "Unsupported binary object version");
+            }
+
+            int flags = in.getShort();
+            byte[] name = new byte[NAME_LENGTH];
+            in.get(name);
+            int first = in.getShort() & 0xffff;
+            int length = in.getShort() & 0xffff;
+            int execAddress = in.getShort() & 0xffff;
+            int entryCount = in.getShort() & 0xffff;
+            int externalCount = in.getShort() & 0xffff;
+            int referenceCount = in.getShort() & 0xffff;
+
+            ObjectImage image =
+                    new ObjectImage(new String(name, ASCII).trim(), first,
+                            length);
+            image.isRelocatable((flags & FLAG_RELOCATABLE) != 0);
+            image.setExecAddress(execAddress);
+
+            // ...Read the words and bitmaps
+
+            int bitmapSize = bitmapSize(length);
+            short[] words = new short[length];
+            byte[] loaded = new byte[bitmapSize];
+            byte[] relative = new byte[bitmapSize];
+            byte[] nineBit = new byte[bitmapSize];
+
+            in.position(HEADER_SIZE);
+            in.asShortBuffer().get(words);
+            in.position(HEADER_SIZE + 2 * length);
+            in.get(loaded).get(relative).get(nineBit);
+
+            // ...Read the symbol tables
+
+            for (int i = 0; i < entryCount; ++i) {
+                String symbol = getName(in);
+                int value = in.getShort() & 0xffff;
+
+                image.addEntrySymbol(symbol, value, (in.get() & 1) != 0);
+            }
+
+            String[] externals = new String[externalCount];
+
+            for (int i = 0; i < externalCount; ++i) {
+                externals[i] = getName(in);
+                image.addExternalSymbol(externals[i]);
+            }
+
+            Relocation[] references = new Relocation[length];
+
+            for (int i = 0; i < referenceCount; ++i) {
+                int offset = in.getShort() & 0xffff;
+                int fieldLength = in.get();
+                in.get();
+                int symbol = in.getShort() & 0xffff;
+
+                if (offset >= length || symbol >= externalCount) {
+                    throw new DataFormatException(
+                            "External reference out of range");
+                }
+
+                references[offset] =
+                        Relocation.external(fieldLength, externals[symbol]);
+            }
+
+            // ...Assign the loaded words
+
+            for (int offset = 0; offset < length; ++offset) {
+                if (!getBit(loaded, offset)) {
+                    continue;
+                }
+
+                Relocation relocation = Relocation.NONE;
+
+                if (references[offset] != null) {
+                    relocation = references[offset];
+                } else if (getBit(relative, offset)) {
+                    relocation =
+                            getBit(nineBit, offset) ? Relocation.M1
+                                    : Relocation.M0;
+                }
+
+                image.setWord(first + offset, words[offset], relocation);
+            }
+
+            return image;
+        } catch (RuntimeException e) {
+            // BufferUnderflowException, IllegalArgumentException, etc.
+            throw new DataFormatException("Truncated binary object file");
+        }
+    }
+
+    /**
+     * Returns the number of bytes in a bitmap of {@code length} bits.
+     */
+    private static int bitmapSize(int length) {
+        return (length + 7) / 8;
+    }
+
+    private static void setBit(byte[] bitmap, int index) {
+        bitmap[index >> 3] |= 1 << (index & 7);
+    }
+
+    private static boolean getBit(byte[] bitmap, int index) {
+        return (bitmap[index >> 3] & (1 << (index & 7))) != 0;
+    }
+
+    /**
+     * Returns {@code name} as ASCII, padded with spaces to the length of the
+     * segment name field.
+     */
+    private static byte[] pad(String name) {
+        byte[] padded = String.format("%-6s", name).getBytes(ASCII);
+        byte[] field = new byte[NAME_LENGTH];
+
+        System.arraycopy(padded, 0, field, 0, NAME_LENGTH);
+
+        return field;
+    }
+
+    /**
+     * Writes {@code name} as a one-byte length followed by its ASCII
+     * characters.
+     */
+    private static void putName(ByteBuffer buffer, String name) {
+        byte[] bytes = name.getBytes(ASCII);
+
+        buffer.put((byte) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getName(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.get() & 0xff];
+        buffer.get(bytes);
+
+        return new String(bytes, ASCII);
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private BinaryObjectFile() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,129 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+
+import org.junit.Test;
+
+public class BinaryObjectFileTest {
+    /**
+     * Builds a small relocatable image using every kind of relocation.
+     */
+    private static ObjectImage sampleImage() {
+        ObjectImage image = new ObjectImage("Reloc", 0, 12);
+
+        image.isRelocatable(true);
+        image.setExecAddress(1);
+        image.addEntrySymbol("Start", 1, true);
+        image.addEntrySymbol("Size", 12, false);
+        image.addExternalSymbol("Print");
+
+        image.setWord(0, 0x0004, Relocation.NONE);
+        image.setWord(1, 0x2000, Relocation.M1);
+        image.setWord(2, 0x7141, Relocation.M0);
+        image.setWord(3, 0x4800, Relocation.external(9, "Print"));
+        image.setWord(11, 0xffff, Relocation.NONE);
+
+        return image;
+    }
+
+    private static String toText(ObjectImage image) {
+        StringWriter text = new StringWriter();
+        image.writeTo(text, ObjectDialect.CLASSIC);
+
+        return text.toString();
+    }
+
+    /**
+     * Checking: An image survives a trip through the binary format.
+     */
+    @Test
+    public void roundTrip() throws IOException, DataFormatException {
+        ObjectImage image = sampleImage();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        BinaryObjectFile.write(image, out);
+        ObjectImage copy = BinaryObjectFile.read(ByteBuffer.wrap(out
+                .toByteArray()));
+
+        assertEquals(toText(image), toText(copy));
+        assertTrue(copy.isRelocatable());
+        assertEquals(0xffff, copy.getWord(11));
+    }
+
+    /**
+     * Checking: The words begin right after the header, little-endian.
+     */
+    @Test
+    public void wordsAreLittleEndianAfterHeader() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        BinaryObjectFile.write(sampleImage(), out);
+        byte[] bytes = out.toByteArray();
+
+        assertEquals(0x00, bytes[BinaryObjectFile.HEADER_SIZE + 2]);
+        assertEquals(0x20, bytes[BinaryObjectFile.HEADER_SIZE + 3]);
+    }
+
+    /**
+     * Checking: A file can be read through a memory map.
+     */
+    @Test
+    public void readsMappedFile() throws IOException, DataFormatException {
+        File file = File.createTempFile("mmxi", ".bin");
+        file.deleteOnExit();
+
+        FileOutputStream out = new FileOutputStream(file);
+        BinaryObjectFile.write(sampleImage(), out);
+        out.close();
+
+        assertEquals(toText(sampleImage()),
+                toText(BinaryObjectFile.read(file)));
+    }
+
+    /**
+     * Checking: Text that is not a binary object file is rejected.
+     */
+    @Test(expected = DataFormatException.class)
+    public void rejectsTextObjectFile() throws DataFormatException {
+        BinaryObjectFile.read(ByteBuffer.wrap("HLab2EG30B00018\n".getBytes()));
+    }
+
+    /**
+     * Checking: The longest segment the length field holds survives a round
+     * trip, and a segment filling all of memory is refused rather than
+     * written with a length of 0.
+     */
+    @Test
+    public void lengthFieldBoundary() throws IOException, DataFormatException {
+        ObjectImage longest = new ObjectImage("Long", 0, 0xffff);
+        longest.setWord(0xfffe, 0x1234, Relocation.NONE);
+        longest.addEntrySymbol("Last", 0xfffe, false);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryObjectFile.write(longest, out);
+        ObjectImage copy =
+                BinaryObjectFile.read(ByteBuffer.wrap(out.toByteArray()));
+
+        assertEquals(0xffff, copy.getLength());
+        assertEquals(0x1234, copy.getWord(0xfffe));
+        assertEquals(0xfffe, copy.getEntryValue("Last"));
+
+        try {
+            BinaryObjectFile.write(new ObjectImage("Full", 0, 0x10000),
+                    new ByteArrayOutputStream());
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("65536"));
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package cse560;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An on-disk cache of assembly outputs, keyed by the content of the source and
+ * the settings that affect the output.
+ * <p>
+ * Each entry is a pair of files in the cache directory, {@code key.obj} and
+ * {@code key.lst}, where the key is the SHA-256 of {@code CACHE_VERSION}, the
+ * settings of the job and the bytes of the source. Entries are written to a
+ * temporary file and renamed into place, so concurrent jobs never see a
+ * partial entry. A hit copies both files out and marks the entry as recently
+ * used; when a store pushes the cache over its size cap, the least recently
+ * used entries are deleted until it fits.
+ * <p>
+ * <b>Model:</b>
+ * <ul>
+ * <li>{@code File directory} - Where entries are kept.</li>
+ * <li>{@code integer maxBytes} - The size cap of the cache.</li>
+ * <li>{@code integer hits, misses} - The lookups that did and did not find an
+ * entry since this object was created.</li>
+ * </ul>
+ *
+ * @author Igor Tolkachev
+ */
+public final class BuildCache {
+    /**
+     * Version of the outputs. Change it whenever a change to the assembler
+     * alters its output for the same input, so stale entries are never used.
+     */
+    public static final int CACHE_VERSION = 2;
+
+    /** Default size cap: 256 MB. */
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    /** Extension of cached object files. */
+    private static final String OBJECT_EXTENSION = ".obj";
+
+    /** Extension of cached listings. */
+    private static final String LISTING_EXTENSION = ".lst";
+
+    /** Where entries are kept. */
+    private final File directory;
+
+    /** The size cap of the cache in bytes. */
+    private final long maxBytes;
+
+    /** Lookups that found an entry. */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** Lookups that did not find an entry. */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Opens a cache, creating its directory if need be.
+     *
+     * @param directory
+     *            Where entries are kept.
+     * @param maxBytes
+     *            The size cap of the cache in bytes.
+     * @throws IOException
+     *             If the directory cannot be created.
+     */
+    public BuildCache(File directory, long maxBytes) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create cache directory "
+                    + directory);
+        }
+
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the key of a job.
+     *
+     * @param source
+     *            The bytes of the source file.
+     * @param context
+     *            The settings of the job. The source file name is not part of
+     *            the key.
+     * @return The key as lower-case hex.
+     */
+    public static String key(byte[] source, AssemblyContext context) {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256.
+            throw new AssertionError(e);
+        }
+
+        // The parser and the governor's limits decide the listing and which
+        // programs fail, so they are settings as much as the dialect is.
+        ResourceLimits limits = context.getLimits();
+        String settings =
+                String.format("%d|%s|%d|%d|%d|%s|%d|%d|%d|%d|%d%n",
+                        CACHE_VERSION, context.getDialect(), context
+                                .getMaxRecords(), context.getMaxSymbols(),
+                        context.getMaxLiterals(), context.getParser()
+                                .getName(), limits.getMaxSourceLength(),
+                        limits.getMaxLineLength(), limits.getMaxOperands(),
+                        limits.getMaxWords(), limits.getTimeLimitMillis());
+
+        digest.update(settings.getBytes());
+        digest.update(source);
+
+        StringBuilder key = new StringBuilder();
+
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b & 0xff));
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Reads a whole file.
+     *
+     * @param file
+     *            The file to read.
+     * @return Its contents.
+     * @throws IOException
+     *             If the file cannot be read.
+     */
+    public static byte[] readBytes(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        byte[] bytes = new byte[(int) file.length()];
+        int count = 0;
+
+        try {
+            int n;
+
+            while (count < bytes.length
+                    && (n = in.read(bytes, count, bytes.length - count)) > 0) {
+                count += n;
+            }
+        } finally {
+            in.close();
+        }
+
+        return count == bytes.length ? bytes : Arrays.copyOf(bytes, count);
+    }
+
+    /**
+     * Copies the entry for {@code key}, if there is one, to the given files.
+     *
+     * @param key
+     *            The key of the job.
+     * @param objectFile
+     *            Where to put the object file.
+     * @param listingFile
+     *            Where to put the listing.
+     * @return True iff the entry was found and copied.
+     * @throws IOException
+     *             If an output cannot be written.
+     */
+    public boolean fetch(String key, File objectFile, File listingFile)
+            throws IOException {
+        File object = new File(this.directory, key + OBJECT_EXTENSION);
+        File listing = new File(this.directory, key + LISTING_EXTENSION);
+
+        // The entry may be evicted between the check and the copy; treat a
+        // failed copy as a miss.
+        if (object.isFile() && listing.isFile()) {
+            try {
+                copy(object, objectFile);
+                copy(listing, listingFile);
+
+                long now = System.currentTimeMillis();
+                object.setLastModified(now);
+                listing.setLastModified(now);
+
+                this.hits.incrementAndGet();
+                FlightEvents.cacheLookup(true);
+                AssemblerMetricsImp.GLOBAL.cacheLookup(true);
+
+                return true;
+            } catch (IOException e) {
+                if (object.isFile() && listing.isFile()) {
+                    throw e;
+                }
+            }
+        }
+
+        this.misses.incrementAndGet();
+        FlightEvents.cacheLookup(false);
+        AssemblerMetricsImp.GLOBAL.cacheLookup(false);
+
+        return false;
+    }
+
+    /**
+     * Stores the outputs of a job, then evicts old entries if the cache is
+     * over its size cap.
+     *
+     * @param key
+     *            The key of the job.
+     * @param objectFile
+     *            The object file written by the job.
+     * @param listingFile
+     *            The listing written by the job.
+     * @throws IOException
+     *             If the entry cannot be written.
+     */
+    public void store(String key, File objectFile, File listingFile)
+            throws IOException {
+        install(objectFile, new File(this.directory, key + OBJECT_EXTENSION));
+        install(listingFile, new File(this.directory, key + LISTING_EXTENSION));
+
+        evict();
+    }
+
+    /**
+     * Copies {@code from} to a temporary file beside {@code to} and renames
+     * it into place.
+     */
+    private void install(File from, File to) throws IOException {
+        File temp = File.createTempFile("entry", ".tmp", this.directory);
+
+        try {
+            copy(from, temp);
+
+            if (!temp.renameTo(to)) {
+                // Another job stored the same entry first; keep that one.
+                if (!to.isFile()) {
+                    throw new IOException("Could not store cache entry " + to);
+                }
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits under its
+     * size cap.
+     */
+    private synchronized void evict() {
+        File[] files = this.directory.listFiles();
+
+        if (files == null) {
+            return;
+        }
+
+        // ...Group files into entries by key
+
+        Map<String, List<File>> entries = new HashMap<String, List<File>>();
+        final Map<String, Long> lastUsed = new HashMap<String, Long>();
+        long total = 0;
+
+        for (File file : files) {
+            String name = file.getName();
+            int dot = name.lastIndexOf('.');
+
+            if (dot < 0 || !(name.endsWith(OBJECT_EXTENSION)
+                    || name.endsWith(LISTING_EXTENSION))) {
+                continue;
+            }
+
+            String key = name.substring(0, dot);
+
+            if (!entries.containsKey(key)) {
+                entries.put(key, new ArrayList<File>());
+                lastUsed.put(key, file.lastModified());
+            }
+
+            entries.get(key).add(file);
+            lastUsed.put(key, Math.max(lastUsed.get(key), file.lastModified()));
+            total += file.length();
+        }
+
+        if (total <= this.maxBytes) {
+            return;
+        }
+
+        // ...Delete the oldest entries first
+
+        List<String> keys = new ArrayList<String>(entries.keySet());
+        Collections.sort(keys, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                long difference = lastUsed.get(a) - lastUsed.get(b);
+
+                return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+            }
+        });
+
+        for (String key : keys) {
+            if (total <= this.maxBytes) {
+                break;
+            }
+
+            for (File file : entries.get(key)) {
+                long length = file.length();
+
+                if (file.delete()) {
+                    total -= length;
+                }
+            }
+        }
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        FileInputStream in = new FileInputStream(from);
+
+        try {
+            FileOutputStream out = new FileOutputStream(to);
+
+            try {
+                FileChannel source = in.getChannel();
+                long size = source.size();
+                long position = 0;
+
+                while (position < size) {
+                    position +=
+                            source.transferTo(position, size - position, out
+                                    .getChannel());
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return {@code this.hits}
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return {@code this.misses}
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * Prints the hit and miss counters.
+     *
+     * @param out
+     *            The stream to print to.
+     */
+    public void printStatistics(PrintStream out) {
+        long lookups = getHits() + getMisses();
+
+        out.printf("cache: %d hits, %d misses (%.0f%% hit rate)%n", getHits(),
+                getMisses(), lookups == 0 ? 0.0 : 100.0 * getHits() / lookups);
+    }
+}
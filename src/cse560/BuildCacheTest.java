@@ -0,0 +1,82 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class BuildCacheTest {
+
+    /**
+     * Checking: A stored entry is found again under the same key, and the
+     * settings are part of the key.
+     */
+    @Test
+    public void hitsAfterStore() throws IOException {
+        File dir = TestFiles.tempDirectory();
+        BuildCache cache = new BuildCache(new File(dir, "cache"), 1 << 20);
+        byte[] source = "Prog     .ORIG   x3000\n".getBytes();
+        String key = BuildCache.key(source, AssemblyContext.DEFAULT);
+        File object = new File(dir, "a.obj");
+        File listing = new File(dir, "a.lst");
+
+        assertFalse(cache.fetch(key, object, listing));
+
+        cache.store(key, TestFiles.write(dir, "x.obj", "H\n"), TestFiles
+                .write(dir, "x.lst", "listing\n"));
+        assertTrue(cache.fetch(key, object, listing));
+        assertEquals("H\n", new String(BuildCache.readBytes(object)));
+        assertEquals("listing\n", new String(BuildCache.readBytes(listing)));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        AssemblyContext coalesced =
+                new AssemblyContext(null, AssemblyContext.DEFAULT_MAX_RECORDS,
+                        AssemblyContext.DEFAULT_MAX_SYMBOLS,
+                        AssemblyContext.DEFAULT_MAX_LITERALS,
+                        ObjectDialect.COALESCED);
+        assertFalse(key.equals(BuildCache.key(source, coalesced)));
+        assertFalse(key.equals(BuildCache.key(source, AssemblyContext.DEFAULT
+                .withParser(ParserStrategy.REGEX))));
+        assertFalse(key.equals(BuildCache.key(source, AssemblyContext.DEFAULT
+                .withLimits(ResourceLimits.SERVICE))));
+        assertEquals(key, BuildCache.key(source.clone(), AssemblyContext.DEFAULT
+                .forSource(new File("other.txt"))));
+    }
+
+    /**
+     * Checking: Over its size cap, the cache drops the least recently used
+     * entry.
+     */
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        File dir = TestFiles.tempDirectory();
+        File cacheDir = new File(dir, "cache");
+        BuildCache cache = new BuildCache(cacheDir, 250);
+        char[] filler = new char[50];
+        Arrays.fill(filler, 'x');
+        File object = TestFiles.write(dir, "x.obj", new String(filler));
+        File listing = TestFiles.write(dir, "x.lst", new String(filler));
+
+        cache.store("a", object, listing);
+        new File(cacheDir, "a.obj").setLastModified(1000000L);
+        new File(cacheDir, "a.lst").setLastModified(1000000L);
+        cache.store("b", object, listing);
+        new File(cacheDir, "b.obj").setLastModified(2000000L);
+        new File(cacheDir, "b.lst").setLastModified(2000000L);
+
+        // Using "a" makes "b" the oldest entry.
+        assertTrue(cache.fetch("a", new File(dir, "o"), new File(dir, "l")));
+        cache.store("c", object, listing);
+
+        assertTrue(new File(cacheDir, "a.obj").isFile());
+        assertFalse(new File(cacheDir, "b.obj").isFile());
+        assertFalse(new File(cacheDir, "b.lst").isFile());
+        assertTrue(new File(cacheDir, "c.lst").isFile());
+    }
+}
@@ -0,0 +1,244 @@
+package cse560;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The reference programs whose outputs are checked in as golden files, so that
+ * a change to the parser or assembler that alters a single byte of an object
+ * file or listing is caught.
+ * <p>
+ * The corpus directory holds hand-written programs as {@code NAME.asm}; the
+ * generated programs are defined here, by their {@link WorkloadGenerator}
+ * settings. The golden outputs of every program are {@code NAME.obj} and
+ * {@code NAME.lst} in the same directory. They are written with the line
+ * separator of the system that produced them, which is {@code "\n"}.
+ * <p>
+ * Note that this class violates this project's typical rule to have an
+ * interface for every component, since every method is a class method.
+ *
+ * @author Igor Tolkachev
+ */
+public final class Corpus {
+    /** The corpus directory, relative to the project directory. */
+    public static final File DIRECTORY = new File("corpus");
+
+    /** Extension of hand-written programs. */
+    public static final String SOURCE_EXTENSION = ".asm";
+
+    /** Extension of golden object files. */
+    public static final String OBJECT_EXTENSION = ".obj";
+
+    /** Extension of golden listings. */
+    public static final String LISTING_EXTENSION = ".lst";
+
+    /** Settings loose enough for every program of the corpus. */
+    public static final AssemblyContext CONTEXT =
+            new AssemblyContext(null, 1 << 21, 1 << 16,
+                    WorkloadGenerator.MAX_LITERALS, ObjectDialect.CLASSIC);
+
+    /** Every file of the corpus is ASCII. */
+    private static final Charset CHARSET = Charset.forName("US-ASCII");
+
+    /** The generated programs, by name. */
+    private static final Map<String, WorkloadGenerator> GENERATED =
+            new LinkedHashMap<String, WorkloadGenerator>();
+
+    static {
+        WorkloadGenerator base = new WorkloadGenerator().withLines(1000);
+
+        GENERATED.put("gen-default", base);
+        GENERATED.put("gen-labels", base.withLabelDensity(1)
+                .withForwardRatio(1).withSeed(1));
+        GENERATED.put("gen-data", base.withDataMix(0.2, 0.2)
+                .withMaxBlockWords(40).withCommentRatio(0.3).withSeed(2));
+        GENERATED.put("gen-pages", base.withPageLayout(0x3005, 0.25)
+                .withLiterals(30).withSeed(3));
+    }
+
+    /**
+     * Returns the source of every program of the corpus: the hand-written
+     * ones in name order, then the generated ones.
+     *
+     * @param directory
+     *            The corpus directory.
+     * @return The sources, by program name.
+     * @throws IOException
+     *             If a hand-written program cannot be read.
+     */
+    public static Map<String, String> programs(File directory)
+            throws IOException {
+        Map<String, String> programs = new LinkedHashMap<String, String>();
+        String[] names = directory.list();
+
+        if (names == null) {
+            throw new IOException("Cannot list " + directory);
+        }
+
+        Arrays.sort(names);
+
+        for (String name : names) {
+            if (name.endsWith(SOURCE_EXTENSION)) {
+                programs.put(name.substring(0, name.length()
+                        - SOURCE_EXTENSION.length()), read(new File(directory,
+                        name)));
+            }
+        }
+
+        for (Map.Entry<String, WorkloadGenerator> generated : GENERATED
+                .entrySet()) {
+            programs.put(generated.getKey(), generated.getValue().generate());
+        }
+
+        return programs;
+    }
+
+    /**
+     * Assembles one program of the corpus.
+     *
+     * @param source
+     *            The program.
+     * @return The result of assembling it with {@link #CONTEXT}.
+     */
+    public static AssemblyResult assemble(String source) {
+        return EmbeddedAssembler.assemble(source, CONTEXT);
+    }
+
+    /**
+     * Assembles every program of the corpus and compares its outputs with the
+     * golden files.
+     *
+     * @param directory
+     *            The corpus directory.
+     * @return One line for each program that failed or whose output differs;
+     *         empty if every output matches.
+     * @throws IOException
+     *             If a file of the corpus cannot be read.
+     */
+    public static List<String> compare(File directory) throws IOException {
+        List<String> differences = new ArrayList<String>();
+
+        for (Map.Entry<String, String> program : programs(directory)
+                .entrySet()) {
+            String name = program.getKey();
+            AssemblyResult result = assemble(program.getValue());
+
+            if (!result.succeeded()) {
+                differences.add(name + ": " + result.getDiagnostics());
+                continue;
+            }
+
+            compare(new File(directory, name + OBJECT_EXTENSION), result
+                    .getObjectFile(), differences);
+            compare(new File(directory, name + LISTING_EXTENSION), result
+                    .getListing(), differences);
+        }
+
+        return differences;
+    }
+
+    private static void compare(File golden, String actual,
+            List<String> differences) throws IOException {
+        if (!golden.isFile()) {
+            differences.add(golden.getName() + " is missing");
+            return;
+        }
+
+        String expected = read(golden);
+
+        if (expected.equals(actual)) {
+            return;
+        }
+
+        String[] expectedLines = expected.split("\n", -1);
+        String[] actualLines = actual.split("\n", -1);
+        int line = 0;
+
+        while (line < expectedLines.length && line < actualLines.length
+                && expectedLines[line].equals(actualLines[line])) {
+            ++line;
+        }
+
+        differences.add(golden.getName() + " differs at line " + (line + 1));
+    }
+
+    /**
+     * Assembles every program of the corpus and writes its outputs as the new
+     * golden files. Only for changes meant to alter the output.
+     *
+     * @param directory
+     *            The corpus directory.
+     * @return The number of programs written.
+     * @throws IOException
+     *             If a program fails to assemble or a file cannot be written.
+     */
+    public static int writeGoldens(File directory) throws IOException {
+        Map<String, String> programs = programs(directory);
+
+        for (Map.Entry<String, String> program : programs.entrySet()) {
+            String name = program.getKey();
+            AssemblyResult result = assemble(program.getValue());
+
+            if (!result.succeeded()) {
+                throw new IOException(name + ": " + result.getDiagnostics());
+            }
+
+            write(new File(directory, name + OBJECT_EXTENSION), result
+                    .getObjectFile());
+            write(new File(directory, name + LISTING_EXTENSION), result
+                    .getListing());
+        }
+
+        return programs.size();
+    }
+
+    private static String read(File file) throws IOException {
+        byte[] contents = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+
+        try {
+            int read = 0;
+
+            while (read < contents.length) {
+                int n = in.read(contents, read, contents.length - read);
+
+                if (n < 0) {
+                    throw new IOException(file + " was truncated");
+                }
+
+                read += n;
+            }
+        } finally {
+            in.close();
+        }
+
+        return new String(contents, CHARSET);
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+
+        try {
+            out.write(contents.getBytes(CHARSET));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private Corpus() {
+        throw new UnsupportedOperationException();
+    }
+}
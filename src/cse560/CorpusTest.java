@@ -0,0 +1,41 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class CorpusTest {
+    private static String read(String name) throws Exception {
+        return new String(Files.readAllBytes(new File(name).toPath()),
+                "US-ASCII");
+    }
+
+    /**
+     * Checking: Every program of the corpus assembles to exactly its golden
+     * object file and listing.
+     */
+    @Test
+    public void matchesGoldens() throws Exception {
+        assertEquals(Collections.<String> emptyList(),
+                Corpus.compare(Corpus.DIRECTORY));
+    }
+
+    /**
+     * Checking: lab2 is Input.txt, and its outputs are those of the command
+     * line assembler checked in beside it.
+     */
+    @Test
+    public void lab2IsInput() throws Exception {
+        AssemblyResult result = Corpus.assemble(read("Input.txt"));
+
+        assertTrue(result.succeeded());
+        assertEquals(read("output.txt"), result.getObjectFile());
+        assertEquals(read("listing.txt"), result.getListing());
+        assertEquals(read("output.txt"), read("corpus/lab2.obj"));
+    }
+}
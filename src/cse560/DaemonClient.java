@@ -0,0 +1,297 @@
+package cse560;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+
+/**
+ * A connection to an {@link AssemblerDaemon}, and a thin command-line front end
+ * that is a drop-in replacement for {@link MMXIAssembler}.
+ * <p>
+ * The front end accepts exactly the options of {@code MMXIAssembler}. For a
+ * single {@code -f} file using only {@code -C}, {@code -M}, {@code -s} and
+ * {@code -L}, it sends the file to the daemon and writes output.txt and
+ * listing.txt from the reply. Any other options, or no daemon answering, and
+ * it runs {@code MMXIAssembler} in-process instead, so the outputs are always
+ * the same.
+ * <p>
+ * The daemon's port is taken from the {@code mmxi.daemon.port} system
+ * property, else the {@code MMXI_DAEMON_PORT} environment variable, else
+ * {@link AssemblerDaemon#DEFAULT_PORT}.
+ *
+ * @author Igor Tolkachev
+ */
+public final class DaemonClient {
+    /** Time allowed to connect to the daemon, in milliseconds. */
+    private static final int CONNECT_TIMEOUT = 200;
+
+    /** The connection to the daemon. */
+    private final Socket socket;
+
+    /** Stream requests are written to. */
+    private final DataOutputStream out;
+
+    /** Stream responses are read from. */
+    private final DataInputStream in;
+
+    /**
+     * Connects to a daemon on the loopback interface.
+     *
+     * @param port
+     *            The port the daemon listens on.
+     * @throws IOException
+     *             If no daemon answers.
+     */
+    public DaemonClient(int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getByName(null), port));
+    }
+
+    /**
+     * Connects to a daemon at {@code address}.
+     *
+     * @param address
+     *            The host and port the daemon listens on.
+     * @throws IOException
+     *             If no daemon answers.
+     */
+    public DaemonClient(InetSocketAddress address) throws IOException {
+        this.socket = new Socket();
+        this.socket.connect(address, CONNECT_TIMEOUT);
+        this.socket.setTcpNoDelay(true);
+        this.out =
+                new DataOutputStream(new BufferedOutputStream(this.socket
+                        .getOutputStream()));
+        this.in =
+                new DataInputStream(new BufferedInputStream(this.socket
+                        .getInputStream()));
+    }
+
+    /**
+     * Has the daemon assemble {@code source}.
+     *
+     * @param source
+     *            The text of the program.
+     * @param context
+     *            The settings of the job.
+     * @return The result, without an {@link ObjectImage}.
+     * @throws IOException
+     *             If the connection fails.
+     */
+    public AssemblyResult assemble(String source, AssemblyContext context)
+            throws IOException {
+        DaemonProtocol.writeRequest(this.out, new DaemonProtocol.Request(
+                source, context));
+
+        return DaemonProtocol.readResult(this.in);
+    }
+
+    /**
+     * Reads the daemon's metrics.
+     *
+     * @return The metrics, as {@link AssemblerMetrics#getText} writes them.
+     * @throws IOException
+     *             If the connection fails.
+     */
+    public String metrics() throws IOException {
+        this.out.writeUTF(DaemonProtocol.METRICS);
+        this.out.flush();
+
+        return DaemonProtocol.readText(this.in);
+    }
+
+    /**
+     * Checks that the daemon is alive.
+     *
+     * @throws IOException
+     *             If the daemon does not answer.
+     */
+    public void ping() throws IOException {
+        command(DaemonProtocol.PING);
+    }
+
+    /**
+     * Asks the daemon to stop accepting connections.
+     *
+     * @throws IOException
+     *             If the daemon does not answer.
+     */
+    public void shutdown() throws IOException {
+        command(DaemonProtocol.SHUTDOWN);
+    }
+
+    private void command(String command) throws IOException {
+        this.out.writeUTF(command);
+        this.out.flush();
+
+        if (!this.in.readUTF().equals(DaemonProtocol.OK)) {
+            throw new IOException("Unexpected reply to " + command);
+        }
+    }
+
+    /**
+     * Closes the connection.
+     */
+    public void close() throws IOException {
+        this.socket.close();
+    }
+
+    /**
+     * Returns the port the daemon is expected on.
+     */
+    static int configuredPort() {
+        String port = System.getProperty("mmxi.daemon.port");
+
+        if (port == null) {
+            port = System.getenv("MMXI_DAEMON_PORT");
+        }
+
+        try {
+            return port == null ? AssemblerDaemon.DEFAULT_PORT : Integer
+                    .parseInt(port);
+        } catch (NumberFormatException e) {
+            return AssemblerDaemon.DEFAULT_PORT;
+        }
+    }
+
+    /**
+     * @param args - Command line arguments passed in by the user.
+     */
+    public static void main(String[] args) {
+        AssemblyContext context = daemonContext(args);
+
+        if (context == null || !assembleRemotely(context)) {
+            MMXIAssembler.main(args);
+        }
+    }
+
+    /**
+     * Returns the settings of the job if the daemon can run it exactly as
+     * {@link MMXIAssembler} would, or null if it must run in-process.
+     */
+    private static AssemblyContext daemonContext(String[] args) {
+        OptionSet options;
+
+        try {
+            options = new OptionParser(MMXIAssembler.OPTION_SPEC).parse(args);
+        } catch (OptionException e) {
+            return null;
+        }
+
+        String[] local = {"d", "B", "H", "R", "P", "j", "o", "K" };
+
+        for (String option : local) {
+            if (options.has(option)) {
+                return null;
+            }
+        }
+
+        if (options.valuesOf("f").size() != 1
+                || !options.nonOptionArguments().isEmpty()) {
+            return null;
+        }
+
+        File source = new File((String) options.valueOf("f"));
+
+        if (!source.isFile()) {
+            return null;
+        }
+
+        try {
+            return new AssemblyContext(source, options.has("M") ? Integer
+                    .parseInt((String) options.valueOf("M"))
+                    : AssemblyContext.DEFAULT_MAX_RECORDS, options.has("s")
+                    ? Integer.parseInt((String) options.valueOf("s"))
+                    : AssemblyContext.DEFAULT_MAX_SYMBOLS, options.has("L")
+                    ? Integer.parseInt((String) options.valueOf("L"))
+                    : AssemblyContext.DEFAULT_MAX_LITERALS, options.has("C")
+                    ? ObjectDialect.COALESCED : ObjectDialect.CLASSIC);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Assembles the job on the daemon and writes its outputs.
+     *
+     * @return False iff no daemon answered, so the job must run in-process.
+     */
+    private static boolean assembleRemotely(AssemblyContext context) {
+        DaemonClient client;
+
+        try {
+            client = new DaemonClient(configuredPort());
+        } catch (IOException e) {
+            return false;
+        }
+
+        AssemblyResult result;
+
+        try {
+            result = client.assemble(read(context.getSourceFile()), context);
+            client.close();
+        } catch (IOException e) {
+            // The daemon went away mid-request; assemble locally instead.
+            return false;
+        }
+
+        for (Diagnostic diagnostic : result.getDiagnostics()) {
+            System.err.println(diagnostic);
+        }
+
+        if (!result.succeeded()) {
+            System.exit(1);
+        }
+
+        try {
+            write(new File("output.txt"), result.getObjectFile());
+            write(new File("listing.txt"), result.getListing());
+        } catch (IOException e) {
+            System.err.println(new Diagnostic(AssemblerException.Type.FATAL,
+                    205, 0, "Could not write output files"));
+            System.exit(1);
+        }
+
+        return true;
+    }
+
+    private static String read(File file) throws IOException {
+        Reader in = new FileReader(file);
+        StringBuilder contents = new StringBuilder((int) file.length());
+        char[] buf = new char[8192];
+        int n;
+
+        try {
+            while ((n = in.read(buf)) > 0) {
+                contents.append(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+
+        return contents.toString();
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        BufferedWriter out = new BufferedWriter(new FileWriter(file));
+
+        try {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+    }
+}
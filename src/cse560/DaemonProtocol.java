@@ -0,0 +1,275 @@
+package cse560;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the messages exchanged with an {@link AssemblerDaemon}.
+ * A connection carries any number of request/response pairs, one at a time,
+ * until either side closes it.
+ *
+ * <h1>Requests</h1>
+ *
+ * <pre>
+ * UTF    command: "ASSEMBLE", "METRICS", "PING" or "SHUTDOWN"
+ * </pre>
+ *
+ * An {@code ASSEMBLE} command is followed by:
+ *
+ * <pre>
+ * UTF    source name, for messages only
+ * int    maximum number of records
+ * int    maximum number of symbols
+ * int    maximum number of literals
+ * UTF    object dialect, e.g. "CLASSIC"
+ * UTF    parser, e.g. "scanner"
+ * text   the source program
+ * </pre>
+ *
+ * <h1>Responses</h1>
+ *
+ * {@code PING} and {@code SHUTDOWN} are answered with the UTF string
+ * "{@code OK}". {@code METRICS} is answered with the daemon's
+ * {@link AssemblerMetrics#getText} as text. {@code ASSEMBLE} is answered
+ * with:
+ *
+ * <pre>
+ * boolean  succeeded
+ * int      number of diagnostics, each: UTF type, int code, int line, UTF message
+ * text     object file (only if succeeded)
+ * text     listing (only if succeeded)
+ * long     parse time in nanoseconds
+ * long     assembly time in nanoseconds
+ * </pre>
+ *
+ * "UTF" is {@link DataOutputStream#writeUTF}; "text" is an int byte count
+ * followed by that many bytes of UTF-8, since sources and listings may exceed
+ * the 64K limit of {@code writeUTF}.
+ * <p>
+ * Note that this class violates this project's typical rule to have an
+ * interface for every component, since every method is a class method.
+ *
+ * @author Igor Tolkachev
+ */
+public final class DaemonProtocol {
+    /** Command to assemble a program. */
+    public static final String ASSEMBLE = "ASSEMBLE";
+
+    /** Command to read the daemon's metrics. */
+    public static final String METRICS = "METRICS";
+
+    /** Command to check that the daemon is alive. */
+    public static final String PING = "PING";
+
+    /** Command to stop the daemon. */
+    public static final String SHUTDOWN = "SHUTDOWN";
+
+    /** Reply to {@code PING} and {@code SHUTDOWN}. */
+    public static final String OK = "OK";
+
+    /** Largest text field accepted, in bytes. */
+    public static final int MAX_TEXT_LENGTH = 1 << 26;
+
+    /** Encoding of text fields. */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * An {@code ASSEMBLE} request.
+     */
+    public static final class Request {
+        /** The source program. */
+        public final String source;
+
+        /** The settings of the job; its source file carries the name. */
+        public final AssemblyContext context;
+
+        public Request(String source, AssemblyContext context) {
+            this.source = source;
+            this.context = context;
+        }
+    }
+
+    /**
+     * Writes an {@code ASSEMBLE} request.
+     *
+     * @param out
+     *            The stream to write to. It is flushed.
+     * @param request
+     *            The request.
+     * @throws IOException
+     *             If {@code out} cannot be written.
+     */
+    public static void writeRequest(DataOutputStream out, Request request)
+            throws IOException {
+        AssemblyContext context = request.context;
+
+        out.writeUTF(ASSEMBLE);
+        out.writeUTF(context.getSourceFile() == null ? "" : context
+                .getSourceFile().getPath());
+        out.writeInt(context.getMaxRecords());
+        out.writeInt(context.getMaxSymbols());
+        out.writeInt(context.getMaxLiterals());
+        out.writeUTF(context.getDialect().name());
+        out.writeUTF(context.getParser().getName());
+        writeText(out, request.source);
+        out.flush();
+    }
+
+    /**
+     * Reads the body of an {@code ASSEMBLE} request, after its command.
+     *
+     * @param in
+     *            The stream to read from.
+     * @return The request.
+     * @throws IOException
+     *             If {@code in} cannot be read or holds a malformed request.
+     */
+    public static Request readRequest(DataInputStream in) throws IOException {
+        String name = in.readUTF();
+        int maxRecords = in.readInt();
+        int maxSymbols = in.readInt();
+        int maxLiterals = in.readInt();
+        ObjectDialect dialect;
+
+        try {
+            dialect = ObjectDialect.valueOf(in.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown object dialect");
+        }
+
+        ParserStrategy parser = ParserStrategy.forName(in.readUTF());
+
+        if (parser == null) {
+            throw new IOException("Unknown parser");
+        }
+
+        AssemblyContext context =
+                new AssemblyContext(name.length() == 0 ? null
+                        : new File(name), maxRecords, maxSymbols,
+                        maxLiterals, dialect).withParser(parser);
+
+        return new Request(readText(in), context);
+    }
+
+    /**
+     * Writes the response to an {@code ASSEMBLE} request.
+     *
+     * @param out
+     *            The stream to write to. It is flushed.
+     * @param result
+     *            The result of the assembly.
+     * @throws IOException
+     *             If {@code out} cannot be written.
+     */
+    public static void writeResult(DataOutputStream out, AssemblyResult result)
+            throws IOException {
+        out.writeBoolean(result.succeeded());
+        out.writeInt(result.getDiagnostics().size());
+
+        for (Diagnostic diagnostic : result.getDiagnostics()) {
+            out.writeUTF(diagnostic.getType().name());
+            out.writeInt(diagnostic.getCode());
+            out.writeInt(diagnostic.getLine());
+            out.writeUTF(diagnostic.getMessage());
+        }
+
+        if (result.succeeded()) {
+            writeText(out, result.getObjectFile());
+            writeText(out, result.getListing());
+        }
+
+        out.writeLong(result.getParseNanos());
+        out.writeLong(result.getAssembleNanos());
+        out.flush();
+    }
+
+    /**
+     * Reads the response to an {@code ASSEMBLE} request.
+     *
+     * @param in
+     *            The stream to read from.
+     * @return The result, without an {@link ObjectImage}.
+     * @throws IOException
+     *             If {@code in} cannot be read or holds a malformed response.
+     */
+    public static AssemblyResult readResult(DataInputStream in)
+            throws IOException {
+        boolean succeeded = in.readBoolean();
+        int count = in.readInt();
+        List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+
+        for (int i = 0; i < count; ++i) {
+            AssemblerException.Type type;
+
+            try {
+                type = AssemblerException.Type.valueOf(in.readUTF());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown diagnostic type");
+            }
+
+            int code = in.readInt();
+            int line = in.readInt();
+            diagnostics.add(new Diagnostic(type, code, line, in.readUTF()));
+        }
+
+        String objectFile = succeeded ? readText(in) : null;
+        String listing = succeeded ? readText(in) : null;
+        long parseNanos = in.readLong();
+        long assembleNanos = in.readLong();
+
+        return new AssemblyResult(objectFile, listing, null, diagnostics,
+                parseNanos, assembleNanos);
+    }
+
+    /**
+     * Writes a text field.
+     *
+     * @param out
+     *            The stream to write to. It is not flushed.
+     * @param text
+     *            The text.
+     * @throws IOException
+     *             If {@code out} cannot be written.
+     */
+    static void writeText(DataOutputStream out, String text)
+            throws IOException {
+        byte[] bytes = text.getBytes(UTF8);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a text field.
+     *
+     * @param in
+     *            The stream to read from.
+     * @return The text.
+     * @throws IOException
+     *             If {@code in} cannot be read or the field is too long.
+     */
+    static String readText(DataInputStream in) throws IOException {
+        int length = in.readInt();
+
+        if (length < 0 || length > MAX_TEXT_LENGTH) {
+            throw new IOException("Bad text length: " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private DaemonProtocol() {
+        throw new UnsupportedOperationException();
+    }
+}
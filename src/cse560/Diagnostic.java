@@ -0,0 +1,83 @@
+package cse560;
+
+/**
+ * One error or warning reported while assembling a program.
+ * <p>
+ * <b>Model:</b>
+ * <ul>
+ * <li>{@code type} - Whether the event was fatal or a warning.</li>
+ * <li>{@code integer code} - The error or warning number.</li>
+ * <li>{@code integer line} - The source line, or 0 if not tied to a line.</li>
+ * <li>{@code string message} - The description of the event.</li>
+ * </ul>
+ * Instances are immutable.
+ *
+ * @author Igor Tolkachev
+ */
+public final class Diagnostic {
+    /** Whether the event was fatal or a warning. */
+    private final AssemblerException.Type type;
+
+    /** The error or warning number. */
+    private final int code;
+
+    /** The source line, or 0. */
+    private final int line;
+
+    /** The description of the event. */
+    private final String message;
+
+    /**
+     * Initializes a diagnostic.
+     *
+     * @param type
+     *            Whether the event was fatal or a warning.
+     * @param code
+     *            The error or warning number.
+     * @param line
+     *            The source line, or 0 if not tied to a line.
+     * @param message
+     *            The description of the event.
+     */
+    public Diagnostic(AssemblerException.Type type, int code, int line,
+            String message) {
+        this.type = type;
+        this.code = code;
+        this.line = line;
+        this.message = message;
+    }
+
+    public AssemblerException.Type getType() {
+        return this.type;
+    }
+
+    public int getCode() {
+        return this.code;
+    }
+
+    /**
+     * @return The source line, or 0 if the event is not tied to a line.
+     */
+    public int getLine() {
+        return this.line;
+    }
+
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * Returns the diagnostic as the command-line assembler prints it, e.g.
+     * "{@code [ERROR 110] Unknown opcode (Line: 5)}".
+     */
+    @Override
+    public String toString() {
+        String text =
+                String.format("[%s %03d] %s",
+                        this.type == AssemblerException.Type.FATAL ? "ERROR"
+                                : "WARNING", this.code, this.message);
+
+        return this.line > 0 ? String.format("%s (Line: %d)", text, this.line)
+                : text;
+    }
+}
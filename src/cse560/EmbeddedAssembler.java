@@ -0,0 +1,118 @@
+package cse560;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point for programs that embed the assembler. Every outcome,
+ * including a fatal error or a crash of the parser (error 0), is returned as
+ * an {@link AssemblyResult}; nothing here prints to the console or ends the
+ * process. Every job is counted in {@link AssemblerMetricsImp#GLOBAL}.
+ * <p>
+ * Note that this class violates this project's typical rule to have an
+ * interface for every component, since every method is a class method.
+ *
+ * @author Igor Tolkachev
+ */
+public final class EmbeddedAssembler {
+    /**
+     * Assembles {@code source}.
+     *
+     * @param source
+     *            The text of the program.
+     * @param context
+     *            The settings of the job. Its source file is only used for
+     *            reporting and may be null.
+     * @return The outputs, diagnostics and timing of the assembly.
+     */
+    public static AssemblyResult assemble(String source, AssemblyContext context) {
+        try {
+            return assemble(new StringReader(source), context);
+        } catch (IOException e) {
+            // A StringReader does not throw.
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Assembles the program read from {@code source}.
+     *
+     * @param source
+     *            The program. It is not closed.
+     * @param context
+     *            The settings of the job, including the limits it is held to
+     *            (see {@link Governor}).
+     * @return The outputs, diagnostics and timing of the assembly.
+     * @throws IOException
+     *             If {@code source} cannot be read.
+     */
+    public static AssemblyResult assemble(Reader source, AssemblyContext context)
+            throws IOException {
+        List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+        long parseNanos = 0;
+        long assembleNanos = 0;
+        AssemblerMetricsImp.Job job =
+                AssemblerMetricsImp.GLOBAL.startJob(context);
+        AssemblyContext tracked = job.getContext();
+
+        ErrorHandler.collectWarnings(diagnostics);
+
+        try {
+            long start = System.nanoTime();
+            Governor governor = new Governor(tracked);
+            Parser parser = tracked.getParser().create(tracked, governor, null);
+            Program program =
+                    parser.parse(new BufferedReader(source),
+                            tracked.getMaxRecords());
+            parseNanos = System.nanoTime() - start;
+
+            StringWriter objectFile = new StringWriter();
+            StringWriter listing = new StringWriter();
+            BufferedWriter objectOut = new BufferedWriter(objectFile);
+            BufferedWriter listingOut = new BufferedWriter(listing);
+
+            start = System.nanoTime();
+            ObjectImage image =
+                    new AssemblerImp(tracked.getDialect(), governor,
+                            tracked.getListener()).assemble(objectOut,
+                            listingOut, program);
+            objectOut.flush();
+            listingOut.flush();
+            assembleNanos = System.nanoTime() - start;
+            job.ended(true);
+
+            return new AssemblyResult(objectFile.toString(), listing
+                    .toString(), image, diagnostics, parseNanos, assembleNanos);
+        } catch (AssemblerException e) {
+            diagnostics.add(e.toDiagnostic());
+
+            return new AssemblyResult(null, null, null, diagnostics,
+                    parseNanos, assembleNanos);
+        } catch (RuntimeException e) {
+            // A parser that fails on malformed input must still give a
+            // result.
+            diagnostics.add(new AssemblerException("Could not assemble: " + e,
+                    0).toDiagnostic());
+
+            return new AssemblyResult(null, null, null, diagnostics,
+                    parseNanos, assembleNanos);
+        } finally {
+            // Does nothing if the job succeeded.
+            job.ended(false);
+            ErrorHandler.collectWarnings(null);
+        }
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private EmbeddedAssembler() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,92 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class EmbeddedAssemblerTest {
+    /**
+     * Checking: A good program gives the same outputs as the command line.
+     */
+    @Test
+    public void assemblesProgram() throws IOException {
+        String source =
+                "Lab2EG   .ORIG   x30B0\n"
+              + "count    .FILL   #4\n"
+              + "Begin    LD      R1,count\n"
+              + "         LD      R6,=#100\n"
+              + "         .END    Begin\n";
+
+        StringWriter object = new StringWriter();
+        StringWriter listing = new StringWriter();
+        new AssemblerImp().assemble(new BufferedWriter(object),
+                new BufferedWriter(listing), new ParserImp2().parse(
+                        new BufferedReader(new StringReader(source)), 100));
+
+        AssemblyResult result =
+                EmbeddedAssembler.assemble(source, AssemblyContext.DEFAULT);
+
+        assertTrue(result.succeeded());
+        assertEquals(object.toString(), result.getObjectFile());
+        assertEquals(listing.toString(), result.getListing());
+        assertEquals(0x30B1, result.getImage().getExecAddress());
+        assertTrue(result.getDiagnostics().isEmpty());
+        assertTrue(result.getParseNanos() > 0);
+    }
+
+    /**
+     * Checking: A fatal error is returned as a diagnostic instead of ending
+     * the process.
+     */
+    @Test
+    public void reportsFatalError() {
+        String source =
+                "Bad      .ORIG   x3000\n"
+              + "         ADD     R1,R1,#1\n"
+              + "         FROB    R1\n"
+              + "         .END\n";
+
+        AssemblyResult result =
+                EmbeddedAssembler.assemble(source, AssemblyContext.DEFAULT);
+
+        assertFalse(result.succeeded());
+        assertNull(result.getObjectFile());
+        assertEquals(1, result.getDiagnostics().size());
+
+        Diagnostic error = result.getDiagnostics().get(0);
+        assertEquals(AssemblerException.Type.FATAL, error.getType());
+        assertEquals(107, error.getCode());
+        assertEquals(3, error.getLine());
+        assertEquals("[ERROR 107] Invalid opcode (Line: 3)", error.toString());
+    }
+
+    /**
+     * Checking: A parser that crashes on a malformed line gives a fatal
+     * diagnostic instead of throwing.
+     */
+    @Test
+    public void reportsCrash() {
+        AssemblyResult result =
+                EmbeddedAssembler.assemble("Prog     .ORIG\n",
+                        AssemblyContext.DEFAULT
+                                .withParser(ParserStrategy.REGEX));
+
+        assertFalse(result.succeeded());
+        assertEquals(1, result.getDiagnostics().size());
+
+        Diagnostic error = result.getDiagnostics().get(0);
+        assertEquals(AssemblerException.Type.FATAL, error.getType());
+        assertEquals(0, error.getCode());
+        assertTrue(error.getMessage(), error.getMessage().startsWith(
+                "Could not assemble: "));
+    }
+}
@@ -1,17 +1,53 @@
 package cse560;
 
+import java.util.List;
+
+/**
+ * Reports errors and warnings raised while assembling.
+ * <p>
+ * Fatal errors are thrown as an unchecked {@link AssemblerException}; the
+ * command-line assembler catches it, prints it and exits, while embedding
+ * callers receive it as a value. Warnings are printed to standard error unless
+ * the current thread is collecting them (see {@link #collectWarnings}).
+ *
+ * @author Igor Tolkachev
+ */
 public class ErrorHandler {
+    /** Warnings collected by the current thread's job, or null to print. */
+    private static final ThreadLocal<List<Diagnostic>> warnings =
+            new ThreadLocal<List<Diagnostic>>();
+
     public static void fatalError(String msg, int errorNum) {
-        System.err.printf("[ERROR %03d] %s\n", errorNum, msg);
-        System.exit(1);
+        throw new AssemblerException(msg, errorNum);
     }
 
     public static void fatalError(String msg, int errorNum, int lineNumber) {
-        ErrorHandler.fatalError(
-                String.format("%s (Line: %d)", msg, lineNumber), errorNum);
+        throw new AssemblerException(msg, errorNum, lineNumber);
     }
-    
+
     public static void warning(String msg, int warningNum) {
-    	System.err.printf("[WARNING %03d] %s\n", warningNum, msg);
+        List<Diagnostic> collected = warnings.get();
+
+        if (collected != null) {
+            collected.add(new Diagnostic(AssemblerException.Type.WARNING,
+                    warningNum, 0, msg));
+        } else {
+            System.err.printf("[WARNING %03d] %s\n", warningNum, msg);
+        }
+    }
+
+    /**
+     * Directs warnings raised on the current thread into {@code list}, or back
+     * to standard error if {@code list} is null.
+     *
+     * @param list
+     *            The list to add warnings to, or null.
+     */
+    public static void collectWarnings(List<Diagnostic> list) {
+        if (list == null) {
+            warnings.remove();
+        } else {
+            warnings.set(list);
+        }
     }
 }
@@ -0,0 +1,398 @@
+package cse560;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * A drop-in replacement for {@link MMXIAssembler} that starts as quickly as
+ * the JVM allows, for build tools that assemble one file per process.
+ * <p>
+ * The launcher accepts exactly the options of {@code MMXIAssembler}. A
+ * single {@code -f} file using only {@code -C}, {@code -M}, {@code -s} and
+ * {@code -L}, each a separate argument, is assembled here: the command line
+ * is read by hand rather than by JOpt Simple, whose classes, reflection and
+ * regular expressions cost more than assembling a small file, and only the
+ * classes of the one-file path are loaded. Any other command line is passed
+ * to {@code MMXIAssembler}, so the outputs, messages and exit status are
+ * always the same.
+ * <p>
+ * Most of what remains is the JVM loading and verifying classes, which an
+ * AppCDS archive saves. Given {@code --cds-archive DIR} and nothing else, the
+ * launcher writes one into DIR, with the jar it needs, and prints the command
+ * line that uses it:
+ *
+ * <pre>
+ * java -cp bin:lib/jopt-simple-3.3.jar cse560.FastLauncher --cds-archive cds
+ * java -XX:SharedArchiveFile=cds/mmxi.jsa -cp cds/mmxi.jar:... cse560.FastLauncher -f Input.txt
+ * </pre>
+ *
+ * The archive only holds classes from jars, so the directories of the class
+ * path are packed into {@code mmxi.jar}, and the archive must be used with
+ * the class path printed. See {@code StartupBench} for the time each way
+ * takes to the first byte of output.
+ *
+ * @author Igor Tolkachev
+ */
+public final class FastLauncher {
+    /** Option that writes an AppCDS archive. */
+    public static final String CDS_OPTION = "--cds-archive";
+
+    /** Name of the archive written into the archive directory. */
+    public static final String ARCHIVE = "mmxi.jsa";
+
+    /** Name of the jar of class path directories. */
+    public static final String JAR = "mmxi.jar";
+
+    /** Name of the list of classes the archive is made from. */
+    private static final String CLASS_LIST = "mmxi.classlist";
+
+    /**
+     * @param args - Command line arguments passed in by the user.
+     */
+    public static void main(String[] args) {
+        if (args.length == 2 && args[0].equals(CDS_OPTION)) {
+            try {
+                List<String> classPath = writeArchive(new File(args[1]));
+
+                System.out.println("Run with: java -XX:SharedArchiveFile="
+                        + new File(args[1], ARCHIVE).getAbsolutePath()
+                        + " -cp " + join(classPath) + " "
+                        + FastLauncher.class.getName() + " [options]");
+            } catch (IOException e) {
+                System.err.printf("[ERROR %03d] %s%n", 209, e.getMessage());
+                System.exit(1);
+            }
+
+            return;
+        }
+
+        AssemblyContext context = simpleContext(args);
+
+        if (context == null) {
+            MMXIAssembler.main(args);
+            return;
+        }
+
+        try {
+            assemble(context);
+        } catch (AssemblerException e) {
+            System.err.println(e.toDiagnostic());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the settings of the job if {@code args} name a single existing
+     * file with no options but {@code -C}, {@code -M N}, {@code -s N} and
+     * {@code -L N}, or null if {@link MMXIAssembler} must run it. Only the
+     * plainest spelling of each option is recognized; anything else is left
+     * to {@code MMXIAssembler}, which reads every spelling.
+     *
+     * @param args
+     *            The command line.
+     * @return The settings, or null.
+     */
+    static AssemblyContext simpleContext(String[] args) {
+        File source = null;
+        ObjectDialect dialect = ObjectDialect.CLASSIC;
+        int maxRecords = AssemblyContext.DEFAULT_MAX_RECORDS;
+        int maxSymbols = AssemblyContext.DEFAULT_MAX_SYMBOLS;
+        int maxLiterals = AssemblyContext.DEFAULT_MAX_LITERALS;
+
+        for (int i = 0; i < args.length; ++i) {
+            String option = args[i];
+
+            if (option.equals("-C")) {
+                dialect = ObjectDialect.COALESCED;
+                continue;
+            }
+
+            // Every other option takes a value, which must not look like an
+            // option itself.
+            if (i + 1 == args.length || args[i + 1].startsWith("-")) {
+                return null;
+            }
+
+            String value = args[++i];
+
+            if (option.equals("-f") && source == null) {
+                source = new File(value);
+            } else if (option.equals("-M")) {
+                maxRecords = number(value);
+            } else if (option.equals("-s")) {
+                maxSymbols = number(value);
+            } else if (option.equals("-L")) {
+                maxLiterals = number(value);
+            } else {
+                return null;
+            }
+
+            if (maxRecords < 0 || maxSymbols < 0 || maxLiterals < 0) {
+                return null;
+            }
+        }
+
+        if (source == null || !source.isFile()
+                || BatchAssembler.isPattern(source.getName())) {
+            return null;
+        }
+
+        return new AssemblyContext(source, maxRecords, maxSymbols,
+                maxLiterals, dialect);
+    }
+
+    /**
+     * @return The value of {@code digits}, or -1 if it is not a plain
+     *         non-negative decimal int.
+     */
+    private static int number(String digits) {
+        if (digits.length() == 0 || digits.length() > 9) {
+            return -1;
+        }
+
+        int value = 0;
+
+        for (int i = 0; i < digits.length(); ++i) {
+            char c = digits.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+
+            value = value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+
+    /**
+     * Assembles the source of {@code context} to output.txt and listing.txt,
+     * as {@link MMXIAssembler} does when given no other options.
+     *
+     * @param context
+     *            The settings of the job.
+     * @throws AssemblerException
+     *             If assembly fails.
+     */
+    static void assemble(AssemblyContext context) {
+        BufferedReader input = null;
+        BufferedWriter listing = null;
+        BufferedWriter output = null;
+
+        try {
+            input = new BufferedReader(new FileReader(context.getSourceFile()));
+        } catch (FileNotFoundException e) {
+            ErrorHandler.fatalError("Could not open input file", 203);
+        }
+
+        Governor governor = new Governor(context);
+        Program program =
+                context.getParser().create(context, governor, null).parse(
+                        input, context.getMaxRecords());
+
+        try {
+            listing = new BufferedWriter(new FileWriter("listing.txt"));
+        } catch (IOException e) {
+            ErrorHandler.fatalError("Could not open listing file", 204);
+        }
+
+        try {
+            output = new BufferedWriter(new FileWriter("output.txt"));
+        } catch (IOException e) {
+            ErrorHandler.fatalError("Could not open output file", 205);
+        }
+
+        List<OutputSink> sinks = new ArrayList<OutputSink>();
+        sinks.add(new TextObjectSink(output, context.getDialect()));
+        sinks.add(new ListingSink(listing));
+
+        try {
+            new AssemblerImp(context.getDialect(), governor,
+                    context.getListener()).assemble(program, sinks);
+            output.close();
+            listing.close();
+        } catch (IOException e) {
+            ErrorHandler.fatalError("Could not write output files", 205);
+        }
+    }
+
+    /**
+     * Writes an AppCDS archive of the classes a one-file assembly loads:
+     * packs the directories of this JVM's class path into a jar, assembles a
+     * small program with that class path while the JVM lists the classes it
+     * loads, and dumps those classes into an archive.
+     *
+     * @param directory
+     *            The directory to write {@code ARCHIVE}, {@code JAR} and the
+     *            class list into. It is created if need be.
+     * @return The class path the archive must be used with.
+     * @throws IOException
+     *             If a file cannot be written or a JVM fails.
+     */
+    public static List<String> writeArchive(File directory) throws IOException {
+        File training = new File(directory, "training");
+
+        if (!training.isDirectory() && !training.mkdirs()) {
+            throw new IOException("Could not create " + training);
+        }
+
+        File jar = new File(directory, JAR).getAbsoluteFile();
+        List<String> classPath = new ArrayList<String>();
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+
+        classPath.add(jar.getPath());
+
+        try {
+            for (String entry : System.getProperty("java.class.path").split(
+                    File.pathSeparator)) {
+                File file = new File(entry).getAbsoluteFile();
+
+                if (file.isDirectory()) {
+                    pack(out, file, "");
+                } else if (file.isFile()) {
+                    classPath.add(file.getPath());
+                }
+            }
+        } finally {
+            out.close();
+        }
+
+        File source = new File(training, "training.asm");
+        OutputStream sourceOut = new FileOutputStream(source);
+
+        try {
+            sourceOut.write(AssemblerDaemon.WARM_UP_SOURCE.getBytes("US-ASCII"));
+        } finally {
+            sourceOut.close();
+        }
+
+        File classList = new File(directory, CLASS_LIST).getAbsoluteFile();
+
+        run(training, "-XX:DumpLoadedClassList=" + classList.getPath(), "-cp",
+                join(classPath), FastLauncher.class.getName(), "-f",
+                source.getName());
+        run(training, "-Xshare:dump", "-XX:SharedClassListFile="
+                + classList.getPath(), "-XX:SharedArchiveFile="
+                + new File(directory, ARCHIVE).getAbsolutePath(), "-cp",
+                join(classPath));
+
+        return classPath;
+    }
+
+    /**
+     * Adds every file under {@code directory} to {@code out}, under
+     * {@code prefix}.
+     */
+    private static void pack(JarOutputStream out, File directory,
+            String prefix) throws IOException {
+        String[] names = directory.list();
+
+        if (names == null) {
+            throw new IOException("Cannot list " + directory);
+        }
+
+        Arrays.sort(names);
+
+        byte[] buf = new byte[8192];
+
+        for (String name : names) {
+            File file = new File(directory, name);
+
+            if (file.isDirectory()) {
+                pack(out, file, prefix + name + "/");
+                continue;
+            }
+
+            out.putNextEntry(new JarEntry(prefix + name));
+
+            InputStream in = new FileInputStream(file);
+
+            try {
+                int n;
+
+                while ((n = in.read(buf)) > 0) {
+                    out.write(buf, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+
+            out.closeEntry();
+        }
+    }
+
+    /**
+     * Runs a JVM with {@code arguments} in {@code directory} and waits for
+     * it.
+     *
+     * @throws IOException
+     *             If it cannot be started or does not exit with status 0.
+     */
+    private static void run(File directory, String... arguments)
+            throws IOException {
+        List<String> command = new ArrayList<String>();
+
+        command.add(new File(new File(System.getProperty("java.home"), "bin"),
+                "java").getPath());
+        command.addAll(Arrays.asList(arguments));
+
+        Process process =
+                new ProcessBuilder(command).directory(directory)
+                        .redirectErrorStream(true).start();
+        BufferedReader out =
+                new BufferedReader(new InputStreamReader(process
+                        .getInputStream()));
+        StringBuilder output = new StringBuilder();
+        String line;
+
+        while ((line = out.readLine()) != null) {
+            output.append(line).append('\n');
+        }
+
+        try {
+            if (process.waitFor() != 0) {
+                throw new IOException("JVM failed: " + command + "\n"
+                        + output);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted");
+        }
+    }
+
+    private static String join(List<String> classPath) {
+        StringBuilder joined = new StringBuilder();
+
+        for (String entry : classPath) {
+            if (joined.length() > 0) {
+                joined.append(File.pathSeparator);
+            }
+
+            joined.append(entry);
+        }
+
+        return joined.toString();
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private FastLauncher() {
+        throw new UnsupportedOperationException();
+    }
+}
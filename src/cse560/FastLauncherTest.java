@@ -0,0 +1,78 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class FastLauncherTest {
+    /**
+     * Checking: A plain one-file command line is read by the launcher, with
+     * the same settings MMXIAssembler would use.
+     */
+    @Test
+    public void simpleCommandLine() throws IOException {
+        File source = File.createTempFile("fast", ".asm");
+
+        try {
+            AssemblyContext context =
+                    FastLauncher.simpleContext(new String[] {"-C", "-M", "30",
+                        "-f", source.getPath(), "-s", "7", "-L", "0" });
+
+            assertEquals(source, context.getSourceFile());
+            assertEquals(ObjectDialect.COALESCED, context.getDialect());
+            assertEquals(30, context.getMaxRecords());
+            assertEquals(7, context.getMaxSymbols());
+            assertEquals(0, context.getMaxLiterals());
+            assertEquals(ParserStrategy.SCANNER, context.getParser());
+
+            context =
+                    FastLauncher.simpleContext(new String[] {"-f",
+                        source.getPath() });
+
+            assertEquals(ObjectDialect.CLASSIC, context.getDialect());
+            assertEquals(AssemblyContext.DEFAULT_MAX_RECORDS, context
+                    .getMaxRecords());
+        } finally {
+            source.delete();
+        }
+    }
+
+    /**
+     * Checking: Every other command line is left to MMXIAssembler.
+     */
+    @Test
+    public void otherCommandLines() throws IOException {
+        File source = File.createTempFile("fast", ".asm");
+        String path = source.getPath();
+
+        try {
+            String[][] others = {
+                {},
+                {"-f" },
+                {"-f", path, "-d" },
+                {"-f", path, "-f", path },
+                {"-f", path, path },
+                {"-f" + path },
+                {"-f", path, "-M", "-5" },
+                {"-f", path, "-M", "+5" },
+                {"-f", path, "-s", "1e3" },
+                {"-f", path, "--stats" },
+                {"-f", new File(source.getParentFile(), "*.asm").getPath() },
+                {"-f", source.getParent() },
+                {"-f", path + ".missing" },
+            };
+
+            for (String[] args : others) {
+                assertNull(Arrays.toString(args), FastLauncher
+                        .simpleContext(args));
+            }
+        } finally {
+            source.delete();
+        }
+    }
+}
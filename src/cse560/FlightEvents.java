@@ -0,0 +1,437 @@
+package cse560;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The JDK Flight Recorder events of the assembler, and the running totals
+ * sampled by its periodic event.
+ * <p>
+ * The phase events are only created once the flight recorder has started
+ * (see {@link #isRecorderStarted}), since initializing the first event class
+ * starts the recorder's machinery, which takes longer than assembling a small
+ * program. From then on each phase event is created and begun, and filled in
+ * only if {@code shouldCommit} says it will be recorded, so the phases cost a
+ * few atomic additions per job and nothing per record. The sinks that time the
+ * listing and the object writers are only put in place when a recording wants
+ * those events.
+ * <p>
+ * Note that this class violates this project's typical rule to have an
+ * interface for every component. It only holds the event types and static
+ * helpers.
+ *
+ * @author Igor Tolkachev
+ */
+public final class FlightEvents {
+    /** The category every event is shown under. */
+    private static final String CATEGORY = "MMXI Assembler";
+
+    /** Totals over every job since the JVM started. */
+    private static final AtomicLong JOBS = new AtomicLong();
+
+    private static final AtomicLong RECORDS = new AtomicLong();
+
+    private static final AtomicLong SOURCE_BYTES = new AtomicLong();
+
+    private static final AtomicLong WORDS = new AtomicLong();
+
+    private static final AtomicLong CACHE_HITS = new AtomicLong();
+
+    private static final AtomicLong CACHE_MISSES = new AtomicLong();
+
+    /** Whether the periodic event has been registered. */
+    private static volatile boolean registered = false;
+
+    /**
+     * Pass one of one program, literal placement included.
+     */
+    @Name("cse560.Parse")
+    @Label("Parse")
+    @Category(CATEGORY)
+    @Description("Pass one: parsing records and building the symbol table")
+    @StackTrace(false)
+    public static final class ParseEvent extends Event {
+        @Label("Source Lines")
+        int lines;
+
+        @Label("Records")
+        int records;
+
+        @Label("Source Size")
+        @DataAmount
+        long sourceBytes;
+
+        @Label("Symbols")
+        int symbols;
+
+        @Label("Literals")
+        int literals;
+    }
+
+    /**
+     * Placing the literal table after the last record.
+     */
+    @Name("cse560.Literals")
+    @Label("Literal Assignment")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class LiteralsEvent extends Event {
+        @Label("Literals")
+        int literals;
+
+        @Label("First Address")
+        int firstAddress;
+    }
+
+    /**
+     * Pass two of one program: encoding its records and passing them to the
+     * sinks.
+     */
+    @Name("cse560.Encode")
+    @Label("Encode")
+    @Category(CATEGORY)
+    @Description("Pass two: encoding every record")
+    @StackTrace(false)
+    public static final class EncodeEvent extends Event {
+        @Label("Records")
+        int records;
+
+        @Label("Words Emitted")
+        int words;
+    }
+
+    /**
+     * The listing lines of one program. The event spans pass two; the time
+     * spent in the listing sinks is its {@code writeTime}.
+     */
+    @Name("cse560.Listing")
+    @Label("Listing")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class ListingEvent extends Event {
+        @Label("Lines")
+        int lines;
+
+        @Label("Write Time")
+        @Timespan
+        long writeTime;
+    }
+
+    /**
+     * The object output of one program. The event spans pass two; the time
+     * spent in the object sinks is its {@code writeTime}.
+     */
+    @Name("cse560.Write")
+    @Label("Object Write")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class WriteEvent extends Event {
+        @Label("Words")
+        int words;
+
+        @Label("Write Time")
+        @Timespan
+        long writeTime;
+    }
+
+    /**
+     * The totals over every job so far, sampled periodically.
+     */
+    @Name("cse560.Throughput")
+    @Label("Assembler Throughput")
+    @Category(CATEGORY)
+    @Period("1 s")
+    @StackTrace(false)
+    public static final class ThroughputEvent extends Event {
+        @Label("Jobs")
+        long jobs;
+
+        @Label("Records Parsed")
+        long records;
+
+        @Label("Source Read")
+        @DataAmount
+        long sourceBytes;
+
+        @Label("Words Emitted")
+        long words;
+
+        @Label("Cache Hits")
+        long cacheHits;
+
+        @Label("Cache Misses")
+        long cacheMisses;
+    }
+
+    /**
+     * Times the sinks of pass two for the {@link ListingEvent} and the
+     * {@link WriteEvent}.
+     */
+    public static final class SinkTimer {
+        /** The events, or null if the recorder has not started. */
+        private final ListingEvent listing;
+
+        private final WriteEvent write;
+
+        /** The sinks to pass events to, timed if they are wanted. */
+        private final List<OutputSink> sinks;
+
+        /**
+         * Begins the events and wraps {@code sinks} if they will be recorded.
+         *
+         * @param sinks
+         *            The sinks of pass two.
+         */
+        private SinkTimer(List<OutputSink> sinks) {
+            if (!isRecorderStarted()) {
+                this.listing = null;
+                this.write = null;
+                this.sinks = sinks;
+                return;
+            }
+
+            this.listing = new ListingEvent();
+            this.write = new WriteEvent();
+            this.listing.begin();
+            this.write.begin();
+
+            if (this.listing.isEnabled() || this.write.isEnabled()) {
+                List<OutputSink> timed = new ArrayList<OutputSink>();
+
+                for (OutputSink sink : sinks) {
+                    timed.add(timed(sink));
+                }
+
+                this.sinks = timed;
+            } else {
+                this.sinks = sinks;
+            }
+        }
+
+        /**
+         * @return The sinks pass two should write to.
+         */
+        public List<OutputSink> getSinks() {
+            return this.sinks;
+        }
+
+        /**
+         * Ends and commits the events, if they are recorded.
+         */
+        public void commit() {
+            if (this.listing == null) {
+                return;
+            }
+
+            if (this.listing.shouldCommit()) {
+                this.listing.commit();
+            }
+
+            if (this.write.shouldCommit()) {
+                this.write.commit();
+            }
+        }
+
+        private OutputSink timed(final OutputSink sink) {
+            final boolean isListing = sink instanceof ListingSink;
+
+            return new OutputSink() {
+                private void charge(long start) {
+                    long nanos = System.nanoTime() - start;
+
+                    if (isListing) {
+                        SinkTimer.this.listing.writeTime += nanos;
+                    } else {
+                        SinkTimer.this.write.writeTime += nanos;
+                    }
+                }
+
+                @Override
+                public void header(String segmentName, int firstAddress,
+                        int length, boolean isRelocatable) throws IOException {
+                    long start = System.nanoTime();
+                    sink.header(segmentName, firstAddress, length,
+                            isRelocatable);
+                    charge(start);
+                }
+
+                @Override
+                public void entry(String symbol, int value, boolean isRelative)
+                        throws IOException {
+                    long start = System.nanoTime();
+                    sink.entry(symbol, value, isRelative);
+                    charge(start);
+                }
+
+                @Override
+                public void external(String symbol) throws IOException {
+                    long start = System.nanoTime();
+                    sink.external(symbol);
+                    charge(start);
+                }
+
+                @Override
+                public void word(int address, int value, Relocation relocation)
+                        throws IOException {
+                    long start = System.nanoTime();
+                    sink.word(address, value, relocation);
+                    charge(start);
+
+                    if (!isListing) {
+                        ++SinkTimer.this.write.words;
+                    }
+                }
+
+                @Override
+                public void listingLine(SourceRecord record, int address,
+                        int value, boolean printSrc) throws IOException {
+                    long start = System.nanoTime();
+                    sink.listingLine(record, address, value, printSrc);
+                    charge(start);
+
+                    if (isListing) {
+                        ++SinkTimer.this.listing.lines;
+                    }
+                }
+
+                @Override
+                public void literal(int literal, int address)
+                        throws IOException {
+                    long start = System.nanoTime();
+                    sink.literal(literal, address);
+                    charge(start);
+
+                    if (!isListing) {
+                        ++SinkTimer.this.write.words;
+                    }
+                }
+
+                @Override
+                public void end(int execAddress) throws IOException {
+                    long start = System.nanoTime();
+                    sink.end(execAddress);
+                    charge(start);
+                }
+            };
+        }
+    }
+
+    /**
+     * This class should not be instantiated.
+     */
+    private FlightEvents() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns whether the flight recorder has started, in which case the
+     * events may be created and begun. The recorder is initialized by the
+     * first recording, whether from the command line, {@code jcmd} or a
+     * {@code Recording}, and stays so. Asking
+     * {@link FlightRecorder#isInitialized} only loads that class; it does not
+     * initialize the recorder.
+     *
+     * @return True iff the recorder has started.
+     */
+    public static boolean isRecorderStarted() {
+        return FlightRecorder.isInitialized();
+    }
+
+    /**
+     * Begins the listing and write events of one pass two.
+     *
+     * @param sinks
+     *            The sinks of pass two.
+     * @return The timer, whose sinks pass two must write to.
+     */
+    public static SinkTimer timeSinks(List<OutputSink> sinks) {
+        return new SinkTimer(sinks);
+    }
+
+    /**
+     * Adds one parsed program to the totals.
+     *
+     * @param records
+     *            The number of records parsed.
+     * @param sourceBytes
+     *            The number of characters of source read.
+     * @param recording
+     *            Whether the program's {@link ParseEvent} is enabled, which
+     *            is only so while the flight recorder is running.
+     */
+    public static void parsed(int records, long sourceBytes, boolean recording) {
+        RECORDS.addAndGet(records);
+        SOURCE_BYTES.addAndGet(sourceBytes);
+
+        if (recording && !registered) {
+            register();
+        }
+    }
+
+    /**
+     * Adds one assembled program to the totals.
+     *
+     * @param words
+     *            The number of words emitted.
+     */
+    public static void encoded(int words) {
+        JOBS.incrementAndGet();
+        WORDS.addAndGet(words);
+    }
+
+    /**
+     * Adds one build cache lookup to the totals.
+     *
+     * @param hit
+     *            Whether the lookup found its entry.
+     */
+    public static void cacheLookup(boolean hit) {
+        if (hit) {
+            CACHE_HITS.incrementAndGet();
+        } else {
+            CACHE_MISSES.incrementAndGet();
+        }
+    }
+
+    /**
+     * Registers the periodic {@link ThroughputEvent} once a recording has
+     * been seen. Registering earlier would start the recorder's machinery in
+     * every JVM that assembles, which costs a one-file assembly more than
+     * half of its start-up time.
+     */
+    private static void register() {
+        synchronized (FlightEvents.class) {
+            if (!registered) {
+                FlightRecorder.addPeriodicEvent(ThroughputEvent.class,
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                ThroughputEvent event = new ThroughputEvent();
+
+                                event.jobs = JOBS.get();
+                                event.records = RECORDS.get();
+                                event.sourceBytes = SOURCE_BYTES.get();
+                                event.words = WORDS.get();
+                                event.cacheHits = CACHE_HITS.get();
+                                event.cacheMisses = CACHE_MISSES.get();
+                                event.commit();
+                            }
+                        });
+                registered = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Test;
+
+public class FlightEventsTest {
+    /**
+     * Checking: A recording sees one event per phase, carrying the counts of
+     * the program.
+     */
+    @Test
+    public void recordsPhases() throws Exception {
+        String source =
+                new WorkloadGenerator().withLines(500).withLiterals(4)
+                        .generate();
+        File file = File.createTempFile("phases", ".jfr");
+        Recording recording = new Recording();
+        Program program;
+
+        for (String name : new String[] { "Parse", "Literals", "Encode",
+                "Listing", "Write" }) {
+            recording.enable("cse560." + name).withoutThreshold();
+        }
+
+        recording.start();
+        try {
+            List<OutputSink> sinks = new ArrayList<OutputSink>();
+
+            program =
+                    new ParserImp2().parse(new BufferedReader(new StringReader(
+                            source)), 1000);
+            sinks.add(new TextObjectSink(new StringWriter(),
+                    ObjectDialect.CLASSIC));
+            sinks.add(new ListingSink(new StringWriter()));
+            new AssemblerImp().assemble(program, sinks);
+        } finally {
+            recording.stop();
+        }
+
+        recording.dump(file.toPath());
+        recording.close();
+
+        Map<String, RecordedEvent> events =
+                new HashMap<String, RecordedEvent>();
+
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            events.put(event.getEventType().getName(), event);
+        }
+
+        file.delete();
+
+        assertEquals(5, events.size());
+        assertEquals(source.split("\n").length, events.get("cse560.Parse")
+                .getInt("lines"));
+        assertEquals(source.length(),
+                events.get("cse560.Parse").getLong("sourceBytes"));
+        assertEquals(4, events.get("cse560.Literals").getInt("literals"));
+        assertEquals(events.get("cse560.Encode").getInt("words"), events.get(
+                "cse560.Write").getInt("words"));
+        assertTrue(events.get("cse560.Listing").getInt("lines") > 500);
+    }
+}
@@ -0,0 +1,204 @@
+package cse560;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Holds one assembly job to the limits of its {@link AssemblyContext}. The
+ * parser and assembler report their progress to it as they go, and the first
+ * limit reached stops the job with a fatal error, which callers such as
+ * {@link EmbeddedAssembler} return as a diagnostic like any other.
+ * <p>
+ * The clock starts when the governor is created, so each job needs its own.
+ * <p>
+ * <b>Model:</b>
+ * <ul>
+ * <li>{@code AssemblyContext context} - The settings of the job.</li>
+ * <li>{@code long deadline} - The time, on the {@code System.nanoTime} clock,
+ * at which the job is stopped; unused if the job has no time limit.</li>
+ * <li>{@code integer words} - The number of words emitted so far.</li>
+ * </ul>
+ *
+ * @author Igor Tolkachev
+ */
+public final class Governor {
+    /** The settings of the job. */
+    private final AssemblyContext context;
+
+    /** The limits of the job. */
+    private final ResourceLimits limits;
+
+    /** When the job is stopped, on the {@code System.nanoTime} clock. */
+    private final long deadline;
+
+    /** Number of words emitted so far. */
+    private int words = 0;
+
+    /**
+     * Initializes a governor and starts the job's clock.
+     *
+     * @param context
+     *            The settings of the job.
+     */
+    public Governor(AssemblyContext context) {
+        this.context = context;
+        this.limits = context.getLimits();
+        this.deadline =
+                System.nanoTime() + this.limits.getTimeLimitMillis() * 1000000L;
+    }
+
+    /**
+     * Returns a reader over {@code in} that stops the job once more than
+     * {@code maxSourceLength} characters have been read from it.
+     *
+     * @param in
+     *            The source of the job.
+     * @return The bounded reader.
+     */
+    public Reader bound(Reader in) {
+        return new FilterReader(in) {
+            private long count = 0;
+
+            @Override
+            public int read() throws IOException {
+                int c = super.read();
+
+                if (c >= 0) {
+                    count(1);
+                }
+
+                return c;
+            }
+
+            @Override
+            public int read(char[] buffer, int offset, int length)
+                    throws IOException {
+                int n = super.read(buffer, offset, length);
+
+                if (n > 0) {
+                    count(n);
+                }
+
+                return n;
+            }
+
+            private void count(int n) {
+                this.count += n;
+
+                if (this.count > Governor.this.limits.getMaxSourceLength()) {
+                    ErrorHandler.fatalError("Source longer than "
+                            + Governor.this.limits.getMaxSourceLength()
+                            + " characters", 400);
+                }
+            }
+        };
+    }
+
+    /**
+     * Checks one line of source as it is read.
+     *
+     * @param line
+     *            The line.
+     * @param lineNumber
+     *            Its line number.
+     */
+    public void checkLine(String line, int lineNumber) {
+        if (line.length() > this.limits.getMaxLineLength()) {
+            ErrorHandler.fatalError("Line longer than "
+                    + this.limits.getMaxLineLength() + " characters", 401,
+                    lineNumber);
+        }
+
+        checkTime(lineNumber);
+    }
+
+    /**
+     * Checks the number of operands of a record.
+     *
+     * @param count
+     *            The number of operands.
+     * @param lineNumber
+     *            The line of the record.
+     */
+    public void checkOperands(int count, int lineNumber) {
+        if (count > this.limits.getMaxOperands()) {
+            ErrorHandler.fatalError("More than "
+                    + this.limits.getMaxOperands() + " operands", 402,
+                    lineNumber);
+        }
+    }
+
+    /**
+     * Checks that one more symbol may be defined.
+     *
+     * @param program
+     *            The program the symbol is to be added to.
+     * @param lineNumber
+     *            The line defining it.
+     */
+    public void checkSymbol(Program program, int lineNumber) {
+        if (program.numberOfSymbols() >= this.context.getMaxSymbols()) {
+            ErrorHandler.fatalError("More than "
+                    + this.context.getMaxSymbols() + " symbols", 403,
+                    lineNumber);
+        }
+    }
+
+    /**
+     * Checks that one more literal may be added.
+     *
+     * @param program
+     *            The program the literal is to be added to.
+     * @param lineNumber
+     *            The line using it.
+     */
+    public void checkLiteral(Program program, int lineNumber) {
+        if (program.numberOfLiterals() >= this.context.getMaxLiterals()) {
+            ErrorHandler.fatalError("More than "
+                    + this.context.getMaxLiterals() + " literals", 404,
+                    lineNumber);
+        }
+    }
+
+    /**
+     * Checks the length the segment has reached.
+     *
+     * @param length
+     *            The number of words from the segment's first address to the
+     *            location counter.
+     * @param lineNumber
+     *            The line that moved the location counter.
+     */
+    public void checkLength(int length, int lineNumber) {
+        if (length > this.limits.getMaxWords()) {
+            ErrorHandler.fatalError("Segment longer than "
+                    + this.limits.getMaxWords() + " words", 405, lineNumber);
+        }
+    }
+
+    /**
+     * Counts one emitted word.
+     */
+    public void countWord() {
+        if (++this.words > this.limits.getMaxWords()) {
+            ErrorHandler.fatalError("More than " + this.limits.getMaxWords()
+                    + " words emitted", 405);
+        }
+    }
+
+    /**
+     * Stops the job if its time is up.
+     *
+     * @param lineNumber
+     *            The line being worked on, for the message.
+     */
+    public void checkTime(int lineNumber) {
+        if (this.limits.getTimeLimitMillis() > 0
+                && System.nanoTime() - this.deadline > 0) {
+            ErrorHandler.fatalError("Time limit of "
+                    + this.limits.getTimeLimitMillis() + " ms exceeded", 406,
+                    lineNumber);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class GovernorTest {
+    private static final String HEAD = "Gov      .ORIG   x3000\n";
+
+    private static final String TAIL = "         .END\n";
+
+    private static AssemblyContext context(int maxRecords, int maxSymbols,
+            int maxLiterals, ResourceLimits limits) {
+        return new AssemblyContext(null, maxRecords, maxSymbols, maxLiterals,
+                ObjectDialect.CLASSIC, limits);
+    }
+
+    private static String repeat(String line, int n) {
+        StringBuilder lines = new StringBuilder();
+
+        for (int i = 0; i < n; ++i) {
+            lines.append(String.format(line, i));
+        }
+
+        return lines.toString();
+    }
+
+    /**
+     * Returns the code of the one error assembling {@code source} gives.
+     */
+    private static int errorCode(String source, AssemblyContext context) {
+        AssemblyResult result = EmbeddedAssembler.assemble(source, context);
+
+        assertFalse(result.succeeded());
+        assertEquals(1, result.getDiagnostics().size());
+
+        return result.getDiagnostics().get(0).getCode();
+    }
+
+    /**
+     * Checking: A program within every limit assembles.
+     */
+    @Test
+    public void withinLimits() {
+        String source =
+                HEAD + repeat("L%-5d   LD      R1,=#%1$d\n", 10) + TAIL;
+
+        assertTrue(EmbeddedAssembler.assemble(source,
+                context(12, 10, 10, ResourceLimits.SERVICE)).succeeded());
+    }
+
+    /**
+     * Checking: The record, symbol and literal limits of the context are
+     * enforced.
+     */
+    @Test
+    public void countLimits() {
+        String source =
+                HEAD + repeat("L%-5d   LD      R1,=#%1$d\n", 10) + TAIL;
+
+        assertEquals(118, errorCode(source, context(11, 10, 10,
+                ResourceLimits.DEFAULT)));
+        assertEquals(403, errorCode(source, context(12, 9, 10,
+                ResourceLimits.DEFAULT)));
+        assertEquals(404, errorCode(source, context(12, 10, 9,
+                ResourceLimits.DEFAULT)));
+    }
+
+    /**
+     * Checking: Oversized sources, lines, operand lists and segments are
+     * stopped.
+     */
+    @Test
+    public void sizeLimits() {
+        AssemblyContext context =
+                context(100, 100, 100, new ResourceLimits(200, 40, 3, 100, 0));
+
+        assertEquals(400, errorCode(HEAD
+                + repeat("         ADD     R1,R1,#1\n", 20) + TAIL, context));
+        assertEquals(401, errorCode(HEAD + "         ADD     R1,R1,#1 ; "
+                + repeat("x", 20) + "\n" + TAIL, context));
+        assertEquals(402, errorCode(HEAD + "         .EXT    A,B,C,D\n" + TAIL,
+                context));
+        assertEquals(405, errorCode(HEAD + "         .BLKW   #101\n" + TAIL,
+                context));
+        assertEquals(109, errorCode(HEAD + "         .BLKW   #-1\n" + TAIL,
+                context));
+    }
+
+    /**
+     * Checking: A job whose source arrives too slowly is stopped at its time
+     * limit.
+     */
+    @Test
+    public void timeLimit() {
+        final Reader source =
+                new StringReader(HEAD
+                        + repeat("         ADD     R1,R1,#1\n", 50) + TAIL);
+        Reader slow = new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length)
+                    throws IOException {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+
+                return source.read(buffer, offset, Math.min(length, 10));
+            }
+
+            @Override
+            public void close() throws IOException {
+                source.close();
+            }
+        };
+
+        AssemblyResult result;
+
+        try {
+            result =
+                    EmbeddedAssembler.assemble(slow, context(100, 100, 100,
+                            ResourceLimits.DEFAULT.withTimeLimit(20)));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        assertFalse(result.succeeded());
+        assertEquals(406, result.getDiagnostics().get(0).getCode());
+    }
+}
@@ -0,0 +1,152 @@
+package cse560;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Writes the segment in Intel HEX format for device programmers and other
+ * tools that expect byte-addressed images.
+ * <p>
+ * Each MMXI word at address {@code a} becomes two bytes, high byte first, at
+ * byte address {@code 2a}. Contiguous bytes are packed into data records of up
+ * to {@code RECORD_SIZE} bytes. An extended linear address record precedes any
+ * data above the first 64K bytes, and a start linear address record gives the
+ * byte address of the execution address. Words the program does not assign
+ * are not written.
+ *
+ * @author Igor Tolkachev
+ */
+public final class IntelHexSink implements OutputSink {
+    /** Maximum number of data bytes in one record. */
+    private static final int RECORD_SIZE = 16;
+
+    /** Record type of a data record. */
+    private static final int DATA = 0x00;
+
+    /** Record type of the end-of-file record. */
+    private static final int END_OF_FILE = 0x01;
+
+    /** Record type of an extended linear address record. */
+    private static final int EXTENDED_LINEAR_ADDRESS = 0x04;
+
+    /** Record type of a start linear address record. */
+    private static final int START_LINEAR_ADDRESS = 0x05;
+
+    /** The destination of the HEX file. */
+    private final PrintWriter out;
+
+    /** Data bytes of the pending record. */
+    private final byte[] pending = new byte[RECORD_SIZE];
+
+    /** Number of bytes in the pending record. */
+    private int pendingLength = 0;
+
+    /** Byte address of the first byte of the pending record. */
+    private int pendingStart = 0;
+
+    /** Upper sixteen bits of the byte address last given to the reader. */
+    private int upperAddress = 0;
+
+    /**
+     * Initializes a sink that writes Intel HEX to {@code out}.
+     *
+     * @param out
+     *            The destination of the HEX file.
+     */
+    public IntelHexSink(Writer out) {
+        this.out = new PrintWriter(out);
+    }
+
+    @Override
+    public void header(String segmentName, int firstAddress, int length,
+            boolean isRelocatable) {
+    }
+
+    @Override
+    public void entry(String symbol, int value, boolean isRelative) {
+    }
+
+    @Override
+    public void external(String symbol) {
+    }
+
+    @Override
+    public void word(int address, int value, Relocation relocation) {
+        int byteAddress = 2 * address;
+
+        // A record holds contiguous bytes and may not cross a 64K boundary.
+        if (this.pendingLength > 0
+                && (this.pendingStart + this.pendingLength != byteAddress
+                        || this.pendingLength == RECORD_SIZE || (byteAddress & 0xffff) == 0)) {
+            flushPending();
+        }
+
+        if (this.pendingLength == 0) {
+            this.pendingStart = byteAddress;
+        }
+
+        this.pending[this.pendingLength++] = (byte) (value >> 8);
+        this.pending[this.pendingLength++] = (byte) value;
+    }
+
+    @Override
+    public void listingLine(SourceRecord record, int address, int value,
+            boolean printSource) {
+    }
+
+    @Override
+    public void literal(int literal, int address) {
+        word(address, literal, Relocation.NONE);
+    }
+
+    @Override
+    public void end(int execAddress) throws IOException {
+        flushPending();
+
+        int start = 2 * execAddress;
+        writeRecord(0, START_LINEAR_ADDRESS, new byte[] {
+                (byte) (start >> 24), (byte) (start >> 16), (byte) (start >> 8),
+                (byte) start }, 4);
+        writeRecord(0, END_OF_FILE, new byte[0], 0);
+
+        this.out.flush();
+    }
+
+    /**
+     * Writes the pending bytes, if any, as a data record.
+     */
+    private void flushPending() {
+        if (this.pendingLength == 0) {
+            return;
+        }
+
+        int upper = this.pendingStart >>> 16;
+
+        if (upper != this.upperAddress) {
+            writeRecord(0, EXTENDED_LINEAR_ADDRESS, new byte[] {
+                    (byte) (upper >> 8), (byte) upper }, 2);
+            this.upperAddress = upper;
+        }
+
+        writeRecord(this.pendingStart & 0xffff, DATA, this.pending,
+                this.pendingLength);
+        this.pendingLength = 0;
+    }
+
+    /**
+     * Writes one record: length, address, type, data and checksum.
+     */
+    private void writeRecord(int address, int type, byte[] data, int length) {
+        int checksum = length + (address >> 8) + address + type;
+
+        this.out.printf(":%02X%04X%02X", length, address, type);
+
+        for (int i = 0; i < length; ++i) {
+            this.out.printf("%02X", data[i] & 0xff);
+            checksum += data[i];
+        }
+
+        this.out.printf("%02X%n", -checksum & 0xff);
+    }
+}
@@ -0,0 +1,362 @@
+package cse560;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the subset of JSON used by {@link LanguageServer}.
+ * <p>
+ * Values are represented as {@code Map<String, Object>} (in member order),
+ * {@code List<Object>}, {@code String}, {@code Long} for integers,
+ * {@code Double} for other numbers, {@code Boolean} and {@code null}.
+ * <p>
+ * Note that this class violates this project's typical rule to have an
+ * interface for every component, since every method is a class method.
+ *
+ * @author Igor Tolkachev
+ */
+public final class Json {
+    /**
+     * Parses a JSON text.
+     *
+     * @param text
+     *            The text to parse.
+     * @return The value it holds.
+     * @throws IllegalArgumentException
+     *             If {@code text} is not well-formed JSON.
+     */
+    public static Object parse(String text) {
+        int[] pos = {0 };
+        Object value = parseValue(text, pos);
+
+        skipWhitespace(text, pos);
+
+        if (pos[0] != text.length()) {
+            throw error("Trailing characters", pos);
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns {@code value} as JSON text.
+     *
+     * @param value
+     *            A value as returned by {@link #parse}. Any other
+     *            {@code Number} is written as a number.
+     * @return The text.
+     */
+    public static String write(Object value) {
+        StringBuilder out = new StringBuilder();
+
+        write(value, out);
+
+        return out.toString();
+    }
+
+    private static void write(Object value, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof String) {
+            writeString((String) value, out);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof Map) {
+            String separator = "";
+
+            out.append('{');
+
+            for (Map.Entry<?, ?> member : ((Map<?, ?>) value).entrySet()) {
+                out.append(separator);
+                writeString(member.getKey().toString(), out);
+                out.append(':');
+                write(member.getValue(), out);
+                separator = ",";
+            }
+
+            out.append('}');
+        } else if (value instanceof List) {
+            String separator = "";
+
+            out.append('[');
+
+            for (Object element : (List<?>) value) {
+                out.append(separator);
+                write(element, out);
+                separator = ",";
+            }
+
+            out.append(']');
+        } else {
+            throw new IllegalArgumentException("Not a JSON value: "
+                    + value.getClass().getName());
+        }
+    }
+
+    private static void writeString(String s, StringBuilder out) {
+        out.append('"');
+
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+
+            switch (c) {
+            case '"':
+                out.append("\\\"");
+                break;
+
+            case '\\':
+                out.append("\\\\");
+                break;
+
+            case '\n':
+                out.append("\\n");
+                break;
+
+            case '\r':
+                out.append("\\r");
+                break;
+
+            case '\t':
+                out.append("\\t");
+                break;
+
+            default:
+                if (c < 0x20) {
+                    out.append(String.format("\\u%04x", (int) c));
+                } else {
+                    out.append(c);
+                }
+            }
+        }
+
+        out.append('"');
+    }
+
+    private static Object parseValue(String text, int[] pos) {
+        skipWhitespace(text, pos);
+
+        if (pos[0] >= text.length()) {
+            throw error("Unexpected end of input", pos);
+        }
+
+        char c = text.charAt(pos[0]);
+
+        switch (c) {
+        case '{':
+            return parseObject(text, pos);
+
+        case '[':
+            return parseArray(text, pos);
+
+        case '"':
+            return parseString(text, pos);
+
+        case 't':
+            expect(text, pos, "true");
+            return Boolean.TRUE;
+
+        case 'f':
+            expect(text, pos, "false");
+            return Boolean.FALSE;
+
+        case 'n':
+            expect(text, pos, "null");
+            return null;
+
+        default:
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                return parseNumber(text, pos);
+            }
+
+            throw error("Unexpected character '" + c + "'", pos);
+        }
+    }
+
+    private static Map<String, Object> parseObject(String text, int[] pos) {
+        Map<String, Object> object = new LinkedHashMap<String, Object>();
+
+        ++pos[0];
+        skipWhitespace(text, pos);
+
+        if (peek(text, pos) == '}') {
+            ++pos[0];
+            return object;
+        }
+
+        while (true) {
+            skipWhitespace(text, pos);
+
+            if (peek(text, pos) != '"') {
+                throw error("Expected member name", pos);
+            }
+
+            String name = parseString(text, pos);
+
+            skipWhitespace(text, pos);
+            expect(text, pos, ":");
+            object.put(name, parseValue(text, pos));
+            skipWhitespace(text, pos);
+
+            if (peek(text, pos) == ',') {
+                ++pos[0];
+            } else {
+                expect(text, pos, "}");
+                return object;
+            }
+        }
+    }
+
+    private static List<Object> parseArray(String text, int[] pos) {
+        List<Object> array = new ArrayList<Object>();
+
+        ++pos[0];
+        skipWhitespace(text, pos);
+
+        if (peek(text, pos) == ']') {
+            ++pos[0];
+            return array;
+        }
+
+        while (true) {
+            array.add(parseValue(text, pos));
+            skipWhitespace(text, pos);
+
+            if (peek(text, pos) == ',') {
+                ++pos[0];
+            } else {
+                expect(text, pos, "]");
+                return array;
+            }
+        }
+    }
+
+    private static String parseString(String text, int[] pos) {
+        StringBuilder s = new StringBuilder();
+
+        ++pos[0];
+
+        while (true) {
+            if (pos[0] >= text.length()) {
+                throw error("Unterminated string", pos);
+            }
+
+            char c = text.charAt(pos[0]++);
+
+            if (c == '"') {
+                return s.toString();
+            } else if (c != '\\') {
+                s.append(c);
+                continue;
+            }
+
+            if (pos[0] >= text.length()) {
+                throw error("Unterminated string", pos);
+            }
+
+            c = text.charAt(pos[0]++);
+
+            switch (c) {
+            case 'b':
+                s.append('\b');
+                break;
+
+            case 'f':
+                s.append('\f');
+                break;
+
+            case 'n':
+                s.append('\n');
+                break;
+
+            case 'r':
+                s.append('\r');
+                break;
+
+            case 't':
+                s.append('\t');
+                break;
+
+            case 'u':
+                if (pos[0] + 4 > text.length()) {
+                    throw error("Bad escape", pos);
+                }
+
+                try {
+                    s.append((char) Integer.parseInt(text.substring(pos[0],
+                            pos[0] + 4), 16));
+                } catch (NumberFormatException e) {
+                    throw error("Bad escape", pos);
+                }
+
+                pos[0] += 4;
+                break;
+
+            default:
+                // '"', '\\' and '/' stand for themselves.
+                s.append(c);
+            }
+        }
+    }
+
+    private static Number parseNumber(String text, int[] pos) {
+        int start = pos[0];
+        boolean integral = true;
+
+        while (pos[0] < text.length()) {
+            char c = text.charAt(pos[0]);
+
+            if (c == '.' || c == 'e' || c == 'E') {
+                integral = false;
+            } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                break;
+            }
+
+            ++pos[0];
+        }
+
+        String number = text.substring(start, pos[0]);
+
+        try {
+            return integral ? (Number) Long.valueOf(number) : (Number) Double
+                    .valueOf(number);
+        } catch (NumberFormatException e) {
+            throw error("Bad number " + number, pos);
+        }
+    }
+
+    private static void expect(String text, int[] pos, String token) {
+        if (!text.startsWith(token, pos[0])) {
+            throw error("Expected '" + token + "'", pos);
+        }
+
+        pos[0] += token.length();
+    }
+
+    private static char peek(String text, int[] pos) {
+        if (pos[0] >= text.length()) {
+            throw error("Unexpected end of input", pos);
+        }
+
+        return text.charAt(pos[0]);
+    }
+
+    private static void skipWhitespace(String text, int[] pos) {
+        while (pos[0] < text.length()
+                && Character.isWhitespace(text.charAt(pos[0]))) {
+            ++pos[0];
+        }
+    }
+
+    private static IllegalArgumentException error(String message, int[] pos) {
+        return new IllegalArgumentException(message + " at offset " + pos[0]);
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private Json() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,635 @@
+package cse560;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A JSON-RPC server over standard input and output, in the framing and with
+ * the document methods of the Language Server Protocol, so an editor can
+ * check MMXI sources as they are typed.
+ *
+ * <h1>Methods</h1>
+ * <ul>
+ * <li>{@code initialize}, {@code shutdown}, {@code exit} - Session control.
+ * Documents are synchronized incrementally.</li>
+ * <li>{@code textDocument/didOpen}, {@code textDocument/didChange},
+ * {@code textDocument/didClose} - Keep a copy of each open document. A change
+ * with a range replaces only that range.</li>
+ * <li>{@code textDocument/publishDiagnostics} (sent) - The errors and warnings
+ * of a document after each analysis.</li>
+ * <li>{@code mmxi/publishLabels} (sent) - The address and relocatability of
+ * every label after each analysis.</li>
+ * <li>{@code mmxi/labels} - Returns the labels of the last analysis without
+ * waiting for the next.</li>
+ * </ul>
+ *
+ * <h1>Analysis</h1>
+ * <p>
+ * Each document is analyzed by parsing and running pass two without writing
+ * any output. Analyses run on one background thread. A document edited while
+ * it is being analyzed is analyzed once more, at its latest version; the
+ * versions in between are never analyzed, so a burst of keystrokes costs at
+ * most two analyses.
+ * <p>
+ * The result of an analysis is an immutable {@link Analysis} swapped in when
+ * complete. Requests read whichever analysis is current and never wait on the
+ * one in progress, and the analysis thread never waits on them.
+ * <p>
+ * The text of a document is kept as a list of lines, so an edit costs time in
+ * the size of the lines it touches. A parsed {@link Program} cannot be reused
+ * between versions, since pass two consumes its records and every location
+ * after an edit may move.
+ *
+ * @author Igor Tolkachev
+ */
+public final class LanguageServer {
+    /** Severity of an error in a published diagnostic. */
+    private static final int SEVERITY_ERROR = 1;
+
+    /** Severity of a warning in a published diagnostic. */
+    private static final int SEVERITY_WARNING = 2;
+
+    /** JSON-RPC error: the method does not exist. */
+    private static final int METHOD_NOT_FOUND = -32601;
+
+    /** JSON-RPC error: the parameters are not valid. */
+    private static final int INVALID_PARAMS = -32602;
+
+    /** JSON-RPC error: the message is not valid JSON. */
+    private static final int PARSE_ERROR = -32700;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The settings {@link #main} analyzes documents with. The symbol and
+     * literal tables are bounded only as the segment is, by
+     * {@link ResourceLimits#DEFAULT}, so a large generated program is not
+     * rejected while it is being edited.
+     */
+    static final AssemblyContext EDITOR_CONTEXT =
+            new AssemblyContext(null, Integer.MAX_VALUE, ResourceLimits.DEFAULT
+                    .getMaxWords(), ResourceLimits.DEFAULT.getMaxWords(),
+                    ObjectDialect.CLASSIC);
+
+    /**
+     * The result of analyzing one version of a document. Never modified once
+     * published.
+     */
+    public static final class Analysis {
+        /** The version of the document analyzed. */
+        private final long version;
+
+        /** Address and relocatability of each label, by name. */
+        private final Map<String, Object> labels;
+
+        /** The errors and warnings found. */
+        private final List<Diagnostic> diagnostics;
+
+        Analysis(long version, Map<String, Object> labels,
+                List<Diagnostic> diagnostics) {
+            this.version = version;
+            this.labels = Collections.unmodifiableMap(labels);
+            this.diagnostics = Collections.unmodifiableList(diagnostics);
+        }
+
+        public long getVersion() {
+            return this.version;
+        }
+
+        /**
+         * Returns the labels of the document, as JSON objects with members
+         * {@code address} and {@code relocatable}.
+         *
+         * @return An unmodifiable map from label to description, in name
+         *         order.
+         */
+        public Map<String, Object> getLabels() {
+            return this.labels;
+        }
+
+        public List<Diagnostic> getDiagnostics() {
+            return this.diagnostics;
+        }
+    }
+
+    /**
+     * An open document.
+     */
+    private static final class Document {
+        /** The document's URI. */
+        private final String uri;
+
+        /** The text, one element per line without its terminator. */
+        private final List<String> lines = new ArrayList<String>();
+
+        /** The version of {@code lines}. */
+        private long version;
+
+        /** True iff an analysis of this document is waiting to start. */
+        private boolean queued = false;
+
+        /** The latest completed analysis. */
+        private volatile Analysis analysis;
+
+        Document(String uri, String text, long version) {
+            this.uri = uri;
+            this.lines.addAll(Arrays.asList(text.split("\r?\n", -1)));
+            this.version = version;
+            this.analysis =
+                    new Analysis(-1, new TreeMap<String, Object>(),
+                            new ArrayList<Diagnostic>());
+        }
+    }
+
+    /** The stream messages arrive on. */
+    private final InputStream in;
+
+    /** The stream messages are sent on. Guarded by itself. */
+    private final OutputStream out;
+
+    /** The settings every document is analyzed with. */
+    private final AssemblyContext context;
+
+    /** The open documents by URI. */
+    private final Map<String, Document> documents =
+            new ConcurrentHashMap<String, Document>();
+
+    /** Runs the analyses. */
+    private final ExecutorService analyzer =
+            Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "mmxi-analyzer");
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+
+    /**
+     * Initializes a server.
+     *
+     * @param in
+     *            The stream messages arrive on.
+     * @param out
+     *            The stream messages are sent on.
+     * @param context
+     *            The settings every document is analyzed with.
+     */
+    public LanguageServer(InputStream in, OutputStream out,
+            AssemblyContext context) {
+        this.in = new BufferedInputStream(in);
+        this.out = out;
+        this.context = context;
+    }
+
+    /**
+     * Serves messages until {@code exit} arrives or the input ends.
+     *
+     * @throws IOException
+     *             If a stream fails.
+     */
+    public void serve() throws IOException {
+        try {
+            String message;
+
+            while ((message = readMessage()) != null) {
+                Object request;
+
+                try {
+                    request = Json.parse(message);
+                } catch (IllegalArgumentException e) {
+                    sendError(null, PARSE_ERROR, e.getMessage());
+                    continue;
+                }
+
+                if (request instanceof Map && !handle(asMap(request))) {
+                    return;
+                }
+            }
+        } finally {
+            this.analyzer.shutdown();
+        }
+    }
+
+    /**
+     * Handles one message.
+     *
+     * @return False iff the session is over.
+     */
+    private boolean handle(Map<String, Object> message) throws IOException {
+        Object id = message.get("id");
+        String method = (String) message.get("method");
+        Map<String, Object> params = asMap(message.get("params"));
+
+        if (method == null) {
+            // A response to something we sent; we send no requests.
+            return true;
+        }
+
+        try {
+            if (method.equals("initialize")) {
+                Map<String, Object> sync = new LinkedHashMap<String, Object>();
+                sync.put("openClose", Boolean.TRUE);
+                sync.put("change", 2L);
+
+                Map<String, Object> capabilities =
+                        new LinkedHashMap<String, Object>();
+                capabilities.put("textDocumentSync", sync);
+
+                Map<String, Object> result =
+                        new LinkedHashMap<String, Object>();
+                result.put("capabilities", capabilities);
+
+                sendResult(id, result);
+            } else if (method.equals("shutdown")) {
+                sendResult(id, null);
+            } else if (method.equals("exit")) {
+                return false;
+            } else if (method.equals("textDocument/didOpen")) {
+                Map<String, Object> document =
+                        asMap(params.get("textDocument"));
+                Document opened =
+                        new Document((String) document.get("uri"),
+                                (String) document.get("text"),
+                                asLong(document.get("version")));
+
+                this.documents.put(opened.uri, opened);
+                schedule(opened);
+            } else if (method.equals("textDocument/didChange")) {
+                Map<String, Object> document =
+                        asMap(params.get("textDocument"));
+                Document changed = this.documents.get(document.get("uri"));
+
+                if (changed != null) {
+                    synchronized (changed) {
+                        for (Object change : (List<?>) params
+                                .get("contentChanges")) {
+                            apply(changed, asMap(change));
+                        }
+
+                        changed.version = asLong(document.get("version"));
+                    }
+
+                    schedule(changed);
+                }
+            } else if (method.equals("textDocument/didClose")) {
+                Document closed =
+                        this.documents.remove(asMap(params.get("textDocument"))
+                                .get("uri"));
+
+                if (closed != null) {
+                    publish(closed.uri, new Analysis(closed.version,
+                            new TreeMap<String, Object>(),
+                            new ArrayList<Diagnostic>()));
+                }
+            } else if (method.equals("mmxi/labels")) {
+                Document document =
+                        this.documents.get(asMap(params.get("textDocument"))
+                                .get("uri"));
+
+                if (document == null) {
+                    sendError(id, INVALID_PARAMS, "Document is not open");
+                } else {
+                    Analysis analysis = document.analysis;
+                    Map<String, Object> result =
+                            new LinkedHashMap<String, Object>();
+                    result.put("version", analysis.getVersion());
+                    result.put("labels", analysis.getLabels());
+
+                    sendResult(id, result);
+                }
+            } else if (id != null) {
+                sendError(id, METHOD_NOT_FOUND, "Unknown method " + method);
+            }
+        } catch (RuntimeException e) {
+            // A malformed message must not end the session.
+            if (id != null) {
+                sendError(id, INVALID_PARAMS, String.valueOf(e.getMessage()));
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Applies one content change to {@code document}.
+     * <p>
+     * <b>Requires:</b> the caller holds the lock of {@code document}.
+     */
+    private static void apply(Document document, Map<String, Object> change) {
+        String text = (String) change.get("text");
+        Map<String, Object> range = asMap(change.get("range"));
+        List<String> lines = document.lines;
+
+        if (range == null) {
+            lines.clear();
+            lines.addAll(Arrays.asList(text.split("\r?\n", -1)));
+            return;
+        }
+
+        Map<String, Object> start = asMap(range.get("start"));
+        Map<String, Object> end = asMap(range.get("end"));
+        int startLine = (int) Math.min(asLong(start.get("line")), lines.size() - 1);
+        int endLine = (int) Math.min(asLong(end.get("line")), lines.size() - 1);
+        String first = lines.get(startLine);
+        String last = lines.get(endLine);
+        String prefix =
+                first.substring(0, (int) Math.min(asLong(start
+                        .get("character")), first.length()));
+        String suffix =
+                last.substring((int) Math.min(asLong(end.get("character")),
+                        last.length()));
+        String[] replacement = (prefix + text + suffix).split("\r?\n", -1);
+
+        lines.subList(startLine, endLine + 1).clear();
+        lines.addAll(startLine, Arrays.asList(replacement));
+    }
+
+    /**
+     * Queues an analysis of {@code document} unless one is already waiting.
+     */
+    private void schedule(final Document document) {
+        synchronized (document) {
+            if (document.queued) {
+                return;
+            }
+
+            document.queued = true;
+        }
+
+        this.analyzer.execute(new Runnable() {
+            @Override
+            public void run() {
+                String text;
+                long version;
+
+                synchronized (document) {
+                    document.queued = false;
+                    version = document.version;
+
+                    StringBuilder joined = new StringBuilder();
+
+                    for (String line : document.lines) {
+                        joined.append(line).append('\n');
+                    }
+
+                    text = joined.toString();
+                }
+
+                document.analysis = analyze(text, version);
+
+                try {
+                    if (LanguageServer.this.documents.get(document.uri) == document) {
+                        publish(document.uri, document.analysis);
+                    }
+                } catch (IOException e) {
+                    // The editor went away; serve will see the input end.
+                }
+            }
+        });
+    }
+
+    /**
+     * Parses and assembles {@code text} without writing any output.
+     */
+    private Analysis analyze(String text, long version) {
+        Map<String, Object> labels = new TreeMap<String, Object>();
+        List<Diagnostic> diagnostics = new ArrayList<Diagnostic>();
+
+        ErrorHandler.collectWarnings(diagnostics);
+
+        try {
+            Governor governor = new Governor(this.context);
+            Program program =
+                    new ParserImp2(governor).parse(new BufferedReader(new StringReader(
+                            text)), this.context.getMaxRecords());
+
+            for (String symbol : program.getSymbols()) {
+                Map<String, Object> label = new LinkedHashMap<String, Object>();
+                label.put("address", (long) program.getSymbolValue(symbol));
+                label.put("relocatable", program.isRelative(symbol));
+                labels.put(symbol, Collections.unmodifiableMap(label));
+            }
+
+            new AssemblerImp(this.context.getDialect(), governor)
+                    .assemble(program);
+        } catch (AssemblerException e) {
+            diagnostics.add(e.toDiagnostic());
+        } catch (RuntimeException e) {
+            // Text being typed can be in any state; report rather than stop
+            // analyzing the document.
+            diagnostics.add(new Diagnostic(AssemblerException.Type.FATAL, 0,
+                    0, "Could not analyze: " + e));
+        } finally {
+            ErrorHandler.collectWarnings(null);
+        }
+
+        return new Analysis(version, labels, diagnostics);
+    }
+
+    /**
+     * Sends the diagnostics and labels of an analysis.
+     */
+    private void publish(String uri, Analysis analysis) throws IOException {
+        List<Object> diagnostics = new ArrayList<Object>();
+
+        for (Diagnostic diagnostic : analysis.getDiagnostics()) {
+            // Diagnostics count lines from 1, or give 0 for the whole file.
+            long line = Math.max(diagnostic.getLine() - 1, 0);
+            Map<String, Object> start = new LinkedHashMap<String, Object>();
+            start.put("line", line);
+            start.put("character", 0L);
+
+            Map<String, Object> end = new LinkedHashMap<String, Object>();
+            end.put("line", line + 1);
+            end.put("character", 0L);
+
+            Map<String, Object> range = new LinkedHashMap<String, Object>();
+            range.put("start", start);
+            range.put("end", end);
+
+            Map<String, Object> published =
+                    new LinkedHashMap<String, Object>();
+            published.put("range", range);
+            published.put("severity", diagnostic.getType()
+                    == AssemblerException.Type.WARNING ? SEVERITY_WARNING
+                    : SEVERITY_ERROR);
+            published.put("code", (long) diagnostic.getCode());
+            published.put("source", "mmxi");
+            published.put("message", diagnostic.getMessage());
+            diagnostics.add(published);
+        }
+
+        Map<String, Object> params = new LinkedHashMap<String, Object>();
+        params.put("uri", uri);
+        params.put("version", analysis.getVersion());
+        params.put("diagnostics", diagnostics);
+        sendNotification("textDocument/publishDiagnostics", params);
+
+        params = new LinkedHashMap<String, Object>();
+        params.put("uri", uri);
+        params.put("version", analysis.getVersion());
+        params.put("labels", analysis.getLabels());
+        sendNotification("mmxi/publishLabels", params);
+    }
+
+    private void sendResult(Object id, Object result) throws IOException {
+        Map<String, Object> response = new LinkedHashMap<String, Object>();
+        response.put("jsonrpc", "2.0");
+        response.put("id", id);
+        response.put("result", result);
+
+        send(response);
+    }
+
+    private void sendError(Object id, int code, String message)
+            throws IOException {
+        Map<String, Object> error = new LinkedHashMap<String, Object>();
+        error.put("code", (long) code);
+        error.put("message", message);
+
+        Map<String, Object> response = new LinkedHashMap<String, Object>();
+        response.put("jsonrpc", "2.0");
+        response.put("id", id);
+        response.put("error", error);
+
+        send(response);
+    }
+
+    private void sendNotification(String method, Object params)
+            throws IOException {
+        Map<String, Object> notification =
+                new LinkedHashMap<String, Object>();
+        notification.put("jsonrpc", "2.0");
+        notification.put("method", method);
+        notification.put("params", params);
+
+        send(notification);
+    }
+
+    /**
+     * Sends one message with its {@code Content-Length} header.
+     */
+    private void send(Object message) throws IOException {
+        byte[] body = Json.write(message).getBytes(UTF8);
+        byte[] header =
+                ("Content-Length: " + body.length + "\r\n\r\n").getBytes(UTF8);
+
+        synchronized (this.out) {
+            this.out.write(header);
+            this.out.write(body);
+            this.out.flush();
+        }
+    }
+
+    /**
+     * Reads one message.
+     *
+     * @return The body, or null at the end of the input.
+     */
+    private String readMessage() throws IOException {
+        int length = -1;
+        String line;
+
+        // ...Read headers up to the blank line
+
+        while ((line = readHeaderLine()) != null && line.length() > 0) {
+            int colon = line.indexOf(':');
+
+            if (colon > 0
+                    && line.substring(0, colon).trim().equalsIgnoreCase(
+                            "Content-Length")) {
+                try {
+                    length = Integer.parseInt(line.substring(colon + 1).trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bad Content-Length: " + line);
+                }
+            }
+        }
+
+        if (line == null) {
+            return null;
+        }
+
+        if (length < 0 || length > DaemonProtocol.MAX_TEXT_LENGTH) {
+            throw new IOException("Missing or bad Content-Length");
+        }
+
+        byte[] body = new byte[length];
+        int count = 0;
+
+        while (count < length) {
+            int n = this.in.read(body, count, length - count);
+
+            if (n < 0) {
+                throw new EOFException("Message truncated");
+            }
+
+            count += n;
+        }
+
+        return new String(body, UTF8);
+    }
+
+    /**
+     * Reads one header line without its terminator.
+     *
+     * @return The line, or null at the end of the input.
+     */
+    private String readHeaderLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+
+        while ((c = this.in.read()) != '\n') {
+            if (c < 0) {
+                return line.size() == 0 ? null : line.toString("US-ASCII");
+            }
+
+            if (c != '\r') {
+                line.write(c);
+            }
+        }
+
+        return line.toString("US-ASCII");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    private static long asLong(Object value) {
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    /**
+     * @param args - Command line arguments passed in by the user.
+     */
+    public static void main(String[] args) {
+        try {
+            new LanguageServer(System.in, System.out, EDITOR_CONTEXT).serve();
+        } catch (IOException e) {
+            System.err.printf("[ERROR %03d] %s%n", 300, e.getMessage());
+            System.exit(1);
+        }
+    }
+}
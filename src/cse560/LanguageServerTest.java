@@ -0,0 +1,290 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class LanguageServerTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String URI = "file:///tmp/prog.asm";
+
+    private static final String SOURCE = "Prog     .ORIG   x3000\n"
+            + "Begin    LD      R1,Value\n" + "         ADD     R1,R1,#1\n"
+            + "Value    .FILL   #4\n" + "         .END    Begin\n";
+
+    private static void send(PipedOutputStream out, String method, Object id,
+            Map<String, Object> params) throws Exception {
+        Map<String, Object> message = new LinkedHashMap<String, Object>();
+        message.put("jsonrpc", "2.0");
+
+        if (id != null) {
+            message.put("id", id);
+        }
+
+        message.put("method", method);
+        message.put("params", params);
+
+        byte[] body = Json.write(message).getBytes(UTF8);
+        out.write(("Content-Length: " + body.length + "\r\n\r\n")
+                .getBytes(UTF8));
+        out.write(body);
+        out.flush();
+    }
+
+    private static Map<String, Object> object(Object... members) {
+        Map<String, Object> object = new LinkedHashMap<String, Object>();
+
+        for (int i = 0; i < members.length; i += 2) {
+            object.put((String) members[i], members[i + 1]);
+        }
+
+        return object;
+    }
+
+    private static Map<String, Object> position(long line, long character) {
+        return object("line", line, "character", character);
+    }
+
+    /**
+     * Splits the server's output into messages.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> messages(String output) {
+        List<Map<String, Object>> messages =
+                new ArrayList<Map<String, Object>>();
+        int at = 0;
+
+        while (at < output.length()) {
+            int blank = output.indexOf("\r\n\r\n", at);
+
+            if (blank < 0) {
+                break;
+            }
+
+            int length =
+                    Integer.parseInt(output.substring(
+                            at + "Content-Length: ".length(), blank).trim());
+
+            // The last message may still be being written.
+            if (blank + 4 + length > output.length()) {
+                break;
+            }
+
+            messages.add((Map<String, Object>) Json.parse(output.substring(
+                    blank + 4, blank + 4 + length)));
+            at = blank + 4 + length;
+        }
+
+        return messages;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> published(
+            List<Map<String, Object>> messages, String method, long version) {
+        for (Map<String, Object> message : messages) {
+            Map<String, Object> params =
+                    (Map<String, Object>) message.get("params");
+
+            if (method.equals(message.get("method"))
+                    && params.get("version").equals(version)) {
+                return params;
+            }
+        }
+
+        throw new AssertionError("No " + method + " for version " + version);
+    }
+
+    /**
+     * Waits until the labels of {@code version} have been published.
+     */
+    private static void await(ByteArrayOutputStream output, long version)
+            throws InterruptedException {
+        for (int i = 0; i < 1000; ++i) {
+            try {
+                published(messages(new String(output.toByteArray(), UTF8)),
+                        "mmxi/publishLabels", version);
+                return;
+            } catch (AssertionError e) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    /**
+     * Checking: Incremental edits are applied and each version's diagnostics
+     * and labels are published.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void publishesDiagnosticsAndLabels() throws Exception {
+        PipedOutputStream client = new PipedOutputStream();
+        PipedInputStream input = new PipedInputStream(client, 1 << 16);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final LanguageServer server =
+                new LanguageServer(input, output, AssemblyContext.DEFAULT);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    server.serve();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+
+        send(client, "initialize", 1L, object());
+        send(client, "textDocument/didOpen", null, object("textDocument",
+                object("uri", URI, "text", SOURCE, "version", 1L)));
+        await(output, 1);
+
+        // Misspell the opcode on line 3.
+        send(client, "textDocument/didChange", null, object("textDocument",
+                object("uri", URI, "version", 2L), "contentChanges",
+                Arrays.asList(object("range", object("start",
+                        position(2, 9), "end", position(2, 12)), "text",
+                        "ADX"))));
+        await(output, 2);
+
+        // Fix it, and insert an instruction before Value.
+        send(client, "textDocument/didChange", null, object("textDocument",
+                object("uri", URI, "version", 3L), "contentChanges",
+                Arrays.asList(object("range", object("start",
+                        position(2, 9), "end", position(2, 12)), "text",
+                        "ADD"), object("range", object("start",
+                        position(3, 0), "end", position(3, 0)), "text",
+                        "         NOT     R1,R1\n"))));
+        await(output, 3);
+
+        send(client, "mmxi/labels", 2L, object("textDocument", object("uri",
+                URI)));
+        send(client, "shutdown", 3L, null);
+        send(client, "exit", null, null);
+        thread.join(10000);
+
+        List<Map<String, Object>> messages =
+                messages(new String(output.toByteArray(), UTF8));
+
+        List<Object> diagnostics =
+                (List<Object>) published(messages,
+                        "textDocument/publishDiagnostics", 1L).get(
+                        "diagnostics");
+        assertTrue(diagnostics.isEmpty());
+
+        Map<String, Object> labels =
+                (Map<String, Object>) published(messages,
+                        "mmxi/publishLabels", 1L).get("labels");
+        assertEquals(object("address", 0x3000L, "relocatable", false),
+                labels.get("Begin"));
+        assertEquals(0x3002L, ((Map<String, Object>) labels.get("Value"))
+                .get("address"));
+
+        diagnostics =
+                (List<Object>) published(messages,
+                        "textDocument/publishDiagnostics", 2L).get(
+                        "diagnostics");
+        assertEquals(1, diagnostics.size());
+        Map<String, Object> error = (Map<String, Object>) diagnostics.get(0);
+        assertEquals(1L, error.get("severity"));
+        assertEquals(2L, ((Map<String, Object>) ((Map<String, Object>) error
+                .get("range")).get("start")).get("line"));
+
+        labels =
+                (Map<String, Object>) published(messages,
+                        "mmxi/publishLabels", 3L).get("labels");
+        assertEquals(0x3003L, ((Map<String, Object>) labels.get("Value"))
+                .get("address"));
+
+        boolean answered = false;
+
+        for (Map<String, Object> message : messages) {
+            if (Long.valueOf(2).equals(message.get("id"))) {
+                Map<String, Object> result =
+                        (Map<String, Object>) message.get("result");
+                assertEquals(3L, result.get("version"));
+                answered = true;
+            }
+        }
+
+        assertTrue(answered);
+    }
+
+    /**
+     * Checking: The settings of the command-line server accept a document
+     * with more symbols and literals than the assembler's defaults.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void analyzesLargeDocuments() throws Exception {
+        StringBuilder source = new StringBuilder("Big      .ORIG   x3000\n");
+
+        for (int i = 0; i < 150; ++i) {
+            source.append(String.format("L%-5d   ADD     R1,R1,#1%n", i));
+        }
+
+        for (int i = 0; i < 60; ++i) {
+            source.append("         LD      R2,=#" + i + "\n");
+        }
+
+        source.append("         .END\n");
+
+        PipedOutputStream client = new PipedOutputStream();
+        PipedInputStream input = new PipedInputStream(client, 1 << 16);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final LanguageServer server =
+                new LanguageServer(input, output,
+                        LanguageServer.EDITOR_CONTEXT);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    server.serve();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+
+        send(client, "initialize", 1L, object());
+        send(client, "textDocument/didOpen", null, object("textDocument",
+                object("uri", URI, "text", source.toString(), "version", 1L)));
+        await(output, 1);
+        send(client, "shutdown", 2L, null);
+        send(client, "exit", null, null);
+        thread.join(10000);
+
+        List<Map<String, Object>> messages =
+                messages(new String(output.toByteArray(), UTF8));
+
+        assertEquals(Collections.emptyList(), published(messages,
+                "textDocument/publishDiagnostics", 1L).get("diagnostics"));
+        assertEquals(150, ((Map<String, Object>) published(messages,
+                "mmxi/publishLabels", 1L).get("labels")).size());
+    }
+
+    /**
+     * Checking: JSON values survive a round trip.
+     */
+    @Test
+    public void jsonRoundTrip() {
+        String text =
+                "{\"a\":[1,-2.5,true,false,null],\"b\":\"q\\\"\\n\\u0001\"}";
+
+        assertEquals(text, Json.write(Json.parse(text)));
+    }
+}
@@ -0,0 +1,236 @@
+package cse560;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies, in nanoseconds, that many threads may record into
+ * at once.
+ * <p>
+ * Values are counted in log-linear buckets: every power of two is split into
+ * {@code SUB_BUCKETS} buckets of equal width, so a percentile is reported
+ * within 1/16 of its true value, and values below 32 exactly. Recording a
+ * value is two atomic additions, and a compare-and-set when it is the
+ * largest yet, with no allocation and no lock. The buckets take a fixed 7.5K, whatever the values. Reading is
+ * consistent only once recording has stopped; while it goes on, a percentile
+ * may miss the values recorded during the read.
+ *
+ * @author Igor Tolkachev
+ */
+public final class LatencyHistogram {
+    /** Each power of two is split into 2^SUB_BUCKET_BITS buckets. */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /** Enough buckets for every non-negative long. */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    /** The number of values in each bucket. */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /** The sum of the values recorded. */
+    private final AtomicLong total = new AtomicLong();
+
+    /** The largest value recorded. */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * The state of a histogram at one moment, in the form JMX shows it.
+     */
+    public static final class Snapshot {
+        private final long count;
+
+        private final long meanNanos;
+
+        private final long p50Nanos;
+
+        private final long p99Nanos;
+
+        private final long maxNanos;
+
+        /**
+         * Initializes a snapshot.
+         *
+         * @param count
+         *            The number of values recorded.
+         * @param meanNanos
+         *            Their mean.
+         * @param p50Nanos
+         *            Their median.
+         * @param p99Nanos
+         *            Their 99th percentile.
+         * @param maxNanos
+         *            The largest of them.
+         */
+        @ConstructorProperties({"count", "meanNanos", "p50Nanos", "p99Nanos",
+            "maxNanos" })
+        public Snapshot(long count, long meanNanos, long p50Nanos,
+                long p99Nanos, long maxNanos) {
+            this.count = count;
+            this.meanNanos = meanNanos;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public long getMeanNanos() {
+            return this.meanNanos;
+        }
+
+        public long getP50Nanos() {
+            return this.p50Nanos;
+        }
+
+        public long getP99Nanos() {
+            return this.p99Nanos;
+        }
+
+        public long getMaxNanos() {
+            return this.maxNanos;
+        }
+    }
+
+    /**
+     * Returns the bucket {@code value} is counted in.
+     * <p>
+     * <b>Requires:</b> {@code value >= 0}
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int shift =
+                63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+        return (shift + 1) * SUB_BUCKETS
+                + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Returns the largest value counted in {@code bucket}.
+     */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos
+     *            The latency. A negative one, from a clock that went back, is
+     *            recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+
+        this.counts.incrementAndGet(bucket(value));
+        this.total.addAndGet(value);
+
+        long largest = this.max.get();
+
+        while (value > largest && !this.max.compareAndSet(largest, value)) {
+            largest = this.max.get();
+        }
+    }
+
+    /**
+     * @return The number of values recorded.
+     */
+    public long getCount() {
+        long count = 0;
+
+        for (int i = 0; i < BUCKETS; ++i) {
+            count += this.counts.get(i);
+        }
+
+        return count;
+    }
+
+    /**
+     * @return The largest value recorded, or 0 if there is none.
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * @return The mean of the values recorded, or 0 if there is none.
+     */
+    public long getMean() {
+        long count = getCount();
+
+        return count == 0 ? 0 : this.total.get() / count;
+    }
+
+    /**
+     * Returns the value that {@code percentile} percent of the values
+     * recorded are no greater than, to within the width of its bucket.
+     * <p>
+     * <b>Requires:</b> {@code 0 <= percentile <= 100}
+     *
+     * @param percentile
+     *            The percentile, e.g. 99.
+     * @return The value, or 0 if none has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+
+        for (int i = 0; i < BUCKETS; ++i) {
+            snapshot[i] = this.counts.get(i);
+            count += snapshot[i];
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += snapshot[i];
+
+            if (seen >= rank) {
+                return Math.min(highestValue(i), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * @return The count, mean, median, 99th percentile and maximum.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(getCount(), getMean(), getValueAtPercentile(50),
+                getValueAtPercentile(99), getMax());
+    }
+
+    /**
+     * Forgets every value recorded. Values recorded during the reset may be
+     * partly kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; ++i) {
+            this.counts.set(i, 0);
+        }
+
+        this.total.set(0);
+        this.max.set(0);
+    }
+}
@@ -0,0 +1,110 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    /**
+     * Checking: Every value falls in a bucket no more than 1/16 wider than it,
+     * and small values are exact.
+     */
+    @Test
+    public void bucketsAreNarrow() {
+        for (long value = 0; value < 32; ++value) {
+            assertEquals(value, LatencyHistogram.highestValue(LatencyHistogram
+                    .bucket(value)));
+        }
+
+        for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value =
+                value * 3 + 1) {
+            long highest =
+                    LatencyHistogram.highestValue(LatencyHistogram
+                            .bucket(value));
+
+            assertTrue(value + " -> " + highest, highest >= value
+                    && highest - value <= value / 16);
+        }
+
+        long highest =
+                LatencyHistogram.highestValue(LatencyHistogram
+                        .bucket(Long.MAX_VALUE));
+
+        assertEquals(Long.MAX_VALUE, highest);
+    }
+
+    /**
+     * Checking: Percentiles, mean and maximum of a known distribution.
+     */
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(0, histogram.getMean());
+
+        for (long value = 1; value <= 10000; ++value) {
+            histogram.record(value * 1000);
+        }
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000000, histogram.getMax());
+        assertEquals(5000500, histogram.getMean());
+        assertNear(5000000, histogram.getValueAtPercentile(50));
+        assertNear(9900000, histogram.getValueAtPercentile(99));
+        assertEquals(10000000, histogram.getValueAtPercentile(100));
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertNear(9900000, snapshot.getP99Nanos());
+        assertEquals(10000000, snapshot.getMaxNanos());
+
+        histogram.record(-5);
+        assertEquals(0, histogram.getValueAtPercentile(0));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue(expected + " ~ " + actual, actual >= expected
+                && actual - expected <= expected / 16);
+    }
+
+    /**
+     * Checking: No value is lost when several threads record at once.
+     */
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int t = 0; t < 4; ++t) {
+            final int offset = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; ++i) {
+                        histogram.record(i * 4 + offset);
+                    }
+                }
+            });
+
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(400000, histogram.getCount());
+        assertEquals(399999, histogram.getMax());
+        assertEquals(199999, histogram.getMean());
+    }
+}
@@ -0,0 +1,154 @@
+package cse560;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Writes the human-readable program listing. See {@link Assembler} for the
+ * format.
+ *
+ * @author Igor Tolkachev
+ */
+public final class ListingSink implements OutputSink {
+    /** Number of digits in the binary contents column. */
+    private static final int BINARY_WIDTH = 16;
+
+    /** PrintWriter for the listing output. */
+    private final PrintWriter listWriter;
+
+    /**
+     * Initializes a sink that writes a listing to {@code out}.
+     *
+     * @param out
+     *            The destination of the listing.
+     */
+    public ListingSink(Writer out) {
+        this.listWriter = new PrintWriter(out, true);
+    }
+
+    @Override
+    public void header(String segmentName, int firstAddress, int length,
+            boolean isRelocatable) {
+    }
+
+    @Override
+    public void entry(String symbol, int value, boolean isRelative) {
+    }
+
+    @Override
+    public void external(String symbol) {
+    }
+
+    @Override
+    public void word(int address, int value, Relocation relocation) {
+    }
+
+    /**
+     * Prints one line of a program listing. Output takes
+     * the following format: <blockquote>
+     *
+     * <pre>
+     * (AAAA) BBBB CCCCCCCCCCCCCCCC (DDDD) EEEEEE   FFFFF GGG, GGG, GGG
+     * </pre>
+     *
+     * </blockquote>
+     * <p>
+     * Where:
+     * <ul>
+     * <li>A's are the address</li>
+     * <li>B's are the contents in hex</li>
+     * <li>C's are the contents in binary</li>
+     * <li>D's are the line number from the source file</li>
+     * <li>E's are the label, if any</li>
+     * <li>F's are the opcode</li>
+     * <li>G's are the operands</li>
+     * </ul>
+     *
+     * There are a few caveats. If instruction is -1, do not print the address
+     * or memory contents. If printSrc is false, do not print the label, opcode,
+     * or operands.
+     *
+     * @param record
+     *            The record to pull data from.
+     * @param addr
+     *            The address of the data (if applicable).
+     * @param instruction
+     *            The value of memory. -1 if not applicable.
+     * @param printSrc
+     *            Indicates whether to print the source code.
+     */
+    @Override
+    public void listingLine(SourceRecord record, int addr, int instruction,
+            boolean printSrc) {
+        String label = record.getLabel();
+        String binary = "";
+
+        // ...Generate binary string
+
+        //
+        if (instruction != -1) {
+            StringBuilder binaryInstr =
+                    new StringBuilder(Integer.toBinaryString(instruction));
+
+            while (binaryInstr.length() < ListingSink.BINARY_WIDTH) {
+                binaryInstr.insert(0, '0');
+            }
+
+            binary = binaryInstr.toString();
+        }
+
+        // ...Convert null label to a blank string.
+
+        if (label == null) {
+            label = "";
+        }
+
+        // ...Write address, hex and binary contents, line #, label, and
+        // instruction
+
+        // Only write address and memory contents if instruction generates data.
+        if (MachineOpTable.hasOpCode(record.getOpCode())
+                || record.getOpCode().equals(".FILL")
+                || record.getOpCode().equals(".STRZ")) {
+            this.listWriter.printf("(%04X) %04X %s (%4d)", addr, instruction,
+                    binary, record.getLineNumber());
+        } else {
+            this.listWriter.printf("%28s (%4d)", binary,
+                    record.getLineNumber(), label);
+        }
+
+        // ...Write opcode and operands if requested
+
+        if (printSrc) {
+            this.listWriter.printf(" %-8s %-5s ", label, record.getOpCode());
+
+            int argCount = record.getArgCount();
+            for (int i = 0; i < argCount; ++i) {
+                this.listWriter.printf("%s", record.getArgAt(i));
+                if (i < argCount - 1) {
+                    this.listWriter.print(", ");
+                }
+            }
+        }
+
+        this.listWriter.println();
+    }
+
+    @Override
+    public void literal(int literal, int addr) {
+        StringBuilder binary =
+                new StringBuilder(Integer.toBinaryString(literal));
+
+        while (binary.length() < ListingSink.BINARY_WIDTH) {
+            binary.insert(0, '0');
+        }
+
+        this.listWriter.printf("(%04X) %04X %s ( lit)%n", addr, literal,
+                binary.toString());
+    }
+
+    @Override
+    public void end(int execAddress) {
+        this.listWriter.flush();
+    }
+}
@@ -1,5 +1,6 @@
 package cse560;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -8,6 +9,11 @@ import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 
 import joptsimple.OptionException;
 import joptsimple.OptionParser;
@@ -20,11 +26,45 @@ import joptsimple.OptionSet;
  * Command line arguments/options accepted by the MMXIAssembler are:
  * <ul>
  * <li>{@code -d} - Dumps the post-parse file to filename.dump.</li>
+ * <li>{@code -C} - Writes coalesced "B" text records instead of one "T" record per word.
+ * Omit for object files that must load in the classic MMXI Simulator.</li>
+ * <li>{@code -P} - Pipelined mode. Reads the input file and writes the output files on
+ * separate threads. See {@link PipelinedAssembler}.</li>
+ * <li>{@code -B} - Also writes the object file in binary form to output.bin.
+ * See {@link BinaryObjectFile}.</li>
+ * <li>{@code -H} - Also writes the segment in Intel HEX format to output.hex. See {@link IntelHexSink}.</li>
+ * <li>{@code -R} - Also writes the segment as a raw memory image to output.raw. See {@link RawBinarySink}.</li>
  * <li>{@code -M N} - Terminate execution after $N$ instructions. Default: 2000 steps.</li>
- * <li>{@code -f filename} - The name of the file to be executed. (Required)</li>
+ * <li>{@code -f filename} - The name of the file to be executed. (Required)  May be repeated, and
+ * further file names may follow the options; see batch mode below.</li>
+ * <li>{@code -j N} - Batch mode: assemble up to N files at once. Default: one per processor.</li>
+ * <li>{@code -o dir} - Batch mode: write outputs into dir instead of beside each source.</li>
+ * <li>{@code -K dir} - Keep a build cache in dir and reuse the object file and listing of any
+ * source assembled before with the same settings. Its size cap is the {@code mmxi.cache.size}
+ * system property in bytes (default 256 MB). See {@link BuildCache}.</li>
+ * <li>{@code --watch} - Build every input as in batch mode, then keep running and rebuild each
+ * source shortly after it is saved. See {@link SourceWatcher}.</li>
+ * <li>{@code --modules} - Treat the inputs as modules of one program that refer to each other
+ * through {@code .ENT} and {@code .EXT}, and report imports that no module exports. With
+ * {@code --watch}, a change to an entry symbol also rebuilds the modules importing it. See
+ * {@link ModuleBuilder}.</li>
+ * <li>{@code --workers N} - Batch mode: start N worker JVMs and spread the files across them.
+ * See {@link ShardedAssembler}.</li>
+ * <li>{@code --worker host:port} - Batch mode: also spread the files across the
+ * {@link AssemblerDaemon} at host:port. May be repeated.</li>
+ * <li>{@code --parser name} - Run pass one with the parser named {@code scanner} (the default) or
+ * {@code regex}. Applies to worker JVMs and daemons too, and is part of the build cache's key.
+ * See {@link ParserStrategy}.</li>
+ * <li>{@code --stats[=json]} - Report the time, CPU and memory of each phase of a single-file
+ * assembly, as text or JSON. It cannot be combined with {@code -P}, {@code --watch},
+ * {@code --modules} or batch mode, and it bypasses the build cache. See {@link AssemblyStats}.</li>
  * <li>{@code -s N} - Set the maxmium number of symbols to $N$.</li>
  * <li>{@code -L N} - Set the maximum numver of literals to $N$.</li>
  * </ul>
+ * Given more than one input, a directory, a pattern such as {@code src/*.asm}, {@code -j} or
+ * {@code -o}, the assembler runs in batch mode: every source {@code name.ext} is assembled to
+ * {@code name.obj} and {@code name.lst} and a summary is printed. See {@link BatchAssembler}.
+ * <p>
  * If a required option is missing, a nonexistent option is selected (e.g., "{@code -X}"), or a provided option is used incorrectly
  * (e.g., "{@code -M asdfj}"), the program will print a usage message and exit.
  * <p>
@@ -37,30 +77,69 @@ import joptsimple.OptionSet;
 
 public class MMXIAssembler {
 
-	public static int MAX_SYMBOLS = 100;
-	public static int MAX_LITERALS = 50;
-	public static String fileName = null;
+	/** The options accepted on the command line, in JOpt Simple's short form. */
+	static final String OPTION_SPEC = "dCBHRPM:s:L:f:j:o:K:";
 
 	/**
 	 * @param args - Command line arguments passed in by the user.
 	 */
 	public static void main(String[] args) {
+		//Fatal errors surface as exceptions; only the command line turns them into an exit status.
+		try {
+			MMXIAssembler.run(args);
+		} catch (AssemblerException e) {
+			System.err.println(e.toDiagnostic());
+			System.exit(1);
+		}
+	}
 
-		Parser machine = new ParserImp2();
-		Assembler assembler = new AssemblerImp();
-		OptionParser optParser = new OptionParser("dM:s:L:f:");
+	/**
+	 * Runs the assembler with the given command line arguments.
+	 *
+	 * @throws AssemblerException if assembly fails.
+	 */
+	private static void run(String[] args) {
+
+		Parser machine = null;
+		Assembler assembler = null;
+		OptionParser optParser = new OptionParser(OPTION_SPEC);
+		optParser.accepts("watch");
+		optParser.accepts("modules");
+		optParser.accepts("workers").withRequiredArg();
+		optParser.accepts("worker").withRequiredArg();
+		optParser.accepts("stats").withOptionalArg();
+		optParser.accepts("parser").withRequiredArg();
 		OptionSet options;
 		Program program;
 
 		//Set default assembler mode.
 		String mode = "DEFAULT";
+		ObjectDialect dialect = ObjectDialect.CLASSIC;
+		ParserStrategy parser = ParserStrategy.SCANNER;
+		boolean writeBinary = false;
+		boolean pipelined = false;
+		boolean writeHex = false, writeRaw = false;
 
 		//Variables for file I/O.
 		BufferedReader input = null;
 		File inputFile = null;
 		BufferedWriter listing = null, output = null;
 
-		int maxSteps = 2000;
+		int maxSteps = AssemblyContext.DEFAULT_MAX_RECORDS;
+		int maxSymbols = AssemblyContext.DEFAULT_MAX_SYMBOLS;
+		int maxLiterals = AssemblyContext.DEFAULT_MAX_LITERALS;
+
+		//Batch mode settings.
+		List<String> inputs = new ArrayList<String>();
+		boolean batch = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		File outputDirectory = null;
+		BuildCache cache = null;
+		boolean watch = false;
+		boolean modules = false;
+		int localWorkers = 0;
+		List<InetSocketAddress> workers = new ArrayList<InetSocketAddress>();
+		String statsFormat = null;
 
 		try{
 			options = optParser.parse(args);
@@ -70,6 +149,25 @@ public class MMXIAssembler {
 				mode = "DUMP";
 			}
 
+			//If -C is set, coalesce contiguous words into "B" records.
+			if (options.has("C")) {
+				dialect = ObjectDialect.COALESCED;
+			}
+
+			//If -P is set, overlap file I/O with parsing and encoding.
+			if (options.has("P")) {
+				pipelined = true;
+			}
+
+			//If -B is set, also write a binary object file.
+			if (options.has("B")) {
+				writeBinary = true;
+			}
+
+			//If -H or -R is set, also write an Intel HEX file or a raw image.
+			writeHex = options.has("H");
+			writeRaw = options.has("R");
+
 			//If -M is set, set the maximum instructions to its argument.
 			if (options.has("M")) {
 				maxSteps = Integer.parseInt((String) options.valueOf("M"));
@@ -77,23 +175,115 @@ public class MMXIAssembler {
 
 			// If -s is set, set the maximum number of symbols to N.
 			if (options.has("s")) {
-				MAX_SYMBOLS = Integer.parseInt((String) options.valueOf("s"));
+				maxSymbols = Integer.parseInt((String) options.valueOf("s"));
 			}
 
 			//If -L is set, set the maximum number of liteals to N.
 			if (options.has("L")) {
-				MAX_LITERALS = Integer.parseInt((String) options.valueOf("L"));
+				maxLiterals = Integer.parseInt((String) options.valueOf("L"));
+			}
+
+			//If -j is set, assemble up to N files at once.
+			if (options.has("j")) {
+				threads = Integer.parseInt((String) options.valueOf("j"));
+				batch = true;
+
+				if (threads < 1) {
+					System.err.println("[ERROR 210] The -j option needs at least one file at once.");
+					MMXIAssembler.printOptions();
+					System.exit(1);
+				}
+			}
+
+			//If -o is set, write batch outputs into the given directory.
+			if (options.has("o")) {
+				outputDirectory = new File((String) options.valueOf("o"));
+				batch = true;
+			}
+
+			//If --workers is set, start N worker JVMs and spread the batch across them.
+			if (options.has("workers")) {
+				localWorkers = Integer.parseInt((String) options.valueOf("workers"));
+				batch = true;
+			}
+
+			//Every --worker host:port names a running AssemblerDaemon to spread the batch across.
+			for (Object worker : options.valuesOf("worker")) {
+				String address = (String) worker;
+				int colon = address.lastIndexOf(':');
+
+				try {
+					workers.add(new InetSocketAddress(address.substring(0, colon),
+							Integer.parseInt(address.substring(colon + 1))));
+				} catch (RuntimeException e) {
+					ErrorHandler.fatalError("Invalid worker address " + address, 208);
+				}
+				batch = true;
 			}
 
-			//If -f is not set, exit with a usage message.  Unable to execute instructions without an input file.
-			if (!options.has("f") || options.valueOf("f") == null) {
+			//If -K is set, reuse outputs of unchanged sources from the given cache directory.
+			if (options.has("K")) {
+				try {
+					cache = new BuildCache(new File((String) options.valueOf("K")), Long.getLong(
+							"mmxi.cache.size", BuildCache.DEFAULT_MAX_BYTES));
+				} catch (IOException e) {
+					ErrorHandler.fatalError(e.getMessage(), 206);
+				}
+			}
+
+			//If --stats is set, report the time and memory of each phase, as text or as JSON with --stats=json.
+			if (options.has("stats")) {
+				statsFormat = options.hasArgument("stats") ? (String) options.valueOf("stats") : "text";
+
+				if (!statsFormat.equals("text") && !statsFormat.equals("json")) {
+					MMXIAssembler.printOptions();
+					System.exit(1);
+				}
+			}
+
+			//If --parser is set, run pass one with the named parser.
+			if (options.has("parser")) {
+				parser = ParserStrategy.forName((String) options.valueOf("parser"));
+
+				if (parser == null) {
+					MMXIAssembler.printOptions();
+					System.exit(1);
+				}
+			}
+
+			//If --watch is set, keep running and rebuild sources as they change.
+			watch = options.has("watch");
+
+			//If --modules is set, the inputs are modules of one program linked through .ENT and .EXT.
+			modules = options.has("modules");
+
+			//Every -f and every argument that is not an option names an input.
+			for (Object f : options.valuesOf("f")) {
+				inputs.add((String) f);
+			}
+			inputs.addAll(options.nonOptionArguments());
+
+			//If no input is given, exit with a usage message.  Unable to execute instructions without an input file.
+			if (inputs.isEmpty()) {
 				System.err.println("[ERROR 201] No input file specified.  Please specify an input file the -f option.");
 				MMXIAssembler.printOptions();
 				System.exit(0);
 			}
 			else {
-				inputFile = new File((String) options.valueOf("f"));
-				fileName = (String) options.valueOf("f");
+				inputFile = new File(inputs.get(0));
+			}
+
+			//Several inputs, a directory or a pattern select batch mode.
+			if (inputs.size() > 1 || inputFile.isDirectory()
+					|| BatchAssembler.isPattern(inputFile.getName())) {
+				batch = true;
+			}
+
+			//--stats measures the phases of one file assembled on this thread, so it has nothing to report otherwise.
+			if (statsFormat != null && (pipelined || batch || watch || modules)) {
+				System.err.println("[ERROR 211] --stats cannot be combined with -P, --watch, --modules or batch mode.");
+				MMXIAssembler.printOptions();
+				System.exit(1);
 			}
 
 		} catch(OptionException e) {
@@ -101,23 +291,100 @@ public class MMXIAssembler {
 			System.exit(1);
 		}
 
+		//All settings of this job travel together from here on.
+		AssemblyContext context = new AssemblyContext(inputFile, maxSteps, maxSymbols, maxLiterals, dialect)
+				.withParser(parser);
+
+		if (watch) {
+			MMXIAssembler.watch(inputs, context, outputDirectory, modules);
+			return;
+		}
+
+		if (modules) {
+			MMXIAssembler.assembleModules(inputs, context, threads, outputDirectory);
+			return;
+		}
+
+		if (localWorkers > 0 || !workers.isEmpty()) {
+			MMXIAssembler.assembleSharded(inputs, context, localWorkers, workers, outputDirectory, cache);
+			return;
+		}
+
+		if (batch) {
+			MMXIAssembler.assembleBatch(inputs, context, threads, outputDirectory, cache);
+			return;
+		}
+
 		//Check to see if the specified input file exists.
 		if (!inputFile.exists()) {
 			ErrorHandler.fatalError("Input file does not exist", 202);
 		}
 
+		//The cache holds only the object file and listing, so it is bypassed when anything else is wanted.
+		String cacheKey = null;
+		if (cache != null && mode != "DUMP" && !writeBinary && !writeHex && !writeRaw && !pipelined
+				&& statsFormat == null) {
+			try {
+				cacheKey = BuildCache.key(BuildCache.readBytes(inputFile), context);
+
+				if (cache.fetch(cacheKey, new File("output.txt"), new File("listing.txt"))) {
+					cache.printStatistics(System.out);
+					return;
+				}
+			} catch (IOException e) {
+				ErrorHandler.fatalError("Could not read build cache", 206);
+			}
+		}
+
+		if (pipelined) {
+			MMXIAssembler.assemblePipelined(context, mode == "DUMP", writeBinary, writeHex, writeRaw);
+			return;
+		}
+
+		//With --stats the source is read into memory first, so that reading is measured apart from parsing.
+		AssemblyStats stats = statsFormat == null ? null : new AssemblyStats();
+		int sourceLines = 0;
+
 		try {
-			input = new BufferedReader(new FileReader(inputFile));
+			if (stats != null) {
+				stats.start(Phase.READ);
+				String source = new String(BuildCache.readBytes(inputFile));
+				stats.stop(Phase.READ);
+
+				for (int i = 0; i < source.length(); ++i) {
+					if (source.charAt(i) == '\n') {
+						++sourceLines;
+					}
+				}
+
+				input = new BufferedReader(new StringReader(source));
+			} else {
+				input = new BufferedReader(new FileReader(inputFile));
+			}
 		} catch (FileNotFoundException e) {
 			ErrorHandler.fatalError("Could not open input file", 203);
+		} catch (IOException e) {
+			ErrorHandler.fatalError("Could not open input file", 203);
 		}
 
 		//Pass the parser the input file and the number of maximum instructions.
-		program = machine.parse(input, maxSteps);
+		Governor governor = new Governor(context);
+		machine = context.getParser().create(context, governor, stats);
+
+		if (stats != null) {
+			stats.start(Phase.PASS_1);
+		}
+
+		program = machine.parse(input, context.getMaxRecords());
+
+		if (stats != null) {
+			stats.stop(Phase.PASS_1);
+			stats.count(program, sourceLines);
+		}
 
 		//Dump the post parse file if the mode selected was -d
 		if (mode == "DUMP") {
-			MMXIAssembler.dumpParsed(program);
+			MMXIAssembler.dumpParsed(program, context);
 		}
 
 		try {
@@ -133,11 +400,303 @@ public class MMXIAssembler {
 			ErrorHandler.fatalError("Could not open output file", 205);
 		}
 
-		//Pass the assembler the BufferedWriter and a program component.
+		//Every requested output is written by the same pass of the assembler.
+		List<OutputSink> sinks = new ArrayList<OutputSink>();
+		sinks.add(new TextObjectSink(output, context.getDialect()));
+		sinks.add(new ListingSink(listing));
+		BufferedWriter hex = null;
+		OutputStream raw = null;
+
+		try {
+			if (writeHex) {
+				hex = new BufferedWriter(new FileWriter("output.hex"));
+				sinks.add(new IntelHexSink(hex));
+			}
+
+			if (writeRaw) {
+				raw = new BufferedOutputStream(new FileOutputStream("output.raw"));
+				sinks.add(new RawBinarySink(raw));
+			}
+		} catch (IOException e) {
+			ErrorHandler.fatalError("Could not open output file", 205);
+		}
+
+		//Charge each sink's work to its own phase, apart from encoding.
+		if (stats != null) {
+			for (int i = 0; i < sinks.size(); ++i) {
+				sinks.set(i, stats.timed(sinks.get(i), i == 1 ? Phase.LISTING_WRITE : Phase.OBJECT_WRITE));
+			}
+
+			sinks.add(stats.counter());
+		}
+
+		assembler = new AssemblerImp(context.getDialect(), governor, context.getListener());
+		ObjectImage image = null;
 		try {
-			assembler.assemble(output, listing, program);
+			if (stats != null) {
+				stats.start(Phase.PASS_2);
+			}
+
+			image = assembler.assemble(program, sinks);
+
+			if (stats != null) {
+				stats.stop(Phase.PASS_2);
+				stats.start(Phase.OBJECT_WRITE);
+			}
+
+			output.close();
+
+			if (stats != null) {
+				stats.stop(Phase.OBJECT_WRITE);
+				stats.start(Phase.LISTING_WRITE);
+			}
+
+			listing.close();
+
+			if (stats != null) {
+				stats.stop(Phase.LISTING_WRITE);
+			}
+
+			if (hex != null) {
+				hex.close();
+			}
+
+			if (raw != null) {
+				raw.close();
+			}
 		} catch (IOException e) {
+			ErrorHandler.fatalError("Could not write output files", 205);
+		}
+
+		if (writeBinary && image != null) {
+			MMXIAssembler.writeBinary(image);
+		}
 
+		if (stats != null) {
+			if (statsFormat.equals("json")) {
+				System.out.println(stats.toJson());
+			} else {
+				stats.print(System.out);
+			}
+		}
+
+		if (cacheKey != null) {
+			try {
+				cache.store(cacheKey, new File("output.txt"), new File("listing.txt"));
+			} catch (IOException e) {
+				ErrorHandler.warning("Could not store outputs in build cache", 206);
+			}
+
+			cache.printStatistics(System.out);
+		}
+	}
+
+	/**
+	 * Assembles every input file using a {@link BatchAssembler}, writing name.obj and name.lst
+	 * for each, and prints a summary.
+	 */
+	private static void assembleBatch(List<String> inputs, AssemblyContext context, int threads,
+			File outputDirectory, BuildCache cache) {
+		List<File> sources = null;
+
+		try {
+			sources = BatchAssembler.expand(inputs);
+		} catch (IOException e) {
+			ErrorHandler.fatalError(e.getMessage(), 202);
+		}
+
+		if (outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+			ErrorHandler.fatalError("Could not create output directory", 205);
+		}
+
+		long start = System.nanoTime();
+		List<BatchAssembler.Result> results =
+				new BatchAssembler(context, threads, outputDirectory, cache).assemble(sources);
+		BatchAssembler.printSummary(System.out, results, System.nanoTime() - start);
+
+		if (cache != null) {
+			cache.printStatistics(System.out);
+		}
+
+		for (BatchAssembler.Result result : results) {
+			if (!result.succeeded()) {
+				System.exit(1);
+			}
+		}
+	}
+
+	/**
+	 * Assembles every input file on worker processes using a {@link ShardedAssembler}, writing
+	 * name.obj and name.lst for each, and prints a summary. Any local workers started here are
+	 * stopped before returning.
+	 */
+	private static void assembleSharded(List<String> inputs, AssemblyContext context, int localWorkers,
+			List<InetSocketAddress> workers, File outputDirectory, BuildCache cache) {
+		List<File> sources = null;
+
+		try {
+			sources = BatchAssembler.expand(inputs);
+		} catch (IOException e) {
+			ErrorHandler.fatalError(e.getMessage(), 202);
+		}
+
+		if (outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+			ErrorHandler.fatalError("Could not create output directory", 205);
+		}
+
+		List<ShardedAssembler.LocalWorker> started = new ArrayList<ShardedAssembler.LocalWorker>();
+		List<BatchAssembler.Result> results;
+		long start = System.nanoTime();
+
+		try {
+			List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>(workers);
+
+			for (int i = 0; i < localWorkers; ++i) {
+				try {
+					started.add(ShardedAssembler.startLocalWorker());
+				} catch (IOException e) {
+					ErrorHandler.fatalError("Could not start worker: " + e.getMessage(), 207);
+				}
+				addresses.add(started.get(i).getAddress());
+			}
+
+			results = new ShardedAssembler(context, addresses, ShardedAssembler.DEFAULT_SLOTS,
+					outputDirectory, cache, System.err).assemble(sources);
+		} finally {
+			for (ShardedAssembler.LocalWorker worker : started) {
+				worker.stop();
+			}
+		}
+
+		BatchAssembler.printSummary(System.out, results, System.nanoTime() - start);
+
+		if (cache != null) {
+			cache.printStatistics(System.out);
+		}
+
+		for (BatchAssembler.Result result : results) {
+			if (!result.succeeded()) {
+				System.exit(1);
+			}
+		}
+	}
+
+	/**
+	 * Assembles every input file as a module of one program using a {@link ModuleBuilder}, prints
+	 * a summary and reports any import that does not resolve to exactly one module.
+	 */
+	private static void assembleModules(List<String> inputs, AssemblyContext context, int threads,
+			File outputDirectory) {
+		List<File> sources = null;
+
+		try {
+			sources = BatchAssembler.expand(inputs);
+		} catch (IOException e) {
+			ErrorHandler.fatalError(e.getMessage(), 202);
+		}
+
+		if (outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+			ErrorHandler.fatalError("Could not create output directory", 205);
+		}
+
+		ModuleBuilder builder = new ModuleBuilder(context, threads, outputDirectory);
+		long start = System.nanoTime();
+		List<BatchAssembler.Result> results = builder.build(sources);
+		BatchAssembler.printSummary(System.out, results, System.nanoTime() - start);
+
+		boolean linked = builder.printUnresolved(System.out);
+
+		for (BatchAssembler.Result result : results) {
+			if (!result.succeeded()) {
+				System.exit(1);
+			}
+		}
+
+		if (!linked) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Builds every input file as in batch mode, then rebuilds each one soon after it changes
+	 * until the program is stopped. See {@link SourceWatcher}.
+	 */
+	private static void watch(List<String> inputs, AssemblyContext context, File outputDirectory,
+			boolean modules) {
+		if (outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+			ErrorHandler.fatalError("Could not create output directory", 205);
+		}
+
+		try {
+			new SourceWatcher(inputs, context, outputDirectory, modules,
+					SourceWatcher.DEFAULT_DEBOUNCE_MILLIS, System.out).watch();
+		} catch (IOException e) {
+			ErrorHandler.fatalError(e.getMessage(), 202);
+		}
+	}
+
+	/**
+	 * Assembles the input file using a {@link PipelinedAssembler}, which reads the input and
+	 * writes listing.txt and output.txt on separate threads. Any further formats are written
+	 * from the assembled image afterwards.
+	 */
+	private static void assemblePipelined(AssemblyContext context, boolean dump, boolean writeBinary,
+			boolean writeHex, boolean writeRaw) {
+		//The pipeline is held to the same limits as the other paths.
+		Governor governor = new Governor(context);
+		PipelinedAssembler pipeline = new PipelinedAssembler(
+				context.getParser().create(context, governor, null),
+				new AssemblerImp(context.getDialect(), governor, context.getListener()));
+		Program program = null;
+		ObjectImage image = null;
+
+		try {
+			program = pipeline.parse(context.getSourceFile(), context.getMaxRecords());
+		} catch (IOException e) {
+			ErrorHandler.fatalError("Could not read input file", 203);
+		}
+
+		if (dump) {
+			MMXIAssembler.dumpParsed(program, context);
+		}
+
+		try {
+			image = pipeline.assemble(program, new File("output.txt"), new File("listing.txt"));
+		} catch (IOException e) {
+			ErrorHandler.fatalError("Could not write output files", 205);
+		}
+
+		if (writeBinary) {
+			MMXIAssembler.writeBinary(image);
+		}
+
+		try {
+			if (writeHex) {
+				BufferedWriter hex = new BufferedWriter(new FileWriter("output.hex"));
+				image.writeTo(new IntelHexSink(hex));
+				hex.close();
+			}
+
+			if (writeRaw) {
+				OutputStream raw = new BufferedOutputStream(new FileOutputStream("output.raw"));
+				image.writeTo(new RawBinarySink(raw));
+				raw.close();
+			}
+		} catch (IOException e) {
+			ErrorHandler.fatalError("Could not write output files", 205);
+		}
+	}
+
+	/**
+	 * Writes the assembled segment in binary form to output.bin.
+	 */
+	private static void writeBinary(ObjectImage image) {
+		try {
+			OutputStream binary = new BufferedOutputStream(new FileOutputStream("output.bin"));
+			BinaryObjectFile.write(image, binary);
+			binary.close();
+		} catch (IOException e) {
+			ErrorHandler.fatalError("Could not write binary output file", 207);
 		}
 	}
 
@@ -145,8 +704,8 @@ public class MMXIAssembler {
 	/**
 	 * Outputs the post-parse file to filename.dump.
 	 */
-	private static void dumpParsed(Program program) {
-		String dumpName = fileName.concat(".dump");
+	private static void dumpParsed(Program program, AssemblyContext context) {
+		String dumpName = context.getSourceFile().getPath().concat(".dump");
 		File dumpFile = new File(dumpName);
 		FileOutputStream out = null;
 		try {
@@ -164,8 +723,21 @@ public class MMXIAssembler {
 	private static void printOptions() {
 		System.out.println("Usage: java -jar \"MMXI Assembler.jar\" [options]");
 		System.out.println("	-d				Dump the post-parse file o filename.dump");
+		System.out.println("	-C				Write coalesced text records (not readable by the classic simulator)");
+		System.out.println("	-B				Also write the object file in binary form to output.bin");
+		System.out.println("	-H				Also write the segment in Intel HEX format to output.hex");
+		System.out.println("	-R				Also write the segment as a raw memory image to output.raw");
 		System.out.println("	-M N			Stop execution after N steps. (Default Value: 2000)");
 		System.out.println("	-f filename		Execute the specified object file \"filename\"");
+		System.out.println("	-j N			Batch mode: assemble up to N files at once");
+		System.out.println("	-o dir			Batch mode: write name.obj and name.lst into dir");
+		System.out.println("	--watch			Rebuild sources as they change (outputs as in batch mode)");
+		System.out.println("	--modules		Build the inputs as modules linked through .ENT and .EXT");
+		System.out.println("	--workers N		Batch mode: spread the files across N worker JVMs");
+		System.out.println("	--worker host:port	Batch mode: also use the assembler daemon at host:port");
+		System.out.println("	-K dir			Reuse outputs of unchanged sources from the build cache in dir");
+		System.out.println("	--stats[=json]		Report the time, CPU and memory of each phase of a single-file assembly");
+		System.out.println("	--parser name		Parse with \"scanner\" (default) or \"regex\"");
 		System.out.println("	-s N			Set the maximum number of symbols to N.");
 		System.out.println("	-L N			Set the maximum number of literals to N.");
 	}
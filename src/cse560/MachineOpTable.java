@@ -1,5 +1,6 @@
 package cse560;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -70,16 +71,16 @@ public final class MachineOpTable {
      */
     private static final class MachineOp {
         /** Template for this instruction. */
-        public int template;
+        public final int template;
 
         /** Number of arguments this instruction takes. */
-        public int numArgs;
+        public final int numArgs;
 
         /** Array of (position, length) tuples. */
-        public ArgFormat[] args = new ArgFormat[MachineOpTable.MAX_ARGS];
+        public final ArgFormat[] args = new ArgFormat[MachineOpTable.MAX_ARGS];
 
         /** True iff the last argument of this op can be a relative symbol. */
-        public boolean allowRelative;
+        public final boolean allowRelative;
 
         /** Number of arguments added to the MachineOp so far. */
         private int argCount = 0;
@@ -117,11 +118,16 @@ public final class MachineOpTable {
     /** Maximum number of arguments an instruction can take. */
     public static final int MAX_ARGS = 3;
 
-    /** Mapping of machine-op mnemonics to their format. */
-    private static Map<String, MachineOp> opTable =
-            new HashMap<String, MachineOp>();
+    /**
+     * Mapping of machine-op mnemonics to their format. Filled once when the
+     * class is initialized and read-only afterwards, so any number of
+     * assemblies may consult it at once.
+     */
+    private static final Map<String, MachineOp> OP_TABLE;
 
     static {
+        Map<String, MachineOp> opTable = new HashMap<String, MachineOp>();
+
         // Each argument is commented to provide a first line of defense against
         // errors in the template or argument format. If the initialization
         // doesn't match the comments, the initialization is probably wrong. If
@@ -326,6 +332,8 @@ public final class MachineOpTable {
         opTable.put("TRAP", new MachineOp(0xf000, 1, false));
         opTable.get("TRAP").addArgument(
                 new ArgFormat(0, 8, ArgCategory.TRAPVECT));
+
+        OP_TABLE = Collections.unmodifiableMap(opTable);
     }
 
     /**
@@ -338,7 +346,7 @@ public final class MachineOpTable {
      * @return {@code this[opCode][index].length}
      */
     public static ArgFormat getArgFormat(String opCode, int index) {
-        return opTable.get(opCode).args[index];
+        return OP_TABLE.get(opCode).args[index];
     }
 
     /**
@@ -350,7 +358,7 @@ public final class MachineOpTable {
      * @return {@code this[opCode].allowRelative}
      */
     public static boolean allowsRelative(String opCode) {
-        return opTable.get(opCode).allowRelative;
+        return OP_TABLE.get(opCode).allowRelative;
     }
 
     /**
@@ -361,7 +369,7 @@ public final class MachineOpTable {
      * @return {@code this[opCode].numArgs}
      */
     public static int getNumArgs(String opCode) {
-        return opTable.get(opCode).numArgs;
+        return OP_TABLE.get(opCode).numArgs;
     }
 
     /**
@@ -372,7 +380,7 @@ public final class MachineOpTable {
      * @return {@code this[opCode].template}
      */
     public static int getTemplate(String opCode) {
-        return opTable.get(opCode).template;
+        return OP_TABLE.get(opCode).template;
     }
 
     /**
@@ -383,7 +391,7 @@ public final class MachineOpTable {
      * @return True iff {@code opcode} is a key for {@code this.opTable}.
      */
     public static boolean hasOpCode(String opCode) {
-        return opTable.containsKey(opCode);
+        return OP_TABLE.containsKey(opCode);
     }
 
     /**
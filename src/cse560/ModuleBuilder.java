@@ -0,0 +1,340 @@
+package cse560;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds a program split into modules that refer to each other through
+ * {@code .ENT} and {@code .EXT}, and after a change reassembles as few of them
+ * as possible.
+ * <p>
+ * The module graph has an edge from each module declaring a symbol with
+ * {@code .ENT} (written as an '{@code N}' record) to each module declaring it
+ * with {@code .EXT} (an '{@code X}' record). The loader fills in external
+ * references, so no module's assembly waits on another's, and every module to
+ * be assembled in a round runs at once on the pool of a
+ * {@link BatchAssembler}.
+ * <p>
+ * Each build runs at most two rounds:
+ * <ol>
+ * <li>Every module that is new, failed last time, or whose bytes changed.</li>
+ * <li>Every other module that imports a symbol whose resolution changed in
+ * round one: its value or relocatability, or which module exports it, if any.
+ * Reassembling these leaves their own entry symbols as they were, so no third
+ * round is needed.</li>
+ * </ol>
+ * An edit that leaves a module's entry symbols alone, e.g. one to the body of
+ * a routine that does not move any entry point, reassembles that module only.
+ * <p>
+ * <b>Model:</b>
+ * <ul>
+ * <li>{@code exports: File -> (String -> value and relativity)} - The entry
+ * symbols of each module at its last successful build.</li>
+ * <li>{@code imports: File -> set of String} - The external symbols of each
+ * module at its last successful build.</li>
+ * <li>{@code seen: File -> (String -> resolution)} - How each import of a
+ * module resolved when it was last assembled.</li>
+ * </ul>
+ * Instances are not thread-safe.
+ *
+ * @author Igor Tolkachev
+ */
+public final class ModuleBuilder {
+    /** Resolution of a symbol no module exports. */
+    private static final String UNRESOLVED = "unresolved";
+
+    /** Assembles the modules of each round. */
+    private final BatchAssembler assembler;
+
+    /** Settings of every module; used to key the content digests. */
+    private final AssemblyContext context;
+
+    /** Content digest of each module at its last successful build. */
+    private final Map<File, String> digests = new HashMap<File, String>();
+
+    /** Entry symbols of each module, with their value and relativity. */
+    private final Map<File, Map<String, String>> exports =
+            new HashMap<File, Map<String, String>>();
+
+    /** External symbols of each module. */
+    private final Map<File, Set<String>> imports =
+            new HashMap<File, Set<String>>();
+
+    /** Resolution of each import of a module when it was last assembled. */
+    private final Map<File, Map<String, String>> seen =
+            new HashMap<File, Map<String, String>>();
+
+    /**
+     * Initializes a builder with no modules built yet.
+     *
+     * @param context
+     *            The settings of every module.
+     * @param threads
+     *            The number of modules to assemble at once.
+     * @param outputDirectory
+     *            The directory to write outputs to, or null to write each
+     *            module's outputs beside it.
+     */
+    public ModuleBuilder(AssemblyContext context, int threads,
+            File outputDirectory) {
+        this.context = context;
+        this.assembler = new BatchAssembler(context, threads, outputDirectory);
+    }
+
+    /**
+     * Brings the outputs of {@code sources} up to date.
+     * <p>
+     * <b>Ensures:</b> the model describes exactly the modules in
+     * {@code sources}.
+     *
+     * @param sources
+     *            Every module of the program.
+     * @return The results of the modules assembled, those of round one first.
+     */
+    public List<BatchAssembler.Result> build(List<File> sources) {
+        List<File> modules = new ArrayList<File>();
+
+        for (File source : sources) {
+            modules.add(source.getAbsoluteFile());
+        }
+
+        // ...Forget modules that are no longer part of the program
+
+        Set<File> known = new HashSet<File>(this.digests.keySet());
+        known.addAll(this.exports.keySet());
+        known.removeAll(modules);
+
+        for (File gone : known) {
+            forget(gone);
+        }
+
+        // ...Round one: modules whose own source changed
+
+        List<File> changed = new ArrayList<File>();
+        Map<File, String> pending = new HashMap<File, String>();
+
+        for (File module : modules) {
+            // An unreadable module is left for the assembler to report.
+            try {
+                String digest =
+                        BuildCache.key(BuildCache.readBytes(module),
+                                this.context);
+
+                if (digest.equals(this.digests.get(module))) {
+                    continue;
+                }
+
+                pending.put(module, digest);
+            } catch (IOException e) {
+                // Fall through and let the assembler report it.
+            }
+
+            changed.add(module);
+        }
+
+        List<BatchAssembler.Result> results =
+                new ArrayList<BatchAssembler.Result>();
+
+        if (!changed.isEmpty()) {
+            for (BatchAssembler.Result result : this.assembler
+                    .assemble(changed)) {
+                File module = result.getSource().getAbsoluteFile();
+
+                if (result.succeeded() && pending.containsKey(module)) {
+                    record(module, result.getImage());
+                    this.digests.put(module, pending.get(module));
+                } else {
+                    forget(module);
+                }
+
+                results.add(result);
+            }
+        }
+
+        // ...Round two: importers of symbols whose resolution changed
+
+        Map<String, String> resolution = resolve();
+        List<File> affected = new ArrayList<File>();
+
+        for (File module : modules) {
+            if (!this.imports.containsKey(module)) {
+                continue;
+            }
+
+            if (changed.contains(module)) {
+                // Just assembled against the current resolution.
+                this.seen.put(module, view(module, resolution));
+            } else if (!view(module, resolution).equals(this.seen.get(module))) {
+                affected.add(module);
+            }
+        }
+
+        if (!affected.isEmpty()) {
+            for (BatchAssembler.Result result : this.assembler
+                    .assemble(affected)) {
+                File module = result.getSource().getAbsoluteFile();
+
+                if (result.succeeded()) {
+                    this.seen.put(module, view(module, resolution));
+                } else {
+                    // Deleted or broken since round one; retry next build.
+                    forget(module);
+                }
+
+                results.add(result);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Records the entry and external symbols of a module just assembled.
+     */
+    private void record(File module, ObjectImage image) {
+        Map<String, String> entries = new LinkedHashMap<String, String>();
+
+        for (String symbol : image.getEntrySymbols()) {
+            entries.put(symbol, image.getEntryValue(symbol)
+                    + (image.isEntryRelative(symbol) ? "R" : "A"));
+        }
+
+        this.exports.put(module, entries);
+        this.imports.put(module, new LinkedHashSet<String>(image
+                .getExternalSymbols()));
+    }
+
+    /**
+     * Drops everything known about a module, so the next build assembles it.
+     */
+    private void forget(File module) {
+        this.digests.remove(module);
+        this.exports.remove(module);
+        this.imports.remove(module);
+        this.seen.remove(module);
+    }
+
+    /**
+     * Returns the resolution of every exported symbol: its value, its
+     * relativity and the module that exports it. A symbol exported by more
+     * than one module resolves to all of them.
+     */
+    private Map<String, String> resolve() {
+        Map<String, String> resolution = new HashMap<String, String>();
+
+        for (Map.Entry<File, Map<String, String>> module : this.exports
+                .entrySet()) {
+            for (Map.Entry<String, String> entry : module.getValue()
+                    .entrySet()) {
+                String value = entry.getValue() + "@" + module.getKey();
+                String previous = resolution.get(entry.getKey());
+
+                resolution.put(entry.getKey(), previous == null ? value
+                        : previous + "\n" + value);
+            }
+        }
+
+        return resolution;
+    }
+
+    /**
+     * Returns how each import of {@code module} resolves.
+     */
+    private Map<String, String> view(File module,
+            Map<String, String> resolution) {
+        Map<String, String> view = new HashMap<String, String>();
+
+        for (String symbol : this.imports.get(module)) {
+            String value = resolution.get(symbol);
+
+            view.put(symbol, value == null ? UNRESOLVED : value);
+        }
+
+        return view;
+    }
+
+    /**
+     * Returns the modules {@code module} imports from.
+     *
+     * @param module
+     *            A module of the last build.
+     * @return The modules exporting a symbol {@code module} imports.
+     */
+    public Set<File> getDependencies(File module) {
+        Set<File> dependencies = new LinkedHashSet<File>();
+        Set<String> symbols = this.imports.get(module.getAbsoluteFile());
+
+        if (symbols == null) {
+            return dependencies;
+        }
+
+        for (Map.Entry<File, Map<String, String>> exporter : this.exports
+                .entrySet()) {
+            for (String symbol : symbols) {
+                if (exporter.getValue().containsKey(symbol)) {
+                    dependencies.add(exporter.getKey());
+                    break;
+                }
+            }
+        }
+
+        return dependencies;
+    }
+
+    /**
+     * Returns the imports that no module exports, or that more than one
+     * does. Neither can be loaded.
+     *
+     * @return The symbols of each module that do not resolve to exactly one
+     *         module.
+     */
+    public Map<File, Set<String>> getUnresolved() {
+        Map<String, String> resolution = resolve();
+        Map<File, Set<String>> unresolved =
+                new LinkedHashMap<File, Set<String>>();
+
+        for (Map.Entry<File, Set<String>> module : this.imports.entrySet()) {
+            for (String symbol : module.getValue()) {
+                String value = resolution.get(symbol);
+
+                if (value == null || value.indexOf('\n') >= 0) {
+                    if (!unresolved.containsKey(module.getKey())) {
+                        unresolved.put(module.getKey(),
+                                new LinkedHashSet<String>());
+                    }
+
+                    unresolved.get(module.getKey()).add(symbol);
+                }
+            }
+        }
+
+        return unresolved;
+    }
+
+    /**
+     * Prints one line per module with imports that cannot be loaded.
+     *
+     * @param out
+     *            The stream to print to.
+     * @return True iff every import resolves to exactly one module.
+     */
+    public boolean printUnresolved(PrintStream out) {
+        Map<File, Set<String>> unresolved = getUnresolved();
+
+        for (Map.Entry<File, Set<String>> module : unresolved.entrySet()) {
+            out.printf("  link  %-40s unresolved or duplicate: %s%n", module
+                    .getKey().getPath(), module.getValue());
+        }
+
+        return unresolved.isEmpty();
+    }
+}
@@ -0,0 +1,85 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ModuleBuilderTest {
+    private static final String MAIN = "Main     .ORIG\n"
+            + "         .EXT    Print\n" + "         JSR     Print\n"
+            + "         .END\n";
+
+    /**
+     * Returns a module exporting {@code Print} after {@code padding} words.
+     */
+    private static String library(int padding, int increment) {
+        StringBuilder source = new StringBuilder();
+
+        source.append("Lib      .ORIG\n");
+        source.append("         .ENT    Print\n");
+
+        for (int i = 0; i < padding; ++i) {
+            source.append("         ADD     R1,R1,#1\n");
+        }
+
+        source.append("Print    ADD     R2,R2,#" + increment + "\n");
+        source.append("         RET\n");
+        source.append("         .END\n");
+
+        return source.toString();
+    }
+
+    @Test
+    public void entryAndExternalRecords() {
+        AssemblyResult lib =
+                EmbeddedAssembler.assemble(library(1, 1),
+                        AssemblyContext.DEFAULT);
+        AssemblyResult main =
+                EmbeddedAssembler.assemble(MAIN, AssemblyContext.DEFAULT);
+
+        assertTrue(lib.getObjectFile().contains("NPrint 0001R"));
+        assertTrue(main.getObjectFile().contains("XPrint"));
+        assertTrue(main.getObjectFile().contains("X9Print"));
+    }
+
+    @Test
+    public void rebuildsImportersOnlyWhenAnEntryMoves() throws Exception {
+        File dir = TestFiles.tempDirectory();
+        File lib = TestFiles.write(dir, "lib.asm", library(1, 1));
+        File main = TestFiles.write(dir, "main.asm", MAIN);
+        List<File> sources = Arrays.asList(lib, main);
+        ModuleBuilder builder =
+                new ModuleBuilder(AssemblyContext.DEFAULT, 2, null);
+
+        assertEquals(2, builder.build(sources).size());
+        assertEquals(0, builder.build(sources).size());
+        assertTrue(builder.getUnresolved().isEmpty());
+        assertEquals(lib.getAbsoluteFile(), builder.getDependencies(main)
+                .iterator().next());
+
+        // A change that leaves Print where it was rebuilds the library only.
+        TestFiles.write(dir, "lib.asm", library(1, 2));
+        List<BatchAssembler.Result> results = builder.build(sources);
+        assertEquals(1, results.size());
+        assertEquals(lib, results.get(0).getSource());
+
+        // Moving Print rebuilds its importer too.
+        TestFiles.write(dir, "lib.asm", library(2, 2));
+        results = builder.build(sources);
+        assertEquals(2, results.size());
+        assertEquals(lib, results.get(0).getSource());
+        assertEquals(main, results.get(1).getSource());
+
+        // Dropping the library leaves Print unresolved.
+        results = builder.build(Arrays.asList(main));
+        assertEquals(1, results.size());
+        assertTrue(builder.getUnresolved().get(main.getAbsoluteFile())
+                .contains("Print"));
+    }
+}
@@ -0,0 +1,87 @@
+package cse560;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An {@link AssemblerListener} that passes every event to several others, in
+ * the order given.
+ *
+ * @author Igor Tolkachev
+ */
+public final class MulticastListener implements AssemblerListener {
+    /** The listeners to pass events to. */
+    private final AssemblerListener[] listeners;
+
+    /**
+     * Initializes a listener that passes every event to each of
+     * {@code listeners}.
+     *
+     * @param listeners
+     *            The listeners.
+     */
+    public MulticastListener(AssemblerListener... listeners) {
+        this.listeners = listeners.clone();
+    }
+
+    /**
+     * Returns a copy of this listener that also passes every event to
+     * {@code listener}.
+     *
+     * @param listener
+     *            The listener to add.
+     * @return The new listener.
+     */
+    public MulticastListener with(AssemblerListener listener) {
+        List<AssemblerListener> all =
+                new ArrayList<AssemblerListener>(Arrays.asList(this.listeners));
+
+        all.add(listener);
+
+        return new MulticastListener(all.toArray(new AssemblerListener[all
+                .size()]));
+    }
+
+    @Override
+    public void phaseStarted(Phase phase) {
+        for (AssemblerListener listener : this.listeners) {
+            listener.phaseStarted(phase);
+        }
+    }
+
+    @Override
+    public void phaseEnded(Phase phase) {
+        for (AssemblerListener listener : this.listeners) {
+            listener.phaseEnded(phase);
+        }
+    }
+
+    @Override
+    public void recordParsed(SourceRecord record) {
+        for (AssemblerListener listener : this.listeners) {
+            listener.recordParsed(record);
+        }
+    }
+
+    @Override
+    public void symbolDefined(String symbol, int value, boolean isRelative) {
+        for (AssemblerListener listener : this.listeners) {
+            listener.symbolDefined(symbol, value, isRelative);
+        }
+    }
+
+    @Override
+    public void literalAdded(int literal, int lineNumber) {
+        for (AssemblerListener listener : this.listeners) {
+            listener.literalAdded(literal, lineNumber);
+        }
+    }
+
+    @Override
+    public void wordEmitted(int address, int value, Relocation relocation) {
+        for (AssemblerListener listener : this.listeners) {
+            listener.wordEmitted(address, value, relocation);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package cse560;
+
+/**
+ * Specifies how text records are written to an object file.
+ *
+ * @author Igor Tolkachev
+ */
+public enum ObjectDialect {
+    /**
+     * One "{@code T}" record per word. This is the format understood by the
+     * classic MMXI Simulator, and the default.
+     */
+    CLASSIC,
+
+    /**
+     * One "{@code B}" record per contiguous run of words. Each record holds
+     * the start address, the number of words, and each word followed by a
+     * one-character relocation marker: "{@code -}" for absolute, "{@code 0}"
+     * for M0 and "{@code 1}" for M1. Words referencing external symbols are
+     * still written as classic "{@code T}" records.
+     */
+    COALESCED;
+}
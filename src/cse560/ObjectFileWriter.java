@@ -0,0 +1,195 @@
+package cse560;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Formats the records of an MMXI object file. Callers supply the header,
+ * entry, external, text and end records in that order; this component writes
+ * them in the requested {@link ObjectDialect}.
+ * <p>
+ * In the {@code COALESCED} dialect, text records are buffered until the run
+ * of contiguous addresses is broken, at which point the whole run is written
+ * as a single "{@code B}" record:
+ *
+ * <blockquote>
+ *
+ * <pre>
+ * BAAAACCCCWWWWmWWWWm...
+ * </pre>
+ *
+ * </blockquote>
+ * <p>
+ * Where A's are the start address, C's are the number of words, W's are each
+ * word and m is that word's relocation marker.
+ *
+ * @author Igor Tolkachev
+ */
+public final class ObjectFileWriter {
+    /** Marker for an absolute word in a coalesced record. */
+    public static final char ABSOLUTE_MARKER = '-';
+
+    /** Marker for an M0 word in a coalesced record. */
+    public static final char M0_MARKER = '0';
+
+    /** Marker for an M1 word in a coalesced record. */
+    public static final char M1_MARKER = '1';
+
+    /** The largest number of words a single coalesced record may hold. */
+    private static final int MAX_RUN_LENGTH = 0xffff;
+
+    /** The destination of the object file. */
+    private final PrintWriter out;
+
+    /** The dialect text records are written in. */
+    private final ObjectDialect dialect;
+
+    /** Words and markers of the pending coalesced run. */
+    private final StringBuilder run = new StringBuilder();
+
+    /** Address of the first word of the pending run. */
+    private int runStart = -1;
+
+    /** Number of words in the pending run. */
+    private int runLength = 0;
+
+    /**
+     * Initializes a new writer.
+     *
+     * @param out
+     *            The destination of the object file.
+     * @param dialect
+     *            The dialect text records are written in.
+     */
+    public ObjectFileWriter(Writer out, ObjectDialect dialect) {
+        this.out = new PrintWriter(out);
+        this.dialect = dialect;
+    }
+
+    /**
+     * Writes the header record.
+     *
+     * @param segmentName
+     *            The name of the segment.
+     * @param firstAddress
+     *            The first address of the segment.
+     * @param length
+     *            The length of the segment in words.
+     */
+    public void writeHeader(String segmentName, int firstAddress, int length) {
+        this.out.printf("H%-6s%04X%04X%n", segmentName, firstAddress, length);
+    }
+
+    /**
+     * Writes an entry point as an '{@code N}' record.
+     *
+     * @param symbol
+     *            The entry symbol.
+     * @param value
+     *            The value of the symbol.
+     * @param isRelative
+     *            True iff the symbol is relative.
+     */
+    public void writeEntry(String symbol, int value, boolean isRelative) {
+        // Terminate with an 'R' for relative or an 'A' for absolute.
+        this.out.printf("N%-6s%04X%c%n", symbol, value, isRelative ? 'R'
+                : 'A');
+    }
+
+    /**
+     * Writes an external symbol as an '{@code X}' record.
+     *
+     * @param symbol
+     *            The external symbol.
+     */
+    public void writeExternal(String symbol) {
+        this.out.printf("X%s%n", symbol);
+    }
+
+    /**
+     * Writes one word of the segment.
+     *
+     * @param address
+     *            The address of the word.
+     * @param word
+     *            The contents of memory at {@code address}.
+     * @param relocation
+     *            How the loader must adjust the word.
+     */
+    public void writeText(int address, int word, Relocation relocation) {
+        if (this.dialect == ObjectDialect.CLASSIC
+                || relocation.getKind() == Relocation.Kind.EXTERNAL) {
+            flushRun();
+            this.out.printf("T%04X%04X%s%n", address, word, relocation);
+            return;
+        }
+
+        // ...Start a new run if this word does not extend the pending one.
+
+        if (this.runStart + this.runLength != address
+                || this.runLength == MAX_RUN_LENGTH) {
+            flushRun();
+            this.runStart = address;
+        }
+
+        appendHex(this.run, word);
+
+        switch (relocation.getKind()) {
+        case RELATIVE6:
+            this.run.append(M0_MARKER);
+            break;
+
+        case RELATIVE9:
+            this.run.append(M1_MARKER);
+            break;
+
+        default:
+            this.run.append(ABSOLUTE_MARKER);
+        }
+
+        ++this.runLength;
+    }
+
+    /**
+     * Writes the end record and flushes the object file.
+     *
+     * @param execAddress
+     *            The address at which to begin execution.
+     */
+    public void writeEnd(int execAddress) {
+        flushRun();
+        this.out.printf("E%04X%n", execAddress);
+        this.out.flush();
+    }
+
+    /**
+     * Writes the pending coalesced run, if any, as a single 'B' record.
+     */
+    private void flushRun() {
+        if (this.runLength > 0) {
+            StringBuilder line = new StringBuilder(9 + this.run.length());
+
+            line.append('B');
+            appendHex(line, this.runStart);
+            appendHex(line, this.runLength);
+            line.append(this.run);
+
+            this.out.println(line);
+        }
+
+        this.run.setLength(0);
+        this.runStart = -1;
+        this.runLength = 0;
+    }
+
+    /**
+     * Appends the low sixteen bits of {@code value} to {@code dest} as four
+     * upper-case hex digits.
+     */
+    private static void appendHex(StringBuilder dest, int value) {
+        for (int shift = 12; shift >= 0; shift -= 4) {
+            dest.append(Character.toUpperCase(Character.forDigit(
+                    (value >> shift) & 0xf, 16)));
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package cse560;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The contents of an assembled MMXI segment, held in memory.
+ * <p>
+ * <b>Model:</b>
+ * <ul>
+ * <li>{@code string segmentName} - The name of the segment.</li>
+ * <li>{@code boolean isRelocatable} - True iff the segment is relocatable.</li>
+ * <li>{@code integer firstAddress} - The first address of the segment.</li>
+ * <li>{@code integer length} - The number of words in the segment.</li>
+ * <li>{@code integer execAddress} - The address at which to begin execution.</li>
+ * <li>{@code words} - The contents of memory, one 16-bit word for each
+ * address in {@code [firstAddress, firstAddress + length)}.</li>
+ * <li>{@code loaded} - The set of addresses the object file actually
+ * assigns. Addresses reserved by {@code .BLKW} are not loaded.</li>
+ * <li>{@code relocations} - The {@link Relocation} of each loaded word.</li>
+ * <li>{@code symbolTable} - Every symbol defined in the segment, each with its
+ * value and whether it is relative. Empty for images read from object files,
+ * which only record entry symbols.</li>
+ * <li>{@code entries} - The entry symbols, each with its value and whether it
+ * is relative.</li>
+ * <li>{@code externalSymbols} - The symbols referenced but not defined in the
+ * segment.</li>
+ * </ul>
+ * <p>
+ * <b>Constraints:</b>
+ * <ul>
+ * <li>{@code 0 <= firstAddress <= firstAddress + length <= 0x10000}</li>
+ * </ul>
+ *
+ * @author Igor Tolkachev
+ */
+public final class ObjectImage {
+    /**
+     * Value and relativity flag of a symbol.
+     */
+    private static final class Symbol {
+        /** Value of the symbol. */
+        public final int value;
+
+        /** Whether the symbol is relative. */
+        public final boolean isRelative;
+
+        /**
+         * Initializes a new symbol with the given value and relativity flag.
+         */
+        public Symbol(int value, boolean isRelative) {
+            this.value = value;
+            this.isRelative = isRelative;
+        }
+    }
+
+    /** Name of the segment. */
+    private final String segmentName;
+
+    /** Address of the first word of the segment. */
+    private final int firstAddress;
+
+    /** Contents of memory, indexed by offset from {@code firstAddress}. */
+    private final short[] words;
+
+    /** Relocation of each word, indexed like {@code words}. */
+    private final Relocation[] relocations;
+
+    /** Offsets of the words assigned by the object file. */
+    private final BitSet loaded;
+
+    /** The symbol table in the order symbols were added. */
+    private final Map<String, Symbol> symbolTable =
+            new LinkedHashMap<String, Symbol>();
+
+    /** Entry symbols in the order they were added. */
+    private final Map<String, Symbol> entries =
+            new LinkedHashMap<String, Symbol>();
+
+    /** External symbols in the order they were added. */
+    private final Set<String> externalSymbols = new LinkedHashSet<String>();
+
+    /** Address at which to begin execution. */
+    private int execAddress;
+
+    /** True iff the segment is relocatable. */
+    private boolean isRelocatable = false;
+
+    /**
+     * Initializes an empty image of a segment.
+     * <p>
+     * <b>Requires:</b>
+     * {@code 0 <= firstAddress <= firstAddress + length <= 0x10000}
+     *
+     * @param segmentName
+     *            The name of the segment.
+     * @param firstAddress
+     *            The first address of the segment.
+     * @param length
+     *            The length of the segment in words.
+     */
+    public ObjectImage(String segmentName, int firstAddress, int length) {
+        assert 0 <= firstAddress && 0 <= length
+                && firstAddress + length <= 0x10000;
+
+        this.segmentName = segmentName;
+        this.firstAddress = firstAddress;
+        this.execAddress = firstAddress;
+        this.words = new short[length];
+        this.relocations = new Relocation[length];
+        this.loaded = new BitSet(length);
+    }
+
+    /**
+     * Adds an entry symbol.
+     *
+     * @param symbol
+     *            The entry symbol.
+     * @param value
+     *            The value of the symbol.
+     * @param isRelative
+     *            True iff the symbol is relative.
+     */
+    public void addEntrySymbol(String symbol, int value, boolean isRelative) {
+        this.entries.put(symbol, new Symbol(value, isRelative));
+    }
+
+    /**
+     * Adds a symbol to the symbol table.
+     *
+     * @param symbol
+     *            The name of the symbol.
+     * @param value
+     *            The value of the symbol.
+     * @param isRelative
+     *            True iff the symbol is relative.
+     */
+    public void addSymbol(String symbol, int value, boolean isRelative) {
+        this.symbolTable.put(symbol, new Symbol(value, isRelative));
+    }
+
+    /**
+     * Returns the symbols in the symbol table in the order they were added.
+     *
+     * @return {@code this.symbolTable.keys}
+     */
+    public Set<String> getSymbols() {
+        return Collections.unmodifiableSet(this.symbolTable.keySet());
+    }
+
+    /**
+     * Returns the value of a symbol.
+     * <p>
+     * <b>Requires:</b> {@code symbol} is in the symbol table.
+     *
+     * @param symbol
+     *            The symbol.
+     * @return {@code v} for {@code (symbol, v, r)} in {@code symbolTable}
+     */
+    public int getSymbolValue(String symbol) {
+        return this.symbolTable.get(symbol).value;
+    }
+
+    /**
+     * Returns whether a symbol is relative.
+     * <p>
+     * <b>Requires:</b> {@code symbol} is in the symbol table.
+     *
+     * @param symbol
+     *            The symbol.
+     * @return {@code r} for {@code (symbol, v, r)} in {@code symbolTable}
+     */
+    public boolean isSymbolRelative(String symbol) {
+        return this.symbolTable.get(symbol).isRelative;
+    }
+
+    /**
+     * Adds an external symbol.
+     *
+     * @param symbol
+     *            The symbol defined outside of this segment.
+     */
+    public void addExternalSymbol(String symbol) {
+        this.externalSymbols.add(symbol);
+    }
+
+    /**
+     * Returns the entry symbols in the order they were added.
+     *
+     * @return {@code this.entries.keys}
+     */
+    public Set<String> getEntrySymbols() {
+        return Collections.unmodifiableSet(this.entries.keySet());
+    }
+
+    /**
+     * Returns the value of an entry symbol.
+     * <p>
+     * <b>Requires:</b> {@code symbol} is an entry symbol.
+     *
+     * @param symbol
+     *            The entry symbol.
+     * @return {@code v} for {@code (symbol, v, r)} in {@code entries}
+     */
+    public int getEntryValue(String symbol) {
+        return this.entries.get(symbol).value;
+    }
+
+    /**
+     * Returns whether an entry symbol is relative.
+     * <p>
+     * <b>Requires:</b> {@code symbol} is an entry symbol.
+     *
+     * @param symbol
+     *            The entry symbol.
+     * @return {@code r} for {@code (symbol, v, r)} in {@code entries}
+     */
+    public boolean isEntryRelative(String symbol) {
+        return this.entries.get(symbol).isRelative;
+    }
+
+    /**
+     * Returns the external symbols in the order they were added.
+     *
+     * @return {@code this.externalSymbols}
+     */
+    public Set<String> getExternalSymbols() {
+        return Collections.unmodifiableSet(this.externalSymbols);
+    }
+
+    /**
+     * Returns the address at which to begin execution.
+     *
+     * @return {@code this.execAddress}
+     */
+    public int getExecAddress() {
+        return this.execAddress;
+    }
+
+    /**
+     * Sets the address at which to begin execution.
+     *
+     * @param execAddress
+     *            The address of the first instruction to execute.
+     */
+    public void setExecAddress(int execAddress) {
+        this.execAddress = execAddress;
+    }
+
+    /**
+     * Returns the address of the first word of the segment.
+     *
+     * @return {@code this.firstAddress}
+     */
+    public int getFirstAddress() {
+        return this.firstAddress;
+    }
+
+    /**
+     * Returns the length of the segment in words.
+     *
+     * @return {@code |this.words|}
+     */
+    public int getLength() {
+        return this.words.length;
+    }
+
+    /**
+     * Returns the name of the segment.
+     *
+     * @return {@code this.segmentName}
+     */
+    public String getSegmentName() {
+        return this.segmentName;
+    }
+
+    /**
+     * Returns true iff the segment is relocatable.
+     *
+     * @return {@code this.isRelocatable}
+     */
+    public boolean isRelocatable() {
+        return this.isRelocatable;
+    }
+
+    /**
+     * Sets whether the segment is relocatable.
+     *
+     * @param value
+     *            True iff the segment is relocatable.
+     */
+    public void isRelocatable(boolean value) {
+        this.isRelocatable = value;
+    }
+
+    /**
+     * Returns true iff {@code address} lies within the segment.
+     *
+     * @param address
+     *            The address to check.
+     * @return {@code firstAddress <= address < firstAddress + length}
+     */
+    public boolean contains(int address) {
+        int offset = address - this.firstAddress;
+
+        return 0 <= offset && offset < this.words.length;
+    }
+
+    /**
+     * Assigns a word of the segment.
+     * <p>
+     * <b>Requires:</b> {@code contains(address)}
+     *
+     * @param address
+     *            The address of the word.
+     * @param word
+     *            The contents of memory at {@code address}.
+     * @param relocation
+     *            How the loader must adjust the word.
+     */
+    public void setWord(int address, int word, Relocation relocation) {
+        int offset = address - this.firstAddress;
+
+        this.words[offset] = (short) word;
+        this.relocations[offset] = relocation;
+        this.loaded.set(offset);
+    }
+
+    /**
+     * Returns the word at {@code address}, or zero if it was never assigned.
+     * <p>
+     * <b>Requires:</b> {@code contains(address)}
+     *
+     * @param address
+     *            The address of the word.
+     * @return {@code words[address - firstAddress]} as an unsigned value.
+     */
+    public int getWord(int address) {
+        return this.words[address - this.firstAddress] & 0xffff;
+    }
+
+    /**
+     * Returns the relocation of the word at {@code address}.
+     * <p>
+     * <b>Requires:</b> {@code contains(address)}
+     *
+     * @param address
+     *            The address of the word.
+     * @return The relocation, or {@link Relocation#NONE} if the word was
+     *         never assigned.
+     */
+    public Relocation getRelocation(int address) {
+        Relocation relocation = this.relocations[address - this.firstAddress];
+
+        return relocation == null ? Relocation.NONE : relocation;
+    }
+
+    /**
+     * Returns a copy of the contents of the segment. Element {@code i} holds
+     * the word at address {@code firstAddress + i}; words never assigned are
+     * zero.
+     *
+     * @return A copy of {@code this.words}.
+     */
+    public short[] getWords() {
+        return this.words.clone();
+    }
+
+    /**
+     * Returns the relocation bitmap of the segment. Bit {@code i} is set iff
+     * the word at address {@code firstAddress + i} must be offset by the load
+     * address.
+     *
+     * @return The set of offsets of relative words.
+     */
+    public BitSet getRelocationBitmap() {
+        BitSet bitmap = new BitSet(this.words.length);
+
+        for (int offset = this.loaded.nextSetBit(0); offset >= 0; offset =
+                this.loaded.nextSetBit(offset + 1)) {
+            if (this.relocations[offset].isRelative()) {
+                bitmap.set(offset);
+            }
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Returns the set of offsets of the words the object file assigns.
+     *
+     * @return A copy of {@code this.loaded}.
+     */
+    public BitSet getLoadedBitmap() {
+        return (BitSet) this.loaded.clone();
+    }
+
+    /**
+     * Returns true iff the object file assigns the word at {@code address}.
+     * <p>
+     * <b>Requires:</b> {@code contains(address)}
+     *
+     * @param address
+     *            The address of the word.
+     * @return {@code address - firstAddress in loaded}
+     */
+    public boolean isLoaded(int address) {
+        return this.loaded.get(address - this.firstAddress);
+    }
+
+    /**
+     * Writes this image as an object file in the given dialect. Text records
+     * are written in increasing address order. Writing a coalesced image in
+     * the {@code CLASSIC} dialect produces a file the classic MMXI Simulator
+     * can load.
+     *
+     * @param out
+     *            The destination of the object file.
+     * @param dialect
+     *            The dialect to write text records in.
+     */
+    public void writeTo(Writer out, ObjectDialect dialect) {
+        ObjectFileWriter writer = new ObjectFileWriter(out, dialect);
+
+        writer.writeHeader(this.segmentName, this.firstAddress,
+                this.words.length);
+
+        for (Map.Entry<String, Symbol> entry : this.entries.entrySet()) {
+            writer.writeEntry(entry.getKey(), entry.getValue().value,
+                    entry.getValue().isRelative);
+        }
+
+        for (String symbol : this.externalSymbols) {
+            writer.writeExternal(symbol);
+        }
+
+        for (int offset = this.loaded.nextSetBit(0); offset >= 0; offset =
+                this.loaded.nextSetBit(offset + 1)) {
+            writer.writeText(this.firstAddress + offset,
+                    this.words[offset] & 0xffff, this.relocations[offset]);
+        }
+
+        writer.writeEnd(this.execAddress);
+    }
+
+    /**
+     * Gives the header, entry, external, word and end events of this image to
+     * {@code sink}, for writing formats after the assembly has finished.
+     * Literals are given as ordinary words and no listing lines are given.
+     *
+     * @param sink
+     *            The output to write.
+     * @throws IOException
+     *             If {@code sink} cannot be written.
+     */
+    public void writeTo(OutputSink sink) throws IOException {
+        sink.header(this.segmentName, this.firstAddress, this.words.length,
+                this.isRelocatable);
+
+        for (Map.Entry<String, Symbol> entry : this.entries.entrySet()) {
+            sink.entry(entry.getKey(), entry.getValue().value,
+                    entry.getValue().isRelative);
+        }
+
+        for (String symbol : this.externalSymbols) {
+            sink.external(symbol);
+        }
+
+        for (int offset = this.loaded.nextSetBit(0); offset >= 0; offset =
+                this.loaded.nextSetBit(offset + 1)) {
+            sink.word(this.firstAddress + offset, this.words[offset] & 0xffff,
+                    this.relocations[offset]);
+        }
+
+        sink.end(this.execAddress);
+    }
+}
@@ -0,0 +1,33 @@
+package cse560;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+
+/**
+ * Reads an MMXI object file, in either {@link ObjectDialect}, into an
+ * {@link ObjectImage}.
+ * <p>
+ * The object file format does not record whether a segment is relocatable;
+ * the resulting image is marked relocatable iff any word carries an "M"
+ * relocation.
+ *
+ * @author Igor Tolkachev
+ */
+public interface ObjectReader {
+    /**
+     * Reads the object file pointed to by {@code input}.
+     * <p>
+     * <b>Requires:</b> {@code input} is positioned at the header record.
+     *
+     * @param input
+     *            The object file to read.
+     * @return The segment described by the object file.
+     * @throws IOException
+     *             If the object file cannot be read.
+     * @throws DataFormatException
+     *             If the object file is malformed.
+     */
+    ObjectImage read(BufferedReader input) throws IOException,
+            DataFormatException;
+}
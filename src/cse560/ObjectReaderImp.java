@@ -0,0 +1,206 @@
+package cse560;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+
+/**
+ * An implementation of the ObjectReader interface.
+ *
+ * <h1>Implementation</h1>
+ *
+ * <pre>
+ * read header record and create image
+ * while not at end record
+ *      read next record
+ *      add entry, external or text record(s) to image
+ * set execution address from end record
+ * </pre>
+ *
+ * @author Igor Tolkachev
+ */
+public final class ObjectReaderImp implements ObjectReader {
+    /** The base of hexadecimal. */
+    private static final int BASE_16 = 16;
+
+    /** Length of the name field of header and entry records. */
+    private static final int NAME_LENGTH = 6;
+
+    /** Number of characters taken by one word of a coalesced record. */
+    private static final int COALESCED_WORD_LENGTH = 5;
+
+    @Override
+    public ObjectImage read(BufferedReader input) throws IOException,
+            DataFormatException {
+        String line = input.readLine();
+        int lineNumber = 1;
+
+        // ...Read the header record
+
+        if (line == null || line.length() != 1 + NAME_LENGTH + 8
+                || line.charAt(0) != 'H') {
+            throw new DataFormatException("Missing header record");
+        }
+
+        ObjectImage image =
+                new ObjectImage(line.substring(1, 1 + NAME_LENGTH).trim(),
+                        parseHex(line, 1 + NAME_LENGTH, lineNumber), parseHex(
+                                line, 1 + NAME_LENGTH + 4, lineNumber));
+
+        // ...Read records until the end record
+
+        while ((line = input.readLine()) != null) {
+            ++lineNumber;
+
+            if (line.length() == 0) {
+                throw new DataFormatException("Empty record (Line: "
+                        + lineNumber + ")");
+            }
+
+            switch (line.charAt(0)) {
+            case 'N':
+                readEntry(image, line, lineNumber);
+                break;
+
+            case 'X':
+                image.addExternalSymbol(line.substring(1));
+                break;
+
+            case 'T':
+                readText(image, line, lineNumber);
+                break;
+
+            case 'B':
+                readCoalesced(image, line, lineNumber);
+                break;
+
+            case 'E':
+                image.setExecAddress(parseHex(line, 1, lineNumber));
+                return image;
+
+            default:
+                throw new DataFormatException("Unknown record type (Line: "
+                        + lineNumber + ")");
+            }
+        }
+
+        throw new DataFormatException("Missing end record");
+    }
+
+    /**
+     * Adds the entry symbol described by an 'N' record to {@code image}.
+     */
+    private void readEntry(ObjectImage image, String line, int lineNumber)
+            throws DataFormatException {
+        if (line.length() != 1 + NAME_LENGTH + 5) {
+            throw new DataFormatException("Malformed entry record (Line: "
+                    + lineNumber + ")");
+        }
+
+        char flag = line.charAt(1 + NAME_LENGTH + 4);
+
+        if (flag != 'R' && flag != 'A') {
+            throw new DataFormatException("Malformed entry record (Line: "
+                    + lineNumber + ")");
+        }
+
+        image.addEntrySymbol(line.substring(1, 1 + NAME_LENGTH).trim(),
+                parseHex(line, 1 + NAME_LENGTH, lineNumber), flag == 'R');
+    }
+
+    /**
+     * Adds the word described by a classic 'T' record to {@code image}.
+     */
+    private void readText(ObjectImage image, String line, int lineNumber)
+            throws DataFormatException {
+        if (line.length() < 9) {
+            throw new DataFormatException("Malformed text record (Line: "
+                    + lineNumber + ")");
+        }
+
+        setWord(image, parseHex(line, 1, lineNumber), parseHex(line, 5,
+                lineNumber), Relocation.parse(line.substring(9)), lineNumber);
+    }
+
+    /**
+     * Adds the run of words described by a coalesced 'B' record to
+     * {@code image}.
+     */
+    private void readCoalesced(ObjectImage image, String line, int lineNumber)
+            throws DataFormatException {
+        if (line.length() < 9) {
+            throw new DataFormatException("Malformed block record (Line: "
+                    + lineNumber + ")");
+        }
+
+        int address = parseHex(line, 1, lineNumber);
+        int count = parseHex(line, 5, lineNumber);
+
+        if (line.length() != 9 + count * COALESCED_WORD_LENGTH) {
+            throw new DataFormatException("Block record length mismatch (Line: "
+                    + lineNumber + ")");
+        }
+
+        for (int i = 0; i < count; ++i) {
+            int pos = 9 + i * COALESCED_WORD_LENGTH;
+            Relocation relocation;
+
+            switch (line.charAt(pos + 4)) {
+            case ObjectFileWriter.ABSOLUTE_MARKER:
+                relocation = Relocation.NONE;
+                break;
+
+            case ObjectFileWriter.M0_MARKER:
+                relocation = Relocation.M0;
+                break;
+
+            case ObjectFileWriter.M1_MARKER:
+                relocation = Relocation.M1;
+                break;
+
+            default:
+                throw new DataFormatException(
+                        "Invalid relocation marker (Line: " + lineNumber + ")");
+            }
+
+            setWord(image, address + i, parseHex(line, pos, lineNumber),
+                    relocation, lineNumber);
+        }
+    }
+
+    /**
+     * Assigns a word of {@code image} after checking that it lies within the
+     * segment.
+     */
+    private void setWord(ObjectImage image, int address, int word,
+            Relocation relocation, int lineNumber) throws DataFormatException {
+        if (!image.contains(address)) {
+            throw new DataFormatException("Address outside of segment (Line: "
+                    + lineNumber + ")");
+        }
+
+        if (relocation.isRelative()) {
+            image.isRelocatable(true);
+        }
+
+        image.setWord(address, word, relocation);
+    }
+
+    /**
+     * Parses the four hex digits of {@code line} starting at {@code pos}.
+     */
+    private int parseHex(String line, int pos, int lineNumber)
+            throws DataFormatException {
+        if (line.length() < pos + 4) {
+            throw new DataFormatException("Truncated record (Line: "
+                    + lineNumber + ")");
+        }
+
+        try {
+            return Integer.parseInt(line.substring(pos, pos + 4), BASE_16);
+        } catch (NumberFormatException e) {
+            throw new DataFormatException("Invalid hex value (Line: "
+                    + lineNumber + ")");
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.zip.DataFormatException;
+
+import org.junit.Test;
+
+public class ObjectReaderImpTest {
+    /** A small program with a string, a gap, a literal and an .EQU. */
+    private static final String SOURCE =
+            "Lab2EG   .ORIG   x30B0\n"
+          + "count    .FILL   #4\n"
+          + "Begin    LD      R1,count\n"
+          + "         LEA     R0,msg\n"
+          + "msg      .STRZ   \"hi! \"\n"
+          + "         LD      R6,=#100\n"
+          + "ACC      .EQU    #1\n"
+          + "Array    .BLKW   #3\n"
+          + "         .FILL   x10\n"
+          + "         .END    Begin\n";
+
+    /**
+     * Assembles {@code SOURCE} and returns the object file as a string.
+     */
+    private static String assemble(ObjectDialect dialect) throws IOException {
+        Program program =
+                new ParserImp2().parse(new BufferedReader(new StringReader(
+                        SOURCE)), 100);
+        StringWriter object = new StringWriter();
+
+        new AssemblerImp(dialect).assemble(new BufferedWriter(object),
+                new BufferedWriter(new StringWriter()), program);
+
+        return object.toString();
+    }
+
+    private static ObjectImage read(String object) throws IOException,
+            DataFormatException {
+        return new ObjectReaderImp().read(new BufferedReader(new StringReader(
+                object)));
+    }
+
+    /**
+     * Checking: Both dialects describe the same segment.
+     */
+    @Test
+    public void dialectsReadToSameImage() throws IOException,
+            DataFormatException {
+        ObjectImage classic = read(assemble(ObjectDialect.CLASSIC));
+        ObjectImage coalesced = read(assemble(ObjectDialect.COALESCED));
+
+        assertEquals("Lab2EG", coalesced.getSegmentName());
+        assertEquals(classic.getFirstAddress(), coalesced.getFirstAddress());
+        assertEquals(classic.getLength(), coalesced.getLength());
+        assertEquals(0x30B1, coalesced.getExecAddress());
+
+        for (int addr = classic.getFirstAddress(); classic.contains(addr); ++addr) {
+            assertEquals(classic.isLoaded(addr), coalesced.isLoaded(addr));
+            assertEquals(classic.getWord(addr), coalesced.getWord(addr));
+            assertEquals(classic.getRelocation(addr),
+                    coalesced.getRelocation(addr));
+        }
+    }
+
+    /**
+     * Checking: A coalesced file has one text record per contiguous run.
+     */
+    @Test
+    public void coalescedWritesOneRecordPerRun() throws IOException {
+        String[] lines = assemble(ObjectDialect.COALESCED).split("\n");
+
+        // Header, run before .BLKW, run after .BLKW (with literal), end.
+        assertEquals(4, lines.length);
+        assertTrue(lines[1].startsWith("B30B00009"));
+        assertTrue(lines[2].startsWith("B30BC0002"));
+    }
+
+    /**
+     * Checking: Rewriting a coalesced file in the classic dialect reproduces
+     * the classic object file exactly.
+     */
+    @Test
+    public void coalescedConvertsToClassic() throws IOException,
+            DataFormatException {
+        StringWriter converted = new StringWriter();
+
+        read(assemble(ObjectDialect.COALESCED)).writeTo(converted,
+                ObjectDialect.CLASSIC);
+
+        assertEquals(assemble(ObjectDialect.CLASSIC), converted.toString());
+    }
+
+    /**
+     * Checking: Relocation suffixes survive a round trip.
+     */
+    @Test
+    public void relocationRoundTrip() throws DataFormatException {
+        assertEquals(Relocation.NONE, Relocation.parse(""));
+        assertEquals(Relocation.M0, Relocation.parse("M0"));
+        assertEquals(Relocation.M1, Relocation.parse("M1"));
+        assertEquals("X9Foo", Relocation.parse("X9Foo").toString());
+    }
+
+    /**
+     * Checking: A block record whose count disagrees with its length is
+     * rejected.
+     */
+    @Test(expected = DataFormatException.class)
+    public void truncatedBlockRejected() throws IOException,
+            DataFormatException {
+        read("HSeg   30000004\nB300000020001-\nE3000\n");
+    }
+}
@@ -0,0 +1,111 @@
+package cse560;
+
+import java.io.IOException;
+
+/**
+ * Receives the output of a single assembly pass. The {@link Assembler} calls
+ * each registered sink with the same sequence of events, so one pass can
+ * produce any number of output formats at once.
+ * <p>
+ * Events arrive in the following order:
+ *
+ * <pre>
+ * header
+ * entry*
+ * external*
+ * (word | listingLine)*
+ * literal*
+ * end
+ * </pre>
+ * <p>
+ * Each word of a record is reported through {@code word} before the
+ * {@code listingLine} that describes it. Literals are reported only through
+ * {@code literal}, never through {@code word}.
+ *
+ * @author Igor Tolkachev
+ */
+public interface OutputSink {
+    /**
+     * Begins a segment.
+     *
+     * @param segmentName
+     *            The name of the segment.
+     * @param firstAddress
+     *            The first address of the segment.
+     * @param length
+     *            The length of the segment in words.
+     * @param isRelocatable
+     *            True iff the segment is relocatable.
+     */
+    void header(String segmentName, int firstAddress, int length,
+            boolean isRelocatable) throws IOException;
+
+    /**
+     * Reports an entry symbol.
+     *
+     * @param symbol
+     *            The entry symbol.
+     * @param value
+     *            The value of the symbol.
+     * @param isRelative
+     *            True iff the symbol is relative.
+     */
+    void entry(String symbol, int value, boolean isRelative)
+            throws IOException;
+
+    /**
+     * Reports an external symbol.
+     *
+     * @param symbol
+     *            The symbol defined outside of this segment.
+     */
+    void external(String symbol) throws IOException;
+
+    /**
+     * Reports one word of the segment.
+     *
+     * @param address
+     *            The address of the word.
+     * @param value
+     *            The contents of memory at {@code address}.
+     * @param relocation
+     *            How the loader must adjust the word.
+     */
+    void word(int address, int value, Relocation relocation)
+            throws IOException;
+
+    /**
+     * Reports one line of the program listing.
+     *
+     * @param record
+     *            The record the line describes.
+     * @param address
+     *            The address of the word on this line, if any.
+     * @param value
+     *            The contents of memory on this line, or -1 if the line has
+     *            none.
+     * @param printSource
+     *            True iff the label, opcode and operands should be shown.
+     *            False for the second and later words of a {@code .STRZ}.
+     */
+    void listingLine(SourceRecord record, int address, int value,
+            boolean printSource) throws IOException;
+
+    /**
+     * Reports a literal placed in the literal pool.
+     *
+     * @param literal
+     *            The value of the literal.
+     * @param address
+     *            The address the literal is stored at.
+     */
+    void literal(int literal, int address) throws IOException;
+
+    /**
+     * Ends the segment. Sinks flush their output here.
+     *
+     * @param execAddress
+     *            The address at which to begin execution.
+     */
+    void end(int execAddress) throws IOException;
+}
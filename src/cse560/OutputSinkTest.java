@@ -0,0 +1,118 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class OutputSinkTest {
+    private static final String SOURCE =
+            "Lab2EG   .ORIG   x30B0\n"
+          + "count    .FILL   #4\n"
+          + "Begin    LD      R1,count\n"
+          + "         LD      R6,=#100\n"
+          + "Array    .BLKW   #3\n"
+          + "         .FILL   x10\n"
+          + "         .END    Begin\n";
+
+    private static Program parse(String source) {
+        return new ParserImp2().parse(new BufferedReader(new StringReader(
+                source)), 100);
+    }
+
+    /**
+     * Returns the sum of the bytes of a HEX record, which is zero modulo 256
+     * iff its checksum is correct.
+     */
+    private static int recordSum(String record) {
+        int sum = 0;
+
+        for (int i = 1; i < record.length(); i += 2) {
+            sum += Integer.parseInt(record.substring(i, i + 2), 16);
+        }
+
+        return sum & 0xff;
+    }
+
+    /**
+     * Checking: One pass writes the object file, raw image and HEX file, and
+     * all of them agree with the returned image.
+     */
+    @Test
+    public void onePassFeedsEverySink() throws IOException {
+        StringWriter text = new StringWriter();
+        StringWriter hex = new StringWriter();
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        List<OutputSink> sinks = new ArrayList<OutputSink>();
+
+        sinks.add(new TextObjectSink(text, ObjectDialect.CLASSIC));
+        sinks.add(new IntelHexSink(hex));
+        sinks.add(new RawBinarySink(raw));
+
+        ObjectImage image = new AssemblerImp().assemble(parse(SOURCE), sinks);
+
+        StringWriter expected = new StringWriter();
+        image.writeTo(expected, ObjectDialect.CLASSIC);
+        assertEquals(expected.toString(), text.toString());
+
+        byte[] bytes = raw.toByteArray();
+        assertEquals(2 * image.getLength(), bytes.length);
+
+        for (int i = 0; i < image.getLength(); ++i) {
+            int word = ((bytes[2 * i] & 0xff) << 8) | (bytes[2 * i + 1] & 0xff);
+            assertEquals(image.getWord(image.getFirstAddress() + i), word);
+        }
+
+        String[] records = hex.toString().split("\\r?\\n");
+        int loadedBytes = 0;
+
+        for (String record : records) {
+            assertEquals(record, 0, recordSum(record));
+
+            if (record.substring(7, 9).equals("00")) {
+                int count = Integer.parseInt(record.substring(1, 3), 16);
+                int address = Integer.parseInt(record.substring(3, 7), 16);
+
+                for (int i = 0; i < count; i += 2) {
+                    assertEquals(image.getWord((address + i) / 2),
+                            Integer.parseInt(record.substring(9 + 2 * i,
+                                    13 + 2 * i), 16));
+                }
+
+                loadedBytes += count;
+            }
+        }
+
+        assertEquals(2 * image.getLoadedBitmap().cardinality(), loadedBytes);
+        assertEquals(":040000050000616234", records[records.length - 2]);
+        assertEquals(":00000001FF", records[records.length - 1]);
+    }
+
+    /**
+     * Checking: Data above the first 64K bytes is preceded by an extended
+     * linear address record, and no data record crosses the boundary.
+     */
+    @Test
+    public void hexUsesExtendedAddresses() throws IOException {
+        ObjectImage image = new ObjectImage("High", 0x7FFE, 4);
+
+        for (int address = 0x7FFE; address < 0x8002; ++address) {
+            image.setWord(address, address, Relocation.NONE);
+        }
+
+        StringWriter hex = new StringWriter();
+        image.writeTo(new IntelHexSink(hex));
+        String[] records = hex.toString().split("\\r?\\n");
+
+        assertEquals(":04FFFC007FFE7FFF06", records[0]);
+        assertEquals(":020000040001F9", records[1]);
+        assertEquals(":0400000080008001FB", records[2]);
+    }
+}
@@ -0,0 +1,266 @@
+package cse560;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * Differential testing of the two parsers: both parse the same source, and
+ * everything pass two depends on is compared.
+ * <p>
+ * The parsers number their errors differently, so a verdict is compared only
+ * as accepted, rejected or crashed; a crash is any exception other than an
+ * {@link AssemblerException}. A program both accept is compared on its
+ * header, its symbol table, its literal table and the line number and
+ * location of every record; the location is left out for {@code .ORIG},
+ * {@code .EQU} and {@code .END}, since pass two does not use it.
+ * <p>
+ * Each difference is reported as one line, "{@code KIND: DETAIL}", where
+ * {@code KIND} is a fixed description fit for grouping differences.
+ * <p>
+ * Note that this class violates this project's typical rule to have an
+ * interface for every component, since every method is a class method.
+ *
+ * @author Igor Tolkachev
+ */
+public final class ParserDiff {
+    /** What mutations insert and substitute. */
+    private static final String[] TOKENS = {" ", ",", ";", "#", "x", "=",
+        "R", ".", "\"", "-", "0", "7", "F", "#-1", "x10000", "R9", ".ORIG",
+        ".END", ".FILL", ".BLKW", ".EQU", ".STRZ", "ADD", "LD", "=#1",
+        "Label", "\t" };
+
+    /**
+     * Everything one parser made of a source.
+     */
+    private static final class Outcome {
+        /** "accepted", "rejected" or "crashed". */
+        String verdict;
+
+        /** Why it was not accepted, or null. */
+        String reason;
+
+        /** The rest is only set when the source was accepted. */
+        String header;
+
+        final Map<String, String> symbols = new TreeMap<String, String>();
+
+        final Map<Integer, Integer> literals =
+                new TreeMap<Integer, Integer>();
+
+        final List<String> records = new ArrayList<String>();
+    }
+
+    private static Outcome parse(Parser parser, String source, int maxRecords) {
+        Outcome outcome = new Outcome();
+        List<Diagnostic> warnings = new ArrayList<Diagnostic>();
+
+        ErrorHandler.collectWarnings(warnings);
+
+        try {
+            Program program =
+                    parser.parse(new BufferedReader(new StringReader(source)),
+                            maxRecords);
+
+            outcome.verdict = "accepted";
+            outcome.header =
+                    program.getSegmentName() + " first="
+                            + program.getFirstAddress() + " length="
+                            + program.getLength() + " exec="
+                            + program.getExecAddress() + " relocatable="
+                            + program.isRelocatable();
+
+            for (String symbol : program.getSymbols()) {
+                outcome.symbols.put(symbol, program.getSymbolValue(symbol)
+                        + (program.isRelative(symbol) ? "R" : ""));
+            }
+
+            outcome.literals.putAll(program.getLiteralTable());
+
+            while (program.numberOfRecords() > 0) {
+                SourceRecord record = program.getNextRecord();
+                String opCode = record.getOpCode();
+
+                // Pass two does not use the location of these.
+                if (opCode.equals(".ORIG") || opCode.equals(".EQU")
+                        || opCode.equals(".END")) {
+                    outcome.records.add(record.getLineNumber() + "@-");
+                } else {
+                    outcome.records.add(record.getLineNumber() + "@"
+                            + record.getLocation());
+                }
+            }
+        } catch (AssemblerException e) {
+            outcome.verdict = "rejected";
+            outcome.reason = e.getMessage();
+        } catch (RuntimeException e) {
+            outcome.verdict = "crashed";
+            outcome.reason = e.toString();
+        } finally {
+            ErrorHandler.collectWarnings(null);
+        }
+
+        return outcome;
+    }
+
+    /**
+     * Parses {@code source} with {@link ParserImp} and {@link ParserImp2} and
+     * compares the results.
+     *
+     * @param source
+     *            The program.
+     * @param context
+     *            The settings of the job.
+     * @return One line for each way the results differ; empty if they agree.
+     */
+    public static List<String> compare(String source, AssemblyContext context) {
+        Outcome one =
+                parse(new ParserImp(context), source, context.getMaxRecords());
+        Outcome two =
+                parse(new ParserImp2(), source, context.getMaxRecords());
+        List<String> differences = new ArrayList<String>();
+
+        if (!one.verdict.equals(two.verdict)) {
+            differences.add("verdict ParserImp " + one.verdict
+                    + ", ParserImp2 " + two.verdict + ": " + one.reason
+                    + " / " + two.reason);
+            return differences;
+        }
+
+        if (!one.verdict.equals("accepted")) {
+            if (one.verdict.equals("crashed")) {
+                differences.add("both crashed: " + one.reason);
+            }
+
+            return differences;
+        }
+
+        if (!one.header.equals(two.header)) {
+            differences.add("header: " + one.header + " / " + two.header);
+        }
+
+        if (!one.symbols.equals(two.symbols)) {
+            differences.add("symbols: "
+                    + difference(one.symbols, two.symbols));
+        }
+
+        if (!one.literals.equals(two.literals)) {
+            differences.add("literals: " + one.literals + " / "
+                    + two.literals);
+        }
+
+        if (!one.records.equals(two.records)) {
+            int i = 0;
+
+            while (i < one.records.size() && i < two.records.size()
+                    && one.records.get(i).equals(two.records.get(i))) {
+                ++i;
+            }
+
+            differences.add("records: " + one.records.size() + " / "
+                    + two.records.size() + ", first difference at "
+                    + (i < one.records.size() ? one.records.get(i) : "end")
+                    + " / "
+                    + (i < two.records.size() ? two.records.get(i) : "end"));
+        }
+
+        return differences;
+    }
+
+    /**
+     * @return The first symbol whose entry differs between {@code one} and
+     *         {@code two}, with both entries.
+     */
+    private static String difference(Map<String, String> one,
+            Map<String, String> two) {
+        Map<String, String> all = new TreeMap<String, String>(one);
+
+        all.putAll(two);
+
+        for (String symbol : all.keySet()) {
+            String a = one.get(symbol);
+            String b = two.get(symbol);
+
+            if (a == null ? b != null : !a.equals(b)) {
+                return symbol + "=" + a + " / " + symbol + "=" + b;
+            }
+        }
+
+        return "";
+    }
+
+    /**
+     * Returns {@code source} with {@code mutations} random edits: lines
+     * deleted, duplicated or swapped, and tokens inserted, substituted or
+     * removed. The same arguments give the same result.
+     *
+     * @param source
+     *            The program to mutate.
+     * @param seed
+     *            The seed of the edits.
+     * @param mutations
+     *            The number of edits.
+     * @return The mutated program.
+     */
+    public static String fuzz(String source, long seed, int mutations) {
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<String>();
+
+        for (String line : source.split("\n")) {
+            lines.add(line);
+        }
+
+        for (int m = 0; m < mutations && !lines.isEmpty(); ++m) {
+            int index = random.nextInt(lines.size());
+            String line = lines.get(index);
+            int at = line.isEmpty() ? 0 : random.nextInt(line.length() + 1);
+            String token = TOKENS[random.nextInt(TOKENS.length)];
+
+            switch (random.nextInt(6)) {
+            case 0:
+                lines.remove(index);
+                break;
+            case 1:
+                lines.add(index, line);
+                break;
+            case 2:
+                int other = random.nextInt(lines.size());
+
+                lines.set(index, lines.get(other));
+                lines.set(other, line);
+                break;
+            case 3:
+                lines.set(index, line.substring(0, at) + token
+                        + line.substring(at));
+                break;
+            case 4:
+                lines.set(index, line.substring(0, at) + token
+                        + line.substring(Math.min(line.length(), at
+                                + token.length())));
+                break;
+            default:
+                lines.set(index, line.substring(0, at));
+                break;
+            }
+        }
+
+        StringBuilder mutated = new StringBuilder();
+
+        for (String line : lines) {
+            mutated.append(line).append('\n');
+        }
+
+        return mutated.toString();
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private ParserDiff() {
+        throw new UnsupportedOperationException();
+    }
+}
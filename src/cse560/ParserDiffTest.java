@@ -0,0 +1,82 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ParserDiffTest {
+    private static final String SOURCE = new WorkloadGenerator()
+            .withLines(60).withDataMix(0.1, 0.1).withLiterals(3).generate();
+
+    private static final String LABELLED = new WorkloadGenerator()
+            .withLines(60).withLabelDensity(1).withCommentRatio(0.3)
+            .generate();
+
+    /**
+     * Checking: Equal arguments give equal mutations, and the seed changes
+     * them.
+     */
+    @Test
+    public void fuzzIsDeterministic() {
+        assertEquals(ParserDiff.fuzz(SOURCE, 7, 3),
+                ParserDiff.fuzz(SOURCE, 7, 3));
+        assertFalse(ParserDiff.fuzz(SOURCE, 7, 3).equals(
+                ParserDiff.fuzz(SOURCE, 8, 3)));
+    }
+
+    /**
+     * Checking: On generated programs the parsers agree on the verdict, the
+     * symbol table and the literal table.
+     */
+    @Test
+    public void generatedTablesAgree() {
+        WorkloadGenerator generator = new WorkloadGenerator().withLines(2000);
+        WorkloadGenerator[] mixes =
+                {generator, generator.withLabelDensity(1).withForwardRatio(1),
+                    generator.withDataMix(0.2, 0.2).withLiterals(20),
+                    generator.withPageLayout(0x3005, 0.25) };
+
+        for (WorkloadGenerator mix : mixes) {
+            for (String difference : ParserDiff.compare(mix.generate(),
+                    Corpus.CONTEXT)) {
+                assertTrue(difference, difference.startsWith("records:")
+                        || difference.startsWith("header:"));
+            }
+        }
+    }
+
+    /**
+     * Checking: ParserImp2 rejects malformed input rather than crashing.
+     */
+    @Test
+    public void scannerNeverCrashes() {
+        for (int seed = 0; seed < 2000; ++seed) {
+            String source = ParserDiff.fuzz(seed % 2 == 0 ? LABELLED : SOURCE,
+                    seed, 3);
+
+            for (String difference : ParserDiff.compare(source,
+                    Corpus.CONTEXT)) {
+                assertFalse(seed + ": " + difference, difference
+                        .contains("ParserImp2 crashed")
+                        || difference.startsWith("both crashed"));
+            }
+        }
+    }
+
+    /**
+     * Checking: A .ORIG operand that is not an immediate is rejected. Found
+     * by fuzzing: ".ORIG.ORIG000" used to crash ParserImp2.
+     */
+    @Test
+    public void badOrigOperandIsRejected() {
+        Diagnostic diagnostic =
+                EmbeddedAssembler.assemble(
+                        "Work     .ORIG.ORIG000\n         .END\n",
+                        Corpus.CONTEXT).getDiagnostics().get(0);
+
+        assertEquals(104, diagnostic.getCode());
+        assertEquals("Invalid .ORIG argument", diagnostic.getMessage());
+    }
+}
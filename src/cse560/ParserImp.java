@@ -30,6 +30,30 @@ public final class ParserImp implements Parser {
     /** line number of current instruction */
     private int lineNumber;
 
+    /** settings of the job, including the symbol and literal limits */
+    private final AssemblyContext context;
+
+    // ------------------------------------------------------------------------
+    // CONSTRUCTORS
+    // ------------------------------------------------------------------------
+
+    /**
+     * Initializes a parser with the default limits.
+     */
+    public ParserImp() {
+        this(AssemblyContext.DEFAULT);
+    }
+
+    /**
+     * Initializes a parser with the limits of {@code context}.
+     *
+     * @param context
+     *            The settings of the job.
+     */
+    public ParserImp(AssemblyContext context) {
+        this.context = context;
+    }
+
     // ------------------------------------------------------------------------
     // PRIVATE METHODS
     // ------------------------------------------------------------------------
@@ -237,7 +261,7 @@ public final class ParserImp implements Parser {
             // if there is a label, which is not already in symbol table
             if (label != null && !program.hasSymbol(label)) {
                 // obey the MAX_SYMBOLS restriction
-                if (program.numberOfSymbols() < MMXIAssembler.MAX_SYMBOLS) {
+                if (program.numberOfSymbols() < this.context.getMaxSymbols()) {
                     // check for duplicate opname
                     if (opName.equals(".ORIG")) {
                     	ErrorHandler.fatalError("ERROR: Extra .ORIG record", 135);
@@ -341,7 +365,7 @@ public final class ParserImp implements Parser {
                                 ArgFormat.parseImmediate(ops[i].substring(1));
                         // add only if not already defined
                         if (!program.hasLiteral(literal)) {
-                            if (program.numberOfLiterals() < MMXIAssembler.MAX_LITERALS) {
+                            if (program.numberOfLiterals() < this.context.getMaxLiterals()) {
                                 program.addLiteral(literal);
                             } else {
                                 ErrorHandler.warning("Maximum number of literals reached", 118);
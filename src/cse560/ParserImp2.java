@@ -9,6 +9,68 @@ import java.util.zip.DataFormatException;
  * @author Igor Tolkachev
  */
 public final class ParserImp2 implements Parser {
+    /** Holds the job to its resource limits, or null if it has none. */
+    private final Governor governor;
+
+    /** Measures the job's phases, or null. */
+    private final AssemblyStats stats;
+
+    /** Observes the job, or null. */
+    private final AssemblerListener listener;
+
+    /**
+     * Initializes a parser bound only by the {@code maxRecords} of each call
+     * to {@code parse}.
+     */
+    public ParserImp2() {
+        this(null);
+    }
+
+    /**
+     * Initializes a parser for one job held to the limits of
+     * {@code governor}.
+     *
+     * @param governor
+     *            The job's governor, or null for no limits beyond
+     *            {@code maxRecords}.
+     */
+    public ParserImp2(Governor governor) {
+        this(governor, null);
+    }
+
+    /**
+     * Initializes a parser for one job held to the limits of
+     * {@code governor}, charging literal placement to {@code stats}.
+     *
+     * @param governor
+     *            The job's governor, or null for no limits beyond
+     *            {@code maxRecords}.
+     * @param stats
+     *            The job's statistics, or null.
+     */
+    public ParserImp2(Governor governor, AssemblyStats stats) {
+        this(governor, stats, null);
+    }
+
+    /**
+     * Initializes a parser for one job held to the limits of
+     * {@code governor}, charging literal placement to {@code stats} and
+     * reporting to {@code listener}.
+     *
+     * @param governor
+     *            The job's governor, or null for no limits beyond
+     *            {@code maxRecords}.
+     * @param stats
+     *            The job's statistics, or null.
+     * @param listener
+     *            The job's listener, or null.
+     */
+    public ParserImp2(Governor governor, AssemblyStats stats,
+            AssemblerListener listener) {
+        this.governor = governor;
+        this.stats = stats;
+        this.listener = listener;
+    }
 
     @Override
     public Program parse(BufferedReader input, int maxRecords) {
@@ -24,6 +86,24 @@ public final class ParserImp2 implements Parser {
 
         boolean isAtEndRecord = false;
 
+        // Counts the characters read, line breaks included.
+        long sourceBytes = 0;
+        boolean recording = FlightEvents.isRecorderStarted();
+        FlightEvents.ParseEvent event = null;
+
+        if (recording) {
+            event = new FlightEvents.ParseEvent();
+            event.begin();
+        }
+
+        if (this.listener != null) {
+            this.listener.phaseStarted(Phase.PASS_1);
+        }
+
+        if (this.governor != null) {
+            input = new BufferedReader(this.governor.bound(input));
+        }
+
         //... Read until first .ORIG line.
 
         // TODO: Ensure this loop does not fail on empty input.
@@ -31,6 +111,8 @@ public final class ParserImp2 implements Parser {
             while (inputLine == null || isComment(inputLine)) {
                 inputLine = getNextLine(input);
                 ++lineNumber;
+                checkLine(inputLine, lineNumber, maxRecords);
+                sourceBytes += inputLine.length() + 1;
             }
         } catch (IOException e) {
             ErrorHandler.fatalError(e.getMessage(), 100);
@@ -67,6 +149,10 @@ public final class ParserImp2 implements Parser {
         record.setLineNumber(lineNumber);
         program.addRecord(record);
 
+        if (this.listener != null) {
+            this.listener.recordParsed(record);
+        }
+
         //... Read until we encounter a .END record
 
         while (!isAtEndRecord) {
@@ -89,6 +175,9 @@ public final class ParserImp2 implements Parser {
                 ErrorHandler.fatalError(e.getMessage(), 106, lineNumber);
             }
 
+            checkLine(inputLine, lineNumber, maxRecords);
+            sourceBytes += inputLine.length() + 1;
+
             // If this is a comment, skip it.
             if (isComment(inputLine)) {
                 continue;
@@ -104,6 +193,14 @@ public final class ParserImp2 implements Parser {
                 ErrorHandler.fatalError(e.getMessage(), 107, lineNumber);
             }
 
+            if (this.governor != null) {
+                this.governor.checkOperands(args.length, lineNumber);
+
+                if (label != null) {
+                    this.governor.checkSymbol(program, lineNumber);
+                }
+            }
+
             // Only one .ORIG record is allowed per file
             if (opCode.equals(".ORIG")) {
                 ErrorHandler.fatalError("Extra .ORIG record", 108, lineNumber);
@@ -162,7 +259,17 @@ public final class ParserImp2 implements Parser {
                                 ArgFormat.parseImmediate(args[i].substring(1));
 
                         if (!program.hasLiteral(literal)) {
+                            if (this.governor != null) {
+                                this.governor
+                                        .checkLiteral(program, lineNumber);
+                            }
+
                             program.addLiteral(literal);
+
+                            if (this.listener != null) {
+                                this.listener.literalAdded(literal,
+                                        lineNumber);
+                            }
                         }
                     }
                 }
@@ -195,17 +302,33 @@ public final class ParserImp2 implements Parser {
                         ErrorHandler.fatalError("Duplicate symbol found", 114,
                                 lineNumber);
                     } else {
-                        program.addSymbol(label, locationCounter);
+                        // Addresses in a relocatable segment move with it.
+                        program.addSymbol(label, locationCounter, program
+                                .isRelocatable());
+
+                        if (this.listener != null) {
+                            this.listener.symbolDefined(label,
+                                    locationCounter, program.isRelocatable());
+                        }
                     }
                 }
             }
 
             program.addRecord(record);
 
+            if (this.listener != null) {
+                this.listener.recordParsed(record);
+            }
+
             // Update location counter
             locationCounter = nextLocation;
 
             // Validate new location.
+            if (this.governor != null) {
+                this.governor.checkLength(locationCounter
+                        - program.getFirstAddress(), lineNumber);
+            }
+
             if (locationCounter > 0xffff) {
                 ErrorHandler.fatalError("Segment left system memory", 115,
                         lineNumber);
@@ -214,14 +337,80 @@ public final class ParserImp2 implements Parser {
 
         // ...Configure remaining program variables.
 
+        // Every entry symbol must be defined here, and no external symbol
+        // may be.
+        for (String symbol : program.getEntrySymbols()) {
+            if (!program.hasSymbol(symbol)) {
+                ErrorHandler.fatalError("Undefined entry symbol: " + symbol,
+                        116);
+            }
+        }
+
+        for (String symbol : program.getExternalSymbols()) {
+            if (program.hasSymbol(symbol)) {
+                ErrorHandler.fatalError("External symbol defined locally: "
+                        + symbol, 117);
+            }
+        }
+
         // Initialize literals.
+        FlightEvents.LiteralsEvent literals = null;
+
+        if (recording) {
+            literals = new FlightEvents.LiteralsEvent();
+            literals.begin();
+        }
+
+        if (this.stats != null) {
+            this.stats.start(Phase.LITERALS);
+        }
+
+        if (this.listener != null) {
+            this.listener.phaseStarted(Phase.LITERALS);
+        }
+
         program.startLiteralsAt(locationCounter);
         locationCounter += program.numberOfLiterals();
 
+        if (this.listener != null) {
+            this.listener.phaseEnded(Phase.LITERALS);
+        }
+
+        if (this.stats != null) {
+            this.stats.stop(Phase.LITERALS);
+        }
+
+        if (recording && literals.shouldCommit()) {
+            literals.literals = program.numberOfLiterals();
+            literals.firstAddress = locationCounter - literals.literals;
+            literals.commit();
+        }
+
+        if (this.governor != null) {
+            this.governor.checkLength(locationCounter
+                    - program.getFirstAddress(), lineNumber);
+        }
+
         // The program's length is the current location counter minus the start
         // address of the segment.
         program.setLength(locationCounter - program.getFirstAddress());
 
+        FlightEvents.parsed(program.numberOfRecords(), sourceBytes, recording
+                && event.isEnabled());
+
+        if (recording && event.shouldCommit()) {
+            event.lines = lineNumber;
+            event.records = program.numberOfRecords();
+            event.sourceBytes = sourceBytes;
+            event.symbols = program.numberOfSymbols();
+            event.literals = program.numberOfLiterals();
+            event.commit();
+        }
+
+        if (this.listener != null) {
+            this.listener.phaseEnded(Phase.PASS_1);
+        }
+
         return program;
     }
 
@@ -274,6 +463,11 @@ public final class ParserImp2 implements Parser {
                     }
                 }
 
+                // A negative size would move the location counter back.
+                if (size < 0) {
+                    throw new DataFormatException("Negative .BLKW size");
+                }
+
             }
         } else if (opCode.equals(".END")) {
             int execAddress = program.getFirstAddress();
@@ -300,6 +494,7 @@ public final class ParserImp2 implements Parser {
             program.setExecAddress(execAddress);
         } else if (opCode.equals(".EQU")) {
             int value = 0;
+            boolean isRelative = false;
 
             if (args.length != 1) {
                 wrongArgCount = true;
@@ -312,7 +507,7 @@ public final class ParserImp2 implements Parser {
                 case SYMBOL:
                     if (program.hasSymbol(args[0])) {
                         value = program.getSymbolValue(args[0]);
-
+                        isRelative = program.isRelative(args[0]);
                     } else {
                         throw new DataFormatException("No such symbol: "
                                 + args[0]);
@@ -324,7 +519,7 @@ public final class ParserImp2 implements Parser {
                             + args[0]);
                 }
 
-                addSymbol(program, label, value);
+                addSymbol(program, label, value, isRelative);
             }
         } else if (opCode.equals(".FILL")) {
             if (args.length == 1) {
@@ -344,6 +539,10 @@ public final class ParserImp2 implements Parser {
             if (args.length == 0) {
                 program.isRelocatable(true);
             } else if (args.length == 1) {
+                if (ArgFormat.getArgType(args[0]) != ArgType.IMMEDIATE) {
+                    throw new DataFormatException("Invalid .ORIG argument");
+                }
+
                 size = ArgFormat.parseImmediate(args[0]);
 
                 // Verify that the segment record is within memory
@@ -357,10 +556,26 @@ public final class ParserImp2 implements Parser {
 
             program.setFirstAddress(size);
             program.setSegmentName(label);
-        } else if (opCode.equals(".ENT")) {
+        } else if (opCode.equals(".ENT") || opCode.equals(".EXT")) {
+            // Both take a list of symbols: those other segments may use, and
+            // those this segment uses from others.
+            if (args.length == 0) {
+                throw new DataFormatException(opCode
+                        + " requires at least one symbol");
+            }
 
-        } else if (opCode.equals(".EXT")) {
+            for (String arg : args) {
+                if (ArgFormat.getArgType(arg) != ArgType.SYMBOL) {
+                    throw new DataFormatException("Invalid argument to "
+                            + opCode + ": " + arg);
+                }
 
+                if (opCode.equals(".ENT")) {
+                    program.addEntrySymbol(arg);
+                } else {
+                    program.addExternalSymbol(arg);
+                }
+            }
         }
 
         // If any of the above had too many arguments, error out.
@@ -371,12 +586,16 @@ public final class ParserImp2 implements Parser {
         return size;
     }
 
-    private void addSymbol(Program program, String symbol, int symbolValue)
-            throws DataFormatException {
+    private void addSymbol(Program program, String symbol, int symbolValue,
+            boolean isRelative) throws DataFormatException {
         if (program.hasSymbol(symbol)) {
             throw new DataFormatException("Duplicate symbol: " + symbol);
         } else {
-            program.addSymbol(symbol, symbolValue);
+            program.addSymbol(symbol, symbolValue, isRelative);
+
+            if (this.listener != null) {
+                this.listener.symbolDefined(symbol, symbolValue, isRelative);
+            }
         }
     }
 
@@ -397,16 +616,17 @@ public final class ParserImp2 implements Parser {
             // NO whitespace allowed.
             if (line.charAt(17) == '"') {
                 line = line.substring(17);
-                if (line.matches("^\".*\".*")) {
+                if (line.indexOf('"', 1) > 0
+                        && !ArgFormat.hasLineTerminator(line)) {
                     args = new String[1];
                     args[0] = line.substring(0, line.indexOf('"', 1) + 1);
                 } else {
                     throw new DataFormatException("Unterminated string literal");
                 }
             } else {
-                String argString = line.substring(17).split("[\\s;]")[0];
-
-                args = argString.split(",");
+                // Splitting at a single character does not compile a regular
+                // expression.
+                args = firstField(line.substring(17)).split(",");
             }
         }
 
@@ -420,6 +640,58 @@ public final class ParserImp2 implements Parser {
         return args;
     }
 
+    /**
+     * Returns the text of {@code field} before its first blank or semicolon,
+     * as splitting at {@code [\\s;]} and taking the first piece did, except
+     * that a field of nothing but separators gives an empty string rather
+     * than no piece at all.
+     */
+    private static String firstField(String field) {
+        for (int i = 0; i < field.length(); ++i) {
+            switch (field.charAt(i)) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\u000B':
+            case '\f':
+            case '\r':
+            case ';':
+                return field.substring(0, i);
+            default:
+                break;
+            }
+        }
+
+        return field;
+    }
+
+    private static boolean isUpper(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    /**
+     * Returns true iff {@code labelField} is a label padded with blanks: a
+     * letter other than {@code R} or {@code x}, then up to five letters or
+     * digits, all ASCII.
+     */
+    private static boolean isLabel(String labelField) {
+        int end = labelField.length();
+
+        while (end > 0 && labelField.charAt(end - 1) == ' ') {
+            --end;
+        }
+
+        if (end == 0 || end > 6) {
+            return false;
+        }
+
+        char first = labelField.charAt(0);
+
+        return ((first >= 'A' && first <= 'Z') || (first >= 'a' && first <= 'z'))
+                && first != 'R' && first != 'x'
+                && ArgFormat.allAlphanumeric(labelField.substring(0, end), 1);
+    }
+
     /**
      * Extracts a label from a string.
      * <p>
@@ -440,7 +712,7 @@ public final class ParserImp2 implements Parser {
         // * All the characters after the last non-alphanumeric character is
         //   whitespace.
         if (labelField.trim().length() > 0) {
-            if (labelField.matches("^[A-Za-z&&[^Rx]][A-Za-z0-9]{0,5} *")) {
+            if (isLabel(labelField)) {
                 label = labelField.trim();
             } else {
                 throw new DataFormatException("Invalid label");
@@ -491,6 +763,27 @@ public final class ParserImp2 implements Parser {
         return false;
     }
 
+    /**
+     * Checks a line just read against the job's limits.
+     *
+     * @param line
+     *            The line.
+     * @param lineNumber
+     *            Its line number.
+     * @param maxRecords
+     *            The maximum number of lines to read.
+     */
+    private void checkLine(String line, int lineNumber, int maxRecords) {
+        if (lineNumber > maxRecords) {
+            ErrorHandler.fatalError("More than " + maxRecords + " records",
+                    118, lineNumber);
+        }
+
+        if (this.governor != null) {
+            this.governor.checkLine(line, lineNumber);
+        }
+    }
+
     /**
      * Reads in the next line of input and verifies that the input line is
      * well-formed.
@@ -538,10 +831,14 @@ public final class ParserImp2 implements Parser {
             // Otherwise, make sure everything up to the
             if (isComment(line)) {
                 isValid = true;
-            } else if (line.matches("^.{6} {3}[\\.A-Z][A-Z][A-Z ]{1,3}.*")) {
-                // TODO: Reduce the responsibility of the above regex.
-                // Responsibility for validating labels and maybe even operands
-                // can be handled elsewhere.
+            } else if (line.length() >= 12 && line.startsWith("   ", 6)
+                    && (line.charAt(9) == '.' || isUpper(line.charAt(9)))
+                    && isUpper(line.charAt(10))
+                    && (line.charAt(11) == ' ' || isUpper(line.charAt(11)))
+                    && !ArgFormat.hasLineTerminator(line)) {
+                // Six label columns, three blanks, then at least three
+                // characters of op code: the shape the regular expression
+                // "^.{6} {3}[\\.A-Z][A-Z][A-Z ]{1,3}.*" once checked.
                 isValid = true;
             }
         }
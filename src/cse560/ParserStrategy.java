@@ -0,0 +1,80 @@
+package cse560;
+
+/**
+ * Specifies which parser runs pass one.
+ *
+ * @author Igor Tolkachev
+ */
+public enum ParserStrategy {
+    /**
+     * {@link ParserImp2}, which scans each line by hand. It is the faster of
+     * the two, the only one held to the limits of a {@link Governor}, and the
+     * default.
+     */
+    SCANNER("scanner") {
+        @Override
+        public Parser create(AssemblyContext context, Governor governor,
+                AssemblyStats stats) {
+            return new ParserImp2(governor, stats, context.getListener());
+        }
+    },
+
+    /**
+     * {@link ParserImp}, which matches each line against regular
+     * expressions. It numbers lines, places {@code .BLKW} records and takes
+     * the execution address differently; see {@link ParserDiff}. It ignores
+     * the governor, the statistics and the listener.
+     */
+    REGEX("regex") {
+        @Override
+        public Parser create(AssemblyContext context, Governor governor,
+                AssemblyStats stats) {
+            return new ParserImp(context);
+        }
+    };
+
+    /** The name given on the command line. */
+    private final String name;
+
+    private ParserStrategy(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns a new parser for one job. Parsers must not be reused.
+     *
+     * @param context
+     *            The settings of the job.
+     * @param governor
+     *            The job's governor, or null for no limits.
+     * @param stats
+     *            Where to charge literal placement, or null.
+     * @return The parser.
+     */
+    public abstract Parser create(AssemblyContext context, Governor governor,
+            AssemblyStats stats);
+
+    /**
+     * @return The name of this strategy on the command line.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the strategy named {@code name} on the command line.
+     *
+     * @param name
+     *            The name.
+     * @return The strategy, or null if there is none by that name.
+     */
+    public static ParserStrategy forName(String name) {
+        for (ParserStrategy strategy : values()) {
+            if (strategy.name.equals(name)) {
+                return strategy;
+            }
+        }
+
+        return null;
+    }
+}
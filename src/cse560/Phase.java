@@ -0,0 +1,40 @@
+package cse560;
+
+/**
+ * The phases of assembling one program, in the order they begin.
+ *
+ * @author Igor Tolkachev
+ */
+public enum Phase {
+    /** Reading the source into memory. */
+    READ("read"),
+
+    /** Pass one: parsing records and building the symbol table. */
+    PASS_1("pass 1"),
+
+    /** Placing the literal table after the last record. */
+    LITERALS("literals"),
+
+    /** Pass two: encoding every record. */
+    PASS_2("pass 2"),
+
+    /** Writing the object file, and any other image output. */
+    OBJECT_WRITE("object write"),
+
+    /** Writing the listing. */
+    LISTING_WRITE("listing write");
+
+    /** The name shown in reports. */
+    private final String label;
+
+    private Phase(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return The name of this phase as shown in reports.
+     */
+    public String getLabel() {
+        return this.label;
+    }
+}
@@ -0,0 +1,413 @@
+package cse560;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Runs the stages of an assembly on separate threads connected by bounded
+ * queues, so that disk I/O overlaps with parsing and encoding.
+ *
+ * <h1>Stages</h1>
+ *
+ * <pre>
+ * reader thread  --chunks--&gt;  parser (pass one)
+ *                              encoder (pass two)  --chunks--&gt;  object writer thread
+ *                                                  --chunks--&gt;  listing writer thread
+ * </pre>
+ * <p>
+ * Pass two cannot begin until pass one has resolved every symbol, so the
+ * parser and encoder run one after the other on the calling thread. Every
+ * queue holds at most {@code capacity} chunks of {@code CHUNK_SIZE}
+ * characters; a stage that gets ahead blocks until the next stage catches up,
+ * which bounds the memory used for buffered input and output regardless of
+ * the size of the program.
+ *
+ * @author Igor Tolkachev
+ */
+public final class PipelinedAssembler {
+    /** Number of characters in each chunk passed between stages. */
+    public static final int CHUNK_SIZE = 8192;
+
+    /** Default number of chunks each queue may hold. */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /** Chunk marking the end of a stream. */
+    private static final char[] END_OF_STREAM = new char[0];
+
+    /**
+     * A Writer that hands its output to another thread in fixed-size chunks.
+     * {@code flush} does nothing; chunks are handed off when full and on
+     * {@code close}.
+     */
+    private static final class QueueWriter extends Writer {
+        /** Queue the chunks are put on. */
+        private final BlockingQueue<char[]> queue;
+
+        /** The chunk being filled. */
+        private char[] chunk = new char[CHUNK_SIZE];
+
+        /** Number of characters in {@code chunk}. */
+        private int count = 0;
+
+        public QueueWriter(BlockingQueue<char[]> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, CHUNK_SIZE - this.count);
+
+                System.arraycopy(cbuf, off, this.chunk, this.count, n);
+                this.count += n;
+                off += n;
+                len -= n;
+
+                if (this.count == CHUNK_SIZE) {
+                    put(this.chunk);
+                    this.chunk = new char[CHUNK_SIZE];
+                    this.count = 0;
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.chunk == null) {
+                return;
+            }
+
+            if (this.count > 0) {
+                char[] last = new char[this.count];
+                System.arraycopy(this.chunk, 0, last, 0, this.count);
+                put(last);
+            }
+
+            this.chunk = null;
+            put(END_OF_STREAM);
+        }
+
+        private void put(char[] c) throws IOException {
+            try {
+                this.queue.put(c);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    /**
+     * A Reader that takes its input, in chunks, from another thread.
+     */
+    private static final class QueueReader extends Reader {
+        /** Queue the chunks are taken from. */
+        private final BlockingQueue<char[]> queue;
+
+        /** The chunk being read, or null before the first chunk. */
+        private char[] chunk = null;
+
+        /** Index of the next character of {@code chunk}. */
+        private int pos = 0;
+
+        public QueueReader(BlockingQueue<char[]> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            while (this.chunk == null || this.pos == this.chunk.length) {
+                if (this.chunk == END_OF_STREAM) {
+                    return -1;
+                }
+
+                try {
+                    this.chunk = this.queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+
+                this.pos = 0;
+            }
+
+            int n = Math.min(len, this.chunk.length - this.pos);
+            System.arraycopy(this.chunk, this.pos, cbuf, off, n);
+            this.pos += n;
+
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * A stage that copies chunks between a queue and a file. Errors are
+     * recorded rather than thrown so the other stages are never left blocked.
+     */
+    private static final class CopyStage extends Thread {
+        /** The queue chunks are taken from or put on. */
+        private final BlockingQueue<char[]> queue;
+
+        /** The file being read, or null if writing. */
+        private final Reader in;
+
+        /** The file being written, or null if reading. */
+        private final Writer out;
+
+        /** The first error encountered, if any. */
+        private volatile IOException error = null;
+
+        public CopyStage(String name, BlockingQueue<char[]> queue, Reader in,
+                Writer out) {
+            super(name);
+            setDaemon(true);
+
+            this.queue = queue;
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (this.in != null) {
+                    read();
+                } else {
+                    write();
+                }
+            } catch (InterruptedException e) {
+                // Downstream stage stopped early; nothing more to do.
+            }
+        }
+
+        /**
+         * Reads the file into chunks until end of file.
+         */
+        private void read() throws InterruptedException {
+            try {
+                char[] buf = new char[CHUNK_SIZE];
+                int n;
+
+                while ((n = this.in.read(buf)) > 0) {
+                    char[] c = new char[n];
+                    System.arraycopy(buf, 0, c, 0, n);
+                    this.queue.put(c);
+                }
+            } catch (IOException e) {
+                this.error = e;
+            } finally {
+                close(this.in);
+            }
+
+            this.queue.put(END_OF_STREAM);
+        }
+
+        /**
+         * Writes chunks to the file until the end of the stream. After a write
+         * error, keeps taking chunks so the producer does not block.
+         */
+        private void write() throws InterruptedException {
+            char[] c;
+
+            while ((c = this.queue.take()) != END_OF_STREAM) {
+                if (this.error == null) {
+                    try {
+                        this.out.write(c);
+                    } catch (IOException e) {
+                        this.error = e;
+                    }
+                }
+            }
+
+            close(this.out);
+        }
+
+        private void close(java.io.Closeable c) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                if (this.error == null) {
+                    this.error = e;
+                }
+            }
+        }
+
+        /**
+         * Waits for this stage to finish and rethrows its error, if any.
+         */
+        public void finish() throws IOException {
+            try {
+                join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+
+            if (this.error != null) {
+                throw this.error;
+            }
+        }
+    }
+
+    /** The parser used for pass one. */
+    private final Parser parser;
+
+    /** The assembler used for pass two. */
+    private final Assembler assembler;
+
+    /** Number of chunks each queue may hold. */
+    private final int capacity;
+
+    /**
+     * Initializes a pipeline with the default queue capacity.
+     *
+     * @param parser
+     *            The parser used for pass one.
+     * @param assembler
+     *            The assembler used for pass two.
+     */
+    public PipelinedAssembler(Parser parser, Assembler assembler) {
+        this(parser, assembler, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initializes a pipeline.
+     * <p>
+     * <b>Requires:</b> {@code capacity > 0}
+     *
+     * @param parser
+     *            The parser used for pass one.
+     * @param assembler
+     *            The assembler used for pass two.
+     * @param capacity
+     *            The number of chunks each queue may hold.
+     */
+    public PipelinedAssembler(Parser parser, Assembler assembler,
+            int capacity) {
+        this.parser = parser;
+        this.assembler = assembler;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Parses {@code source} while a separate thread reads it from disk.
+     *
+     * @param source
+     *            The source file.
+     * @param maxRecords
+     *            The maximum number of records to parse.
+     * @return The parsed program.
+     * @throws IOException
+     *             If the source file cannot be read.
+     */
+    public Program parse(File source, int maxRecords) throws IOException {
+        BlockingQueue<char[]> queue =
+                new ArrayBlockingQueue<char[]>(this.capacity);
+        CopyStage reader =
+                new CopyStage("mmxi-reader", queue, new FileReader(source),
+                        null);
+        Program program;
+
+        reader.start();
+
+        try {
+            program =
+                    this.parser.parse(new BufferedReader(new QueueReader(queue),
+                            CHUNK_SIZE), maxRecords);
+        } finally {
+            // The parser stops at .END; release the reader if it is still
+            // waiting to hand over trailing input.
+            reader.interrupt();
+        }
+
+        reader.finish();
+
+        return program;
+    }
+
+    /**
+     * Assembles {@code program} while separate threads write the object file
+     * and listing to disk.
+     *
+     * @param program
+     *            A valid instance of {@code Program}.
+     * @param objectFile
+     *            The file to write the object file to.
+     * @param listingFile
+     *            The file to write the listing to.
+     * @return The assembled segment.
+     * @throws IOException
+     *             If either file cannot be written.
+     */
+    public ObjectImage assemble(Program program, File objectFile,
+            File listingFile) throws IOException {
+        BlockingQueue<char[]> objectQueue =
+                new ArrayBlockingQueue<char[]>(this.capacity);
+        BlockingQueue<char[]> listingQueue =
+                new ArrayBlockingQueue<char[]>(this.capacity);
+        CopyStage objectStage =
+                new CopyStage("mmxi-object-writer", objectQueue, null,
+                        new FileWriter(objectFile));
+        CopyStage listingStage =
+                new CopyStage("mmxi-listing-writer", listingQueue, null,
+                        new FileWriter(listingFile));
+        BufferedWriter objectOut =
+                new BufferedWriter(new QueueWriter(objectQueue), CHUNK_SIZE);
+        BufferedWriter listingOut =
+                new BufferedWriter(new QueueWriter(listingQueue), CHUNK_SIZE);
+        ObjectImage image;
+
+        objectStage.start();
+        listingStage.start();
+
+        try {
+            image = this.assembler.assemble(objectOut, listingOut, program);
+        } finally {
+            // Ending both streams lets the writer threads finish even if
+            // pass two failed.
+            objectOut.close();
+            listingOut.close();
+        }
+
+        objectStage.finish();
+        listingStage.finish();
+
+        return image;
+    }
+
+    /**
+     * Parses and assembles {@code source}.
+     *
+     * @param source
+     *            The source file.
+     * @param maxRecords
+     *            The maximum number of records to parse.
+     * @param objectFile
+     *            The file to write the object file to.
+     * @param listingFile
+     *            The file to write the listing to.
+     * @return The assembled segment.
+     * @throws IOException
+     *             If any of the files cannot be read or written.
+     */
+    public ObjectImage assemble(File source, int maxRecords, File objectFile,
+            File listingFile) throws IOException {
+        return assemble(parse(source, maxRecords), objectFile, listingFile);
+    }
+}
@@ -0,0 +1,88 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class PipelinedAssemblerTest {
+    /**
+     * Returns a program long enough to fill many chunks.
+     */
+    private static String largeSource() {
+        StringWriter source = new StringWriter();
+        PrintWriter out = new PrintWriter(source);
+
+        out.println("Big      .ORIG   x1000");
+
+        for (int i = 0; i < 20000; ++i) {
+            if (i % 100 == 0) {
+                out.println("; ----- block " + i + " -----");
+            }
+
+            out.println("         ADD     R1,R1,#1 ;count");
+        }
+
+        out.println("         LD      R2,=#7");
+        out.println("msg      .STRZ   \"done\"");
+        out.println("         .END");
+        out.close();
+
+        return source.toString();
+    }
+
+    private static String readFile(File file) throws IOException {
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        StringBuilder contents = new StringBuilder();
+        char[] buf = new char[4096];
+        int n;
+
+        while ((n = in.read(buf)) > 0) {
+            contents.append(buf, 0, n);
+        }
+
+        in.close();
+
+        return contents.toString();
+    }
+
+    /**
+     * Checking: With single-chunk queues, so that every stage must wait on
+     * the next, the pipeline writes exactly what the sequential path writes.
+     */
+    @Test
+    public void matchesSequentialOutput() throws IOException {
+        String source = largeSource();
+        File sourceFile = File.createTempFile("mmxi", ".txt");
+        File objectFile = File.createTempFile("mmxi", ".obj");
+        File listingFile = File.createTempFile("mmxi", ".lst");
+        sourceFile.deleteOnExit();
+        objectFile.deleteOnExit();
+        listingFile.deleteOnExit();
+
+        FileWriter out = new FileWriter(sourceFile);
+        out.write(source);
+        out.close();
+
+        StringWriter object = new StringWriter();
+        StringWriter listing = new StringWriter();
+        new AssemblerImp().assemble(new BufferedWriter(object),
+                new BufferedWriter(listing), new ParserImp2().parse(
+                        new BufferedReader(new StringReader(source)), 100000));
+
+        new PipelinedAssembler(new ParserImp2(), new AssemblerImp(), 1)
+                .assemble(sourceFile, 100000, objectFile, listingFile);
+
+        assertEquals(object.toString(), readFile(objectFile));
+        assertEquals(listing.toString(), readFile(listingFile));
+    }
+}
@@ -213,6 +213,13 @@ public interface Program {
      */
     int getSymbolValue(String symbol);
 
+    /**
+     * Returns the set of symbols in the symbol table.
+     *
+     * @return {@code this.symbolTable.keys}
+     */
+    Set<String> getSymbols();
+
     boolean hasExternalSymbol(String symbol);
 
     /**
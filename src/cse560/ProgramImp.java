@@ -154,6 +154,11 @@ public class ProgramImp implements Program {
         return this.symbolTable.get(symbol).value;
     }
 
+    @Override
+    public Set<String> getSymbols() {
+        return this.symbolTable.keySet();
+    }
+
     @Override
     public boolean hasExternalSymbol(String symbol) {
         return this.externalSymbols.contains(symbol);
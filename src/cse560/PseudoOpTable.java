@@ -1,7 +1,8 @@
 package cse560;
 
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -24,13 +25,14 @@ public final class PseudoOpTable {
     private static final class PseudoOp {
 
         /** True if the pseudo-op must have an argument */
-        public boolean mustHaveArgument;
+        public final boolean mustHaveArgument;
 
         /** True iff the argument of this pseudo-op can be a relative symbol */
-        public boolean allowRelative;
+        public final boolean allowRelative;
 
         /** Set of allowed types of argument for this pseudo-op */
-        private final Set<ArgType> allowedTypes = new HashSet<ArgType>();
+        private final Set<ArgType> allowedTypes =
+                EnumSet.noneOf(ArgType.class);
 
         /**
          * Initializes a new {@code PseudoOp} with the parameters.
@@ -49,11 +51,15 @@ public final class PseudoOpTable {
         }
     }
 
-    /** Mapping of machine-op mnemonics to their format. */
-    private static Map<String, PseudoOp> opTable =
-            new HashMap<String, PseudoOp>();
+    /**
+     * Mapping of pseudo-op mnemonics to their format. Read-only after class
+     * initialization.
+     */
+    private static final Map<String, PseudoOp> OP_TABLE;
 
     static {
+        Map<String, PseudoOp> opTable = new HashMap<String, PseudoOp>();
+
         // fill opTable with data for all the pseudo-ops
         opTable.put(".ORIG", new PseudoOp(false, false, ArgType.IMMEDIATE));
         opTable.put(".END", new PseudoOp(false, true, ArgType.IMMEDIATE, ArgType.SYMBOL));
@@ -61,6 +67,10 @@ public final class PseudoOpTable {
         opTable.put(".FILL", new PseudoOp(true, true, ArgType.IMMEDIATE, ArgType.SYMBOL));
         opTable.put(".STRZ", new PseudoOp(true, false, ArgType.STRING));
         opTable.put(".BLKW", new PseudoOp(true, false, ArgType.IMMEDIATE, ArgType.SYMBOL));
+        opTable.put(".ENT", new PseudoOp(true, false, ArgType.SYMBOL));
+        opTable.put(".EXT", new PseudoOp(true, false, ArgType.SYMBOL));
+
+        OP_TABLE = Collections.unmodifiableMap(opTable);
     }
 
     /**
@@ -71,7 +81,7 @@ public final class PseudoOpTable {
      * @return {@code this[opCode].allowRelative}
      */
     public static boolean allowsRelative(String opCode) {
-        return opTable.get(opCode).allowRelative;
+        return OP_TABLE.get(opCode).allowRelative;
     }
 
     /**
@@ -82,7 +92,7 @@ public final class PseudoOpTable {
      * @return True iff {@code opcode} is a key for {@code this.opTable}.
      */
     public static boolean hasOpCode(String opCode) {
-        return opTable.containsKey(opCode);
+        return OP_TABLE.containsKey(opCode);
     }
 
     /**
@@ -95,7 +105,7 @@ public final class PseudoOpTable {
      * @return True iff {@code opcode} is a key for {@code this.opTable}.
      */
     public static boolean isArgTypeAllowed(String opCode, ArgType type) {
-        return opTable.get(opCode).allowedTypes.contains(type);
+        return OP_TABLE.get(opCode).allowedTypes.contains(type);
     }
 
     /**
@@ -106,7 +116,7 @@ public final class PseudoOpTable {
      * @return {@code this[opCode].numArgs}
      */
     public static boolean mustHaveArgument(String opCode) {
-        return opTable.get(opCode).mustHaveArgument;
+        return OP_TABLE.get(opCode).mustHaveArgument;
     }
 
     /**
@@ -0,0 +1,74 @@
+package cse560;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the segment as a raw memory image: one big-endian 16-bit word for
+ * each address from the first address of the segment to its end, with no
+ * header, symbols or relocation information. Words the program does not
+ * assign, such as those reserved by {@code .BLKW}, are written as zero.
+ *
+ * @author Igor Tolkachev
+ */
+public final class RawBinarySink implements OutputSink {
+    /** The destination of the image. */
+    private final OutputStream out;
+
+    /** The first address of the segment. */
+    private int firstAddress;
+
+    /** The image, two bytes per word. */
+    private byte[] image;
+
+    /**
+     * Initializes a sink that writes a raw image to {@code out}.
+     *
+     * @param out
+     *            The destination of the image. It is flushed, not closed.
+     */
+    public RawBinarySink(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void header(String segmentName, int firstAddress, int length,
+            boolean isRelocatable) {
+        this.firstAddress = firstAddress;
+        this.image = new byte[2 * length];
+    }
+
+    @Override
+    public void entry(String symbol, int value, boolean isRelative) {
+    }
+
+    @Override
+    public void external(String symbol) {
+    }
+
+    @Override
+    public void word(int address, int value, Relocation relocation) {
+        int offset = 2 * (address - this.firstAddress);
+
+        if (0 <= offset && offset < this.image.length) {
+            this.image[offset] = (byte) (value >> 8);
+            this.image[offset + 1] = (byte) value;
+        }
+    }
+
+    @Override
+    public void listingLine(SourceRecord record, int address, int value,
+            boolean printSource) {
+    }
+
+    @Override
+    public void literal(int literal, int address) {
+        word(address, literal, Relocation.NONE);
+    }
+
+    @Override
+    public void end(int execAddress) throws IOException {
+        this.out.write(this.image);
+        this.out.flush();
+    }
+}
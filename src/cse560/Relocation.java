@@ -0,0 +1,191 @@
+package cse560;
+
+import java.util.zip.DataFormatException;
+
+/**
+ * Describes how the loader must adjust a single word of an object file.
+ * <p>
+ * A word is either absolute (no adjustment), relative (the low six or nine
+ * bits are offset by the load address, written as "{@code M0}" or
+ * "{@code M1}"), or an external reference (the low {@code fieldLength} bits
+ * are filled in with the value of an external symbol, written as
+ * "{@code X}" followed by the field length in hex and the symbol name).
+ * <p>
+ * <b>Model:</b>
+ * <ul>
+ * <li>{@code Kind kind} - The type of adjustment.</li>
+ * <li>{@code integer fieldLength} - The number of low-order bits adjusted.</li>
+ * <li>{@code string symbol} - The external symbol, if {@code kind} is
+ * {@code EXTERNAL}; otherwise null.</li>
+ * </ul>
+ *
+ * @author Igor Tolkachev
+ */
+public final class Relocation {
+    /** The kinds of adjustment a loader may apply to a word. */
+    public enum Kind {
+        /** The word is used as-is. */
+        ABSOLUTE,
+
+        /** The low six bits are relative to the load address ("M0"). */
+        RELATIVE6,
+
+        /** The low nine bits are relative to the load address ("M1"). */
+        RELATIVE9,
+
+        /** The low bits are filled in from an external symbol ("X"). */
+        EXTERNAL;
+    }
+
+    /** An absolute word. */
+    public static final Relocation NONE = new Relocation(Kind.ABSOLUTE, 0,
+            null);
+
+    /** A word whose low six bits are relative. */
+    public static final Relocation M0 = new Relocation(Kind.RELATIVE6, 6,
+            null);
+
+    /** A word whose low nine bits are relative. */
+    public static final Relocation M1 = new Relocation(Kind.RELATIVE9, 9,
+            null);
+
+    /**
+     * Returns the relocation for a reference to the external symbol
+     * {@code symbol} in the low {@code fieldLength} bits of a word.
+     *
+     * @param fieldLength
+     *            The number of bits filled in by the loader.
+     * @param symbol
+     *            The external symbol.
+     * @return A new {@code Relocation} of kind {@code EXTERNAL}.
+     */
+    public static Relocation external(int fieldLength, String symbol) {
+        return new Relocation(Kind.EXTERNAL, fieldLength, symbol);
+    }
+
+    /**
+     * Parses the relocation suffix of a classic text record ("", "M0", "M1"
+     * or "X" + length + symbol).
+     *
+     * @param suffix
+     *            The characters following the word in a text record.
+     * @return The corresponding {@code Relocation}.
+     * @throws DataFormatException
+     *             If {@code suffix} is not a valid relocation suffix.
+     */
+    public static Relocation parse(String suffix) throws DataFormatException {
+        if (suffix.length() == 0) {
+            return NONE;
+        } else if (suffix.equals("M0")) {
+            return M0;
+        } else if (suffix.equals("M1")) {
+            return M1;
+        } else if (suffix.length() > 2 && suffix.charAt(0) == 'X') {
+            int length = Character.digit(suffix.charAt(1), 16);
+
+            if (length > 0) {
+                return external(length, suffix.substring(2));
+            }
+        }
+
+        throw new DataFormatException("Invalid relocation record: \""
+                + suffix + "\"");
+    }
+
+    /** The type of adjustment. */
+    private final Kind kind;
+
+    /** The number of low-order bits the loader adjusts. */
+    private final int fieldLength;
+
+    /** The external symbol referenced, or null. */
+    private final String symbol;
+
+    /**
+     * Initializes a new relocation with the given state.
+     */
+    private Relocation(Kind kind, int fieldLength, String symbol) {
+        this.kind = kind;
+        this.fieldLength = fieldLength;
+        this.symbol = symbol;
+    }
+
+    /**
+     * Returns the type of adjustment.
+     *
+     * @return {@code this.kind}
+     */
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * Returns the number of low-order bits the loader adjusts.
+     *
+     * @return {@code this.fieldLength}
+     */
+    public int getFieldLength() {
+        return this.fieldLength;
+    }
+
+    /**
+     * Returns the external symbol referenced by this word.
+     *
+     * @return {@code this.symbol}, which is null unless {@code kind} is
+     *         {@code EXTERNAL}.
+     */
+    public String getSymbol() {
+        return this.symbol;
+    }
+
+    /**
+     * Returns true iff the word must be offset by the load address.
+     *
+     * @return {@code kind = RELATIVE6 or kind = RELATIVE9}
+     */
+    public boolean isRelative() {
+        return this.kind == Kind.RELATIVE6 || this.kind == Kind.RELATIVE9;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Relocation)) {
+            return false;
+        }
+
+        Relocation other = (Relocation) obj;
+
+        return this.kind == other.kind
+                && this.fieldLength == other.fieldLength
+                && (this.symbol == null ? other.symbol == null : this.symbol
+                        .equals(other.symbol));
+    }
+
+    @Override
+    public int hashCode() {
+        return this.kind.hashCode() * 31 + this.fieldLength
+                + (this.symbol == null ? 0 : this.symbol.hashCode());
+    }
+
+    /**
+     * Returns the relocation suffix as written in a classic text record.
+     *
+     * @return "", "M0", "M1" or "X" + length + symbol.
+     */
+    @Override
+    public String toString() {
+        switch (this.kind) {
+        case RELATIVE6:
+            return "M0";
+
+        case RELATIVE9:
+            return "M1";
+
+        case EXTERNAL:
+            return String.format("X%X%s", this.fieldLength, this.symbol);
+
+        default:
+            return "";
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package cse560;
+
+/**
+ * The limits a {@link Governor} holds one assembly job to, beyond the record,
+ * symbol and literal limits of its {@link AssemblyContext}. They bound the
+ * memory and time a single input can take, so that a pathological program
+ * fails on its own instead of starving the other jobs of a shared assembler.
+ * <p>
+ * <b>Model:</b>
+ * <ul>
+ * <li>{@code long maxSourceLength} - The maximum number of characters read
+ * from the source.</li>
+ * <li>{@code integer maxLineLength} - The maximum length of one source line.</li>
+ * <li>{@code integer maxOperands} - The maximum number of operands of one
+ * record.</li>
+ * <li>{@code integer maxWords} - The maximum length of the segment, in words,
+ * and the maximum number of words emitted for it.</li>
+ * <li>{@code long timeLimitMillis} - The maximum time the job may take, in
+ * milliseconds, or 0 for no limit.</li>
+ * </ul>
+ * Instances are immutable.
+ *
+ * @author Igor Tolkachev
+ */
+public final class ResourceLimits {
+    /** Limits loose enough for any program a person would write. */
+    public static final ResourceLimits DEFAULT =
+            new ResourceLimits(1L << 26, 4096, 256, 0x10000, 0);
+
+    /**
+     * Limits for jobs submitted by untrusted clients, such as those of
+     * an {@link AssemblerDaemon} started with {@code -S}.
+     */
+    public static final ResourceLimits SERVICE =
+            new ResourceLimits(1L << 20, 256, 64, 0x10000, 10000);
+
+    /** The maximum number of characters read from the source. */
+    private final long maxSourceLength;
+
+    /** The maximum length of one source line. */
+    private final int maxLineLength;
+
+    /** The maximum number of operands of one record. */
+    private final int maxOperands;
+
+    /** The maximum length of the segment, in words. */
+    private final int maxWords;
+
+    /** The maximum time the job may take in milliseconds, or 0. */
+    private final long timeLimitMillis;
+
+    /**
+     * Initializes a set of limits.
+     * <p>
+     * <b>Requires:</b> every argument is positive, except
+     * {@code timeLimitMillis}, which may be 0.
+     *
+     * @param maxSourceLength
+     *            The maximum number of characters read from the source.
+     * @param maxLineLength
+     *            The maximum length of one source line.
+     * @param maxOperands
+     *            The maximum number of operands of one record.
+     * @param maxWords
+     *            The maximum length of the segment, in words.
+     * @param timeLimitMillis
+     *            The maximum time the job may take in milliseconds, or 0 for
+     *            no limit.
+     */
+    public ResourceLimits(long maxSourceLength, int maxLineLength,
+            int maxOperands, int maxWords, long timeLimitMillis) {
+        this.maxSourceLength = maxSourceLength;
+        this.maxLineLength = maxLineLength;
+        this.maxOperands = maxOperands;
+        this.maxWords = maxWords;
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    /**
+     * Returns a copy of these limits with another time limit.
+     *
+     * @param millis
+     *            The maximum time a job may take in milliseconds, or 0 for no
+     *            limit.
+     * @return These limits with {@code timeLimitMillis = millis}.
+     */
+    public ResourceLimits withTimeLimit(long millis) {
+        return new ResourceLimits(this.maxSourceLength, this.maxLineLength,
+                this.maxOperands, this.maxWords, millis);
+    }
+
+    /**
+     * @return {@code this.maxSourceLength}
+     */
+    public long getMaxSourceLength() {
+        return this.maxSourceLength;
+    }
+
+    /**
+     * @return {@code this.maxLineLength}
+     */
+    public int getMaxLineLength() {
+        return this.maxLineLength;
+    }
+
+    /**
+     * @return {@code this.maxOperands}
+     */
+    public int getMaxOperands() {
+        return this.maxOperands;
+    }
+
+    /**
+     * @return {@code this.maxWords}
+     */
+    public int getMaxWords() {
+        return this.maxWords;
+    }
+
+    /**
+     * @return {@code this.timeLimitMillis}
+     */
+    public long getTimeLimitMillis() {
+        return this.timeLimitMillis;
+    }
+}
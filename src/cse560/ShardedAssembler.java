@@ -0,0 +1,421 @@
+package cse560;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.zip.DataFormatException;
+
+/**
+ * Assembles a batch of files on a set of worker processes, each an
+ * {@link AssemblerDaemon} with its own heap and garbage collector, and writes
+ * their outputs locally.
+ * <p>
+ * The coordinator opens {@code slots} connections to every worker and serves
+ * each from its own thread. The files wait in one queue, largest first, and
+ * each connection takes the next file as soon as its last one is done, so a
+ * worker that draws a large file simply takes fewer of them; no file is
+ * assigned to a worker ahead of time. Sources travel as text and outputs come
+ * back as text, so a worker needs no access to the coordinator's files.
+ * <p>
+ * If a worker fails mid-request, the connection is dropped and its file is
+ * not offered to another worker, since the file may be what brought the
+ * worker down: it is assembled in-process once the queue is done, where a
+ * file that crashes the assembler fails alone. If every connection has been
+ * dropped, the files left in the queue are assembled in-process too, so the
+ * outputs are always those of {@link BatchAssembler}.
+ *
+ * @author Igor Tolkachev
+ */
+public final class ShardedAssembler {
+    /** Default number of connections to each worker. */
+    public static final int DEFAULT_SLOTS = 2;
+
+    /** Line the daemon prints once it is ready; followed by its port. */
+    private static final String READY = "listening on port ";
+
+    /**
+     * A worker process started on this host.
+     */
+    public static final class LocalWorker {
+        /** The worker process. */
+        private final Process process;
+
+        /** The address the worker listens on. */
+        private final InetSocketAddress address;
+
+        LocalWorker(Process process, InetSocketAddress address) {
+            this.process = process;
+            this.address = address;
+        }
+
+        public InetSocketAddress getAddress() {
+            return this.address;
+        }
+
+        /**
+         * Asks the worker to shut down and waits for it to exit.
+         */
+        public void stop() {
+            try {
+                DaemonClient client = new DaemonClient(this.address);
+
+                client.shutdown();
+                client.close();
+                this.process.waitFor();
+            } catch (IOException e) {
+                this.process.destroy();
+            } catch (InterruptedException e) {
+                this.process.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** The settings shared by every file of the batch. */
+    private final AssemblyContext context;
+
+    /** The workers' addresses. */
+    private final List<InetSocketAddress> workers;
+
+    /** Number of connections to each worker. */
+    private final int slots;
+
+    /** Lays out outputs, and assembles files no worker could take. */
+    private final BatchAssembler local;
+
+    /** Cache of outputs from earlier builds, or null. */
+    private final BuildCache cache;
+
+    /** Where warnings reported by the workers are printed. */
+    private final PrintStream log;
+
+    /**
+     * Initializes a coordinator.
+     * <p>
+     * <b>Requires:</b> {@code slots > 0}
+     *
+     * @param context
+     *            The settings shared by every file of the batch.
+     * @param workers
+     *            The addresses of the workers.
+     * @param slots
+     *            The number of files each worker assembles at once.
+     * @param outputDirectory
+     *            The directory to write outputs to, or null to write each
+     *            file's outputs beside it.
+     * @param cache
+     *            The build cache, or null to assemble every file.
+     * @param log
+     *            Where to print warnings reported by the workers.
+     */
+    public ShardedAssembler(AssemblyContext context,
+            List<InetSocketAddress> workers, int slots, File outputDirectory,
+            BuildCache cache, PrintStream log) {
+        this.context = context;
+        this.workers = workers;
+        this.slots = slots;
+        this.local =
+                new BatchAssembler(context, Runtime.getRuntime()
+                        .availableProcessors(), outputDirectory, cache);
+        this.cache = cache;
+        this.log = log;
+    }
+
+    /**
+     * Starts a worker JVM on this host with the same class path as this one,
+     * and waits until it is ready.
+     *
+     * @param jvmOptions
+     *            Options for the worker JVM, e.g. {@code -Xmx256m}.
+     * @return The running worker.
+     * @throws IOException
+     *             If the worker cannot be started.
+     */
+    public static LocalWorker startLocalWorker(String... jvmOptions)
+            throws IOException {
+        List<String> command = new ArrayList<String>();
+
+        command.add(new File(new File(System.getProperty("java.home"), "bin"),
+                "java").getPath());
+        command.addAll(Arrays.asList(jvmOptions));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(AssemblerDaemon.class.getName());
+        command.add("-p");
+        command.add("0");
+
+        final Process process =
+                new ProcessBuilder(command).redirectErrorStream(true).start();
+        final BufferedReader out =
+                new BufferedReader(new InputStreamReader(process
+                        .getInputStream()));
+        String line;
+
+        while ((line = out.readLine()) != null) {
+            int at = line.indexOf(READY);
+
+            if (at >= 0) {
+                int port = Integer.parseInt(line.substring(at + READY.length())
+                        .trim());
+
+                // Keep reading so the worker never blocks on a full pipe.
+                Thread drain = new Thread("mmxi-worker-output") {
+                    @Override
+                    public void run() {
+                        try {
+                            while (out.readLine() != null) {
+                                // Discard.
+                            }
+                        } catch (IOException e) {
+                            // The worker exited.
+                        }
+                    }
+                };
+                drain.setDaemon(true);
+                drain.start();
+
+                return new LocalWorker(process, new InetSocketAddress(
+                        "localhost", port));
+            }
+        }
+
+        process.destroy();
+
+        throw new IOException("Worker exited before it was ready");
+    }
+
+    /**
+     * Assembles every file in {@code sources}.
+     * <p>
+     * <b>Ensures:</b> the results are in the same order as {@code sources}.
+     *
+     * @param sources
+     *            The source files.
+     * @return The result of each file.
+     * @throws AssemblerException
+     *             If two sources share an output file.
+     */
+    public List<BatchAssembler.Result> assemble(List<File> sources) {
+        this.local.checkOutputs(sources);
+
+        final BlockingDeque<File> queue = new LinkedBlockingDeque<File>();
+        final Map<File, BatchAssembler.Result> results =
+                Collections
+                        .synchronizedMap(new HashMap<File, BatchAssembler.Result>());
+        List<File> order = new ArrayList<File>(sources);
+
+        Collections.sort(order, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = b.length() - a.length();
+
+                return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+            }
+        });
+        queue.addAll(order);
+
+        final List<File> orphans =
+                Collections.synchronizedList(new ArrayList<File>());
+
+        // ...Serve every connection from its own thread until the queue is
+        // empty or the connection fails
+
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (final InetSocketAddress worker : this.workers) {
+            for (int i = 0; i < this.slots; ++i) {
+                Thread thread = new Thread("mmxi-shard-" + threads.size()) {
+                    @Override
+                    public void run() {
+                        serve(worker, queue, orphans, results);
+                    }
+                };
+
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+        }
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // ...Assemble in-process whatever no worker could take
+
+        List<File> left = new ArrayList<File>(orphans);
+        left.addAll(queue);
+
+        if (!left.isEmpty()) {
+            for (BatchAssembler.Result result : this.local.assemble(left)) {
+                results.put(result.getSource(), result);
+            }
+        }
+
+        List<BatchAssembler.Result> ordered =
+                new ArrayList<BatchAssembler.Result>();
+
+        for (File source : sources) {
+            ordered.add(results.get(source));
+        }
+
+        return ordered;
+    }
+
+    /**
+     * Sends files from {@code queue} to one worker until the queue is empty
+     * or the worker fails, in which case the file it was assembling is added
+     * to {@code orphans}.
+     */
+    private void serve(InetSocketAddress worker, BlockingDeque<File> queue,
+            List<File> orphans, Map<File, BatchAssembler.Result> results) {
+        DaemonClient client;
+
+        try {
+            client = new DaemonClient(worker);
+        } catch (IOException e) {
+            return;
+        }
+
+        try {
+            File source;
+
+            while ((source = queue.poll()) != null) {
+                try {
+                    results.put(source, assembleOne(client, source));
+                } catch (IOException e) {
+                    // Another worker could fail on it the same way; leave it
+                    // to the coordinator.
+                    this.log.println(source.getPath() + ": worker " + worker
+                            + " failed (" + e.getMessage()
+                            + "); assembling it here");
+                    orphans.add(source);
+
+                    return;
+                }
+            }
+        } finally {
+            try {
+                client.close();
+            } catch (IOException e) {
+                // Nothing more to release.
+            }
+        }
+    }
+
+    /**
+     * Assembles one file on a worker and writes its outputs.
+     *
+     * @throws IOException
+     *             If the worker fails. Any other failure is recorded in the
+     *             result.
+     */
+    private BatchAssembler.Result assembleOne(DaemonClient client, File source)
+            throws IOException {
+        AssemblyContext job = this.context.forSource(source);
+        File objectFile =
+                this.local.outputFor(source, BatchAssembler.OBJECT_EXTENSION);
+        File listingFile =
+                this.local.outputFor(source, BatchAssembler.LISTING_EXTENSION);
+        long start = System.nanoTime();
+        byte[] bytes;
+        String key = null;
+
+        try {
+            bytes = BuildCache.readBytes(source);
+
+            if (this.cache != null) {
+                key = BuildCache.key(bytes, job);
+
+                if (this.cache.fetch(key, objectFile, listingFile)) {
+                    return new BatchAssembler.Result(source, objectFile,
+                            listingFile, null, true, System.nanoTime()
+                                    - start, null);
+                }
+            }
+        } catch (IOException e) {
+            return new BatchAssembler.Result(source, objectFile, listingFile,
+                    null, false, System.nanoTime() - start, e);
+        }
+
+        AssemblyResult result = client.assemble(new String(bytes), job);
+        AssemblerException error = null;
+
+        for (Diagnostic diagnostic : result.getDiagnostics()) {
+            if (diagnostic.getType() == AssemblerException.Type.WARNING) {
+                this.log.println(source.getPath() + ": " + diagnostic);
+            } else if (error == null) {
+                error =
+                        new AssemblerException(diagnostic.getMessage(),
+                                diagnostic.getCode(), diagnostic.getLine());
+            }
+        }
+
+        if (!result.succeeded()) {
+            return new BatchAssembler.Result(source, objectFile, listingFile,
+                    null, false, System.nanoTime() - start, error);
+        }
+
+        try {
+            write(objectFile, result.getObjectFile());
+            write(listingFile, result.getListing());
+
+            if (this.cache != null) {
+                this.cache.store(key, objectFile, listingFile);
+            }
+        } catch (IOException e) {
+            return new BatchAssembler.Result(source, objectFile, listingFile,
+                    null, false, System.nanoTime() - start, e);
+        }
+
+        return new BatchAssembler.Result(source, objectFile, listingFile,
+                read(result.getObjectFile()), false, System.nanoTime() - start,
+                null);
+    }
+
+    /**
+     * Reads back the segment of an object file sent by a worker.
+     *
+     * @return The segment, or null if the text cannot be read.
+     */
+    private static ObjectImage read(String objectFile) {
+        try {
+            return new ObjectReaderImp().read(new BufferedReader(
+                    new StringReader(objectFile)));
+        } catch (IOException e) {
+            return null;
+        } catch (DataFormatException e) {
+            return null;
+        }
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        BufferedWriter out = new BufferedWriter(new FileWriter(file));
+
+        try {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+    }
+}
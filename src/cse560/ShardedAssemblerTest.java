@@ -0,0 +1,244 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ShardedAssemblerTest {
+    private static final AssemblyContext CONTEXT =
+            new AssemblyContext(null, 100000,
+                    AssemblyContext.DEFAULT_MAX_SYMBOLS,
+                    AssemblyContext.DEFAULT_MAX_LITERALS,
+                    ObjectDialect.CLASSIC);
+
+    private static AssemblerDaemon startDaemon() throws IOException {
+        final AssemblerDaemon daemon = new AssemblerDaemon(0);
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                daemon.serve();
+            }
+        });
+        server.setDaemon(true);
+        server.start();
+
+        return daemon;
+    }
+
+    /**
+     * Checking: Files of skewed sizes spread over two workers, one address
+     * that never answers, give the same outputs as a local batch, and a bad
+     * file fails alone.
+     */
+    @Test
+    public void matchesLocalBatch() throws IOException {
+        File dir = TestFiles.tempDirectory();
+        File local = TestFiles.tempDirectory();
+        File sharded = TestFiles.tempDirectory();
+        List<File> files = new ArrayList<File>();
+
+        for (int i = 0; i < 10; ++i) {
+            files.add(TestFiles.write(dir, "seg" + i + ".asm", TestFiles
+                    .source("Seg" + i, i == 3 ? 2000 : 5 * i)));
+        }
+
+        files.add(TestFiles.write(dir, "bad.asm", "Bad      .ORIG   x1000\n"
+                + "         FOO     R1\n" + "         .END\n"));
+
+        ServerSocket closed = new ServerSocket(0);
+        int deadPort = closed.getLocalPort();
+        closed.close();
+
+        AssemblerDaemon first = startDaemon();
+        AssemblerDaemon second = startDaemon();
+
+        try {
+            List<InetSocketAddress> workers =
+                    Arrays.asList(new InetSocketAddress("localhost", first
+                            .getPort()), new InetSocketAddress("localhost",
+                            second.getPort()), new InetSocketAddress(
+                            "localhost", deadPort));
+            List<BatchAssembler.Result> expected =
+                    new BatchAssembler(CONTEXT, 2, local).assemble(files);
+            List<BatchAssembler.Result> results =
+                    new ShardedAssembler(CONTEXT, workers, 2, sharded, null,
+                            new PrintStream(new ByteArrayOutputStream()))
+                            .assemble(files);
+
+            assertEquals(files.size(), results.size());
+
+            for (int i = 0; i < files.size(); ++i) {
+                BatchAssembler.Result result = results.get(i);
+
+                assertEquals(files.get(i), result.getSource());
+                assertEquals(expected.get(i).succeeded(), result.succeeded());
+
+                if (result.succeeded()) {
+                    assertEquals(expected.get(i).getLength(), result
+                            .getLength());
+                    assertEquals(TestFiles.read(expected.get(i)
+                            .getObjectFile()), TestFiles.read(result
+                            .getObjectFile()));
+                    assertEquals(TestFiles.read(expected.get(i)
+                            .getListingFile()), TestFiles.read(result
+                            .getListingFile()));
+                }
+            }
+
+            BatchAssembler.Result bad = results.get(files.size() - 1);
+            assertFalse(bad.succeeded());
+            assertEquals(((AssemblerException) expected.get(files.size() - 1)
+                    .getError()).getErrorNumber(), ((AssemblerException) bad
+                    .getError()).getErrorNumber());
+        } finally {
+            first.shutdown();
+            second.shutdown();
+        }
+    }
+
+    /**
+     * Checking: With no worker answering, the batch is assembled in-process.
+     */
+    @Test
+    public void fallsBackWithoutWorkers() throws IOException {
+        File dir = TestFiles.tempDirectory();
+        File out = TestFiles.tempDirectory();
+        File file =
+                TestFiles.write(dir, "only.asm", TestFiles.source("Only", 3));
+        ServerSocket closed = new ServerSocket(0);
+        int deadPort = closed.getLocalPort();
+        closed.close();
+
+        List<BatchAssembler.Result> results =
+                new ShardedAssembler(CONTEXT, Arrays
+                        .asList(new InetSocketAddress("localhost", deadPort)),
+                        1, out, null, System.err).assemble(Arrays.asList(file));
+
+        assertTrue(results.get(0).succeeded());
+        // Three instructions, a load and its literal.
+        assertEquals(5, results.get(0).getLength());
+    }
+
+    /**
+     * Checking: A source that crashes the parser fails alone across two
+     * workers, and every other file is assembled as in-process.
+     */
+    @Test
+    public void crashFailsAlone() throws IOException {
+        AssemblyContext regex = CONTEXT.withParser(ParserStrategy.REGEX);
+        File dir = TestFiles.tempDirectory();
+        File local = TestFiles.tempDirectory();
+        File sharded = TestFiles.tempDirectory();
+        List<File> files = new ArrayList<File>();
+
+        files.add(TestFiles.write(dir, "crash.asm", "Prog     .ORIG\n"));
+
+        for (int i = 0; i < 6; ++i) {
+            files.add(TestFiles.write(dir, "good" + i + ".asm", "Good     "
+                    + ".ORIG   x1000\n" + "Begin    ADD     R1,R1,#" + i
+                    + "\n" + "         .END    Begin\n"));
+        }
+
+        AssemblerDaemon first = startDaemon();
+        AssemblerDaemon second = startDaemon();
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+        try {
+            List<BatchAssembler.Result> expected =
+                    new BatchAssembler(regex, 2, local).assemble(files);
+            List<BatchAssembler.Result> results =
+                    new ShardedAssembler(regex, Arrays.asList(
+                            new InetSocketAddress("localhost", first
+                                    .getPort()), new InetSocketAddress(
+                                    "localhost", second.getPort())), 1,
+                            sharded, null, new PrintStream(log, true))
+                            .assemble(files);
+
+            assertFalse(results.get(0).succeeded());
+            assertEquals(0, ((AssemblerException) results.get(0).getError())
+                    .getErrorNumber());
+
+            for (int i = 1; i < files.size(); ++i) {
+                assertTrue(results.get(i).succeeded());
+                assertEquals(TestFiles.read(expected.get(i).getObjectFile()),
+                        TestFiles.read(results.get(i).getObjectFile()));
+            }
+
+            // No worker failed, so nothing was left to the coordinator.
+            assertEquals("", log.toString());
+        } finally {
+            first.shutdown();
+            second.shutdown();
+        }
+    }
+
+    /**
+     * Checking: A file whose worker fails mid-request is not handed to
+     * another worker, but assembled in-process.
+     */
+    @Test
+    public void assemblesOrphansInProcess() throws IOException {
+        File dir = TestFiles.tempDirectory();
+        File out = TestFiles.tempDirectory();
+        List<File> files = new ArrayList<File>();
+
+        for (int i = 0; i < 4; ++i) {
+            files.add(TestFiles.write(dir, "seg" + i + ".asm", TestFiles
+                    .source("Seg" + i, i)));
+        }
+
+        // A worker that drops every connection once a request arrives.
+        final ServerSocket failing = new ServerSocket(0);
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Socket socket = failing.accept();
+
+                        new DataInputStream(socket.getInputStream())
+                                .readUTF();
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // The test closed the socket.
+                }
+            }
+        });
+        server.setDaemon(true);
+        server.start();
+
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+        try {
+            List<BatchAssembler.Result> results =
+                    new ShardedAssembler(CONTEXT, Arrays
+                            .asList(new InetSocketAddress("localhost",
+                                    failing.getLocalPort())), 1, out, null,
+                            new PrintStream(log, true)).assemble(files);
+
+            for (BatchAssembler.Result result : results) {
+                assertTrue(result.succeeded());
+            }
+
+            assertEquals(1, log.toString().split("assembling it here", -1)
+                    .length - 1);
+        } finally {
+            failing.close();
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package cse560;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the directories holding a set of sources and reassembles each
+ * source soon after it changes.
+ * <p>
+ * Edits tend to arrive in bursts: an editor may truncate, write and rename a
+ * file, and a version-control checkout touches many at once. The watcher
+ * therefore waits until no event has arrived for {@code debounceMillis}
+ * before rebuilding everything that changed in the burst. A file whose bytes
+ * are the same as at its last build, e.g. one saved without edits, is not
+ * rebuilt.
+ * <p>
+ * Given {@code modules}, the sources are taken to be modules of one program
+ * and each rebuild goes through a {@link ModuleBuilder}, which also
+ * reassembles the importers of any entry symbol that changed.
+ * <p>
+ * A source that is deleted, or no longer matches the inputs, has its object
+ * file and listing deleted. Among modules, its importers are reassembled and
+ * the imports it leaves unresolved are reported.
+ * <p>
+ * State is kept warm between rebuilds: the JVM, the op tables and the JIT
+ * output, plus the content digest of every source from its last build. A
+ * parsed {@link Program} cannot be kept, since pass two consumes its records.
+ *
+ * @author Igor Tolkachev
+ */
+public final class SourceWatcher {
+    /** Default quiet period before a rebuild, in milliseconds. */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 150;
+
+    /** The names given on the command line: files, directories, patterns. */
+    private final List<String> inputs;
+
+    /** Assembles the changed files. */
+    private final BatchAssembler assembler;
+
+    /** Builds the sources as modules of one program, or null. */
+    private final ModuleBuilder modules;
+
+    /** Settings of every job; used to key the content digests. */
+    private final AssemblyContext context;
+
+    /** Quiet period before a rebuild, in milliseconds. */
+    private final long debounceMillis;
+
+    /** Where progress is reported. */
+    private final PrintStream log;
+
+    /** Service delivering file-system events. */
+    private final WatchService watchService;
+
+    /** Directory of each registered watch key. */
+    private final Map<WatchKey, Path> directories =
+            new HashMap<WatchKey, Path>();
+
+    /** Content digest of each source at its last successful build. */
+    private final Map<File, String> digests = new HashMap<File, String>();
+
+    /** Every source of the last rebuild, as absolute paths. */
+    private final Set<File> sources = new HashSet<File>();
+
+    /**
+     * Initializes a watcher and registers the directories of {@code inputs}.
+     *
+     * @param inputs
+     *            Source files, directories and patterns, as accepted by
+     *            {@link BatchAssembler#expand}.
+     * @param context
+     *            The settings of every job.
+     * @param outputDirectory
+     *            The directory to write outputs to, or null to write each
+     *            file's outputs beside it.
+     * @param debounceMillis
+     *            The quiet period before a rebuild, in milliseconds.
+     * @param log
+     *            Where to report each rebuild.
+     * @throws IOException
+     *             If a directory cannot be watched.
+     */
+    public SourceWatcher(List<String> inputs, AssemblyContext context,
+            File outputDirectory, long debounceMillis, PrintStream log)
+            throws IOException {
+        this(inputs, context, outputDirectory, false, debounceMillis, log);
+    }
+
+    /**
+     * Initializes a watcher and registers the directories of {@code inputs}.
+     *
+     * @param inputs
+     *            Source files, directories and patterns, as accepted by
+     *            {@link BatchAssembler#expand}.
+     * @param context
+     *            The settings of every job.
+     * @param outputDirectory
+     *            The directory to write outputs to, or null to write each
+     *            file's outputs beside it.
+     * @param modules
+     *            True iff the sources are modules of one program.
+     * @param debounceMillis
+     *            The quiet period before a rebuild, in milliseconds.
+     * @param log
+     *            Where to report each rebuild.
+     * @throws IOException
+     *             If a directory cannot be watched.
+     */
+    public SourceWatcher(List<String> inputs, AssemblyContext context,
+            File outputDirectory, boolean modules, long debounceMillis,
+            PrintStream log) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        this.inputs = inputs;
+        this.context = context;
+        this.assembler =
+                new BatchAssembler(context, threads, outputDirectory);
+        this.modules =
+                modules ? new ModuleBuilder(context, threads, outputDirectory)
+                        : null;
+        this.debounceMillis = debounceMillis;
+        this.log = log;
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        Set<File> watched = new LinkedHashSet<File>();
+
+        for (String input : inputs) {
+            File file = new File(input).getAbsoluteFile();
+
+            watched.add(file.isDirectory() ? file : file.getParentFile());
+        }
+
+        for (File directory : watched) {
+            Path path = directory.toPath();
+
+            this.directories.put(path.register(this.watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE), path);
+        }
+    }
+
+    /**
+     * Builds every source, then rebuilds changed sources until
+     * {@link #close} is called or the thread is interrupted. A rebuild that
+     * cannot start, e.g. because two sources would now write the same
+     * outputs, is reported and the watch goes on.
+     *
+     * @throws IOException
+     *             If an input cannot be expanded at first.
+     * @throws AssemblerException
+     *             If two sources share an output file at first.
+     */
+    public void watch() throws IOException {
+        rebuild(null, System.nanoTime());
+
+        try {
+            while (true) {
+                Set<File> changed = awaitChanges(Long.MAX_VALUE);
+                long quiet = System.nanoTime();
+
+                try {
+                    rebuild(changed, quiet);
+                } catch (IOException e) {
+                    this.log.println(new Diagnostic(
+                            AssemblerException.Type.FATAL, 202, 0, e
+                                    .getMessage()));
+                } catch (AssemblerException e) {
+                    this.log.println(e.toDiagnostic());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Closed by another thread; stop watching.
+        }
+    }
+
+    /**
+     * Waits for a burst of changes and returns the files it touched.
+     *
+     * @param timeoutMillis
+     *            How long to wait for the first event.
+     * @return The files created, modified or deleted, possibly none if the
+     *         timeout passed without any event.
+     * @throws InterruptedException
+     *             If the thread is interrupted while waiting.
+     */
+    public Set<File> awaitChanges(long timeoutMillis)
+            throws InterruptedException {
+        Set<File> changed = new LinkedHashSet<File>();
+        WatchKey key = this.watchService.poll(timeoutMillis,
+                TimeUnit.MILLISECONDS);
+
+        // ...Collect events until the quiet period passes with none
+
+        while (key != null) {
+            Path directory = this.directories.get(key);
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() != StandardWatchEventKinds.OVERFLOW) {
+                    changed.add(directory.resolve((Path) event.context())
+                            .toFile());
+                }
+            }
+
+            key.reset();
+            key = this.watchService.poll(this.debounceMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        return changed;
+    }
+
+    /**
+     * Returns the sources the inputs name now. A file named on its own that
+     * has been deleted, or a pattern whose every match has been, names
+     * nothing, rather than being an error.
+     *
+     * @return The sources, and in {@code gone} those of the last rebuild
+     *         that are no longer among them.
+     * @throws AssemblerException
+     *             If two of the sources share an output file.
+     */
+    private List<File> expand(Set<File> gone) throws IOException {
+        Set<File> named = new LinkedHashSet<File>();
+
+        for (String input : this.inputs) {
+            File file = new File(input);
+            boolean isPattern = BatchAssembler.isPattern(file.getName());
+
+            if (!file.exists() && !isPattern) {
+                continue;
+            }
+
+            try {
+                named.addAll(BatchAssembler.expand(Collections
+                        .singletonList(input)));
+            } catch (IOException e) {
+                if (!isPattern) {
+                    throw e;
+                }
+            }
+        }
+
+        List<File> current = new ArrayList<File>(named);
+        Set<File> absolute = new HashSet<File>();
+
+        // A rebuild assembles only what changed, so a source that would
+        // overwrite the outputs of one left alone must be caught here.
+        this.assembler.checkOutputs(current);
+
+        for (File source : current) {
+            absolute.add(source.getAbsoluteFile());
+        }
+
+        gone.addAll(this.sources);
+        gone.removeAll(absolute);
+        this.sources.clear();
+        this.sources.addAll(absolute);
+
+        return current;
+    }
+
+    /**
+     * Deletes the outputs of sources that are gone and reports them.
+     */
+    private void removeOutputs(Set<File> gone) {
+        for (File source : gone) {
+            this.digests.remove(source);
+            this.assembler.outputFor(source, BatchAssembler.OBJECT_EXTENSION)
+                    .delete();
+            this.assembler.outputFor(source, BatchAssembler.LISTING_EXTENSION)
+                    .delete();
+            this.log.printf("  gone  %-40s outputs deleted%n", source
+                    .getPath());
+        }
+    }
+
+    /**
+     * Reassembles the sources among {@code changed} whose contents differ
+     * from their last build, deletes the outputs of sources that are gone,
+     * and reports how long it took.
+     *
+     * @param changed
+     *            The files that changed, or null to build every source.
+     * @param quiet
+     *            {@link System#nanoTime} when the burst of changes ended.
+     * @return The results of the files rebuilt.
+     * @throws IOException
+     *             If an input cannot be expanded.
+     * @throws AssemblerException
+     *             If two sources share an output file.
+     */
+    public List<BatchAssembler.Result> rebuild(Set<File> changed, long quiet)
+            throws IOException {
+        if (this.modules != null) {
+            return rebuildModules(changed, quiet);
+        }
+
+        List<File> sources = new ArrayList<File>();
+        Map<File, String> pending = new HashMap<File, String>();
+        Set<File> gone = new LinkedHashSet<File>();
+        List<File> current = expand(gone);
+
+        removeOutputs(gone);
+
+        for (File source : current) {
+            File absolute = source.getAbsoluteFile();
+
+            if (changed != null && !changed.contains(absolute)) {
+                continue;
+            }
+
+            // An unreadable file is left for the assembler to report.
+            try {
+                String digest =
+                        BuildCache.key(BuildCache.readBytes(source),
+                                this.context);
+
+                if (digest.equals(this.digests.get(absolute))) {
+                    continue;
+                }
+
+                pending.put(absolute, digest);
+            } catch (IOException e) {
+                // Fall through and let the assembler report it.
+            }
+
+            sources.add(source);
+        }
+
+        if (sources.isEmpty()) {
+            return new ArrayList<BatchAssembler.Result>();
+        }
+
+        long start = System.nanoTime();
+        List<BatchAssembler.Result> results = this.assembler.assemble(sources);
+        long end = System.nanoTime();
+
+        for (BatchAssembler.Result result : results) {
+            File absolute = result.getSource().getAbsoluteFile();
+
+            // Record the digest read before the build, so an edit made during
+            // the build is picked up by the next one.
+            if (result.succeeded() && pending.containsKey(absolute)) {
+                this.digests.put(absolute, pending.get(absolute));
+            } else {
+                this.digests.remove(absolute);
+            }
+        }
+
+        report(results, end - start, end - quiet);
+
+        return results;
+    }
+
+    /**
+     * Rebuilds the modules affected by {@code changed}.
+     */
+    private List<BatchAssembler.Result> rebuildModules(Set<File> changed,
+            long quiet) throws IOException {
+        Set<File> gone = new LinkedHashSet<File>();
+        List<File> sources = expand(gone);
+        boolean touched = changed == null || !gone.isEmpty();
+
+        removeOutputs(gone);
+
+        for (int i = 0; !touched && i < sources.size(); ++i) {
+            touched = changed.contains(sources.get(i).getAbsoluteFile());
+        }
+
+        if (!touched) {
+            return new ArrayList<BatchAssembler.Result>();
+        }
+
+        long start = System.nanoTime();
+        List<BatchAssembler.Result> results = this.modules.build(sources);
+        long end = System.nanoTime();
+
+        // The builder forgets modules that are gone, and reassembles their
+        // importers, whose imports no longer resolve the same way.
+        if (!results.isEmpty() || !gone.isEmpty()) {
+            report(results, end - start, end - quiet);
+            this.modules.printUnresolved(this.log);
+        }
+
+        return results;
+    }
+
+    /**
+     * Prints the summary of a rebuild.
+     */
+    private void report(List<BatchAssembler.Result> results, long wallNanos,
+            long latencyNanos) {
+        BatchAssembler.printSummary(this.log, results, wallNanos);
+        this.log.printf("rebuilt %d file(s) %.2f ms after the last edit%n",
+                results.size(), latencyNanos / 1e6);
+    }
+
+    /**
+     * Stops watching. A thread blocked in {@link #watch} returns.
+     *
+     * @throws IOException
+     *             If the watch service cannot be closed.
+     */
+    public void close() throws IOException {
+        this.watchService.close();
+    }
+}
@@ -0,0 +1,224 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class SourceWatcherTest {
+    private static final String SOURCE = "Prog     .ORIG   x1000\n"
+            + "         ADD     R1,R1,#1\n" + "         .END\n";
+
+    @Test
+    public void rebuildsOnlyChangedSources() throws Exception {
+        File dir = TestFiles.tempDirectory();
+        File outputs = TestFiles.tempDirectory();
+        File a = TestFiles.write(dir, "a.asm", SOURCE);
+        File b = TestFiles.write(dir, "b.asm", SOURCE);
+        List<String> inputs = Arrays.asList(a.getPath(), b.getPath());
+        SourceWatcher watcher =
+                new SourceWatcher(inputs, AssemblyContext.DEFAULT, outputs, 50,
+                        new PrintStream(new ByteArrayOutputStream()));
+
+        try {
+            assertEquals(2, watcher.rebuild(null, System.nanoTime()).size());
+
+            // An edit to one file rebuilds only that file.
+            TestFiles.write(dir, "a.asm", SOURCE.replace("#1", "#2"));
+            Set<File> changed = watcher.awaitChanges(5000);
+            assertTrue(changed.contains(a.getAbsoluteFile()));
+
+            List<BatchAssembler.Result> results =
+                    watcher.rebuild(changed, System.nanoTime());
+            assertEquals(1, results.size());
+            assertEquals(a.getAbsoluteFile(), results.get(0).getSource()
+                    .getAbsoluteFile());
+            assertTrue(results.get(0).succeeded());
+
+            // Saving a file without changing it rebuilds nothing.
+            TestFiles.write(dir, "b.asm", SOURCE);
+            changed = watcher.awaitChanges(5000);
+            assertTrue(changed.contains(b.getAbsoluteFile()));
+            assertEquals(0, watcher.rebuild(changed, System.nanoTime()).size());
+        } finally {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Checking: Deleting a source deletes its outputs, and deleting an
+     * exporting module reassembles its importers and reports their
+     * unresolved imports.
+     */
+    @Test
+    public void handlesDeletedSources() throws Exception {
+        File dir = TestFiles.tempDirectory();
+        File outputs = TestFiles.tempDirectory();
+        File a = TestFiles.write(dir, "a.asm", SOURCE);
+        File b = TestFiles.write(dir, "b.asm", SOURCE);
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        SourceWatcher watcher =
+                new SourceWatcher(Arrays.asList(a.getPath(), b.getPath()),
+                        AssemblyContext.DEFAULT, outputs, 50, new PrintStream(
+                                log, true));
+
+        try {
+            watcher.rebuild(null, System.nanoTime());
+            assertTrue(new File(outputs, "a.obj").isFile());
+
+            a.delete();
+            Set<File> changed = watcher.awaitChanges(5000);
+            assertTrue(changed.contains(a.getAbsoluteFile()));
+            assertEquals(0, watcher.rebuild(changed, System.nanoTime()).size());
+            assertFalse(new File(outputs, "a.obj").exists());
+            assertFalse(new File(outputs, "a.lst").exists());
+            assertTrue(new File(outputs, "b.obj").isFile());
+            assertTrue(log.toString().contains("gone"));
+        } finally {
+            watcher.close();
+        }
+
+        File lib =
+                TestFiles.write(dir, "lib.asm", "Lib      .ORIG\n"
+                        + "         .ENT    Print\n"
+                        + "Print    RET\n" + "         .END\n");
+        File main =
+                TestFiles.write(dir, "main.asm", "Main     .ORIG\n"
+                        + "         .EXT    Print\n"
+                        + "         JSR     Print\n" + "         .END\n");
+
+        log.reset();
+        watcher =
+                new SourceWatcher(Arrays.asList(lib.getPath(), main.getPath()),
+                        AssemblyContext.DEFAULT, outputs, true, 50,
+                        new PrintStream(log, true));
+
+        try {
+            assertEquals(2, watcher.rebuild(null, System.nanoTime()).size());
+            assertFalse(log.toString().contains("unresolved"));
+
+            lib.delete();
+            List<BatchAssembler.Result> results =
+                    watcher.rebuild(watcher.awaitChanges(5000), System
+                            .nanoTime());
+
+            assertEquals(1, results.size());
+            assertEquals(main.getAbsoluteFile(), results.get(0).getSource()
+                    .getAbsoluteFile());
+            assertFalse(new File(outputs, "lib.obj").exists());
+            assertTrue(log.toString(), log.toString().contains(
+                    "unresolved or duplicate: [Print]"));
+        } finally {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Checking: Deleting every file a pattern matches deletes their outputs
+     * rather than ending the watch, and a file matching it later is built.
+     */
+    @Test
+    public void handlesEmptyPatterns() throws Exception {
+        File dir = TestFiles.tempDirectory();
+        File outputs = TestFiles.tempDirectory();
+        File a = TestFiles.write(dir, "a.asm", SOURCE);
+        File b = TestFiles.write(dir, "b.asm", SOURCE);
+        SourceWatcher watcher =
+                new SourceWatcher(Arrays.asList(new File(dir, "*.asm")
+                        .getPath()), AssemblyContext.DEFAULT, outputs, 50,
+                        new PrintStream(new ByteArrayOutputStream()));
+
+        try {
+            assertEquals(2, watcher.rebuild(null, System.nanoTime()).size());
+
+            a.delete();
+            b.delete();
+            assertEquals(0, watcher.rebuild(watcher.awaitChanges(5000),
+                    System.nanoTime()).size());
+            assertFalse(new File(outputs, "a.obj").exists());
+            assertFalse(new File(outputs, "b.obj").exists());
+
+            File c = TestFiles.write(dir, "c.asm", SOURCE);
+            List<BatchAssembler.Result> results =
+                    watcher.rebuild(watcher.awaitChanges(5000), System
+                            .nanoTime());
+
+            assertEquals(1, results.size());
+            assertEquals(c.getAbsoluteFile(), results.get(0).getSource()
+                    .getAbsoluteFile());
+        } finally {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Checking: A rebuild that cannot start, because two sources would
+     * write the same outputs, is reported and the watch goes on.
+     */
+    @Test
+    public void reportsClashesAndKeepsWatching() throws Exception {
+        File first = TestFiles.tempDirectory();
+        File second = TestFiles.tempDirectory();
+        File outputs = TestFiles.tempDirectory();
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+        TestFiles.write(first, "x.asm", SOURCE);
+
+        final SourceWatcher watcher =
+                new SourceWatcher(Arrays.asList(new File(first, "*.asm")
+                        .getPath(), new File(second, "*.asm").getPath()),
+                        AssemblyContext.DEFAULT, outputs, 50, new PrintStream(
+                                log, true));
+        final Exception[] failure = new Exception[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    watcher.watch();
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        thread.start();
+
+        try {
+            awaitLog(log, "rebuilt 1 file(s)");
+
+            File clash = TestFiles.write(second, "x.asm", SOURCE);
+            awaitLog(log, "[ERROR 205]");
+
+            // Once the clash is gone, edits are built again.
+            clash.delete();
+            TestFiles.write(first, "y.asm", SOURCE);
+            awaitLog(log, "y.asm");
+            assertTrue(thread.isAlive());
+        } finally {
+            watcher.close();
+            thread.join(5000);
+        }
+
+        assertEquals(null, failure[0]);
+    }
+
+    /**
+     * Waits until {@code text} appears in {@code log}.
+     */
+    private static void awaitLog(ByteArrayOutputStream log, String text)
+            throws InterruptedException {
+        for (int i = 0; i < 500 && !log.toString().contains(text); ++i) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(log.toString(), log.toString().contains(text));
+    }
+}
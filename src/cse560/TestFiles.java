@@ -0,0 +1,100 @@
+package cse560;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Files and sources shared by the tests of the assemblers that read and
+ * write the file system. Everything created is deleted when the JVM exits.
+ * <p>
+ * Note that this class violates this project's typical rule to have an
+ * interface for every component, since every method is a class method.
+ *
+ * @author Igor Tolkachev
+ */
+final class TestFiles {
+    /**
+     * Creates an empty temporary directory.
+     *
+     * @return The directory.
+     * @throws IOException
+     *             If it cannot be created.
+     */
+    static File tempDirectory() throws IOException {
+        File dir = File.createTempFile("mmxi", "test");
+        dir.delete();
+        dir.mkdir();
+        dir.deleteOnExit();
+
+        return dir;
+    }
+
+    /**
+     * Writes {@code contents} to {@code name} in {@code dir}.
+     *
+     * @return The file written.
+     * @throws IOException
+     *             If it cannot be written.
+     */
+    static File write(File dir, String name, String contents)
+            throws IOException {
+        File file = new File(dir, name);
+        FileWriter out = new FileWriter(file);
+        out.write(contents);
+        out.close();
+        file.deleteOnExit();
+
+        return file;
+    }
+
+    /**
+     * Reads {@code file}, ending every line with a newline.
+     *
+     * @return Its contents.
+     * @throws IOException
+     *             If it cannot be read.
+     */
+    static String read(File file) throws IOException {
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        StringBuilder contents = new StringBuilder();
+        String line;
+
+        while ((line = in.readLine()) != null) {
+            contents.append(line).append('\n');
+        }
+
+        in.close();
+        file.deleteOnExit();
+
+        return contents.toString();
+    }
+
+    /**
+     * Returns a program named {@code name} of {@code n} instructions and a
+     * literal.
+     */
+    static String source(String name, int n) {
+        StringBuilder source = new StringBuilder();
+
+        source.append(String.format("%-6s   .ORIG   x1000%n", name));
+
+        for (int i = 0; i < n; ++i) {
+            source.append("         ADD     R1,R1,#1\n");
+        }
+
+        source.append("         LD      R2,=#" + n + "\n");
+        source.append("         .END\n");
+
+        return source.toString();
+    }
+
+    /**
+     * Private constructor to prevent instantiation of this utility class.
+     */
+    private TestFiles() {
+        throw new UnsupportedOperationException();
+    }
+}
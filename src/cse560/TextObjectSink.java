@@ -0,0 +1,63 @@
+package cse560;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the textual H/N/X/T/E object file. See {@link Assembler} and
+ * {@link ObjectDialect}.
+ *
+ * @author Igor Tolkachev
+ */
+public final class TextObjectSink implements OutputSink {
+    /** Formats the records of the object file. */
+    private final ObjectFileWriter writer;
+
+    /**
+     * Initializes a sink that writes an object file to {@code out}.
+     *
+     * @param out
+     *            The destination of the object file.
+     * @param dialect
+     *            The dialect text records are written in.
+     */
+    public TextObjectSink(Writer out, ObjectDialect dialect) {
+        this.writer = new ObjectFileWriter(out, dialect);
+    }
+
+    @Override
+    public void header(String segmentName, int firstAddress, int length,
+            boolean isRelocatable) {
+        this.writer.writeHeader(segmentName, firstAddress, length);
+    }
+
+    @Override
+    public void entry(String symbol, int value, boolean isRelative) {
+        this.writer.writeEntry(symbol, value, isRelative);
+    }
+
+    @Override
+    public void external(String symbol) {
+        this.writer.writeExternal(symbol);
+    }
+
+    @Override
+    public void word(int address, int value, Relocation relocation) {
+        this.writer.writeText(address, value, relocation);
+    }
+
+    @Override
+    public void listingLine(SourceRecord record, int address, int value,
+            boolean printSource) {
+    }
+
+    @Override
+    public void literal(int literal, int address) {
+        this.writer.writeText(address, literal, Relocation.NONE);
+    }
+
+    @Override
+    public void end(int execAddress) throws IOException {
+        this.writer.writeEnd(execAddress);
+    }
+}
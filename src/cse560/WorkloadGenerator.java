@@ -0,0 +1,421 @@
+package cse560;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates valid MMXI programs of any size, for benchmarks and scale tests.
+ * <p>
+ * Programs are laid out a page at a time. Every symbol a page refers to is
+ * defined on that page, and no instruction refers to a symbol from the last
+ * word of a page, whose PC is on the next. So every branch and address operand
+ * passes the assembler's page check however the knobs below are set. The
+ * literals, if any, are all loaded from the page the literal table starts on.
+ * <p>
+ * <b>Model:</b>
+ * <ul>
+ * <li>{@code integer lines} - The number of lines between the .ORIG record
+ * and the loads of the literals; fewer if the segment reaches the end of
+ * memory first.</li>
+ * <li>{@code real labelDensity} - The fraction of records that have a
+ * label.</li>
+ * <li>{@code real forwardRatio} - The fraction of symbol references made to a
+ * label further down the page.</li>
+ * <li>{@code integer literals} - The number of distinct literals.</li>
+ * <li>{@code real strzRatio} - The fraction of records that are .STRZ.</li>
+ * <li>{@code real blkwRatio} - The fraction of records that are .BLKW.</li>
+ * <li>{@code integer maxBlockWords} - The largest .BLKW or .STRZ, in
+ * words.</li>
+ * <li>{@code real commentRatio} - The fraction of lines that are
+ * comments.</li>
+ * <li>{@code integer origin} - The first address of the segment.</li>
+ * <li>{@code real pageFill} - The fraction of each page filled before the
+ * rest of it is skipped with a .BLKW.</li>
+ * <li>{@code long seed} - The seed of the random choices; equal settings give
+ * equal programs.</li>
+ * </ul>
+ * Instances are immutable.
+ *
+ * @author Igor Tolkachev
+ */
+public final class WorkloadGenerator {
+    /** Words in one page. */
+    public static final int PAGE_WORDS = 512;
+
+    /** Largest number of literals; the loads and the table share a page. */
+    public static final int MAX_LITERALS = PAGE_WORDS / 2 - 1;
+
+    /** First address past the end of what a segment may occupy. */
+    private static final int MEMORY_END = 0xffff;
+
+    /** Fraction of instructions that refer to a symbol, where one may. */
+    private static final double REFERENCE_RATIO = 0.5;
+
+    /** Instructions with a symbol operand; %s is the symbol. */
+    private static final String[] REFERENCES = {"LD      R1,%s",
+        "ST      R2,%s", "LEA     R3,%s", "LDI     R4,%s", "STI     R5,%s",
+        "BRN     %s", "BRZ     %s", "BRP     %s", "BRNZP   %s", "JSR     %s",
+        "JMP     %s" };
+
+    /** Instructions without one. */
+    private static final String[] PLAIN = {"ADD     R1,R1,#1",
+        "ADD     R2,R1,R3", "AND     R0,R0,x0", "NOT     R3,R1",
+        "LDR     R4,R6,#2", "STR     R1,R5,#1", "TRAP    x22", "RET",
+        ".FILL   #560" };
+
+    /** Letters the strings of .STRZ records are made of. */
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz ";
+
+    /** The kinds of record a page is made of. */
+    private enum Kind {
+        COMMENT, INSTRUCTION, STRZ, BLKW
+    }
+
+    /** One record of a page being laid out. */
+    private static final class Slot {
+        final Kind kind;
+
+        final int address;
+
+        final int size;
+
+        String label = null;
+
+        Slot(Kind kind, int address, int size) {
+            this.kind = kind;
+            this.address = address;
+            this.size = size;
+        }
+    }
+
+    private int lines = 1000;
+
+    private double labelDensity = 0.2;
+
+    private double forwardRatio = 0.3;
+
+    private int literals = 0;
+
+    private double strzRatio = 0.02;
+
+    private double blkwRatio = 0.02;
+
+    private int maxBlockWords = 16;
+
+    private double commentRatio = 0.1;
+
+    private int origin = 0x0000;
+
+    private double pageFill = 1.0;
+
+    private long seed = 560;
+
+    /**
+     * Initializes a generator with the default settings: 1000 lines, a label
+     * on one record in five, three forward references in ten, no literals, a
+     * few .STRZ and .BLKW records, a comment on one line in ten and full pages
+     * from address 0.
+     */
+    public WorkloadGenerator() {
+        // Every setting has its default.
+    }
+
+    private WorkloadGenerator copy() {
+        WorkloadGenerator copy = new WorkloadGenerator();
+
+        copy.lines = this.lines;
+        copy.labelDensity = this.labelDensity;
+        copy.forwardRatio = this.forwardRatio;
+        copy.literals = this.literals;
+        copy.strzRatio = this.strzRatio;
+        copy.blkwRatio = this.blkwRatio;
+        copy.maxBlockWords = this.maxBlockWords;
+        copy.commentRatio = this.commentRatio;
+        copy.origin = this.origin;
+        copy.pageFill = this.pageFill;
+        copy.seed = this.seed;
+
+        return copy;
+    }
+
+    /**
+     * @return This generator with {@code lines = n}.
+     */
+    public WorkloadGenerator withLines(int n) {
+        WorkloadGenerator copy = copy();
+        copy.lines = n;
+        return copy;
+    }
+
+    /**
+     * @return This generator with {@code labelDensity = density}.
+     */
+    public WorkloadGenerator withLabelDensity(double density) {
+        WorkloadGenerator copy = copy();
+        copy.labelDensity = density;
+        return copy;
+    }
+
+    /**
+     * @return This generator with {@code forwardRatio = ratio}.
+     */
+    public WorkloadGenerator withForwardRatio(double ratio) {
+        WorkloadGenerator copy = copy();
+        copy.forwardRatio = ratio;
+        return copy;
+    }
+
+    /**
+     * @return This generator with {@code literals = n}.
+     * @throws IllegalArgumentException
+     *             If {@code n > MAX_LITERALS}.
+     */
+    public WorkloadGenerator withLiterals(int n) {
+        if (n > MAX_LITERALS) {
+            throw new IllegalArgumentException("At most " + MAX_LITERALS
+                    + " literals");
+        }
+
+        WorkloadGenerator copy = copy();
+        copy.literals = n;
+        return copy;
+    }
+
+    /**
+     * @return This generator with {@code strzRatio = strz} and
+     *         {@code blkwRatio = blkw}.
+     */
+    public WorkloadGenerator withDataMix(double strz, double blkw) {
+        WorkloadGenerator copy = copy();
+        copy.strzRatio = strz;
+        copy.blkwRatio = blkw;
+        return copy;
+    }
+
+    /**
+     * @return This generator with {@code maxBlockWords = words}.
+     */
+    public WorkloadGenerator withMaxBlockWords(int words) {
+        WorkloadGenerator copy = copy();
+        copy.maxBlockWords = words;
+        return copy;
+    }
+
+    /**
+     * @return This generator with {@code commentRatio = ratio}.
+     */
+    public WorkloadGenerator withCommentRatio(double ratio) {
+        WorkloadGenerator copy = copy();
+        copy.commentRatio = ratio;
+        return copy;
+    }
+
+    /**
+     * @return This generator with {@code origin = address} and
+     *         {@code pageFill = fill}.
+     */
+    public WorkloadGenerator withPageLayout(int address, double fill) {
+        WorkloadGenerator copy = copy();
+        copy.origin = address;
+        copy.pageFill = fill;
+        return copy;
+    }
+
+    /**
+     * @return This generator with {@code seed = s}.
+     */
+    public WorkloadGenerator withSeed(long s) {
+        WorkloadGenerator copy = copy();
+        copy.seed = s;
+        return copy;
+    }
+
+    /**
+     * Generates a program.
+     *
+     * @return The source of the program, one record per line.
+     */
+    public String generate() {
+        Random random = new Random(this.seed);
+        StringBuilder out = new StringBuilder();
+        int address = this.origin;
+        int written = 0;
+        int[] labelCount = {0 };
+
+        // The literals' loads and table need a page of their own at the end.
+        int reserve = this.literals == 0 ? 0 : 2 * this.literals + 1;
+        int limit = MEMORY_END - reserve;
+
+        out.append(String.format("Work     .ORIG   x%04X%n", this.origin));
+
+        while (written < this.lines && address < limit) {
+            int pageEnd = (address / PAGE_WORDS + 1) * PAGE_WORDS;
+            int fillEnd =
+                    Math.max(address + 1, (int) (pageEnd - PAGE_WORDS
+                            + PAGE_WORDS * this.pageFill));
+            int end = Math.min(Math.min(fillEnd, pageEnd), limit);
+            List<Slot> page =
+                    layOut(random, address, end, this.lines - written);
+            Slot last = page.get(page.size() - 1);
+
+            written += writePage(out, random, page, pageEnd, labelCount);
+            address = last.address + last.size;
+
+            // ...Skip the rest of a partly filled page
+
+            if (address < pageEnd && address < limit && written < this.lines) {
+                int skip = Math.min(pageEnd, limit) - address;
+
+                out.append(String.format("         .BLKW   #%d%n", skip));
+                address += skip;
+                ++written;
+            }
+        }
+
+        // ...Load every literal from the page the literal table starts on
+
+        if (this.literals > 0) {
+            int pageEnd = (address / PAGE_WORDS + 1) * PAGE_WORDS;
+
+            if (pageEnd - address < reserve) {
+                out.append(String.format("         .BLKW   #%d%n", pageEnd
+                        - address));
+            }
+
+            for (int i = 0; i < this.literals; ++i) {
+                out.append(String.format("         LD      R6,=#%d%n",
+                        1000 + i));
+            }
+        }
+
+        out.append(String.format("         .END    x%04X%n", this.origin));
+
+        return out.toString();
+    }
+
+    /**
+     * Chooses the records of the page from {@code address} up to {@code end}.
+     *
+     * @param lineBudget
+     *            The most lines the page may have.
+     */
+    private List<Slot> layOut(Random random, int address, int end,
+            int lineBudget) {
+        List<Slot> page = new ArrayList<Slot>();
+
+        while (address < end && page.size() < lineBudget) {
+            double roll = random.nextDouble();
+            int room = Math.min(end - address, this.maxBlockWords);
+            Slot slot;
+
+            if (random.nextDouble() < this.commentRatio) {
+                slot = new Slot(Kind.COMMENT, address, 0);
+            } else if (roll < this.strzRatio && room >= 2) {
+                slot =
+                        new Slot(Kind.STRZ, address, 2 + random
+                                .nextInt(room - 1));
+            } else if (roll < this.strzRatio + this.blkwRatio) {
+                slot = new Slot(Kind.BLKW, address, 1 + random.nextInt(room));
+            } else {
+                slot = new Slot(Kind.INSTRUCTION, address, 1);
+            }
+
+            page.add(slot);
+            address += slot.size;
+        }
+
+        return page;
+    }
+
+    /**
+     * Labels the records of one page and writes them.
+     *
+     * @param pageEnd
+     *            The first address of the next page.
+     * @param labelCount
+     *            The number of labels defined so far, updated.
+     * @return The number of lines written.
+     */
+    private int writePage(StringBuilder out, Random random, List<Slot> page,
+            int pageEnd, int[] labelCount) {
+        for (Slot slot : page) {
+            if (slot.kind != Kind.COMMENT
+                    && random.nextDouble() < this.labelDensity) {
+                slot.label = String.format("L%05d", labelCount[0]++);
+            }
+        }
+
+        for (int i = 0; i < page.size(); ++i) {
+            Slot slot = page.get(i);
+            String label = slot.label == null ? "" : slot.label;
+
+            switch (slot.kind) {
+            case COMMENT:
+                out.append("; ---- generated ----\n");
+                break;
+
+            case STRZ:
+                StringBuilder text = new StringBuilder();
+
+                for (int j = 0; j < slot.size - 1; ++j) {
+                    text.append(LETTERS.charAt(random.nextInt(LETTERS
+                            .length())));
+                }
+
+                out.append(String.format("%-6s   .STRZ   \"%s\"%n", label,
+                        text));
+                break;
+
+            case BLKW:
+                out.append(String.format("%-6s   .BLKW   #%d%n", label,
+                        slot.size));
+                break;
+
+            default:
+                String target = null;
+
+                // An instruction in the last word of a page has its PC on the
+                // next one, so it may not refer to this page's labels.
+                if (slot.address + 1 < pageEnd
+                        && random.nextDouble() < REFERENCE_RATIO) {
+                    target = chooseTarget(random, page, i);
+                }
+
+                String instruction =
+                        target == null ? PLAIN[random.nextInt(PLAIN.length)]
+                                : String.format(REFERENCES[random
+                                        .nextInt(REFERENCES.length)], target);
+
+                out.append(String.format("%-6s   %s%n", label, instruction));
+            }
+        }
+
+        return page.size();
+    }
+
+    /**
+     * Chooses a label on {@code page} for the record at {@code index} to
+     * refer to, further down the page with probability
+     * {@code forwardRatio}.
+     *
+     * @return The label, or null if the page has none.
+     */
+    private String chooseTarget(Random random, List<Slot> page, int index) {
+        List<String> behind = new ArrayList<String>();
+        List<String> ahead = new ArrayList<String>();
+
+        for (int i = 0; i < page.size(); ++i) {
+            if (page.get(i).label != null) {
+                (i > index ? ahead : behind).add(page.get(i).label);
+            }
+        }
+
+        boolean forward = random.nextDouble() < this.forwardRatio;
+        List<String> pool =
+                forward && !ahead.isEmpty() || behind.isEmpty() ? ahead
+                        : behind;
+
+        return pool.isEmpty() ? null : pool.get(random.nextInt(pool.size()));
+    }
+}
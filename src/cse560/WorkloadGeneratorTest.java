@@ -0,0 +1,70 @@
+package cse560;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class WorkloadGeneratorTest {
+    private static final AssemblyContext CONTEXT =
+            new AssemblyContext(null, 1 << 20, 1 << 16,
+                    WorkloadGenerator.MAX_LITERALS, ObjectDialect.CLASSIC);
+
+    private static void assertAssembles(WorkloadGenerator generator) {
+        AssemblyResult result =
+                EmbeddedAssembler.assemble(generator.generate(), CONTEXT);
+
+        assertTrue(result.getDiagnostics().toString(), result.succeeded());
+    }
+
+    /**
+     * Checking: Equal settings give equal programs, and the seed changes them.
+     */
+    @Test
+    public void deterministic() {
+        WorkloadGenerator generator = new WorkloadGenerator().withLines(300);
+
+        assertEquals(generator.generate(), generator.generate());
+        assertFalse(generator.generate().equals(
+                generator.withSeed(1).generate()));
+    }
+
+    /**
+     * Checking: Programs assemble whatever the knobs are set to.
+     */
+    @Test
+    public void everyMixAssembles() {
+        WorkloadGenerator generator = new WorkloadGenerator().withLines(3000);
+
+        assertAssembles(generator);
+        assertAssembles(generator.withLabelDensity(1).withForwardRatio(1));
+        assertAssembles(generator.withLabelDensity(0.05).withForwardRatio(0));
+        assertAssembles(generator.withDataMix(0.2, 0.2).withMaxBlockWords(100));
+        assertAssembles(generator.withCommentRatio(0.9).withLiterals(10));
+        assertAssembles(generator.withPageLayout(0x3005, 0.25).withLiterals(
+                WorkloadGenerator.MAX_LITERALS));
+    }
+
+    /**
+     * Checking: A program can fill memory up to 0xFFFF with thousands of
+     * symbols.
+     */
+    @Test
+    public void fillsMemory() {
+        String source =
+                new WorkloadGenerator().withLines(1 << 20).withLabelDensity(
+                        0.25).withLiterals(50).generate();
+        Program program =
+                new ParserImp2().parse(new BufferedReader(new StringReader(
+                        source)), CONTEXT.getMaxRecords());
+
+        assertTrue(program.getLength() > 0xffff - WorkloadGenerator.PAGE_WORDS);
+        assertTrue(program.numberOfSymbols() > 10000);
+        assertEquals(50, program.numberOfLiterals());
+        assertTrue(EmbeddedAssembler.assemble(source, CONTEXT).succeeded());
+    }
+}